@@ -0,0 +1,160 @@
+package de.tuda.aiml.benchmarks;
+
+import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.causality.Equation;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the causal models the benchmarks run on. Each model family is parameterized by its depth and its number
+ * of exogenous variables. The endogenous variables of the lowest level depend on the exogenous variables, phi is the
+ * variable on top of the model and the causes are taken from the lowest level.
+ */
+public class BenchmarkModels {
+    // probability of each exogenous variable in the probabilistic models
+    static final double PROBABILITY = 0.5;
+
+    public enum ModelFamily {
+        /**
+         * A binary tree of disjunctions with 2^depth leaves. Leaf i is defined by exogenous variable i modulo the
+         * number of exogenous variables.
+         */
+        BINARY_TREE,
+        /**
+         * depth + 1 levels of as many endogenous variables as there are exogenous variables. Variable j of a level
+         * depends on variables j and j + 1 of the level below, alternating between disjunctions and conjunctions.
+         * phi is the disjunction of the top level.
+         */
+        LAYERED
+    }
+
+    private final FormulaFactory f = new FormulaFactory();
+    private final Set<Equation> equations = new HashSet<>();
+    private final List<Variable> exogenousVariables = new ArrayList<>();
+    private final List<Variable> lowestLevel = new ArrayList<>();
+    private Variable top;
+
+    /**
+     * @param family             the model family
+     * @param depth              the depth of the model
+     * @param exogenousVariables the number of exogenous variables
+     * @throws IllegalArgumentException if the depth is negative or there is no exogenous variable
+     */
+    BenchmarkModels(ModelFamily family, int depth, int exogenousVariables) {
+        if (depth < 0 || exogenousVariables < 1) {
+            throw new IllegalArgumentException("Invalid depth " + depth + " or number of exogenous variables " +
+                    exogenousVariables);
+        }
+        for (int i = 0; i < exogenousVariables; i++) {
+            this.exogenousVariables.add(f.variable("U" + i));
+        }
+        if (family == ModelFamily.BINARY_TREE) {
+            generateBinaryTree(depth);
+        } else {
+            generateLayered(depth);
+        }
+    }
+
+    private void generateBinaryTree(int depth) {
+        List<Variable> level = new ArrayList<>();
+        for (int i = 0; i < 1 << depth; i++) {
+            Variable variable = f.variable("L" + depth + "_" + i);
+            equations.add(new Equation(variable, exogenousVariables.get(i % exogenousVariables.size())));
+            level.add(variable);
+        }
+        lowestLevel.addAll(level);
+        for (int d = depth - 1; d >= 0; d--) {
+            List<Variable> nextLevel = new ArrayList<>();
+            for (int i = 0; i < 1 << d; i++) {
+                Variable variable = f.variable("L" + d + "_" + i);
+                equations.add(new Equation(variable, f.or(level.get(2 * i), level.get(2 * i + 1))));
+                nextLevel.add(variable);
+            }
+            level = nextLevel;
+        }
+        top = level.get(0);
+    }
+
+    private void generateLayered(int depth) {
+        int width = exogenousVariables.size();
+        List<Variable> level = new ArrayList<>();
+        for (int j = 0; j < width; j++) {
+            Variable variable = f.variable("L0_" + j);
+            equations.add(new Equation(variable, exogenousVariables.get(j)));
+            level.add(variable);
+        }
+        lowestLevel.addAll(level);
+        for (int d = 1; d <= depth; d++) {
+            List<Variable> nextLevel = new ArrayList<>();
+            for (int j = 0; j < width; j++) {
+                Variable variable = f.variable("L" + d + "_" + j);
+                Formula formula = d % 2 == 1 ? f.or(level.get(j), level.get((j + 1) % width)) :
+                        f.and(level.get(j), level.get((j + 1) % width));
+                equations.add(new Equation(variable, formula));
+                nextLevel.add(variable);
+            }
+            level = nextLevel;
+        }
+        top = f.variable("E");
+        equations.add(new Equation(top, f.or(level)));
+    }
+
+    /**
+     * @return the deterministic causal model
+     * @throws InvalidCausalModelException thrown if the model is invalid, which cannot happen
+     */
+    CausalModel getCausalModel() throws InvalidCausalModelException {
+        return new CausalModel("Benchmark", equations, new HashSet<>(exogenousVariables), f);
+    }
+
+    /**
+     * @return the probabilistic causal model, where each exogenous variable is true with {@link #PROBABILITY}
+     * @throws InvalidCausalModelException thrown if the model is invalid, which cannot happen
+     */
+    ProbabilisticCausalModel getProbabilisticCausalModel() throws InvalidCausalModelException {
+        Map<Variable, Double> probabilities = new LinkedHashMap<>();
+        exogenousVariables.forEach(v -> probabilities.put(v, PROBABILITY));
+        return new ProbabilisticCausalModel("Benchmark", equations, probabilities, f);
+    }
+
+    /**
+     * @return the context in which all exogenous variables are true
+     */
+    Set<Literal> getContext() {
+        return new HashSet<>(exogenousVariables);
+    }
+
+    /**
+     * @return phi, i.e. the variable on top of the model
+     */
+    Formula getPhi() {
+        return top;
+    }
+
+    /**
+     * Returns the cause of the given size. It consists of the first variables of the lowest level, which are all true
+     * in the context of {@link #getContext()}.
+     *
+     * @param size the size of the cause
+     * @return the cause
+     * @throws IllegalArgumentException if the lowest level has less variables than the size of the cause
+     */
+    Set<Literal> getCause(int size) {
+        if (size < 1 || size > lowestLevel.size()) {
+            throw new IllegalArgumentException("Cannot create a cause of size " + size + " from " +
+                    lowestLevel.size() + " variables");
+        }
+        return lowestLevel.stream().limit(size).collect(Collectors.toSet());
+    }
+
+    FormulaFactory getFormulaFactory() {
+        return f;
+    }
+}
@@ -0,0 +1,58 @@
+package de.tuda.aiml.benchmarks;
+
+import de.tum.in.i4.hp2sat.causality.CausalModel;
+import de.tum.in.i4.hp2sat.causality.CausalitySolverResult;
+import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CausalModel#isCause(Set, Formula, Set, SolvingStrategy)} for every {@link SolvingStrategy}.
+ * The brute force and the original and updated HP solvers enumerate all W, so larger depths should only be run for
+ * the SAT based strategies, e.g. -p depth=5 -p solvingStrategy=SAT,SAT_MINIMAL.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeterministicSolverBenchmark {
+    @Param
+    public SolvingStrategy solvingStrategy;
+
+    @Param({"BINARY_TREE", "LAYERED"})
+    public BenchmarkModels.ModelFamily modelFamily;
+
+    @Param({"1", "2"})
+    public int depth;
+
+    @Param({"2", "4"})
+    public int exogenousVariables;
+
+    @Param({"1", "2"})
+    public int causeSize;
+
+    private CausalModel causalModel;
+    private Set<Literal> context;
+    private Formula phi;
+    private Set<Literal> cause;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkModels models = new BenchmarkModels(modelFamily, depth, exogenousVariables);
+        causalModel = models.getCausalModel();
+        context = models.getContext();
+        phi = models.getPhi();
+        cause = models.getCause(causeSize);
+    }
+
+    @Benchmark
+    public CausalitySolverResult isCause() throws Exception {
+        return causalModel.isCause(context, phi, cause, solvingStrategy);
+    }
+}
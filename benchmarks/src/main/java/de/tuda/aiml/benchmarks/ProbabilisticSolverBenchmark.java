@@ -0,0 +1,58 @@
+package de.tuda.aiml.benchmarks;
+
+import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
+import de.tuda.aiml.probabilistic.ProbabilisticCausalitySolverResult;
+import de.tuda.aiml.probabilistic.ProbabilisticSolvingStrategy;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ProbabilisticCausalModel#isCause(Set, Formula, Set, ProbabilisticSolvingStrategy)} for every
+ * {@link ProbabilisticSolvingStrategy}. All solvers enumerate W as well as the contexts (or count them), so the
+ * defaults are kept small; larger models can be run with e.g. -p depth=3.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProbabilisticSolverBenchmark {
+    @Param
+    public ProbabilisticSolvingStrategy solvingStrategy;
+
+    @Param({"BINARY_TREE", "LAYERED"})
+    public BenchmarkModels.ModelFamily modelFamily;
+
+    @Param({"1", "2"})
+    public int depth;
+
+    @Param({"2", "4"})
+    public int exogenousVariables;
+
+    @Param({"1", "2"})
+    public int causeSize;
+
+    private ProbabilisticCausalModel causalModel;
+    private Set<Literal> context;
+    private Formula phi;
+    private Set<Literal> cause;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkModels models = new BenchmarkModels(modelFamily, depth, exogenousVariables);
+        causalModel = models.getProbabilisticCausalModel();
+        context = models.getContext();
+        phi = models.getPhi();
+        cause = models.getCause(causeSize);
+    }
+
+    @Benchmark
+    public ProbabilisticCausalitySolverResult isCause() throws Exception {
+        return causalModel.isCause(context, phi, cause, solvingStrategy);
+    }
+}
@@ -4,11 +4,14 @@ import de.tuda.aiml.util.UtilityMethods;
 import de.tum.in.i4.hp2sat.causality.CausalModel;
 import de.tum.in.i4.hp2sat.causality.CausalitySolver;
 import de.tum.in.i4.hp2sat.causality.CausalitySolverResult;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
 import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.util.Util;
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -16,6 +19,7 @@ import org.logicng.formulas.Variable;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 /**
@@ -25,13 +29,31 @@ public class OriginalHPSolver extends CausalitySolver {
     @Override
     public CausalitySolverResult solve(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause, SolvingStrategy solvingStrategy) throws InvalidCausalModelException {
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
-        boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
-        Set<Literal> w = fulfillsAC2(causalModel, phi, cause, context, evaluation, f);
+        QueryProgress progress = new QueryProgress();
+        SolverMetrics metrics = createMetrics();
+        boolean ac1 = false;
+        Set<Literal> w = null;
+        boolean ac3 = false;
+        try {
+            metrics.startClause(1);
+            Set<Literal> evaluation = evaluateEquations(causalModel, context, metrics);
+            Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
+            ac1 = ac1Tuple.first() && ac1Tuple.second();
+            progress.setAc1(ac1);
+            metrics.startClause(2);
+            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, progress, metrics, f);
+            progress.setAc2(w != null);
+            metrics.startClause(3);
+            ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), progress, metrics, f);
+            progress.setAc3(ac3);
+        } catch (CancellationException e) {
+            // the budget is exhausted; return the clauses decided so far
+            handleCancellation(e);
+        }
+        metrics.finishClause();
         boolean ac2 = w != null;
-        boolean ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), f);
-        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
+        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w, progress,
+                metrics);
         return causalitySolverResult;
     }
 
@@ -42,22 +64,28 @@ public class OriginalHPSolver extends CausalitySolver {
      * @param cause the cause to check if it fulfills the condition
      * @param context actual setting of the exogenous variables
      * @param evaluation of the variables in the actual setting
+     * @param progress the progress, to which the W candidates are added; null if the clause is checked for AC3
+     * @param metrics the metrics of the check
      * @param f the formula factory of the example
      * @return a set of literals. That is the set of endogenous variables vector(W) and their assignment vector(w) that
      * fulfills the second clause. Else null
      * @throws InvalidCausalModelException
      */
     private Set<Literal> fulfillsAC2(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                     Set<Literal> evaluation, FormulaFactory f)
+                                     Set<Literal> evaluation, QueryProgress progress, SolverMetrics metrics,
+                                     FormulaFactory f)
             throws InvalidCausalModelException {
 
-        // negate phi
-        Formula negatedPhi = f.not(phi);
+        // negate phi; phi and its negation are compiled once, since they are evaluated for each W and z*
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledFormula negatedPhi = compiledModel.compile(f.not(phi));
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
 
         // create modified causal model by replacing the cause x with x'.
-        CausalModel causalModelForNegatedCause = createModifiedCausalModelForCause(causalModel, cause, f);
+        CompiledCausalModel causalModelForNegatedCause = intervene(compiledModel,
+                cause.stream().map(Literal::negate).collect(Collectors.toSet()), metrics);
 
-        CausalModel causalModelForCause = createModifiedCausalModelForW(causalModel, cause , f);
+        CompiledCausalModel causalModelForCause = intervene(compiledModel, cause, metrics);
 
         // get the cause as set of variables
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
@@ -71,10 +99,16 @@ public class OriginalHPSolver extends CausalitySolver {
                 .collect(Collectors.toSet());
 
         // get all possible Ws, i.e. create power set of the evaluation
-        List<Set<Literal>> allSubsetsOfW = (new Util<Literal>()).generatePowerSet(wVariables);
+        long numberOfWCandidates = Util.countSubsets(wVariables.size());
+        Iterable<Set<Literal>> allSubsetsOfW = (new Util<Literal>()).iteratePowerSet(wVariables);
+        if (progress != null) {
+            progress.addWCandidates(numberOfWCandidates);
+        }
 
         // Iterate over all subsets of W and Z
         for (Set<Literal> w : allSubsetsOfW) {
+            checkBudget();
+            metrics.wCandidateTried();
             // Create Z distinct to W
             Set<Literal> zVariables = evaluation.stream().filter(l -> !causalModel.getExogenousVariables().contains(l.variable())).collect(Collectors.toSet());
             zVariables.removeAll(w);
@@ -85,47 +119,55 @@ public class OriginalHPSolver extends CausalitySolver {
             for(Literal lit: w){
                 wAssignments.add(lit.negate());
             }
-            List<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).generatePowerSet(wAssignments);
+            // only the subsets that contain |W| literals can be assignments of W
+            Iterable<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).iterateSubsets(wAssignments, w.size());
             for(Set<Literal> wAssignment : allSubsetsOfWAssignments){
-                if(wAssignment.size() != w.size() || !UtilityMethods.noDuplicates(wAssignment)){
+                checkBudget();
+                if(!UtilityMethods.noDuplicates(wAssignment)){
                     continue;
                 }
+                metrics.wAssignmentTried();
                 // create a modified causal of the model in which we previously set X = x', by intervening
                 // on the values of the current variables in W using wAssignment
-                CausalModel causalModelNegatedModifiedW = createModifiedCausalModelForW(causalModelForNegatedCause, wAssignment, f);
+                CompiledCausalModel causalModelNegatedModifiedW = intervene(causalModelForNegatedCause, wAssignment, metrics);
 
                 // evaluate all values of variables in this causal model
-                Set<Literal> negatedEvaluationModifiedW = CausalitySolver.evaluateEquations(causalModelNegatedModifiedW, context);
+                long[] negatedEvaluationModifiedW = evaluateEquations(causalModelNegatedModifiedW, context, metrics);
 
                 // Check AC2 (a): Not Phi should hold in model that has X = x' and W = w
-                if (negatedPhi.evaluate(new Assignment(negatedEvaluationModifiedW))) {
+                if (negatedPhi.evaluate(negatedEvaluationModifiedW)) {
 
                     // Create Z' as Z - X
                     zVariables.removeAll(cause);
-                    List<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).generatePowerSet(zVariables);
+                    Iterable<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).iteratePowerSet(zVariables);
 
                     // create causal model with the W = w that fulfilled AC2 (a) in original model with X = x
-                    CausalModel causalModelModW = createModifiedCausalModelForW(causalModelForCause, wAssignment, f);
+                    CompiledCausalModel causalModelModW = intervene(causalModelForCause, wAssignment, metrics);
 
                     boolean checkZSubsets = true;
 
                     for(Set<Literal> zStar : allSubsetsOfZPrime){
+                        checkBudget();
+                        metrics.zStarSubsetTried();
 
                         // create and evaluate causal model with X = x, W = w and Z' = z*
-                        CausalModel causalModelModWModZStar = createModifiedCausalModelForW(causalModelModW, zStar, f);
-                        Set<Literal> evaluationModified = CausalitySolver.evaluateEquations(causalModelModWModZStar, context);
+                        CompiledCausalModel causalModelModWModZStar = intervene(causalModelModW, zStar, metrics);
+                        long[] evaluationModified = evaluateEquations(causalModelModWModZStar, context, metrics);
 
                         // Check AC2 (b): Phi fulfilled in model that has X = x, W = w, Z' = z*
-                        if(!phi.evaluate(new Assignment(evaluationModified))){
+                        if(!compiledPhi.evaluate(evaluationModified)){
                             checkZSubsets = false;
                             break;
                         }
                     }
                     if(checkZSubsets){
-                        return wAssignment;
+                        return new HashSet<>(wAssignment);
                     }
                 }
             }
+            if (progress != null) {
+                progress.exploreWCandidate();
+            }
         }
 
         return null;
@@ -137,7 +179,8 @@ public class OriginalHPSolver extends CausalitySolver {
      * @throws InvalidCausalModelException
      */
     private boolean fulfillsAC3(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                Set<Literal> evaluation, boolean phiOccurred, FormulaFactory f) throws InvalidCausalModelException {
+                                Set<Literal> evaluation, boolean phiOccurred, QueryProgress progress,
+                                SolverMetrics metrics, FormulaFactory f) throws InvalidCausalModelException {
 
         // Only if the cause is not a singleton, we have to check if a strict subset X' of X exists.
         if (cause.size() > 1 && phiOccurred) {
@@ -151,11 +194,14 @@ public class OriginalHPSolver extends CausalitySolver {
              * No subset X' of the cause must fulfill AC1 and AC2.
              * For AC1, we only need to check if the current subset X' is fulfilled in the actual setting,
              * as we checked for phi before */
+            progress.addSubCauses(allSubsetsOfCause.size());
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
-                        fulfillsAC2(causalModel, phi, c, context, evaluation, f) != null) {
+                        fulfillsAC2(causalModel, phi, c, context, evaluation, null, metrics, f) != null) {
                     return false;
                 }
+                progress.exploreSubCause();
             }
         }
         return true;
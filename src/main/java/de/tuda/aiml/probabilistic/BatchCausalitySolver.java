@@ -0,0 +1,388 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidContextException;
+import de.tum.in.i4.hp2sat.exceptions.InvalidPhiException;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Solves many queries on the same probabilistic causal model, e.g. hundreds of candidate causes for the same phi and
+ * context. In contrast to calling {@link ProbabilisticCausalModel#isCause(Set, org.logicng.formulas.Formula, Set,
+ * ProbabilisticSolvingStrategy)} for each query, the following is shared across the queries:
+ * <ul>
+ * <li>all queries are validated before any of them is solved;</li>
+ * <li>the equations are evaluated once per distinct context, i.e. the actual world;</li>
+ * <li>the contexts that are consistent with the actual world (PAC and PC') are computed once per distinct context and
+ * shared by all workers and all calls of this solver, see {@link ConsistentContexts};</li>
+ * <li>each worker compiles the model once and keeps one solver per solving strategy for all its queries. The
+ * interventions on the causes are views of the compiled model, see {@link Intervention}, and cost
+ * O(|cause|) per query.</li>
+ * </ul>
+ *
+ * If an executor is set, the queries are solved in parallel. As formula factories are not thread-safe, each worker
+ * solves the queries on its own copy of the causal model with its own formula factory, as in the parallel W search.
+ * The workers claim the queries in the given order. The results are passed to the callback on the calling thread, in
+ * the order in which the queries complete, and refer to the literals of the formula factory of the causal model.
+ */
+public class BatchCausalitySolver {
+    private final ProbabilisticCausalModel causalModel;
+    // if null, the queries are solved sequentially by the calling thread
+    private Executor executor = ForkJoinPool.commonPool();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean exhaustiveWSearch = true;
+    private MonteCarloSettings monteCarloSettings = MonteCarloSettings.DEFAULT;
+    private SolverMetricsListener metricsListener = SolverMetricsListener.NO_OP;
+    // if not null, each worker checks the W candidates of its queries in parallel on this executor
+    private Executor wSearchExecutor;
+    private int wSearchParallelism = Runtime.getRuntime().availableProcessors();
+    private int evaluationCacheSize = EvaluationCache.DEFAULT_MAXIMUM_SIZE;
+    // if not null, bounds the runtime of each query
+    private QueryBudget queryBudget;
+    // the contexts consistent with the actual world of each evaluation; shared by all workers and all calls
+    private final Map<Set<Literal>, ConsistentContexts> actualWorldContexts = new ConcurrentHashMap<>();
+
+    /**
+     * A solved query, or the exception that a worker threw while solving it.
+     */
+    private static class Completion {
+        private final int index;
+        private final ProbabilisticCausalitySolverResult result;
+        private final Throwable exception;
+
+        private Completion(int index, ProbabilisticCausalitySolverResult result, Throwable exception) {
+            this.index = index;
+            this.result = result;
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * Solves queries on a causal model that is owned by a single thread.
+     */
+    private class Worker {
+        private final ProbabilisticCausalModel causalModel;
+        private final Map<ProbabilisticSolvingStrategy, ProbabilisticCausalitySolver> solvers =
+                new EnumMap<>(ProbabilisticSolvingStrategy.class);
+
+        private Worker(ProbabilisticCausalModel causalModel) {
+            this.causalModel = causalModel;
+        }
+
+        private ProbabilisticCausalitySolverResult solve(ProbabilisticCausalQuery query, Set<Literal> evaluation)
+                throws InvalidCausalModelException {
+            ProbabilisticCausalitySolver solver = solvers.computeIfAbsent(query.getSolvingStrategy(), s -> {
+                ProbabilisticCausalitySolver newSolver = ProbabilisticCausalitySolver.create(s);
+                newSolver.setExhaustiveWSearch(exhaustiveWSearch);
+                newSolver.setMonteCarloSettings(monteCarloSettings);
+                newSolver.setMetricsListener(metricsListener);
+                newSolver.setWSearchExecutor(wSearchExecutor);
+                newSolver.setWSearchParallelism(wSearchParallelism);
+                newSolver.setEvaluationCacheSize(evaluationCacheSize);
+                newSolver.setQueryBudget(queryBudget);
+                newSolver.setActualWorldContextsCache(actualWorldContexts);
+                return newSolver;
+            });
+            return solver.solve(causalModel, query.getContext(), evaluation, query.getPhi(), query.getCause(),
+                    query.getSolvingStrategy());
+        }
+    }
+
+    /**
+     * Creates a new batch solver.
+     *
+     * @param causalModel the causal model all queries refer to
+     */
+    public BatchCausalitySolver(ProbabilisticCausalModel causalModel) {
+        this.causalModel = Objects.requireNonNull(causalModel);
+    }
+
+    /**
+     * Solves the given queries and passes each query and its result to the callback, in the order in which the
+     * queries complete. The callback is invoked by the calling thread, which needs to own the formula factory of the
+     * causal model. If a query cannot be solved, the remaining queries are not started and the exception is thrown
+     * once the results of the queries completed before it have been passed to the callback.
+     *
+     * @param queries  the queries; all literals and formulas need to belong to the formula factory of the model
+     * @param callback receives each query and its result
+     * @throws InvalidContextException     thrown if the context of a query is invalid; no query has been solved then
+     * @throws InvalidCauseException       thrown if the cause of a query is invalid; no query has been solved then
+     * @throws InvalidPhiException         thrown if phi of a query is invalid; no query has been solved then
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public void solve(Collection<ProbabilisticCausalQuery> queries,
+                      BiConsumer<ProbabilisticCausalQuery, ProbabilisticCausalitySolverResult> callback)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        List<ProbabilisticCausalQuery> queryList = new ArrayList<>(queries);
+        // validate all queries before solving any of them
+        for (ProbabilisticCausalQuery query : queryList) {
+            causalModel.validateCausalityCheck(query.getContext(), query.getPhi(), query.getCause());
+        }
+        solveValidated(queryList, callback);
+    }
+
+    /**
+     * Same as {@link #solve(Collection, BiConsumer)}, but without validating the queries, e.g. if they are generated
+     * from a valid query.
+     *
+     * @param queryList the valid queries
+     * @param callback  receives each query and its result
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    void solveValidated(List<ProbabilisticCausalQuery> queryList,
+                        BiConsumer<ProbabilisticCausalQuery, ProbabilisticCausalitySolverResult> callback)
+            throws InvalidCausalModelException {
+        // evaluate the equations once per context
+        Map<Set<Literal>, Set<Literal>> evaluations = new HashMap<>();
+        for (ProbabilisticCausalQuery query : queryList) {
+            evaluations.computeIfAbsent(query.getContext(),
+                    c -> ProbabilisticCausalitySolver.evaluateEquations(causalModel, c));
+        }
+
+        int numberOfWorkers = Math.min(parallelism, queryList.size());
+        if (executor == null || numberOfWorkers <= 1) {
+            Worker worker = new Worker(causalModel);
+            for (ProbabilisticCausalQuery query : queryList) {
+                callback.accept(query, worker.solve(query, evaluations.get(query.getContext())));
+            }
+            return;
+        }
+
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        for (int i = 0; i < numberOfWorkers; i++) {
+            // the copies are created by this thread, as it owns the formula factory of the causal model
+            FormulaFactory f = new FormulaFactory();
+            Worker worker = new Worker(causalModel.copy(f));
+            Map<Set<Literal>, Set<Literal>> workerEvaluations = new HashMap<>();
+            List<ProbabilisticCausalQuery> workerQueries = new ArrayList<>(queryList.size());
+            List<Set<Literal>> workerQueryEvaluations = new ArrayList<>(queryList.size());
+            for (ProbabilisticCausalQuery query : queryList) {
+                workerQueries.add(new ProbabilisticCausalQuery(importLiterals(query.getContext(), f),
+                        f.importFormula(query.getPhi()), importLiterals(query.getCause(), f),
+                        query.getSolvingStrategy()));
+                workerQueryEvaluations.add(workerEvaluations.computeIfAbsent(query.getContext(),
+                        c -> importLiterals(evaluations.get(c), f)));
+            }
+            CompletableFuture.runAsync(() -> {
+                int index;
+                while (!stopped.get() && (index = nextIndex.getAndIncrement()) < workerQueries.size()) {
+                    try {
+                        completions.add(new Completion(index, worker.solve(workerQueries.get(index),
+                                workerQueryEvaluations.get(index)), null));
+                    } catch (Throwable e) {
+                        // also errors, e.g. a stack overflow on a deep model, as the caller waits for each query
+                        stopped.set(true);
+                        completions.add(new Completion(index, null, e));
+                        return;
+                    }
+                }
+            }, executor);
+        }
+
+        FormulaFactory f = causalModel.getFormulaFactory();
+        try {
+            for (int received = 0; received < queryList.size(); received++) {
+                Completion completion = completions.take();
+                if (completion.exception instanceof InvalidCausalModelException) {
+                    throw (InvalidCausalModelException) completion.exception;
+                } else if (completion.exception instanceof Error) {
+                    throw (Error) completion.exception;
+                } else if (completion.exception != null) {
+                    throw (RuntimeException) completion.exception;
+                }
+                ProbabilisticCausalQuery query = queryList.get(completion.index);
+                ProbabilisticCausalitySolverResult result = completion.result;
+                callback.accept(query, result.copy(query.getCause(),
+                        result.getW() != null ? importLiterals(result.getW(), f) : null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            // e.g. if the callback has thrown an exception
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * Solves the given queries, see {@link #solve(Collection, BiConsumer)}.
+     *
+     * @param queries the queries
+     * @return the result of each query, in the order of the queries
+     * @throws InvalidContextException     thrown if the context of a query is invalid
+     * @throws InvalidCauseException       thrown if the cause of a query is invalid
+     * @throws InvalidPhiException         thrown if phi of a query is invalid
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    public List<ProbabilisticCausalitySolverResult> solve(List<ProbabilisticCausalQuery> queries)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        Map<ProbabilisticCausalQuery, ProbabilisticCausalitySolverResult> results = new IdentityHashMap<>();
+        solve(queries, results::put);
+        return queries.stream().map(results::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the given literals in the given formula factory, keeping their order.
+     *
+     * @param literals the literals
+     * @param f        the formula factory
+     * @return the literals of the formula factory
+     */
+    private static Set<Literal> importLiterals(Collection<Literal> literals, FormulaFactory f) {
+        return literals.stream().map(l -> f.literal(l.name(), l.phase()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Sets the executor on which the queries are solved in parallel. If null, the queries are solved sequentially by
+     * the calling thread. Default is {@link ForkJoinPool#commonPool()}.
+     *
+     * @param executor the executor, or null
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the maximal number of workers, each of which solves the queries on its own copy of the causal model.
+     * Default is the number of available processors.
+     *
+     * @param parallelism the maximal number of workers
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The batch solver needs at least one worker");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setExhaustiveWSearch(boolean)}.
+     *
+     * @param exhaustiveWSearch true for the exhaustive W search, false for the pruned one
+     */
+    public void setExhaustiveWSearch(boolean exhaustiveWSearch) {
+        this.exhaustiveWSearch = exhaustiveWSearch;
+    }
+
+    public boolean isExhaustiveWSearch() {
+        return exhaustiveWSearch;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setMonteCarloSettings(MonteCarloSettings)}.
+     *
+     * @param monteCarloSettings the settings
+     */
+    public void setMonteCarloSettings(MonteCarloSettings monteCarloSettings) {
+        this.monteCarloSettings = Objects.requireNonNull(monteCarloSettings);
+    }
+
+    public MonteCarloSettings getMonteCarloSettings() {
+        return monteCarloSettings;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setMetricsListener(SolverMetricsListener)}. The listener is shared by all
+     * workers, hence it needs to be thread-safe.
+     *
+     * @param metricsListener the listener
+     */
+    public void setMetricsListener(SolverMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+    }
+
+    public SolverMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setWSearchExecutor(Executor)}. Default is null, i.e. each worker checks
+     * the W candidates of its queries sequentially.
+     *
+     * @param wSearchExecutor the executor, or null for the sequential W search
+     */
+    public void setWSearchExecutor(Executor wSearchExecutor) {
+        this.wSearchExecutor = wSearchExecutor;
+    }
+
+    public Executor getWSearchExecutor() {
+        return wSearchExecutor;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setWSearchParallelism(int)}.
+     *
+     * @param wSearchParallelism the number of workers of the W search of each query
+     * @throws IllegalArgumentException if the number of workers is not positive
+     */
+    public void setWSearchParallelism(int wSearchParallelism) {
+        if (wSearchParallelism < 1) {
+            throw new IllegalArgumentException("The W search needs at least one worker");
+        }
+        this.wSearchParallelism = wSearchParallelism;
+    }
+
+    public int getWSearchParallelism() {
+        return wSearchParallelism;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setEvaluationCacheSize(int)}. Each worker has its own cache.
+     *
+     * @param evaluationCacheSize the maximal number of cached evaluations per query; 0 disables the cache
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public void setEvaluationCacheSize(int evaluationCacheSize) {
+        if (evaluationCacheSize < 0) {
+            throw new IllegalArgumentException("The size of the cache must not be negative");
+        }
+        this.evaluationCacheSize = evaluationCacheSize;
+    }
+
+    public int getEvaluationCacheSize() {
+        return evaluationCacheSize;
+    }
+
+    /**
+     * See {@link ProbabilisticCausalitySolver#setQueryBudget(QueryBudget)}. The budget is shared by all queries, e.g.
+     * to bound the whole batch: once it is exhausted, each query that has not been completed yet returns a partial
+     * result.
+     *
+     * @param queryBudget the budget; null (default) for no bound
+     */
+    public void setQueryBudget(QueryBudget queryBudget) {
+        this.queryBudget = queryBudget;
+    }
+
+    public QueryBudget getQueryBudget() {
+        return queryBudget;
+    }
+}
@@ -0,0 +1,269 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Evaluates the contexts of a {@link ContextSpace} bit-parallel. The contexts are split into blocks of 64 * width
+ * contexts, and each variable of a block is represented by width words in which bit j holds the value of the variable in
+ * the j-th context of the word (lane). A single pass through the equations of a compiled model, see
+ * {@link CompiledCausalModel#evaluate(long[], int)}, therefore evaluates all contexts of a block at once.
+ *
+ * Lane j of word w in block b is the context with index b * 64 * width + w * 64 + j of the context space, i.e. the
+ * lower six free variables alternate within each word, whereas all higher free variables are constant in a word.
+ * The probability of each lane is computed in exactly the same way as {@link ContextSpace.Context#getProbability()}.
+ *
+ * Java 8 offers no vector API. Hence, instead of using wider vector registers, the width of a block can be increased
+ * to process several words per variable in each pass through the equations.
+ *
+ * An evaluator holds the state of the current block and is not thread-safe.
+ */
+public class BitSlicedEvaluator {
+    // number of words per variable if not specified otherwise
+    static final int DEFAULT_WIDTH = 4;
+
+    // values of the lower six free variables within a word
+    private static final long[] LANE_MASKS = {
+            0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L};
+
+    private final ContextSpace contextSpace;
+    private final int width;
+    private final int numberOfFreeVariables;
+    private final int[] variableIds;
+    private final int[] fixedIds;
+    private final boolean[] fixedValues;
+    private final int[] marginalizedIds;
+
+    private long block = -1;
+    private final long[] validLanes;
+    private final double[][] laneProbabilities;
+
+    /**
+     * Creates an evaluator with {@link #DEFAULT_WIDTH} words per variable.
+     *
+     * @param contextSpace the contexts to evaluate
+     */
+    public BitSlicedEvaluator(ContextSpace contextSpace) {
+        this(contextSpace, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param contextSpace the contexts to evaluate
+     * @param width        the number of words per variable, i.e. a block contains 64 * width contexts
+     */
+    public BitSlicedEvaluator(ContextSpace contextSpace, int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("The width needs to be positive");
+        }
+        this.contextSpace = contextSpace;
+        this.width = width;
+        CompiledCausalModel compiledModel = contextSpace.getCausalModel().getCompiledModel();
+
+        List<Variable> variables = contextSpace.getVariables();
+        this.numberOfFreeVariables = variables.size();
+        this.variableIds = new int[numberOfFreeVariables];
+        for (int i = 0; i < numberOfFreeVariables; i++) {
+            variableIds[i] = compiledModel.getId(variables.get(i));
+        }
+        Literal[] fixedLiterals = contextSpace.size() > 0 ?
+                contextSpace.getFixedLiterals().toArray(new Literal[0]) : new Literal[0];
+        this.fixedIds = new int[fixedLiterals.length];
+        this.fixedValues = new boolean[fixedLiterals.length];
+        for (int i = 0; i < fixedLiterals.length; i++) {
+            fixedIds[i] = compiledModel.getId(fixedLiterals[i].variable());
+            fixedValues[i] = fixedLiterals[i].phase();
+        }
+        // all other exogenous variables are marginalized
+        boolean[] assigned = new boolean[compiledModel.getNumberOfExogenousVariables()];
+        for (int id : variableIds) {
+            assigned[id] = true;
+        }
+        for (int id : fixedIds) {
+            assigned[id] = true;
+        }
+        this.marginalizedIds = new int[assigned.length - variableIds.length - fixedIds.length];
+        for (int id = 0, i = 0; id < assigned.length; id++) {
+            if (!assigned[id]) {
+                marginalizedIds[i++] = id;
+            }
+        }
+
+        this.validLanes = new long[width];
+        this.laneProbabilities = new double[width][64];
+    }
+
+    /**
+     * @return the number of blocks needed to cover all contexts
+     */
+    public long getNumberOfBlocks() {
+        long lanesPerBlock = 64L * width;
+        return (contextSpace.size() + lanesPerBlock - 1) / lanesPerBlock;
+    }
+
+    /**
+     * @param block the index of the block
+     * @return the number of contexts in the given block, i.e. 64 * width except for the last block
+     */
+    public long getNumberOfContexts(long block) {
+        long lanesPerBlock = 64L * width;
+        return Math.max(0, Math.min(lanesPerBlock, contextSpace.size() - block * lanesPerBlock));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @param compiledModel a compiled model whose variables are those of the model of the context space
+     * @return a new bit-sliced assignment of the width of this evaluator
+     */
+    public long[] newAssignment(CompiledCausalModel compiledModel) {
+        return compiledModel.newAssignment(width);
+    }
+
+    /**
+     * Moves to the given block, i.e. computes which lanes hold a context and what the probability of each context is.
+     *
+     * @param block the index of the block
+     */
+    public void setBlock(long block) {
+        if (this.block == block) {
+            return;
+        }
+        this.block = block;
+        for (int word = 0; word < width; word++) {
+            long firstIndex = (block * width + word) * 64;
+            long remaining = contextSpace.size() - firstIndex;
+            validLanes[word] = remaining >= 64 ? -1L : remaining <= 0 ? 0L : (1L << remaining) - 1;
+            if (validLanes[word] != 0L) {
+                computeLaneProbabilities(firstIndex, laneProbabilities[word]);
+            }
+        }
+    }
+
+    /**
+     * Computes the probability of each lane of a word. As in {@link ContextSpace}, the probability of a context is
+     * f_0 * (f_1 * (... * f_n-1)), where f_i is the probability of the value of the i-th free variable. The factors of
+     * the variables above the lanes are shared by all lanes; the lanes are then filled from the highest lane variable
+     * downwards.
+     */
+    private void computeLaneProbabilities(long firstIndex, double[] probabilities) {
+        int laneVariables = Math.min(6, numberOfFreeVariables);
+        double probability = 1.0;
+        for (int i = numberOfFreeVariables - 1; i >= laneVariables; i--) {
+            probability = contextSpace.getProbability(i, (firstIndex & (1L << i)) != 0) * probability;
+        }
+        probabilities[0] = probability;
+        for (int i = laneVariables - 1; i >= 0; i--) {
+            // entries are indexed by the values of the variables i+1 to laneVariables-1; add variable i as lowest bit
+            for (int entry = (1 << (laneVariables - 1 - i)) - 1; entry >= 0; entry--) {
+                double suffix = probabilities[entry];
+                probabilities[2 * entry + 1] = contextSpace.getProbability(i, true) * suffix;
+                probabilities[2 * entry] = contextSpace.getProbability(i, false) * suffix;
+            }
+        }
+    }
+
+    /**
+     * Writes the contexts of the current block into the exogenous variables of a bit-sliced assignment. Marginalized
+     * variables are false.
+     *
+     * @param words the bit-sliced assignment, see {@link #newAssignment(CompiledCausalModel)}
+     */
+    public void assignContexts(long[] words) {
+        for (int word = 0; word < width; word++) {
+            long firstIndex = (block * width + word) * 64;
+            for (int i = 0; i < numberOfFreeVariables; i++) {
+                long value;
+                if (i < 6) {
+                    value = LANE_MASKS[i];
+                } else {
+                    value = (firstIndex & (1L << i)) != 0 ? -1L : 0L;
+                }
+                words[variableIds[i] * width + word] = value;
+            }
+            for (int i = 0; i < fixedIds.length; i++) {
+                words[fixedIds[i] * width + word] = fixedValues[i] ? -1L : 0L;
+            }
+            for (int id : marginalizedIds) {
+                words[id * width + word] = 0L;
+            }
+        }
+    }
+
+    /**
+     * Evaluates a compiled model for all contexts of the current block.
+     *
+     * @param compiledModel the compiled model
+     * @param words         the bit-sliced assignment whose exogenous variables have been set by
+     *                      {@link #assignContexts(long[])}
+     */
+    public void evaluate(CompiledCausalModel compiledModel, long[] words) {
+        compiledModel.evaluate(words, width);
+    }
+
+    /**
+     * Evaluates a compiled formula for the lanes of the given word.
+     *
+     * @param formula the compiled formula
+     * @param words   the bit-sliced assignment
+     * @param word    the index of the word
+     * @return one bit per lane; lanes that do not hold a context are false
+     */
+    public long evaluate(CompiledFormula formula, long[] words, int word) {
+        return formula.evaluate(words, width, word) & validLanes[word];
+    }
+
+    /**
+     * Adds the probabilities of the contexts of the given lanes of a word to a sum.
+     *
+     * @param sum   the sum
+     * @param word  the index of the word
+     * @param lanes the lanes, one bit per lane
+     */
+    public void addProbabilities(ProbabilitySum sum, int word, long lanes) {
+        lanes &= validLanes[word];
+        double[] probabilities = laneProbabilities[word];
+        while (lanes != 0L) {
+            sum.add(probabilities[Long.numberOfTrailingZeros(lanes)]);
+            lanes &= lanes - 1;
+        }
+    }
+
+    /**
+     * @param word the index of the word
+     * @param lane the index of the lane within the word
+     * @return the probability of the context of the given lane of the current block
+     */
+    double getProbability(int word, int lane) {
+        return laneProbabilities[word][lane];
+    }
+
+    /**
+     * Draws a word whose lanes are independently true with the given probability, e.g. the values of an exogenous
+     * variable in 64 sampled contexts.
+     *
+     * @param random      the source of randomness
+     * @param probability the probability of each lane to be true
+     * @return the word
+     */
+    public static long nextRandomLanes(SplittableRandom random, double probability) {
+        // a lane is true if the next 53 random bits are below the probability, just as for nextDouble()
+        long threshold = (long) (probability * (1L << 53));
+        long lanes = 0L;
+        for (int lane = 0; lane < 64; lane++) {
+            if ((random.nextLong() >>> 11) < threshold) {
+                lanes |= 1L << lane;
+            }
+        }
+        return lanes;
+    }
+}
@@ -0,0 +1,180 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The contexts of a {@link ContextSpace} in which a condition holds in the causal model of the space, e.g. the contexts
+ * that are consistent with the actual world. The condition is evaluated once for all contexts by a
+ * {@link BitSlicedEvaluator}. The contexts that fulfill it are packed densely into blocks of 64 * width lanes, in the
+ * order of the context space, and for each block the bit-sliced values of the exogenous variables and the probability
+ * of each lane are kept. Hence, (modified) models can be evaluated on these contexts only, without evaluating the
+ * condition again.
+ *
+ * The exogenous variables have the lowest ids of a compiled model, see {@link CompiledCausalModel}, so their words
+ * form a prefix of a bit-sliced assignment, which is copied as a whole. As all models that are derived from the model
+ * of the space, and all copies of it, share these ids, the contexts can be evaluated on any of them. The contexts are
+ * not modified once they have been computed and may be shared between threads.
+ */
+public class ConsistentContexts {
+    private final int width;
+    private final int exogenousWords;
+    private final List<long[]> blockValues = new ArrayList<>();
+    private final List<double[]> blockProbabilities = new ArrayList<>();
+    private final long size;
+
+    /**
+     * Computes the contexts with {@link BitSlicedEvaluator#DEFAULT_WIDTH} words per variable.
+     *
+     * @param contextSpace the contexts to filter
+     * @param condition    the condition, compiled for the model of the context space
+     */
+    public ConsistentContexts(ContextSpace contextSpace, CompiledFormula condition) {
+        this(contextSpace, condition, BitSlicedEvaluator.DEFAULT_WIDTH);
+    }
+
+    /**
+     * Computes the contexts.
+     *
+     * @param contextSpace the contexts to filter
+     * @param condition    the condition, compiled for the model of the context space
+     * @param width        the number of words per variable, i.e. a block contains 64 * width contexts
+     */
+    public ConsistentContexts(ContextSpace contextSpace, CompiledFormula condition, int width) {
+        BitSlicedEvaluator evaluator = new BitSlicedEvaluator(contextSpace, width);
+        CompiledCausalModel compiledModel = contextSpace.getCausalModel().getCompiledModel();
+        int numberOfExogenousVariables = compiledModel.getNumberOfExogenousVariables();
+        this.width = width;
+        this.exogenousWords = numberOfExogenousVariables * width;
+
+        long[] values = evaluator.newAssignment(compiledModel);
+        int lanesPerBlock = 64 * width;
+        long[] packedValues = null;
+        double[] packedProbabilities = null;
+        long packed = 0;
+        for (long block = 0; block < evaluator.getNumberOfBlocks(); block++) {
+            evaluator.setBlock(block);
+            evaluator.assignContexts(values);
+            evaluator.evaluate(compiledModel, values);
+            for (int word = 0; word < width; word++) {
+                long lanes = evaluator.evaluate(condition, values, word);
+                while (lanes != 0L) {
+                    int lane = Long.numberOfTrailingZeros(lanes);
+                    int position = (int) (packed % lanesPerBlock);
+                    if (position == 0) {
+                        packedValues = new long[exogenousWords];
+                        packedProbabilities = new double[lanesPerBlock];
+                        blockValues.add(packedValues);
+                        blockProbabilities.add(packedProbabilities);
+                    }
+                    // move the lane to its packed position
+                    int packedWord = position >> 6;
+                    long packedBit = 1L << (position & 63);
+                    for (int id = 0; id < numberOfExogenousVariables; id++) {
+                        if ((values[id * width + word] & (1L << lane)) != 0L) {
+                            packedValues[id * width + packedWord] |= packedBit;
+                        }
+                    }
+                    packedProbabilities[position] = evaluator.getProbability(word, lane);
+                    packed++;
+                    lanes &= lanes - 1;
+                }
+            }
+        }
+        this.size = packed;
+    }
+
+    /**
+     * @return the number of contexts in which the condition holds
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of blocks needed to cover all contexts
+     */
+    public int getNumberOfBlocks() {
+        return blockValues.size();
+    }
+
+    /**
+     * @param block the index of the block
+     * @return the number of contexts in the given block, i.e. 64 * width except for the last block
+     */
+    public long getNumberOfContexts(int block) {
+        long lanesPerBlock = 64L * width;
+        return Math.max(0, Math.min(lanesPerBlock, size - block * lanesPerBlock));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @param compiledModel a compiled model whose variables are those of the model of the context space
+     * @return a new bit-sliced assignment of the width of these contexts
+     */
+    public long[] newAssignment(CompiledCausalModel compiledModel) {
+        return compiledModel.newAssignment(width);
+    }
+
+    /**
+     * Writes the contexts of the given block into the exogenous variables of a bit-sliced assignment.
+     *
+     * @param words the bit-sliced assignment, see {@link #newAssignment(CompiledCausalModel)}
+     * @param block the index of the block
+     */
+    public void assignContexts(long[] words, int block) {
+        System.arraycopy(blockValues.get(block), 0, words, 0, exogenousWords);
+    }
+
+    /**
+     * Evaluates a compiled model for all contexts of a block.
+     *
+     * @param compiledModel the compiled model
+     * @param words         the bit-sliced assignment whose exogenous variables have been set by
+     *                      {@link #assignContexts(long[], int)}
+     */
+    public void evaluate(CompiledCausalModel compiledModel, long[] words) {
+        compiledModel.evaluate(words, width);
+    }
+
+    /**
+     * Evaluates a compiled formula for the lanes of the given word of a block.
+     *
+     * @param formula the compiled formula
+     * @param words   the bit-sliced assignment
+     * @param block   the index of the block
+     * @param word    the index of the word
+     * @return one bit per lane; lanes that do not hold a context are false
+     */
+    public long evaluate(CompiledFormula formula, long[] words, int block, int word) {
+        return formula.evaluate(words, width, word) & getValidLanes(block, word);
+    }
+
+    /**
+     * Adds the probabilities of the contexts of the given lanes of a word to a sum.
+     *
+     * @param sum   the sum
+     * @param block the index of the block
+     * @param word  the index of the word
+     * @param lanes the lanes, one bit per lane
+     */
+    public void addProbabilities(ProbabilitySum sum, int block, int word, long lanes) {
+        lanes &= getValidLanes(block, word);
+        double[] probabilities = blockProbabilities.get(block);
+        while (lanes != 0L) {
+            sum.add(probabilities[(word << 6) + Long.numberOfTrailingZeros(lanes)]);
+            lanes &= lanes - 1;
+        }
+    }
+
+    private long getValidLanes(int block, int word) {
+        long remaining = size - ((long) block * width + word) * 64;
+        return remaining >= 64 ? -1L : remaining <= 0 ? 0L : (1L << remaining) - 1;
+    }
+}
@@ -0,0 +1,246 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The space of all complete contexts of a probabilistic causal model, i.e. all assignments of its exogenous variables.
+ * Some exogenous variables may be held fixed by a (partial) context; only the remaining, free variables are enumerated.
+ * Hence, for n free variables the space contains exactly 2^n contexts.
+ *
+ * The contexts are not materialized. Instead, the iterator counts through the bitmasks of the free variables, i.e. bit
+ * i of a context index is the value of the i-th free variable, and keeps the probability of each context up to date
+ * incrementally.
+ *
+ * Exogenous variables that cannot influence the events of interest may be marginalized, see
+ * {@link Intervention#getExogenousAncestors(Collection)}. They are not enumerated and, as the probabilities of both of
+ * their values sum up to 1, they do not contribute to the probability of a context. In the assignments of a context
+ * they are false.
+ */
+public class ContextSpace implements Iterable<ContextSpace.Context> {
+    // more free variables cannot be enumerated anyway and would overflow the context index
+    static final int MAX_FREE_VARIABLES = 62;
+
+    private final ProbabilisticCausalModel causalModel;
+    private final Variable[] variables;
+    private final Literal[] negatedVariables;
+    private final double[] probabilities;
+    private final Set<Literal> fixedLiterals;
+    // ids of the free variables and the fixed literals in the compiled model
+    private final int[] variableIds;
+    private final long[] fixedAssignment;
+    private final int numberOfExogenousVariables;
+    private final boolean empty;
+
+    /**
+     * Creates the space of all contexts of the given probabilistic causal model.
+     *
+     * @param causalModel the probabilistic causal model
+     */
+    public ContextSpace(ProbabilisticCausalModel causalModel) {
+        this(causalModel, Collections.emptySet());
+    }
+
+    /**
+     * Creates the space of all contexts of the given probabilistic causal model that contain the given literals. If
+     * the fixed literals contradict each other or do not refer to exogenous variables, the space is empty.
+     *
+     * @param causalModel   the probabilistic causal model
+     * @param fixedLiterals the literals that are held fixed in each context
+     */
+    public ContextSpace(ProbabilisticCausalModel causalModel, Set<Literal> fixedLiterals) {
+        this(causalModel, fixedLiterals, causalModel.getExogenousVariables().keySet());
+    }
+
+    /**
+     * Creates the space of all contexts of the given probabilistic causal model that contain the given literals, where
+     * only the relevant exogenous variables are enumerated. All other exogenous variables that are not fixed are
+     * marginalized. If the fixed literals contradict each other or do not refer to exogenous variables, the space is
+     * empty.
+     *
+     * @param causalModel       the probabilistic causal model
+     * @param fixedLiterals     the literals that are held fixed in each context
+     * @param relevantVariables the exogenous variables that need to be enumerated; other variables are ignored
+     */
+    public ContextSpace(ProbabilisticCausalModel causalModel, Set<Literal> fixedLiterals,
+                        Set<Variable> relevantVariables) {
+        this.causalModel = causalModel;
+        Map<Variable, Double> exogenousVariables = causalModel.getExogenousVariables();
+        Set<Variable> fixedVariables = fixedLiterals.stream().map(Literal::variable).collect(Collectors.toSet());
+        this.fixedLiterals = Collections.unmodifiableSet(new HashSet<>(fixedLiterals));
+        this.empty = fixedVariables.size() != fixedLiterals.size()
+                || !exogenousVariables.keySet().containsAll(fixedVariables);
+
+        // sort the free variables by name such that the enumeration order does not depend on hashing
+        List<Variable> freeVariables = exogenousVariables.keySet().stream()
+                .filter(v -> !fixedVariables.contains(v) && relevantVariables.contains(v))
+                .sorted(Comparator.comparing(Variable::name))
+                .collect(Collectors.toList());
+        if (freeVariables.size() > MAX_FREE_VARIABLES) {
+            throw new IllegalArgumentException("Cannot enumerate the contexts of " + freeVariables.size() +
+                    " free exogenous variables");
+        }
+        this.variables = freeVariables.toArray(new Variable[0]);
+        this.negatedVariables = new Literal[variables.length];
+        this.probabilities = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            negatedVariables[i] = variables[i].negate();
+            probabilities[i] = exogenousVariables.get(variables[i]);
+        }
+
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        this.variableIds = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            variableIds[i] = compiledModel.getId(variables[i]);
+        }
+        this.fixedAssignment = compiledModel.newAssignment();
+        this.numberOfExogenousVariables = compiledModel.getNumberOfExogenousVariables();
+        if (!empty) {
+            compiledModel.setContext(fixedAssignment, fixedLiterals);
+        }
+    }
+
+    /**
+     * @return the number of contexts in this space
+     */
+    public long size() {
+        return empty ? 0 : 1L << variables.length;
+    }
+
+    /**
+     * @return the free variables in the order of the bits of a context index
+     */
+    public List<Variable> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    public ProbabilisticCausalModel getCausalModel() {
+        return causalModel;
+    }
+
+    public Set<Literal> getFixedLiterals() {
+        return fixedLiterals;
+    }
+
+    @Override
+    public Iterator<Context> iterator() {
+        return new ContextIterator();
+    }
+
+    /**
+     * Returns the probability that the free variable with the given index takes the given value.
+     */
+    double getProbability(int variableIndex, boolean value) {
+        return value ? probabilities[variableIndex] : 1 - probabilities[variableIndex];
+    }
+
+    /**
+     * Iterates through all contexts by counting the context index up. Whenever the index is incremented, only the
+     * trailing bits change. We therefore store the partial products of the probabilities of the variables from the
+     * highest index downwards and only recompute those that contain a changed bit.
+     */
+    private class ContextIterator implements Iterator<Context> {
+        private final long size = size();
+        private final double[] partialProbabilities = new double[variables.length + 1];
+        private long index = 0;
+
+        ContextIterator() {
+            partialProbabilities[variables.length] = 1.0;
+            for (int i = variables.length - 1; i >= 0; i--) {
+                partialProbabilities[i] = getProbability(i, false) * partialProbabilities[i + 1];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Context next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (index > 0) {
+                // bits 0 to highestChangedBit flipped when incrementing the index
+                int highestChangedBit = Long.numberOfTrailingZeros(index);
+                for (int i = highestChangedBit; i >= 0; i--) {
+                    partialProbabilities[i] = getProbability(i, (index & (1L << i)) != 0) *
+                            partialProbabilities[i + 1];
+                }
+            }
+            Context context = new Context(index, partialProbabilities[0]);
+            index++;
+            return context;
+        }
+    }
+
+    /**
+     * A single context of the space.
+     */
+    public class Context {
+        private final long index;
+        private final double probability;
+
+        private Context(long index, double probability) {
+            this.index = index;
+            this.probability = probability;
+        }
+
+        /**
+         * @return the index of this context; bit i holds the value of the i-th free variable
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the probability of the free variables taking their values in this context, i.e. the probability of
+         * this context given the fixed literals
+         */
+        public double getProbability() {
+            return probability;
+        }
+
+        /**
+         * @param variableIndex the index of a free variable
+         * @return the value of the free variable in this context
+         */
+        public boolean getValue(int variableIndex) {
+            return (index & (1L << variableIndex)) != 0;
+        }
+
+        /**
+         * Writes this context into the given bitset of a compiled model, see
+         * {@link ProbabilisticCausalModel#getCompiledModel()}. As all models that are derived from the model of this
+         * space share the ids of their variables, the bitset may belong to any of them. Only the exogenous variables
+         * are written; marginalized variables are false.
+         *
+         * @param assignment the bitset
+         */
+        public void assignTo(long[] assignment) {
+            for (int id = 0; id < numberOfExogenousVariables; id++) {
+                CompiledCausalModel.set(assignment, id, CompiledCausalModel.get(fixedAssignment, id));
+            }
+            for (int i = 0; i < variables.length; i++) {
+                CompiledCausalModel.set(assignment, variableIds[i], getValue(i));
+            }
+        }
+
+        /**
+         * @return the context as set of literals, including the fixed ones, but without the marginalized variables;
+         * positive literal means true, negative means false
+         */
+        public Set<Literal> getLiterals() {
+            Set<Literal> literals = new HashSet<>(fixedLiterals);
+            for (int i = 0; i < variables.length; i++) {
+                literals.add(getValue(i) ? variables[i] : negatedVariables[i]);
+            }
+            return literals;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of evaluations of intervened models, see
+ * {@link ProbabilisticCausalitySolver#evaluateEquations(Intervention, Set)}. An entry is keyed by a compact encoding
+ * of the intervention and the (possibly partial) context: the bitsets of the intervened variables, their values, the
+ * assigned exogenous variables and their values, indexed by the ids of the compiled model. As these ids only depend
+ * on the names of the variables, see {@link CompiledCausalModel}, copies of a causal model with their own formula
+ * factories share the entries. The evaluation is stored as bitset of the compiled model as well, in which phi and the
+ * cause can be evaluated by compiled formulas.
+ *
+ * If the cache is full, the least recently used entry is evicted. The cache is thread-safe; the evaluation itself is
+ * computed outside of the lock.
+ */
+public class EvaluationCache {
+    /**
+     * The number of entries of a cache if not specified otherwise.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+
+    private final int maximumSize;
+    private final Map<Key, long[]> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAXIMUM_SIZE} entries.
+     */
+    public EvaluationCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize the maximal number of entries; 0 disables the cache
+     * @throws IllegalArgumentException if the maximal number of entries is negative
+     */
+    public EvaluationCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The size of the cache must not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+                return size() > EvaluationCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Evaluates the equations of the given intervention under the given context, or looks the evaluation up if it
+     * has been computed before.
+     *
+     * @param intervention the intervention
+     * @param context      the context; may be partial, see
+     *                     {@link ProbabilisticCausalitySolver#evaluateEquations(Intervention, Set)}
+     * @return the evaluation as bitset of the compiled model, see {@link CompiledCausalModel#newAssignment()};
+     * must not be modified
+     */
+    public long[] evaluate(Intervention intervention, Set<Literal> context) {
+        return evaluate(intervention, context, SolverMetricsListener.NO_OP);
+    }
+
+    /**
+     * Like {@link #evaluate(Intervention, Set)}, but reports the evaluated equations if the evaluation is not cached.
+     *
+     * @param intervention the intervention
+     * @param context      the context; may be partial
+     * @param metrics      the metrics of the query
+     * @return the evaluation as bitset of the compiled model; must not be modified
+     */
+    public long[] evaluate(Intervention intervention, Set<Literal> context, SolverMetricsListener metrics) {
+        CompiledCausalModel compiledModel = intervention.getCausalModel().getCompiledModel();
+        Key key = new Key(compiledModel, intervention.getIntervenedVariables(), context);
+        synchronized (this) {
+            long[] evaluation = entries.get(key);
+            if (evaluation != null) {
+                hits++;
+                return evaluation;
+            }
+            misses++;
+        }
+        metrics.equationsEvaluated(intervention.getCausalModel().getVariableEquationMap().size());
+        long[] evaluation;
+        if (compiledModel.isComplete(context)) {
+            evaluation = intervention.getCompiledModel().evaluate(context);
+        } else {
+            // a partial context keeps the semantics of restricting the formulas
+            evaluation = compiledModel.newAssignment();
+            for (Literal literal : ProbabilisticCausalitySolver.evaluateEquations(intervention, context)) {
+                CompiledCausalModel.set(evaluation, compiledModel.getId(literal.variable()), literal.phase());
+            }
+        }
+        if (maximumSize > 0) {
+            synchronized (this) {
+                entries.put(key, evaluation);
+            }
+        }
+        return evaluation;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Removes all entries and resets the counters, e.g. at the beginning of a new query.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * The encoding of an intervention and a context: four bitsets of the same length, i.e. the intervened variables,
+     * their values, the assigned exogenous variables and their values.
+     */
+    private static final class Key {
+        private final long[] bits;
+        private final int hashCode;
+
+        Key(CompiledCausalModel compiledModel, Map<Variable, Boolean> intervenedVariables, Set<Literal> context) {
+            int words = (compiledModel.getNumberOfVariables() + 63) >> 6;
+            bits = new long[4 * words];
+            for (Map.Entry<Variable, Boolean> entry : intervenedVariables.entrySet()) {
+                set(compiledModel.getId(entry.getKey()), entry.getValue(), 0, words);
+            }
+            for (Literal literal : context) {
+                set(compiledModel.getId(literal.variable()), literal.phase(), 2 * words, words);
+            }
+            hashCode = Arrays.hashCode(bits);
+        }
+
+        private void set(int id, boolean value, int offset, int words) {
+            bits[offset + (id >> 6)] |= 1L << id;
+            if (value) {
+                bits[offset + words + (id >> 6)] |= 1L << id;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bits, ((Key) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
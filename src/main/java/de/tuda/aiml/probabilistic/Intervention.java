@@ -0,0 +1,125 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.Equation;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+
+/**
+ * A view of a probabilistic causal model in which some endogenous variables are set to constants, i.e. the
+ * equations of these variables are replaced by true or false. In contrast to
+ * {@link ProbabilisticCausalitySolver#createModifiedCausalModelForCause(ProbabilisticCausalModel, Set,
+ * org.logicng.formulas.FormulaFactory)}, no new model is built: the view shares the sorted equations and the graph of
+ * the underlying model and only stores the intervened variables. As removing the dependencies of an intervened
+ * variable keeps the topological order of the equations valid, the sorted equations of the underlying model can be
+ * evaluated as they are.
+ *
+ * Interventions can be nested (e.g. the cause, then W, then Z*), where the later intervention overrides the earlier
+ * one. Creating a nested intervention costs O(|intervened variables|).
+ */
+public class Intervention {
+    private final ProbabilisticCausalModel causalModel;
+    // value of each intervened variable
+    private final Map<Variable, Boolean> intervenedVariables;
+    private volatile CompiledCausalModel compiledModel;
+
+    /**
+     * Creates the intervention that sets the variables of the given literals to their phases.
+     *
+     * @param causalModel the underlying causal model
+     * @param literals    the literals; positive literal means true, negative means false
+     * @throws IllegalArgumentException if a literal does not refer to an endogenous variable
+     */
+    public Intervention(ProbabilisticCausalModel causalModel, Set<Literal> literals) {
+        this(causalModel, Collections.emptyMap(), literals);
+    }
+
+    private Intervention(ProbabilisticCausalModel causalModel, Map<Variable, Boolean> intervenedVariables,
+                         Set<Literal> literals) {
+        this.causalModel = causalModel;
+        this.intervenedVariables = new HashMap<>(intervenedVariables);
+        for (Literal literal : literals) {
+            if (!causalModel.getVariableEquationMap().containsKey(literal.variable())) {
+                throw new IllegalArgumentException("Cannot intervene on " + literal.variable() +
+                        " as it is no endogenous variable");
+            }
+            this.intervenedVariables.put(literal.variable(), literal.phase());
+        }
+    }
+
+    /**
+     * Creates a nested intervention, i.e. the variables of the given literals are set to their phases in addition to
+     * the variables intervened on by this intervention.
+     *
+     * @param literals the literals; positive literal means true, negative means false
+     * @return the nested intervention
+     * @throws IllegalArgumentException if a literal does not refer to an endogenous variable
+     */
+    public Intervention intervene(Set<Literal> literals) {
+        return new Intervention(causalModel, intervenedVariables, literals);
+    }
+
+    /**
+     * Get the probability of the given context. Interventions only affect endogenous variables, hence this is the
+     * probability of the context in the underlying model.
+     *
+     * @param context the uncertain context
+     * @return the probability of the given context
+     */
+    public double getProbability(Set<Literal> context) {
+        return causalModel.getProbability(context);
+    }
+
+    /**
+     * Returns the compiled form of this intervention. It shares the compiled equations of the underlying model.
+     *
+     * @return the compiled causal model
+     */
+    public CompiledCausalModel getCompiledModel() {
+        if (this.compiledModel == null) {
+            this.compiledModel = causalModel.getCompiledModel().intervene(intervenedVariables);
+        }
+        return compiledModel;
+    }
+
+    /**
+     * Returns the exogenous variables the given variables depend on in the intervened model. As the equations of the
+     * intervened variables are constants, the search does not continue past them. All other exogenous variables
+     * cannot influence the given variables and can therefore be marginalized.
+     *
+     * @param variables the variables, e.g. the variables of phi and the cause
+     * @return the exogenous ancestors of the variables, including the exogenous variables among them
+     */
+    public Set<Variable> getExogenousAncestors(Collection<Variable> variables) {
+        Map<Variable, Equation> variableEquationMap = causalModel.getVariableEquationMap();
+        Set<Variable> visited = new HashSet<>();
+        Set<Variable> exogenousAncestors = new HashSet<>();
+        Deque<Variable> stack = new ArrayDeque<>(variables);
+        while (!stack.isEmpty()) {
+            Variable variable = stack.pop();
+            if (!visited.add(variable)) {
+                continue;
+            }
+            Equation equation = variableEquationMap.get(variable);
+            if (equation == null) {
+                exogenousAncestors.add(variable);
+            } else if (!intervenedVariables.containsKey(variable)) {
+                stack.addAll(equation.getFormula().variables());
+            }
+        }
+        return exogenousAncestors;
+    }
+
+    public ProbabilisticCausalModel getCausalModel() {
+        return causalModel;
+    }
+
+    /**
+     * @return the value of each intervened variable
+     */
+    public Map<Variable, Boolean> getIntervenedVariables() {
+        return Collections.unmodifiableMap(intervenedVariables);
+    }
+}
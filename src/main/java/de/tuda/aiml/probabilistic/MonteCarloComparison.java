@@ -0,0 +1,96 @@
+package de.tuda.aiml.probabilistic;
+
+/**
+ * The outcome of a comparison of two conditional probabilities by the Monte Carlo solving strategies, i.e. whether the
+ * left probability is greater than the right one, together with the final estimates and confidence intervals.
+ */
+public class MonteCarloComparison {
+    private final boolean greater;
+    private final boolean decided;
+    private final double leftEstimate;
+    private final double leftLowerBound;
+    private final double leftUpperBound;
+    private final double rightEstimate;
+    private final double rightLowerBound;
+    private final double rightUpperBound;
+    private final long samples;
+
+    MonteCarloComparison(boolean greater, boolean decided, double leftEstimate, double leftLowerBound,
+                         double leftUpperBound, double rightEstimate, double rightLowerBound,
+                         double rightUpperBound, long samples) {
+        this.greater = greater;
+        this.decided = decided;
+        this.leftEstimate = leftEstimate;
+        this.leftLowerBound = leftLowerBound;
+        this.leftUpperBound = leftUpperBound;
+        this.rightEstimate = rightEstimate;
+        this.rightLowerBound = rightLowerBound;
+        this.rightUpperBound = rightUpperBound;
+        this.samples = samples;
+    }
+
+    /**
+     * @return true if the left probability is greater than the right one
+     */
+    public boolean isGreater() {
+        return greater;
+    }
+
+    /**
+     * @return true if the comparison has been decided at the configured confidence, false if it has been decided by
+     * the point estimates because of the tolerance or the maximal number of samples
+     */
+    public boolean isDecided() {
+        return decided;
+    }
+
+    public double getLeftEstimate() {
+        return leftEstimate;
+    }
+
+    public double getLeftLowerBound() {
+        return leftLowerBound;
+    }
+
+    public double getLeftUpperBound() {
+        return leftUpperBound;
+    }
+
+    public double getLeftWidth() {
+        return leftUpperBound - leftLowerBound;
+    }
+
+    public double getRightEstimate() {
+        return rightEstimate;
+    }
+
+    public double getRightLowerBound() {
+        return rightLowerBound;
+    }
+
+    public double getRightUpperBound() {
+        return rightUpperBound;
+    }
+
+    public double getRightWidth() {
+        return rightUpperBound - rightLowerBound;
+    }
+
+    /**
+     * @return the number of contexts sampled for both probabilities
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return "MonteCarloComparison{" +
+                "greater=" + greater +
+                ", decided=" + decided +
+                ", left=" + leftEstimate + " [" + leftLowerBound + ", " + leftUpperBound + "]" +
+                ", right=" + rightEstimate + " [" + rightLowerBound + ", " + rightUpperBound + "]" +
+                ", samples=" + samples +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package de.tuda.aiml.probabilistic;
+
+/**
+ * Estimate of a conditional probability P(success | condition) by sampling. Each sample is a trial if the condition
+ * holds, and a success if the condition and the success hold. The estimate is the number of successes divided by the
+ * number of trials, i.e. NaN as long as there is no trial, just as the exact division of the probabilities.
+ */
+abstract class MonteCarloEstimate {
+    long samples;
+    long trials;
+    long successes;
+
+    /**
+     * Draws (at least) the given number of further samples and adds them to the counts.
+     *
+     * @param n the number of samples
+     */
+    abstract void draw(long n);
+
+    /**
+     * Draws further samples until (at least) the given number of samples has been drawn in total.
+     *
+     * @param target the number of samples
+     */
+    void drawUpTo(long target) {
+        if (samples < target) {
+            draw(target - samples);
+        }
+    }
+
+    /**
+     * @return false if the estimate is exact, i.e. drawing samples does not change it
+     */
+    boolean isSampled() {
+        return true;
+    }
+
+    double getEstimate() {
+        return (double) successes / trials;
+    }
+
+    /**
+     * Creates an exact estimate of the given value, e.g. to compare a sampled probability with a constant.
+     *
+     * @param value the value
+     * @return the exact estimate
+     */
+    static MonteCarloEstimate constant(double value) {
+        return new MonteCarloEstimate() {
+            @Override
+            void draw(long n) {
+            }
+
+            @Override
+            boolean isSampled() {
+                return false;
+            }
+
+            @Override
+            double getEstimate() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package de.tuda.aiml.probabilistic;
+
+/**
+ * Decides whether one conditional probability is greater than another by sampling both adaptively. After each look,
+ * the number of samples is doubled. Look t uses the error probability (1 - confidence) / (t * (t + 1)), which is
+ * split among the sampled estimates. As these error probabilities sum up to less than 1 - confidence, the comparison
+ * is wrong with probability at most 1 - confidence if it is decided by separated confidence intervals, no matter
+ * after how many looks it stops.
+ */
+public final class MonteCarloEstimator {
+    // number of samples of the first look, i.e. one block of the bit-sliced evaluation
+    static final long INITIAL_SAMPLES = 64L * BitSlicedEvaluator.DEFAULT_WIDTH;
+
+    private MonteCarloEstimator() {
+    }
+
+    /**
+     * Compares two conditional probabilities. The comparison stops once the confidence intervals are separated, once
+     * both intervals are narrower than the tolerance or once the maximal number of samples has been drawn. In the
+     * latter cases, the point estimates decide, where an estimate without any trial (NaN) is never greater.
+     *
+     * @param settings the settings
+     * @param left     the left probability
+     * @param right    the right probability
+     * @return the comparison, i.e. whether left is greater than right
+     */
+    static MonteCarloComparison compare(MonteCarloSettings settings, MonteCarloEstimate left,
+                                        MonteCarloEstimate right) {
+        int sampledEstimates = (left.isSampled() ? 1 : 0) + (right.isSampled() ? 1 : 0);
+        long target = Math.min(INITIAL_SAMPLES, settings.getMaxSamples());
+        for (int look = 1; ; look++) {
+            left.drawUpTo(target);
+            right.drawUpTo(target);
+            double delta = (1 - settings.getConfidence()) / ((double) look * (look + 1)) /
+                    Math.max(sampledEstimates, 1);
+            double[] leftBounds = bounds(settings, left, delta);
+            double[] rightBounds = bounds(settings, right, delta);
+            if (leftBounds[0] > rightBounds[1]) {
+                return createComparison(true, true, left, leftBounds, right, rightBounds);
+            }
+            if (leftBounds[1] <= rightBounds[0]) {
+                return createComparison(false, true, left, leftBounds, right, rightBounds);
+            }
+            boolean narrow = leftBounds[1] - leftBounds[0] < settings.getTolerance() &&
+                    rightBounds[1] - rightBounds[0] < settings.getTolerance();
+            if (narrow || target >= settings.getMaxSamples()) {
+                return createComparison(left.getEstimate() > right.getEstimate(), false, left, leftBounds, right,
+                        rightBounds);
+            }
+            target = Math.min(2 * target, settings.getMaxSamples());
+        }
+    }
+
+    private static MonteCarloComparison createComparison(boolean greater, boolean decided, MonteCarloEstimate left,
+                                                         double[] leftBounds, MonteCarloEstimate right,
+                                                         double[] rightBounds) {
+        return new MonteCarloComparison(greater, decided, left.getEstimate(), leftBounds[0], leftBounds[1],
+                right.getEstimate(), rightBounds[0], rightBounds[1], left.samples + right.samples);
+    }
+
+    /**
+     * Computes the two-sided confidence interval of an estimate that fails with probability at most delta.
+     *
+     * @param settings the settings, which define the kind of interval
+     * @param estimate the estimate
+     * @param delta    the error probability
+     * @return the lower and the upper bound
+     */
+    static double[] bounds(MonteCarloSettings settings, MonteCarloEstimate estimate, double delta) {
+        if (!estimate.isSampled()) {
+            return new double[]{estimate.getEstimate(), estimate.getEstimate()};
+        }
+        return confidenceInterval(settings.getConfidenceInterval(), estimate.successes, estimate.trials, delta);
+    }
+
+    /**
+     * Computes the two-sided confidence interval of a probability, given the number of successes in a number of
+     * independent trials, that fails with probability at most delta.
+     *
+     * @param confidenceInterval the kind of interval
+     * @param successes          the number of successes
+     * @param trials             the number of trials
+     * @param delta              the error probability
+     * @return the lower and the upper bound; [0, 1] if there is no trial
+     */
+    public static double[] confidenceInterval(MonteCarloSettings.ConfidenceInterval confidenceInterval,
+                                              long successes, long trials, double delta) {
+        if (trials == 0) {
+            return new double[]{0.0, 1.0};
+        }
+        double p = (double) successes / trials;
+        if (confidenceInterval == MonteCarloSettings.ConfidenceInterval.HOEFFDING) {
+            double halfWidth = Math.sqrt(Math.log(2 / delta) / (2.0 * trials));
+            return new double[]{Math.max(0.0, p - halfWidth), Math.min(1.0, p + halfWidth)};
+        }
+        // the upper quantile, computed from the lower tail to keep its precision
+        double z = -inverseNormal(delta / 2);
+        double zz = z * z;
+        double denominator = 1 + zz / trials;
+        double center = (p + zz / (2.0 * trials)) / denominator;
+        double halfWidth = z / denominator * Math.sqrt(p * (1 - p) / trials + zz / (4.0 * trials * trials));
+        // without failures (successes), the interval reaches 1 (0), which rounding must not change
+        return new double[]{successes == 0 ? 0.0 : Math.max(0.0, center - halfWidth),
+                successes == trials ? 1.0 : Math.min(1.0, center + halfWidth)};
+    }
+
+    /**
+     * Computes the quantile function of the standard normal distribution by the rational approximation of Acklam,
+     * whose relative error is below 1.15e-9.
+     *
+     * @param p the probability, between 0 and 1 (exclusive)
+     * @return the quantile
+     */
+    static double inverseNormal(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        final double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) /
+                    ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) /
+                    ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q /
+                (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,77 @@
+package de.tuda.aiml.probabilistic;
+
+/**
+ * Settings of the Monte Carlo solving strategies, see {@link ProbabilisticSolvingStrategy#PC_MC}. Each comparison of
+ * two conditional probabilities samples contexts until the confidence intervals of both probabilities are separated,
+ * until both intervals are narrower than the tolerance, or until the maximal number of samples has been drawn. In the
+ * latter two cases, the comparison is decided by the point estimates and counts as undecided.
+ */
+public class MonteCarloSettings {
+    /**
+     * The settings used if none are given: 99% confidence, Wilson intervals, at most 2^20 samples per probability, a
+     * tolerance of 0.01 and the seed 0.
+     */
+    public static final MonteCarloSettings DEFAULT = new MonteCarloSettings(0.99, ConfidenceInterval.WILSON,
+            1 << 20, 0.01, 0L);
+
+    /**
+     * The confidence interval of a conditional probability.
+     */
+    public enum ConfidenceInterval {
+        /**
+         * Wilson score interval; tighter, but based on the normal approximation.
+         */
+        WILSON,
+        /**
+         * Hoeffding bound; holds for any number of samples.
+         */
+        HOEFFDING
+    }
+
+    private final double confidence;
+    private final ConfidenceInterval confidenceInterval;
+    private final long maxSamples;
+    private final double tolerance;
+    private final long seed;
+
+    /**
+     * @param confidence         the confidence with which each comparison is decided, e.g. 0.99
+     * @param confidenceInterval the kind of confidence interval
+     * @param maxSamples         the maximal number of contexts sampled for a single probability
+     * @param tolerance          comparisons are stopped once both intervals are narrower than the tolerance
+     * @param seed               the seed; the same seed yields the same results
+     * @throws IllegalArgumentException if the confidence is not in (0, 1), or the maximal number of samples or the
+     *                                  tolerance is not positive
+     */
+    public MonteCarloSettings(double confidence, ConfidenceInterval confidenceInterval, long maxSamples,
+                              double tolerance, long seed) {
+        if (!(confidence > 0 && confidence < 1) || maxSamples < 1 || !(tolerance > 0)) {
+            throw new IllegalArgumentException("Invalid Monte Carlo settings");
+        }
+        this.confidence = confidence;
+        this.confidenceInterval = confidenceInterval;
+        this.maxSamples = maxSamples;
+        this.tolerance = tolerance;
+        this.seed = seed;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public ConfidenceInterval getConfidenceInterval() {
+        return confidenceInterval;
+    }
+
+    public long getMaxSamples() {
+        return maxSamples;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -1,8 +1,10 @@
 package de.tuda.aiml.probabilistic;
 
-import de.tuda.aiml.util.UtilityMethods;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
-import de.tum.in.i4.hp2sat.util.Util;
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
@@ -11,6 +13,7 @@ import org.logicng.formulas.Variable;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 /**
@@ -31,108 +34,216 @@ public class PACSolver extends ProbabilisticCausalitySolver{
     public ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context, Formula phi,
                                                     Set<Literal> cause, ProbabilisticSolvingStrategy solvingStrategy)
             throws InvalidCausalModelException {
+        return solve(causalModel, context, ProbabilisticCausalitySolver.evaluateEquations(causalModel, context), phi,
+                cause, solvingStrategy);
+    }
+
+    @Override
+    ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context,
+                                             Set<Literal> evaluation, Formula phi, Set<Literal> cause,
+                                             ProbabilisticSolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> pc1Tuple = fulfillsPC1(evaluation, phi, cause);
-        boolean pac1 = pc1Tuple.first() && pc1Tuple.second();
-        Set<Literal> w = fulfillsPAC2(causalModel, phi, cause, context, evaluation, f);
+        resetEliminatedWCandidates();
+        resetMonteCarloStatistics();
+        resetEvaluationCache();
+        resetWorkerModels();
+        resetMetrics();
+        SolverMetrics metrics = getMetrics();
+        QueryProgress progress = new QueryProgress();
+        boolean pac1 = false;
+        Set<Literal> w = null;
+        boolean pac3 = false;
+        try {
+            metrics.startClause(1);
+            Pair<Boolean, Boolean> pc1Tuple = fulfillsPC1(evaluation, phi, cause);
+            pac1 = pc1Tuple.first() && pc1Tuple.second();
+            progress.setAc1(pac1);
+            metrics.startClause(2);
+            // the contexts that are consistent with the actual world are shared by all W and by the sub-causes of PAC3
+            ConsistentContexts actualWorldContexts = solvingStrategy == ProbabilisticSolvingStrategy.PAC ?
+                    getActualWorldContexts(causalModel, evaluation) : null;
+            w = fulfillsPAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, actualWorldContexts,
+                    progress, f);
+            progress.setAc2(w != null);
+            metrics.startClause(3);
+            pac3 = fulfillsPAC3(causalModel, phi, cause, context, evaluation, pc1Tuple.first(), solvingStrategy,
+                    actualWorldContexts, progress, f);
+            progress.setAc3(pac3);
+        } catch (CancellationException e) {
+            // the budget is exhausted; return the clauses decided so far
+            handleCancellation(e);
+        }
+        metrics.finishClause();
         boolean pac2 = w != null;
-        boolean pac3 = fulfillsPAC3(causalModel, phi, cause, context, evaluation, pc1Tuple.first(), f);
         ProbabilisticCausalitySolverResult causalitySolverResult = new ProbabilisticCausalitySolverResult(pac1, pac2, pac3, cause, w);
+        causalitySolverResult.setProgress(progress);
+        causalitySolverResult.setMetrics(metrics);
+        causalitySolverResult.setEliminatedWCandidates(getEliminatedWCandidates());
+        addMonteCarloStatistics(causalitySolverResult);
+        addEvaluationCacheStatistics(causalitySolverResult);
         return causalitySolverResult;
     }
 
     /**
      * Checks if PAC2 is fulfilled.
      *
-     * @param causalModel     the underlying causal model
-     * @param phi             the phi
-     * @param cause           the cause for which we check PAC2
-     * @param context         the context
-     * @param evaluation      the original evaluation of variables
-     * @param f               a formula factory
+     * @param causalModel         the underlying causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PAC2
+     * @param context             the context
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @param progress            the progress, to which the W candidates are added; null if PAC2 is checked for PAC3
+     * @param f                   a formula factory
      * @return the W that fulfills PAC2, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
      */
     private Set<Literal> fulfillsPAC2(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                     Set<Literal> evaluation, FormulaFactory f)
+                                     Set<Literal> evaluation, ProbabilisticSolvingStrategy solvingStrategy,
+                                     ConsistentContexts actualWorldContexts, QueryProgress progress,
+                                     FormulaFactory f)
             throws InvalidCausalModelException {
+        // all endogenous variables except the cause, possibly pruned to those on a path from the cause to phi
+        Set<Literal> wVariables = getWVariables(causalModel, phi, cause, evaluation, f);
 
-        // all exogenous variables
-        Map<Variable, Double> exogenousVariables = causalModel.getExogenousVariables();
+        return searchW(causalModel, phi, cause, evaluation, wVariables, progress,
+                (m, p, c, e) -> createPAC2Check(m, p, c, e, solvingStrategy, actualWorldContexts));
+    }
 
+    /**
+     * Creates the check of PAC2 for a single W.
+     *
+     * @param causalModel         the underlying causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PAC2
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @return the check, which returns W if PAC2 is fulfilled, else null
+     */
+    private WCandidateCheck createPAC2Check(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                                            Set<Literal> evaluation, ProbabilisticSolvingStrategy solvingStrategy,
+                                            ConsistentContexts actualWorldContexts) {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        SolverMetrics metrics = getMetrics();
+        int equations = causalModel.getVariableEquationMap().size();
         Set<Literal> evaluationEndogenousVars = evaluation.stream()
                 .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable())).collect(Collectors.toSet());
 
-        ProbabilisticCausalModel causalModelForNegatedCause = createModifiedCausalModelForNegatedCause(causalModel, cause, f);
+        /*
+         * Only the exogenous ancestors of phi, the cause and the actual world need to be sampled; all other
+         * exogenous variables are marginalized. As the actual world contains all endogenous variables, these are the
+         * ancestors in the original model, which include the ancestors in any modified model. The enumerated
+         * contexts are restricted in the same way, see computeActualWorldContexts. */
+        Intervention originalModel = new Intervention(causalModel, Collections.emptySet());
+        Set<Variable> queryVariables = new HashSet<>(phi.variables());
+        evaluationEndogenousVars.forEach(l -> queryVariables.add(l.variable()));
+        Set<Variable> relevantVariables = originalModel.getExogenousAncestors(queryVariables);
 
-        // get the cause as set of variables
-        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        // either count the contexts by weighted model counting, sample them or enumerate the consistent ones
+        WeightedModelCounter counter = solvingStrategy == ProbabilisticSolvingStrategy.PAC_WMC ?
+                new WeightedModelCounter(causalModel) : null;
 
-        /*
-         * remove exogenous variables from evaluation as they are not needed for computing the Ws. Furthermore,
-         * all variables in the cause also must not be in W. */
-        Set<Literal> wVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable()) &&
-                        !(causeVariables.contains(l.variable())))
-                .collect(Collectors.toSet());
-
-        // get all possible Ws, i.e. create power set of the evaluation
-        List<Set<Literal>> allW = (new Util<Literal>()).generatePowerSet(wVariables);
-
-        Set<Literal> exogenousAssignments = new HashSet<>();
-        exogenousAssignments.addAll(exogenousVariables.keySet());
-        for(Literal literal: exogenousVariables.keySet()){
-            exogenousAssignments.add(literal.negate());
-        }
-        List<Set<Literal>> allSubsetsOfExoAssignments = (new Util<Literal>()).generatePowerSet(exogenousAssignments);
+        Intervention interventionForNegatedCause = new Intervention(causalModel, cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()));
+        metrics.modifiedModelsBuilt(2);
 
-        // Iterate over all W
-        for (Set<Literal> w : allW) {
-            ProbabilisticCausalModel causalModelModifiedW = createModifiedCausalModelForW(causalModelForNegatedCause, w, f);
+        // phi, the negated cause and the actual world evaluated on the compiled models
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        CompiledFormula compiledNegatedCause = compiledModel.compile(cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()), f);
+        CompiledFormula compiledActualWorld = compiledModel.compile(evaluationEndogenousVars, f);
 
-            double probCAndE = 0.0;
-            double probC = 0.0;
-            for (Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-                if (exoAssignment.size() != exogenousVariables.size() || !UtilityMethods.noDuplicates(exoAssignment)) {
-                    continue;
+        // bit-sliced values of the modified model, 64 contexts per word
+        long[] negatedValues = actualWorldContexts != null ? actualWorldContexts.newAssignment(compiledModel) : null;
+        // the contexts that are consistent with the actual world
+        int consistentContexts = counter != null ?
+                counter.compile(originalModel, evaluationEndogenousVars) : 0;
+
+        return (w, cancelled) -> {
+            // W keeps its actual values, hence there is a single assignment
+            metrics.wAssignmentTried();
+            Intervention interventionModifiedW = interventionForNegatedCause.intervene(w);
+            metrics.modifiedModelsBuilt(1);
+            if (solvingStrategy == ProbabilisticSolvingStrategy.PAC_MC) {
+                // PAC2 is fulfilled if the probability is less than 1
+                MonteCarloEstimate probCause = new SampledContextEstimate(causalModel, relevantVariables,
+                        newRandom("PAC2", cause, w), interventionModifiedW.getCompiledModel(),
+                        compiledNegatedCause, compiledPhi, compiledActualWorld);
+                MonteCarloComparison comparison = compare(MonteCarloEstimate.constant(1.0), probCause);
+                if (comparison.isGreater()) {
+                    Set<Literal> witness = new HashSet<>(w);
+                    addWitnessComparisons(cause, witness, Collections.singletonList(comparison));
+                    return witness;
                 }
-                if(ProbabilisticCausalitySolver.evaluateEquations(causalModel, exoAssignment).containsAll(evaluationEndogenousVars)){
-                    Set<Literal> negatedEvaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModelModifiedW, exoAssignment);
-                    Pair<Boolean, Boolean> ac1TupleNegated = ProbabilisticCausalitySolver.fulfillsPC1(negatedEvaluation, phi, cause.stream().map(Literal::negate)
-                            .collect(Collectors.toSet()));
-                    double negatedModelProbability = causalModelModifiedW.getProbability(exoAssignment);
-
-                    if(ac1TupleNegated.second()) {
-                        probC += negatedModelProbability;
-                    }
-                    if(ac1TupleNegated.first() && ac1TupleNegated.second()){
-                        probCAndE += negatedModelProbability;
+                return null;
+            }
+
+            ProbabilitySum probCAndE = new ProbabilitySum();
+            ProbabilitySum probC = new ProbabilitySum();
+            if (counter != null) {
+                // only the contexts that are consistent with the actual world are considered
+                int negatedCauseOccurs = counter.and(consistentContexts, counter.compile(interventionModifiedW,
+                        cause.stream().map(Literal::negate).collect(Collectors.toSet())));
+
+                probC.add(counter.getProbability(negatedCauseOccurs));
+                probCAndE.add(counter.getProbability(
+                        counter.and(counter.compile(interventionModifiedW, phi), negatedCauseOccurs)));
+            } else {
+                // only the contexts that are consistent with the actual world are evaluated
+                CompiledCausalModel compiledModelModifiedW = interventionModifiedW.getCompiledModel();
+                for (int block = 0; block < actualWorldContexts.getNumberOfBlocks(); block++) {
+                    checkBudget();
+                    actualWorldContexts.assignContexts(negatedValues, block);
+                    actualWorldContexts.evaluate(compiledModelModifiedW, negatedValues);
+                    long contexts = actualWorldContexts.getNumberOfContexts(block);
+                    metrics.contextsEnumerated(contexts);
+                    metrics.equationsEvaluated(equations * contexts);
+
+                    for (int word = 0; word < actualWorldContexts.getWidth(); word++) {
+                        long negatedCauseOccurs = actualWorldContexts.evaluate(compiledNegatedCause, negatedValues,
+                                block, word);
+
+                        actualWorldContexts.addProbabilities(probC, block, word, negatedCauseOccurs);
+                        actualWorldContexts.addProbabilities(probCAndE, block, word,
+                                actualWorldContexts.evaluate(compiledPhi, negatedValues, block, word) &
+                                        negatedCauseOccurs);
                     }
                 }
             }
-            double probCause = (probCAndE / probC);
+            double probCause = (probCAndE.getValue() / probC.getValue());
             if(probCause < 1){
-                return w;
+                return new HashSet<>(w);
             }
-        }
-
-        return null;
+            return null;
+        };
     }
 
     /**
      * Checks if PAC3 is fulfilled
      *
-     * @param causalModel     the underlying probabilistic causal model
-     * @param phi             the phi
-     * @param cause           the cause for which we check PAC2
-     * @param context         the context
-     * @param evaluation      the original evaluation of variables
-     * @param f               a formula factory
+     * @param causalModel         the underlying probabilistic causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PAC2
+     * @param context             the context
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @param progress            the progress, to which the subsets of the cause are added
+     * @param f                   a formula factory
      * @return true if PAC3 fulfilled, else false
      */
     private boolean fulfillsPAC3(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                Set<Literal> evaluation, boolean phiOccurred, FormulaFactory f) throws InvalidCausalModelException {
+                                Set<Literal> evaluation, boolean phiOccurred,
+                                ProbabilisticSolvingStrategy solvingStrategy, ConsistentContexts actualWorldContexts,
+                                QueryProgress progress, FormulaFactory f)
+            throws InvalidCausalModelException {
         if (cause.size() > 1 && phiOccurred) {
 
             // get all subsets of cause
@@ -143,11 +254,15 @@ public class PACSolver extends ProbabilisticCausalitySolver{
             /*
              * no sub-cause must fulfill PAC1 and PAC2
              * for PAC1, we only need to check if the current cause subset, as we checked for phi before */
+            progress.addSubCauses(allSubsetsOfCause.size());
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
-                        fulfillsPAC2(causalModel, phi, c, context, evaluation, f) != null) {
+                        fulfillsPAC2(causalModel, phi, c, context, evaluation, solvingStrategy, actualWorldContexts,
+                        null, f) != null) {
                     return false;
                 }
+                progress.exploreSubCause();
             }
         }
         return true;
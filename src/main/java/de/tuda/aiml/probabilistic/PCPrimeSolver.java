@@ -1,6 +1,10 @@
 package de.tuda.aiml.probabilistic;
 
 import de.tuda.aiml.util.UtilityMethods;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.util.Util;
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
@@ -11,6 +15,8 @@ import org.logicng.formulas.Variable;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -31,66 +37,143 @@ public class PCPrimeSolver extends ProbabilisticCausalitySolver {
     public ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context, Formula phi,
                                                     Set<Literal> cause, ProbabilisticSolvingStrategy solvingStrategy)
             throws InvalidCausalModelException {
+        return solve(causalModel, context, ProbabilisticCausalitySolver.evaluateEquations(causalModel, context), phi,
+                cause, solvingStrategy);
+    }
+
+    @Override
+    ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context,
+                                             Set<Literal> evaluation, Formula phi, Set<Literal> cause,
+                                             ProbabilisticSolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> pcPrime1Tuple = fulfillsPC1(evaluation, phi, cause);
-        boolean pcPrime1 = pcPrime1Tuple.first() && pcPrime1Tuple.second();
-        Set<Literal> w = fulfillsPCPrime2(causalModel, phi, cause, context, evaluation, f);
+        resetEliminatedWCandidates();
+        resetMonteCarloStatistics();
+        resetEvaluationCache();
+        resetWorkerModels();
+        resetMetrics();
+        SolverMetrics metrics = getMetrics();
+        QueryProgress progress = new QueryProgress();
+        boolean pcPrime1 = false;
+        Set<Literal> w = null;
+        boolean pcPrime3 = false;
+        try {
+            metrics.startClause(1);
+            Pair<Boolean, Boolean> pcPrime1Tuple = fulfillsPC1(evaluation, phi, cause);
+            pcPrime1 = pcPrime1Tuple.first() && pcPrime1Tuple.second();
+            progress.setAc1(pcPrime1);
+            metrics.startClause(2);
+            // the contexts that are consistent with the actual world are shared by all W, Z* and sub-causes of PC'3
+            ConsistentContexts actualWorldContexts = solvingStrategy == ProbabilisticSolvingStrategy.PCPrime ?
+                    getActualWorldContexts(causalModel, evaluation) : null;
+            w = fulfillsPCPrime2(causalModel, phi, cause, context, evaluation, solvingStrategy, actualWorldContexts,
+                    progress, f);
+            progress.setAc2(w != null);
+            metrics.startClause(3);
+            pcPrime3 = fulfillsPCPrime3(causalModel, phi, cause, context, evaluation, pcPrime1Tuple.first(),
+                    solvingStrategy, actualWorldContexts, progress, f);
+            progress.setAc3(pcPrime3);
+        } catch (CancellationException e) {
+            // the budget is exhausted; return the clauses decided so far
+            handleCancellation(e);
+        }
+        metrics.finishClause();
         boolean pcPrime2 = w != null;
-        boolean pcPrime3 = fulfillsPCPrime3(causalModel, phi, cause, context, evaluation, pcPrime1Tuple.first(), f);
         ProbabilisticCausalitySolverResult causalitySolverResult = new ProbabilisticCausalitySolverResult(pcPrime1, pcPrime2, pcPrime3, cause, w);
+        causalitySolverResult.setProgress(progress);
+        causalitySolverResult.setMetrics(metrics);
+        causalitySolverResult.setEliminatedWCandidates(getEliminatedWCandidates());
+        addMonteCarloStatistics(causalitySolverResult);
+        addEvaluationCacheStatistics(causalitySolverResult);
         return causalitySolverResult;
     }
 
     /**
      * Checks if PC'2 is fulfilled.
      *
-     * @param causalModel     the underlying causal model
-     * @param phi             the phi
-     * @param cause           the cause for which we check PC'2
-     * @param context         the context
-     * @param evaluation      the original evaluation of variables
-     * @param f               a formula factory
+     * @param causalModel         the underlying causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PC'2
+     * @param context             the context
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @param progress            the progress, to which the W candidates are added; null if PC'2 is checked for PC'3
+     * @param f                   a formula factory
      * @return W if PC'2 fulfilled, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
      */
     private Set<Literal> fulfillsPCPrime2(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                     Set<Literal> evaluation, FormulaFactory f)
+                                     Set<Literal> evaluation, ProbabilisticSolvingStrategy solvingStrategy,
+                                     ConsistentContexts actualWorldContexts, QueryProgress progress,
+                                     FormulaFactory f)
             throws InvalidCausalModelException {
+        // all endogenous variables except the cause, possibly pruned to those on a path from the cause to phi
+        Set<Literal> wVariables = getWVariables(causalModel, phi, cause, evaluation, f);
 
-        // all exogenous variables
-        Map<Variable, Double> exogenousVariables = causalModel.getExogenousVariables();
+        return searchW(causalModel, phi, cause, evaluation, wVariables, progress,
+                (m, p, c, e) -> createPCPrime2Check(m, p, c, e, solvingStrategy, actualWorldContexts));
+    }
 
+    /**
+     * Creates the check of PC'2 for a single W.
+     *
+     * @param causalModel         the underlying causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PC'2
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @return the check, which returns the assignment of W if PC'2 is fulfilled, else null
+     */
+    private WCandidateCheck createPCPrime2Check(ProbabilisticCausalModel causalModel, Formula phi,
+                                                Set<Literal> cause, Set<Literal> evaluation,
+                                                ProbabilisticSolvingStrategy solvingStrategy,
+                                                ConsistentContexts actualWorldContexts) {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        SolverMetrics metrics = getMetrics();
+        int equations = causalModel.getVariableEquationMap().size();
         Set<Literal> evaluationEndogenousVars = evaluation.stream()
                 .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable())).collect(Collectors.toSet());
 
-        // create copy of original causal model
-        ProbabilisticCausalModel causalModelForCause = createModifiedCausalModelForCause(causalModel, cause, f);
-        ProbabilisticCausalModel causalModelForNegatedCause = createModifiedCausalModelForNegatedCause(causalModel, cause, f);
+        /*
+         * Only the exogenous ancestors of phi, the cause and the actual world need to be sampled; all other
+         * exogenous variables are marginalized. As the actual world contains all endogenous variables, these are the
+         * ancestors in the original model, which include the ancestors in any modified model. The enumerated
+         * contexts are restricted in the same way, see computeActualWorldContexts. */
+        Intervention originalModel = new Intervention(causalModel, Collections.emptySet());
+        Set<Variable> queryVariables = new HashSet<>(phi.variables());
+        evaluationEndogenousVars.forEach(l -> queryVariables.add(l.variable()));
+        Set<Variable> relevantVariables = originalModel.getExogenousAncestors(queryVariables);
 
-        // get the cause as set of variables
-        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        // either count the contexts by weighted model counting, sample them or enumerate the consistent ones
+        WeightedModelCounter counter = solvingStrategy == ProbabilisticSolvingStrategy.PCPrime_WMC ?
+                new WeightedModelCounter(causalModel) : null;
 
-        /*
-         * remove exogenous variables from evaluation as they are not needed for computing the Ws. Furthermore,
-         * all variables in the cause also must not be in W. */
-        Set<Literal> wVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable()) &&
-                        !(causeVariables.contains(l.variable())))
-                .collect(Collectors.toSet());
-
-        // get all possible Ws, i.e. create power set of the evaluation
-        List<Set<Literal>> allW = (new Util<Literal>()).generatePowerSet(wVariables);
-
-        Set<Literal> exogenousAssignments = new HashSet<>();
-        exogenousAssignments.addAll(exogenousVariables.keySet());
-        for(Literal literal: exogenousVariables.keySet()){
-            exogenousAssignments.add(literal.negate());
-        }
-        List<Set<Literal>> allSubsetsOfExoAssignments = (new Util<Literal>()).generatePowerSet(exogenousAssignments);
+        // intervene on the cause instead of copying the original causal model
+        Intervention interventionForCause = new Intervention(causalModel, cause);
+        Intervention interventionForNegatedCause = new Intervention(causalModel, cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()));
+        metrics.modifiedModelsBuilt(2);
+
+        // phi, the cause (and its negation) and the actual world evaluated on the compiled models
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        CompiledFormula compiledCause = compiledModel.compile(cause, f);
+        CompiledFormula compiledNegatedCause = compiledModel.compile(cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()), f);
+        CompiledFormula compiledActualWorld = compiledModel.compile(evaluationEndogenousVars, f);
+
+        // bit-sliced values of the modified models, 64 contexts per word
+        long[] values = actualWorldContexts != null ? actualWorldContexts.newAssignment(compiledModel) : null;
+        long[] negatedValues = actualWorldContexts != null ? actualWorldContexts.newAssignment(compiledModel) : null;
+        // the contexts that are consistent with the actual world
+        int consistentContexts = counter != null ?
+                counter.compile(originalModel, evaluationEndogenousVars) : 0;
 
-        // Iterate over all W
-        for (Set<Literal> w : allW) {
+        return (w, cancelled) -> {
             Set<Literal> zVariables = evaluation.stream().filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable())).collect(Collectors.toSet());
             zVariables.removeAll(w);
 
@@ -100,84 +183,218 @@ public class PCPrimeSolver extends ProbabilisticCausalitySolver {
             for(Literal lit: w){
                 wAssignments.add(lit.negate());
             }
-            List<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).generatePowerSet(wAssignments);
+            // only the subsets that contain |W| literals can be assignments of W
+            Iterable<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).iterateSubsets(wAssignments, w.size());
             for(Set<Literal> wAssignment : allSubsetsOfWAssignments){
-                if(wAssignment.size() != w.size()  || !UtilityMethods.noDuplicates(wAssignment)){
+                if(cancelled.getAsBoolean()){
+                    return null;
+                }
+                if(!UtilityMethods.noDuplicates(wAssignment)){
+                    continue;
+                }
+                metrics.wAssignmentTried();
+                Intervention interventionModifiedW = interventionForCause.intervene(wAssignment);
+                Intervention interventionNegatedModifiedW = interventionForNegatedCause.intervene(wAssignment);
+                metrics.modifiedModelsBuilt(2);
+                if (solvingStrategy == ProbabilisticSolvingStrategy.PCPrime_MC) {
+                    zVariables.removeAll(cause);
+                    if (fulfillsPCPrime2ByMonteCarlo(causalModel, cause, zVariables, wAssignment,
+                            interventionModifiedW, interventionNegatedModifiedW, relevantVariables, compiledPhi,
+                            compiledCause, compiledNegatedCause, compiledActualWorld, cancelled)) {
+                        return new HashSet<>(wAssignment);
+                    }
                     continue;
                 }
-                ProbabilisticCausalModel causalModelModifiedW = createModifiedCausalModelForW(causalModelForCause, wAssignment, f);
-                ProbabilisticCausalModel causalModelNegatedModifiedW = createModifiedCausalModelForW(causalModelForNegatedCause, wAssignment, f);
 
-                double probCAndE = 0.0;
-                double probC = 0.0;
-                double probNotCAndE = 0.0;
-                double probNotC = 0.0;
+                ProbabilitySum probCAndE = new ProbabilitySum();
+                ProbabilitySum probC = new ProbabilitySum();
+                ProbabilitySum probNotCAndE = new ProbabilitySum();
+                ProbabilitySum probNotC = new ProbabilitySum();
                 boolean zFulfills = true;
 
                 zVariables.removeAll(cause);
-                List<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).generatePowerSet(zVariables);
+                Iterable<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).iteratePowerSet(zVariables);
                 for(Set<Literal> zStar : allSubsetsOfZPrime) {
-                    ProbabilisticCausalModel causalModelModWModZStar = createModifiedCausalModelForW(causalModelModifiedW, zStar, f);
-                    for(Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-                        if (exoAssignment.size() != exogenousVariables.size() || !UtilityMethods.noDuplicates(exoAssignment)) {
-                            continue;
-                        }
-                        if (ProbabilisticCausalitySolver.evaluateEquations(causalModel, exoAssignment).containsAll(evaluationEndogenousVars)) {
+                    checkBudget();
+                    metrics.zStarSubsetTried();
+                    Intervention interventionModWModZStar = interventionModifiedW.intervene(zStar);
+                    metrics.modifiedModelsBuilt(1);
+                    if (counter != null) {
+                        // only the contexts that are consistent with the actual world are considered
+                        int causeOccurs = counter.and(consistentContexts,
+                                counter.compile(interventionModWModZStar, cause));
+                        int phiOccurs = counter.compile(interventionModWModZStar, phi);
+                        int negatedCauseOccurs = counter.and(consistentContexts,
+                                counter.compile(interventionNegatedModifiedW, cause.stream().map(Literal::negate)
+                                        .collect(Collectors.toSet())));
+                        int phiOccursForNegatedCause = counter.compile(interventionNegatedModifiedW, phi);
+
+                        probC.add(counter.getProbability(causeOccurs));
+                        probNotC.add(counter.getProbability(negatedCauseOccurs));
+                        probCAndE.add(counter.getProbability(counter.and(phiOccurs, causeOccurs)));
+                        probNotCAndE.add(counter.getProbability(counter.and(phiOccursForNegatedCause,
+                                negatedCauseOccurs)));
+                    } else {
+                        // only the contexts that are consistent with the actual world are evaluated
+                        CompiledCausalModel compiledModelModWModZStar = interventionModWModZStar.getCompiledModel();
+                        CompiledCausalModel compiledModelNegatedModifiedW = interventionNegatedModifiedW.getCompiledModel();
+                        for(int block = 0; block < actualWorldContexts.getNumberOfBlocks(); block++) {
+                            checkBudget();
                             // evaluate all variables
-                            Set<Literal> evaluationModified = ProbabilisticCausalitySolver.evaluateEquations(causalModelModWModZStar, exoAssignment);
-                            Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluationModified, phi, cause);
-                            double modelProbability = causalModelModWModZStar.getProbability(exoAssignment);
-
-                            Set<Literal> negatedEvaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModelNegatedModifiedW, exoAssignment);
-                            Pair<Boolean, Boolean> ac1TupleNegated = ProbabilisticCausalitySolver.fulfillsPC1(negatedEvaluation, phi, cause.stream().map(Literal::negate)
-                                    .collect(Collectors.toSet()));
-                            double negatedModelProbability = causalModelNegatedModifiedW.getProbability(exoAssignment);
-
-                            // cause fulfilled
-                            if (ac1Tuple.second()) {
-                                probC += modelProbability;
-                            }
-                            if (ac1TupleNegated.second()) {
-                                probNotC += negatedModelProbability;
-                            }
-                            if (ac1Tuple.first() && ac1Tuple.second()) {
-                                probCAndE += modelProbability;
-                            }
-                            if (ac1TupleNegated.first() && ac1TupleNegated.second()) {
-                                probNotCAndE += negatedModelProbability;
+                            actualWorldContexts.assignContexts(values, block);
+                            actualWorldContexts.evaluate(compiledModelModWModZStar, values);
+                            actualWorldContexts.assignContexts(negatedValues, block);
+                            actualWorldContexts.evaluate(compiledModelNegatedModifiedW, negatedValues);
+                            long contexts = actualWorldContexts.getNumberOfContexts(block);
+                            metrics.contextsEnumerated(contexts);
+                            metrics.equationsEvaluated(2 * equations * contexts);
+
+                            for (int word = 0; word < actualWorldContexts.getWidth(); word++) {
+                                long causeOccurs = actualWorldContexts.evaluate(compiledCause, values, block, word);
+                                long phiOccurs = actualWorldContexts.evaluate(compiledPhi, values, block, word);
+                                long negatedCauseOccurs = actualWorldContexts.evaluate(compiledNegatedCause, negatedValues, block, word);
+                                long phiOccursForNegatedCause = actualWorldContexts.evaluate(compiledPhi, negatedValues, block, word);
+
+                                // cause fulfilled
+                                actualWorldContexts.addProbabilities(probC, block, word, causeOccurs);
+                                actualWorldContexts.addProbabilities(probNotC, block, word, negatedCauseOccurs);
+                                actualWorldContexts.addProbabilities(probCAndE, block, word, phiOccurs & causeOccurs);
+                                actualWorldContexts.addProbabilities(probNotCAndE, block, word, phiOccursForNegatedCause & negatedCauseOccurs);
                             }
                         }
                     }
 
-                    double probCause = (probCAndE / probC);
-                    double notCause = (probNotCAndE / probNotC);
+                    double probCause = (probCAndE.getValue() / probC.getValue());
+                    double notCause = (probNotCAndE.getValue() / probNotC.getValue());
                     if (probCause <= notCause) {
                         zFulfills = false;
                         break;
                     }
                 }
                 if(zFulfills){
-                    return wAssignment;
+                    return new HashSet<>(wAssignment);
                 }
             }
+            return null;
+        };
+    }
+
+    /**
+     * Checks PC'2 for a single assignment of W by sampling, see {@link MonteCarloEstimator}. As in the exact check,
+     * the probability of the cause accumulates the contexts of all Z* checked so far, see {@link AccumulatedEstimate}.
+     * The comparisons that justify the assignment are recorded, see {@link #addWitnessComparisons(Set, Set, List)}.
+     *
+     * @param causalModel                  the underlying causal model
+     * @param cause                        the cause for which we check PC'2
+     * @param zPrime                       the actual values of the variables that are neither in the cause nor in W
+     * @param wAssignment                  the assignment of W
+     * @param interventionModifiedW        the intervention on the cause and W
+     * @param interventionNegatedModifiedW the intervention on the negated cause and W
+     * @param relevantVariables            the exogenous variables to sample
+     * @param compiledPhi                  the compiled phi
+     * @param compiledCause                the compiled cause
+     * @param compiledNegatedCause         the compiled negated cause
+     * @param compiledActualWorld          the compiled actual world
+     * @param cancelled                    true once the result is no longer needed
+     * @return true if PC'2 is fulfilled for the assignment, else false
+     */
+    private boolean fulfillsPCPrime2ByMonteCarlo(ProbabilisticCausalModel causalModel, Set<Literal> cause,
+                                                 Set<Literal> zPrime, Set<Literal> wAssignment,
+                                                 Intervention interventionModifiedW,
+                                                 Intervention interventionNegatedModifiedW,
+                                                 Set<Variable> relevantVariables, CompiledFormula compiledPhi,
+                                                 CompiledFormula compiledCause,
+                                                 CompiledFormula compiledNegatedCause,
+                                                 CompiledFormula compiledActualWorld, BooleanSupplier cancelled) {
+        List<MonteCarloComparison> comparisons = new ArrayList<>();
+        MonteCarloEstimate notCause = new SampledContextEstimate(causalModel, relevantVariables,
+                newRandom("PC'2-not", cause, wAssignment), interventionNegatedModifiedW.getCompiledModel(),
+                compiledNegatedCause, compiledPhi, compiledActualWorld);
+        AccumulatedEstimate probCause = new AccumulatedEstimate();
+        SolverMetrics metrics = getMetrics();
+        for (Set<Literal> zStar : new Util<Literal>().iteratePowerSet(zPrime)) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            metrics.zStarSubsetTried();
+            metrics.modifiedModelsBuilt(1);
+            probCause.add(new SampledContextEstimate(causalModel, relevantVariables,
+                    newRandom("PC'2", cause, wAssignment, zStar),
+                    interventionModifiedW.intervene(zStar).getCompiledModel(), compiledCause, compiledPhi,
+                    compiledActualWorld));
+            MonteCarloComparison comparison = compare(probCause, notCause);
+            comparisons.add(comparison);
+            // as in the exact check, an undefined probability does not violate PC'2
+            if (!comparison.isGreater() && !Double.isNaN(comparison.getLeftEstimate()) &&
+                    !Double.isNaN(comparison.getRightEstimate())) {
+                return false;
+            }
         }
+        addWitnessComparisons(cause, new HashSet<>(wAssignment), comparisons);
+        return true;
+    }
 
-        return null;
+    /**
+     * The exact check of PC'2 does not reset the sums of the probability of the cause for each Z*, i.e. it compares
+     * the sum of the probabilities of C and E of all Z* so far divided by the sum of the probabilities of C. If each
+     * Z* is sampled equally often, the pooled counts estimate exactly this ratio. Hence, this estimate draws the
+     * same number of samples for each of its parts.
+     */
+    private static class AccumulatedEstimate extends MonteCarloEstimate {
+        private final List<MonteCarloEstimate> parts = new ArrayList<>();
+
+        /**
+         * Adds the estimate of the next Z*. The next draw catches up with the samples of the previous ones.
+         *
+         * @param part the estimate
+         */
+        void add(MonteCarloEstimate part) {
+            parts.add(part);
+        }
+
+        @Override
+        void draw(long n) {
+            drawUpTo(samples + n);
+        }
+
+        @Override
+        void drawUpTo(long target) {
+            long samplesPerPart = (target + parts.size() - 1) / parts.size();
+            for (MonteCarloEstimate part : parts) {
+                samplesPerPart = Math.max(samplesPerPart, part.samples);
+            }
+            samples = 0;
+            trials = 0;
+            successes = 0;
+            for (MonteCarloEstimate part : parts) {
+                part.drawUpTo(samplesPerPart);
+                samples += part.samples;
+                trials += part.trials;
+                successes += part.successes;
+            }
+        }
     }
 
     /**
      * Checks if PC'3 is fulfilled
      *
-     * @param causalModel     the underlying probabilistic causal model
-     * @param phi             the phi
-     * @param cause           the cause for which we check PC'2
-     * @param context         the context
-     * @param evaluation      the original evaluation of variables
-     * @param f               a formula factory
+     * @param causalModel         the underlying probabilistic causal model
+     * @param phi                 the phi
+     * @param cause               the cause for which we check PC'2
+     * @param context             the context
+     * @param evaluation          the original evaluation of variables
+     * @param solvingStrategy     the applied solving strategy
+     * @param actualWorldContexts the contexts that are consistent with the actual world; null if they are not
+     *                            enumerated
+     * @param progress            the progress, to which the subsets of the cause are added
+     * @param f                   a formula factory
      * @return true if PC'3 fulfilled, else false
      */
     private boolean fulfillsPCPrime3(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                Set<Literal> evaluation, boolean phiOccurred, FormulaFactory f) throws InvalidCausalModelException {
+                                Set<Literal> evaluation, boolean phiOccurred,
+                                ProbabilisticSolvingStrategy solvingStrategy, ConsistentContexts actualWorldContexts,
+                                QueryProgress progress, FormulaFactory f)
+            throws InvalidCausalModelException {
         if (cause.size() > 1 && phiOccurred) {
 
             // get all subsets of cause
@@ -188,11 +405,15 @@ public class PCPrimeSolver extends ProbabilisticCausalitySolver {
             /*
              * no sub-cause must fulfill AC1 and AC2
              * for AC1, we only need to check if the current cause subset, as we checked for phi before */
+            progress.addSubCauses(allSubsetsOfCause.size());
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
-                        fulfillsPCPrime2(causalModel, phi, c, context, evaluation, f) != null) {
+                        fulfillsPCPrime2(causalModel, phi, c, context, evaluation, solvingStrategy,
+                                actualWorldContexts, null, f) != null) {
                     return false;
                 }
+                progress.exploreSubCause();
             }
         }
         return true;
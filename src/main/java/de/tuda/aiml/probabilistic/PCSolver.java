@@ -1,6 +1,10 @@
 package de.tuda.aiml.probabilistic;
 
 import de.tuda.aiml.util.UtilityMethods;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.util.Util;
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
@@ -11,6 +15,8 @@ import org.logicng.formulas.Variable;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -31,14 +37,50 @@ public class PCSolver extends ProbabilisticCausalitySolver {
      public ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context, Formula phi,
                                 Set<Literal> cause, ProbabilisticSolvingStrategy solvingStrategy)
             throws InvalidCausalModelException {
+        return solve(causalModel, context, ProbabilisticCausalitySolver.evaluateEquations(causalModel, context), phi,
+                cause, solvingStrategy);
+    }
+
+    @Override
+    ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context,
+                                             Set<Literal> evaluation, Formula phi, Set<Literal> cause,
+                                             ProbabilisticSolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> pc1Tuple = fulfillsPC1(evaluation, phi, cause);
-        boolean pc1 = pc1Tuple.first() && pc1Tuple.second();
-        Set<Literal> w = fulfillsPC2(causalModel, phi, cause, context, evaluation, f);
+        resetEliminatedWCandidates();
+        resetMonteCarloStatistics();
+        resetEvaluationCache();
+        resetWorkerModels();
+        resetMetrics();
+        SolverMetrics metrics = getMetrics();
+        QueryProgress progress = new QueryProgress();
+        boolean pc1 = false;
+        Set<Literal> w = null;
+        boolean pc3 = false;
+        try {
+            metrics.startClause(1);
+            Pair<Boolean, Boolean> pc1Tuple = fulfillsPC1(evaluation, phi, cause);
+            pc1 = pc1Tuple.first() && pc1Tuple.second();
+            progress.setAc1(pc1);
+            metrics.startClause(2);
+            w = fulfillsPC2(causalModel, phi, cause, context, evaluation, solvingStrategy, progress, f);
+            progress.setAc2(w != null);
+            metrics.startClause(3);
+            pc3 = fulfillsPC3(causalModel, phi, cause, context, evaluation, pc1Tuple.first(), solvingStrategy,
+                    progress, f);
+            progress.setAc3(pc3);
+        } catch (CancellationException e) {
+            // the budget is exhausted; return the clauses decided so far
+            handleCancellation(e);
+        }
+        metrics.finishClause();
         boolean pc2 = w != null;
-        boolean pc3 = fulfillsPC3(causalModel, phi, cause, context, evaluation, pc1Tuple.first(), f);
         ProbabilisticCausalitySolverResult causalitySolverResult = new ProbabilisticCausalitySolverResult(pc1, pc2, pc3, cause, w);
+        causalitySolverResult.setProgress(progress);
+        causalitySolverResult.setMetrics(metrics);
+        causalitySolverResult.setEliminatedWCandidates(getEliminatedWCandidates());
+        addMonteCarloStatistics(causalitySolverResult);
+        addEvaluationCacheStatistics(causalitySolverResult);
         return causalitySolverResult;
     }
 
@@ -50,45 +92,62 @@ public class PCSolver extends ProbabilisticCausalitySolver {
      * @param cause           the cause for which we check PC2
      * @param context         the context
      * @param evaluation      the original evaluation of variables
+     * @param solvingStrategy the applied solving strategy
+     * @param progress        the progress, to which the W candidates are added; null if PC2 is checked for PC3
      * @param f               a formula factory
      * @return returns W if PC2 fulfilled, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
      */
     private Set<Literal> fulfillsPC2(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                     Set<Literal> evaluation, FormulaFactory f)
+                                     Set<Literal> evaluation, ProbabilisticSolvingStrategy solvingStrategy,
+                                     QueryProgress progress, FormulaFactory f)
             throws InvalidCausalModelException {
-        // all exogenous variables
-        Map<Variable, Double> exogenousVariables = causalModel.getExogenousVariables();
+        // all endogenous variables except the cause, possibly pruned to those on a path from the cause to phi
+        Set<Literal> wVariables = getWVariables(causalModel, phi, cause, evaluation, f);
 
-        // create copy of original causal model
-        ProbabilisticCausalModel causalModelForCause = createModifiedCausalModelForCause(causalModel, cause, f);
-        ProbabilisticCausalModel causalModelForNegatedCause = createModifiedCausalModelForNegatedCause(causalModel, cause, f);
+        return searchW(causalModel, phi, cause, evaluation, wVariables, progress,
+                (m, p, c, e) -> createPC2Check(m, p, c, e, solvingStrategy));
+    }
 
-        Set<Literal> evaluationModified;
+    /**
+     * Creates the check of PC2 for a single W, which searches an assignment of W that fulfills PC2 (a) and (b).
+     *
+     * @param causalModel     the underlying causal model
+     * @param phi             the phi
+     * @param cause           the cause for which we check PC2
+     * @param evaluation      the original evaluation of variables
+     * @param solvingStrategy the applied solving strategy
+     * @return the check, which returns the assignment of W if PC2 is fulfilled, else null
+     */
+    private WCandidateCheck createPC2Check(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                                           Set<Literal> evaluation, ProbabilisticSolvingStrategy solvingStrategy) {
+        FormulaFactory f = causalModel.getFormulaFactory();
+        SolverMetrics metrics = getMetrics();
+        int equations = causalModel.getVariableEquationMap().size();
+        // either count the contexts by weighted model counting or enumerate them
+        WeightedModelCounter counter = solvingStrategy == ProbabilisticSolvingStrategy.PC_WMC ?
+                new WeightedModelCounter(causalModel) : null;
+
+        // intervene on the cause instead of copying the original causal model
+        Intervention interventionForCause = new Intervention(causalModel, cause);
+        Intervention interventionForNegatedCause = new Intervention(causalModel, cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()));
+        metrics.modifiedModelsBuilt(2);
+
+        // phi and the cause (and its negation) evaluated on the compiled models
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        CompiledFormula compiledCause = compiledModel.compile(cause, f);
+        CompiledFormula compiledNegatedCause = compiledModel.compile(cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()), f);
 
         // get the cause as set of variables
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        // only the exogenous ancestors of these variables need to be enumerated
+        Set<Variable> queryVariables = new HashSet<>(phi.variables());
+        queryVariables.addAll(causeVariables);
 
-        /*
-         * remove exogenous variables from evaluation as they are not needed for computing the Ws. Furthermore,
-         * all variables in the cause also must not be in W. */
-        Set<Literal> wVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable()) &&
-                        !(causeVariables.contains(l.variable())))
-                .collect(Collectors.toSet());
-
-        // get all possible Ws, i.e. create power set of the evaluation
-        List<Set<Literal>> allW = (new Util<Literal>()).generatePowerSet(wVariables);
-
-        Set<Literal> exogenousAssignments = new HashSet<>();
-        exogenousAssignments.addAll(exogenousVariables.keySet());
-        for(Literal literal: exogenousVariables.keySet()){
-            exogenousAssignments.add(literal.negate());
-        }
-        List<Set<Literal>> allSubsetsOfExoAssignments = (new Util<Literal>()).generatePowerSet(exogenousAssignments);
-
-        // Iterate over all W
-        for (Set<Literal> w : allW) {
+        return (w, cancelled) -> {
             Set<Literal> zVariables = evaluation.stream().filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable())).collect(Collectors.toSet());
             zVariables.removeAll(w);
 
@@ -98,78 +157,104 @@ public class PCSolver extends ProbabilisticCausalitySolver {
             for(Literal lit: w){
                 wAssignments.add(lit.negate());
             }
-            List<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).generatePowerSet(wAssignments);
+            // only the subsets that contain |W| literals can be assignments of W
+            Iterable<Set<Literal>> allSubsetsOfWAssignments = (new Util<Literal>()).iterateSubsets(wAssignments, w.size());
             for(Set<Literal> wAssignment : allSubsetsOfWAssignments){
-                if(wAssignment.size() != w.size()  || !UtilityMethods.noDuplicates(wAssignment)){
+                if(cancelled.getAsBoolean()){
+                    return null;
+                }
+                if(!UtilityMethods.noDuplicates(wAssignment)){
                     continue;
                 }
-                ProbabilisticCausalModel causalModelModifiedW = createModifiedCausalModelForW(causalModelForCause, wAssignment, f);
-
-                ProbabilisticCausalModel causalModelNegatedModifiedW = createModifiedCausalModelForW(causalModelForNegatedCause, wAssignment, f);
-                double probCAndE = 0.0;
-                double probC = 0.0;
-                double probNotCAndE = 0.0;
-                double probNotC = 0.0;
-                for(Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-                    if (exoAssignment.size() != exogenousVariables.size() || !UtilityMethods.noDuplicates(exoAssignment)) {
-                        continue;
-                    }
-                    // evaluate all variables
-                    evaluationModified = ProbabilisticCausalitySolver.evaluateEquations(causalModelModifiedW, exoAssignment);
-                    Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluationModified, phi, cause);
-                    double modelProbability = causalModelModifiedW.getProbability(exoAssignment);
-
-                    Set<Literal> negatedEvaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModelNegatedModifiedW, exoAssignment);
-                    Pair<Boolean, Boolean> ac1TupleNegated = ProbabilisticCausalitySolver.fulfillsPC1(negatedEvaluation, phi, cause.stream().map(Literal::negate)
-                            .collect(Collectors.toSet()));
-                    double negatedModelProbability = causalModelNegatedModifiedW.getProbability(exoAssignment);
-
-                    // cause fulfilled
-                    if(ac1Tuple.second()) {
-                        probC += modelProbability;
-                    }
-                    if(ac1TupleNegated.second()){
-                        probNotC += negatedModelProbability;
-                    }
-                    if(ac1Tuple.first() && ac1Tuple.second()){
-                        probCAndE += modelProbability;
-                    }
-                    if(ac1TupleNegated.first() && ac1TupleNegated.second()){
-                        probNotCAndE += negatedModelProbability;
+                metrics.wAssignmentTried();
+                Intervention interventionModifiedW = interventionForCause.intervene(wAssignment);
+                Intervention interventionNegatedModifiedW = interventionForNegatedCause.intervene(wAssignment);
+                metrics.modifiedModelsBuilt(2);
+                if (solvingStrategy == ProbabilisticSolvingStrategy.PC_MC) {
+                    // Create Z' as Z - X
+                    zVariables.removeAll(cause);
+                    if (fulfillsPC2ByMonteCarlo(causalModel, phi, cause, zVariables, wAssignment,
+                            interventionModifiedW, interventionNegatedModifiedW, compiledPhi, compiledCause,
+                            compiledNegatedCause, queryVariables, cancelled)) {
+                        return new HashSet<>(wAssignment);
                     }
+                    continue;
+                }
+                ProbabilitySum probCAndE = new ProbabilitySum();
+                ProbabilitySum probC = new ProbabilitySum();
+                ProbabilitySum probNotCAndE = new ProbabilitySum();
+                ProbabilitySum probNotC = new ProbabilitySum();
+                if (counter != null) {
+                    int causeOccurs = counter.compile(interventionModifiedW, cause);
+                    int phiOccurs = counter.compile(interventionModifiedW, phi);
+                    int negatedCauseOccurs = counter.compile(interventionNegatedModifiedW, cause.stream()
+                            .map(Literal::negate).collect(Collectors.toSet()));
+                    int phiOccursForNegatedCause = counter.compile(interventionNegatedModifiedW, phi);
 
+                    probC.add(counter.getProbability(causeOccurs));
+                    probNotC.add(counter.getProbability(negatedCauseOccurs));
+                    probCAndE.add(counter.getProbability(counter.and(phiOccurs, causeOccurs)));
+                    probNotCAndE.add(counter.getProbability(counter.and(phiOccursForNegatedCause, negatedCauseOccurs)));
+                } else {
+                    // all other exogenous variables are marginalized
+                    Set<Variable> relevantVariables = interventionModifiedW.getExogenousAncestors(queryVariables);
+                    relevantVariables.addAll(interventionNegatedModifiedW.getExogenousAncestors(queryVariables));
+                    // evaluates 64 contexts per word at once
+                    BitSlicedEvaluator evaluator = new BitSlicedEvaluator(
+                            new ContextSpace(causalModel, Collections.emptySet(), relevantVariables));
+                    long[] values = evaluator.newAssignment(compiledModel);
+                    long[] negatedValues = evaluator.newAssignment(compiledModel);
+                    CompiledCausalModel compiledModelModifiedW = interventionModifiedW.getCompiledModel();
+                    CompiledCausalModel compiledModelNegatedModifiedW = interventionNegatedModifiedW.getCompiledModel();
+                    for(long block = 0; block < evaluator.getNumberOfBlocks(); block++) {
+                        checkBudget();
+                        // evaluate all variables for all contexts of the block
+                        evaluator.setBlock(block);
+                        evaluator.assignContexts(values);
+                        evaluator.evaluate(compiledModelModifiedW, values);
+                        evaluator.assignContexts(negatedValues);
+                        evaluator.evaluate(compiledModelNegatedModifiedW, negatedValues);
+                        long contexts = evaluator.getNumberOfContexts(block);
+                        metrics.contextsEnumerated(contexts);
+                        metrics.equationsEvaluated(2 * equations * contexts);
+
+                        for(int word = 0; word < evaluator.getWidth(); word++) {
+                            long causeOccurs = evaluator.evaluate(compiledCause, values, word);
+                            long phiOccurs = evaluator.evaluate(compiledPhi, values, word);
+                            long negatedCauseOccurs = evaluator.evaluate(compiledNegatedCause, negatedValues, word);
+                            long phiOccursForNegatedCause = evaluator.evaluate(compiledPhi, negatedValues, word);
+
+                            // cause fulfilled
+                            evaluator.addProbabilities(probC, word, causeOccurs);
+                            evaluator.addProbabilities(probNotC, word, negatedCauseOccurs);
+                            evaluator.addProbabilities(probCAndE, word, phiOccurs & causeOccurs);
+                            evaluator.addProbabilities(probNotCAndE, word, phiOccursForNegatedCause & negatedCauseOccurs);
+                        }
+                    }
                 }
-                double probCause = (probCAndE / probC);
-                double notCause = (probNotCAndE / probNotC);
+                double probCause = (probCAndE.getValue() / probC.getValue());
+                double notCause = (probNotCAndE.getValue() / probNotC.getValue());
 
                 // If PC2(a) is fulfilled
                 if(probCause > notCause){
 
                     // Create Z' as Z - X
                     zVariables.removeAll(cause);
-                    List<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).generatePowerSet(zVariables);
+                    Iterable<Set<Literal>> allSubsetsOfZPrime = (new Util<Literal>()).iteratePowerSet(zVariables);
 
                     boolean zFulfills = true;
 
                     // Iterate over Z*
                     for(Set<Literal> zStar : allSubsetsOfZPrime) {
-                        double probCAndE2 = 0.0;
-                        double probC2 = 0.0;
-                        ProbabilisticCausalModel causalModelModWModZStar = createModifiedCausalModelForW(causalModelModifiedW, zStar, f);
-                        for (Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-                            if (exoAssignment.size() != exogenousVariables.size() || !UtilityMethods.noDuplicates(exoAssignment)) {
-                                evaluationModified = ProbabilisticCausalitySolver.evaluateEquations(causalModelModWModZStar, exoAssignment);
-                                Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluationModified, phi, cause);
-                                double modelProbability = causalModelModWModZStar.getProbability(exoAssignment);
-
-                                if (ac1Tuple.second()) {
-                                    probC2 += modelProbability;
-                                }
-                                if (ac1Tuple.first() && ac1Tuple.second()) {
-                                    probCAndE2 += modelProbability;
-                                }
-                            }
-                        }
+                        checkBudget();
+                        metrics.zStarSubsetTried();
+                        Intervention interventionModWModZStar = interventionModifiedW.intervene(zStar);
+                        metrics.modifiedModelsBuilt(1);
+                        double[] pc2bProbabilities = computePC2bProbabilities(interventionModWModZStar,
+                                compiledPhi, compiledCause,
+                                interventionModWModZStar.getExogenousAncestors(queryVariables));
+                        double probCAndE2 = pc2bProbabilities[0];
+                        double probC2 = pc2bProbabilities[1];
                         double probCause2 = (probCAndE2 / probC2);
 
                         // Check PC2 (b)
@@ -179,14 +264,275 @@ public class PCSolver extends ProbabilisticCausalitySolver {
                         }
                     }
                     if(zFulfills){
-                        return wAssignment;
+                        return new HashSet<>(wAssignment);
+                    }
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Checks PC2 (a) and (b) for a single assignment of W by sampling, see {@link MonteCarloEstimator}. The comparisons
+     * that justify the assignment are recorded, see {@link #addWitnessComparisons(Set, Set, List)}.
+     *
+     * @param causalModel                  the underlying causal model
+     * @param phi                          the phi
+     * @param cause                        the cause for which we check PC2
+     * @param zPrime                       the actual values of the variables that are neither in the cause nor in W
+     * @param wAssignment                  the assignment of W
+     * @param interventionModifiedW        the intervention on the cause and W
+     * @param interventionNegatedModifiedW the intervention on the negated cause and W
+     * @param compiledPhi                  the compiled phi
+     * @param compiledCause                the compiled cause
+     * @param compiledNegatedCause         the compiled negated cause
+     * @param queryVariables               the variables of phi and the cause
+     * @param cancelled                    true once the result is no longer needed
+     * @return true if PC2 is fulfilled for the assignment, else false
+     */
+    private boolean fulfillsPC2ByMonteCarlo(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                                            Set<Literal> zPrime, Set<Literal> wAssignment,
+                                            Intervention interventionModifiedW,
+                                            Intervention interventionNegatedModifiedW, CompiledFormula compiledPhi,
+                                            CompiledFormula compiledCause, CompiledFormula compiledNegatedCause,
+                                            Set<Variable> queryVariables, BooleanSupplier cancelled) {
+        List<MonteCarloComparison> comparisons = new ArrayList<>();
+        MonteCarloEstimate probCause = new SampledContextEstimate(causalModel,
+                interventionModifiedW.getExogenousAncestors(queryVariables), newRandom("PC2a", cause, wAssignment),
+                interventionModifiedW.getCompiledModel(), compiledCause, compiledPhi, null);
+        MonteCarloEstimate notCause = new SampledContextEstimate(causalModel,
+                interventionNegatedModifiedW.getExogenousAncestors(queryVariables),
+                newRandom("PC2a-not", cause, wAssignment), interventionNegatedModifiedW.getCompiledModel(),
+                compiledNegatedCause, compiledPhi, null);
+        MonteCarloComparison pc2a = compare(probCause, notCause);
+        comparisons.add(pc2a);
+        if (!pc2a.isGreater()) {
+            return false;
+        }
+
+        SolverMetrics metrics = getMetrics();
+        for (Set<Literal> zStar : new Util<Literal>().iteratePowerSet(zPrime)) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            metrics.zStarSubsetTried();
+            Intervention interventionModWModZStar = interventionModifiedW.intervene(zStar);
+            metrics.modifiedModelsBuilt(1);
+            MonteCarloEstimate probCause2 = createPC2bEstimate(interventionModWModZStar, compiledPhi, compiledCause,
+                    interventionModWModZStar.getExogenousAncestors(queryVariables),
+                    newRandom("PC2b", cause, wAssignment, zStar));
+            // the estimate of the negated cause keeps its samples and is refined further if needed
+            MonteCarloComparison pc2b = compare(probCause2, notCause);
+            comparisons.add(pc2b);
+            // as in the exact check, an undefined probability does not violate PC2 (b)
+            if (!pc2b.isGreater() && !Double.isNaN(pc2b.getLeftEstimate()) &&
+                    !Double.isNaN(pc2b.getRightEstimate())) {
+                return false;
+            }
+        }
+        addWitnessComparisons(cause, new HashSet<>(wAssignment), comparisons);
+        return true;
+    }
+
+    /**
+     * Creates the estimate of the conditional probability of PC2 (b), i.e. the weight of C and E divided by the weight
+     * of C, see {@link #computePC2bProbabilities(Intervention, CompiledFormula, CompiledFormula, Set)}. Each relevant variable is drawn
+     * unassigned, false or true with probabilities proportional to 1, 1 - p and p + p * (1 - p). Up to the constant
+     * product of the sums 2 + p * (1 - p) of all variables, this is the weight of an assignment. Only complete
+     * assignments need to be corrected by the excluded context weight: they are rejected with the probability of the
+     * context weight divided by their weight.
+     *
+     * If there are at most 12 relevant variables, the outcome of each of the 3^n assignments is memoized. The
+     * evaluations themselves are looked up in the evaluation cache of the query, see {@link EvaluationCache}.
+     *
+     * @param intervention      the intervention on the cause, W and Z*
+     * @param compiledPhi       the compiled phi
+     * @param compiledCause     the compiled cause
+     * @param relevantVariables the exogenous variables phi and the cause depend on
+     * @param random            the source of randomness
+     * @return the estimate
+     */
+    private MonteCarloEstimate createPC2bEstimate(Intervention intervention, CompiledFormula compiledPhi,
+                                                  CompiledFormula compiledCause, Set<Variable> relevantVariables,
+                                                  SplittableRandom random) {
+        EvaluationCache evaluationCache = getEvaluationCache();
+        SolverMetrics metrics = getMetrics();
+        Map<Variable, Double> exogenousVariables = intervention.getCausalModel().getExogenousVariables();
+        Variable[] variables = exogenousVariables.keySet().stream().filter(relevantVariables::contains)
+                .toArray(Variable[]::new);
+        // the ratio of the context weight and the weight of a complete assignment
+        double marginalRatio = 1.0;
+        for (Map.Entry<Variable, Double> entry : exogenousVariables.entrySet()) {
+            if (!relevantVariables.contains(entry.getKey())) {
+                double p = entry.getValue();
+                marginalRatio /= 2 + p * (1 - p);
+            }
+        }
+        double[] unassignedThresholds = new double[variables.length];
+        double[] falseThresholds = new double[variables.length];
+        double[] trueRatios = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            double p = exogenousVariables.get(variables[i]);
+            double sum = 2 + p * (1 - p);
+            unassignedThresholds[i] = 1 / sum;
+            falseThresholds[i] = (2 - p) / sum;
+            trueRatios[i] = 1 / (2 - p);
+        }
+        double completeRatio = marginalRatio;
+        // 0: not evaluated yet, else 1 + (1 if C) + (2 if C and E)
+        byte[] outcomes = variables.length <= 12 ? new byte[(int) Math.pow(3, variables.length)] : null;
+        int[] states = new int[variables.length];
+
+        return new MonteCarloEstimate() {
+            @Override
+            void draw(long n) {
+                for (long k = 0; k < n; k++) {
+                    samples++;
+                    int index = 0;
+                    boolean complete = true;
+                    double ratio = completeRatio;
+                    for (int i = 0; i < variables.length; i++) {
+                        double u = random.nextDouble();
+                        states[i] = u < unassignedThresholds[i] ? 0 : u < falseThresholds[i] ? 1 : 2;
+                        if (states[i] == 0) {
+                            complete = false;
+                        } else if (states[i] == 2) {
+                            ratio *= trueRatios[i];
+                        }
+                        index = 3 * index + states[i];
+                    }
+                    if (complete && random.nextDouble() < ratio) {
+                        continue;
+                    }
+                    byte outcome = outcomes != null ? outcomes[index] : 0;
+                    if (outcome == 0) {
+                        Set<Literal> assignment = new HashSet<>();
+                        for (int i = 0; i < variables.length; i++) {
+                            if (states[i] == 1) {
+                                assignment.add(variables[i].negate());
+                            } else if (states[i] == 2) {
+                                assignment.add(variables[i]);
+                            }
+                        }
+                        long[] evaluation = evaluationCache.evaluate(intervention, assignment, metrics);
+                        boolean causeOccurs = compiledCause.evaluate(evaluation);
+                        outcome = (byte) (1 + (causeOccurs ? 1 : 0) +
+                                (causeOccurs && compiledPhi.evaluate(evaluation) ? 2 : 0));
+                        if (outcomes != null) {
+                            outcomes[index] = outcome;
+                        }
+                    }
+                    if (((outcome - 1) & 1) != 0) {
+                        trials++;
+                    }
+                    if (((outcome - 1) & 2) != 0) {
+                        successes++;
                     }
                 }
             }
+        };
+    }
+
+    /**
+     * Computes the weights of C and E and of C for the check of PC2 (b). In contrast to all other probabilities, these
+     * sums do not run over the complete contexts, but over all other subsets of the exogenous literals, i.e. partial
+     * assignments and assignments that contain both phases of a variable. Each such subset is weighted with the
+     * product of the probabilities of its literals. The results of the existing examples rely on this, so we keep it.
+     * However, instead of creating the power set of all 2n exogenous literals, we make use of the fact that a subset
+     * containing both phases of a variable evaluates like the subset containing only its positive literal. Hence, we
+     * only need to evaluate the 3^n assignments where each variable is either true, false or unassigned.
+     *
+     * Furthermore, only the relevant variables are enumerated. The three states of any other variable sum up to the
+     * weight 1 + (1 - p) + p + p * (1 - p) and the complete states of the other variables to the probability 1. Hence,
+     * the weight of an assignment of the relevant variables is the product of these factors times its own weight,
+     * minus its context weight if it is complete.
+     *
+     * The same intervention recurs for different assignments of W and Z* and in the check of PC3. Therefore, the
+     * evaluations are looked up in the evaluation cache of the query, see {@link EvaluationCache}. As phi and the
+     * cause only consist of endogenous variables, which are assigned in each evaluation, their compiled formulas
+     * decide them like {@link #fulfillsPC1(Set, Formula, Set)}.
+     *
+     * @param intervention      the intervention on the cause, W and Z*
+     * @param compiledPhi       the compiled phi
+     * @param compiledCause     the compiled cause
+     * @param relevantVariables the exogenous variables phi and the cause depend on
+     * @return the weight of C and E as first and the weight of C as second item
+     */
+    private double[] computePC2bProbabilities(Intervention intervention, CompiledFormula compiledPhi,
+                                              CompiledFormula compiledCause, Set<Variable> relevantVariables) {
+        EvaluationCache evaluationCache = getEvaluationCache();
+        SolverMetrics metrics = getMetrics();
+        Map<Variable, Double> exogenousVariables = intervention.getCausalModel().getExogenousVariables();
+        Variable[] variables = exogenousVariables.keySet().stream().filter(relevantVariables::contains)
+                .toArray(Variable[]::new);
+        // the summed up weight of the states of all other variables
+        double marginalWeight = 1.0;
+        for (Map.Entry<Variable, Double> entry : exogenousVariables.entrySet()) {
+            if (!relevantVariables.contains(entry.getKey())) {
+                double p = entry.getValue();
+                marginalWeight *= 2 + p * (1 - p);
+            }
         }
+        // 0: unassigned, 1: false, 2: true (positive literal only or both phases)
+        int[] states = new int[variables.length];
+        ProbabilitySum probCAndE = new ProbabilitySum();
+        ProbabilitySum probC = new ProbabilitySum();
+        long assignments = 0;
+        do {
+            checkBudget();
+            assignments++;
+            Set<Literal> assignment = new HashSet<>();
+            double weight = marginalWeight;
+            double contextWeight = 1.0;
+            boolean complete = true;
+            for (int i = 0; i < variables.length; i++) {
+                double p = exogenousVariables.get(variables[i]);
+                if (states[i] == 0) {
+                    complete = false;
+                } else if (states[i] == 1) {
+                    assignment.add(variables[i].negate());
+                    weight *= 1 - p;
+                    contextWeight *= 1 - p;
+                } else {
+                    assignment.add(variables[i]);
+                    weight *= p + p * (1 - p);
+                    contextWeight *= p;
+                }
+            }
+            if (complete) {
+                // exclude the complete context consisting of positive literals only
+                weight -= contextWeight;
+            }
+            long[] evaluation = evaluationCache.evaluate(intervention, assignment, metrics);
+            if (compiledCause.evaluate(evaluation)) {
+                probC.add(weight);
+                if (compiledPhi.evaluate(evaluation)) {
+                    probCAndE.add(weight);
+                }
+            }
+        } while (nextState(states));
+        // the partial assignments are enumerated like contexts
+        metrics.contextsEnumerated(assignments);
+        return new double[]{probCAndE.getValue(), probC.getValue()};
+    }
 
-        return null;
+    /**
+     * Counts the given ternary states up by one.
+     *
+     * @param states the states
+     * @return false if all states have been visited, else true
+     */
+    private static boolean nextState(int[] states) {
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] < 2) {
+                states[i]++;
+                return true;
+            }
+            states[i] = 0;
+        }
+        return false;
     }
+
     /**
      * Checks if PC3 is fulfilled
      *
@@ -195,11 +541,16 @@ public class PCSolver extends ProbabilisticCausalitySolver {
      * @param cause           the cause for which we check PC2
      * @param context         the context
      * @param evaluation      the original evaluation of variables
+     * @param solvingStrategy the applied solving strategy
+     * @param progress        the progress, to which the subsets of the cause are added
      * @param f               a formula factory
      * @return true if PC3 fulfilled, else false
      */
     private boolean fulfillsPC3(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                Set<Literal> evaluation, boolean phiOccurred, FormulaFactory f) throws InvalidCausalModelException {
+                                Set<Literal> evaluation, boolean phiOccurred,
+                                ProbabilisticSolvingStrategy solvingStrategy, QueryProgress progress,
+                                FormulaFactory f)
+            throws InvalidCausalModelException {
         if (cause.size() > 1 && phiOccurred) {
 
             // get all subsets of cause
@@ -210,11 +561,14 @@ public class PCSolver extends ProbabilisticCausalitySolver {
             /*
              * no sub-cause must fulfill AC1 and AC2
              * for AC1, we only need to check if the current cause subset, as we checked for phi before */
+            progress.addSubCauses(allSubsetsOfCause.size());
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
-                        fulfillsPC2(causalModel, phi, c, context, evaluation, f) != null) {
+                        fulfillsPC2(causalModel, phi, c, context, evaluation, solvingStrategy, null, f) != null) {
                     return false;
                 }
+                progress.exploreSubCause();
             }
         }
         return true;
@@ -1,28 +1,27 @@
 package de.tuda.aiml.probabilistic;
 
+import de.tum.in.i4.hp2sat.causality.CausalGraph;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
 import de.tum.in.i4.hp2sat.causality.Equation;
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidContextException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidPhiException;
-import de.tum.in.i4.hp2sat.util.Util;
-import org.graphstream.algorithm.TopologicalSortDFS;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
-import org.graphstream.graph.implementations.SingleGraph;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static de.tuda.aiml.probabilistic.ProbabilisticSolvingStrategy.*;
-
 /**
  * Class to create Probabilistic causal models. This class is the probabilistic variant of the
  * {@link de.tum.in.i4.hp2sat.causality.CausalModel} class.
@@ -33,10 +32,10 @@ public class ProbabilisticCausalModel {
     private Map<Variable, Double> exogenousVariables;
 
     private Map<Variable, Equation> variableEquationMap;
-    private Graph graph;
-    private Graph graphReversed;
+    private CausalGraph causalGraph;
     private List<Equation> equationsSorted;
     private FormulaFactory formulaFactory;
+    private volatile CompiledCausalModel compiledModel;
 
     static final String DUMMY_VAR_NAME = "_dummy";
 
@@ -72,7 +71,7 @@ public class ProbabilisticCausalModel {
         }
         this.variableEquationMap = equations.stream()
                 .collect(Collectors.toMap(Equation::getVariable, Function.identity()));
-        this.graph = this.toGraph();
+        this.causalGraph = new CausalGraph(exogenousVariables.keySet(), equations);
         this.formulaFactory = formulaFactory;
         equationsSorted = this.sortEquations();
     }
@@ -94,6 +93,27 @@ public class ProbabilisticCausalModel {
                 .collect(Collectors.toSet()), causalModel.exogenousVariables, causalModel.formulaFactory, false);
     }
 
+    /**
+     * Creates a copy of this causal model whose variables and equations belong to the given formula factory. As
+     * formula factories are not thread-safe, each thread that works on a model needs a copy with its own factory.
+     * The copy must be created by the thread that owns the formula factory of this model.
+     * IMPORTANT: We skip the validity check when creating the copy!
+     *
+     * @param formulaFactory the formula factory of the copy
+     * @return the copy
+     * @throws InvalidCausalModelException thrown if the copy is invalid, which cannot happen for valid models
+     */
+    ProbabilisticCausalModel copy(FormulaFactory formulaFactory) throws InvalidCausalModelException {
+        Set<Equation> equations = variableEquationMap.values().stream()
+                .map(e -> new Equation(formulaFactory.variable(e.getVariable().name()),
+                        formulaFactory.importFormula(e.getFormula())))
+                .collect(Collectors.toSet());
+        // keep the order of the exogenous variables, so contexts are enumerated in the same order
+        Map<Variable, Double> exogenousVariablesCopy = new LinkedHashMap<>();
+        exogenousVariables.forEach((v, p) -> exogenousVariablesCopy.put(formulaFactory.variable(v.name()), p));
+        return new ProbabilisticCausalModel(name, equations, exogenousVariablesCopy, formulaFactory, false);
+    }
+
     /**
      * Get the probability of the given context in this probabilistic causal model.
      * @param context the uncertain context
@@ -129,103 +149,100 @@ public class ProbabilisticCausalModel {
     public ProbabilisticCausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
                                                       ProbabilisticSolvingStrategy solvingStrategy)
             throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
-        validateCausalityCheck(context, phi, cause);
-        ProbabilisticCausalitySolver causalitySolver = null;
-        if (solvingStrategy == PC ) {
-            causalitySolver = new PCSolver();
-        }
-        else if(solvingStrategy == PAC) {
-            causalitySolver = new PACSolver();
-        }
-        else if(solvingStrategy == PCPrime) {
-            causalitySolver = new PCPrimeSolver();
-        }
-
-        return causalitySolver.solve(this, context, phi, cause, solvingStrategy);
+        return isCause(context, phi, cause, solvingStrategy, true);
     }
 
-
     /**
-     * Checks whether the given equations and exogenous variables are valid.
+     * Determines whether the passed set of Literals is a cause for the given phi, see
+     * {@link #isCause(Set, Formula, Set, ProbabilisticSolvingStrategy)} for a full documentation. In addition, the W
+     * search can be restricted to the variables on a path from the cause to phi, see
+     * {@link ProbabilisticCausalitySolver#setExhaustiveWSearch(boolean)}. The number of W candidates that are thereby
+     * skipped is reported by {@link ProbabilisticCausalitySolverResult#getEliminatedWCandidates()}.
      *
-     * @param equations          the equations
-     * @param exogenousVariables the exogenous variables
-     * @return true if valid
-     * @throws InvalidCausalModelException thrown if invalid
+     * @param context           the context of the causal scenario; defines the values of the exogenous variables
+     * @param phi               the literals (i.e. events) we want to check for whether the given cause is indeed a
+     *                          cause
+     * @param cause             the set of literals (i.e. primitive events) we want to check for being a cause for phi
+     * @param solvingStrategy   the applied solving strategy
+     * @param exhaustiveWSearch true to consider all endogenous variables for W, false for the pruned W search
+     * @return the result of the solver
+     * @throws InvalidContextException thrown if context is invalid
+     * @throws InvalidCauseException   thrown if the cause is invalid
+     * @throws InvalidPhiException     thrown if phi is invalid
      */
-    private boolean isValid(Set<Equation> equations, Map<Variable, Double> exogenousVariables)
-            throws InvalidCausalModelException {
-        Set<Variable> variables = equations.stream().map(Equation::getVariable).collect(Collectors.toSet());
-        equations.forEach(e -> variables.addAll(e.getFormula().variables()));
-        variables.addAll(exogenousVariables.keySet());
-
-        boolean existsDefinitionForEachVariable = equations.size() + exogenousVariables.size() == variables.size();
-        boolean existsNoDuplicateEquationForEachVariable =
-                equations.size() == equations.stream().map(Equation::getVariable).collect(Collectors.toSet()).size();
-        boolean existsCircularDependency = equations.parallelStream()
-                .anyMatch(e -> isVariableInEquation(e.getVariable(), e, equations));
-        boolean exogenousVariableCalledLikeDummy = exogenousVariables.keySet().parallelStream()
-                .anyMatch(e -> e.name().equals(DUMMY_VAR_NAME));
-
-        if (!(existsDefinitionForEachVariable && existsNoDuplicateEquationForEachVariable &&
-                !existsCircularDependency && !exogenousVariableCalledLikeDummy))
-            throw new InvalidCausalModelException();
-
-        return true;
+    public ProbabilisticCausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                                      ProbabilisticSolvingStrategy solvingStrategy,
+                                                      boolean exhaustiveWSearch)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        validateCausalityCheck(context, phi, cause);
+        ProbabilisticCausalitySolver causalitySolver = ProbabilisticCausalitySolver.create(solvingStrategy);
+        causalitySolver.setExhaustiveWSearch(exhaustiveWSearch);
+        return causalitySolver.solve(this, context, phi, cause, solvingStrategy);
     }
 
     /**
-     * Checks whether a given variable is within a given equation or within the equations of the variables used
-     * within the given equation (recursive!)
+     * Determines whether the passed set of Literals is a cause for the given phi within the given budget, see
+     * {@link #isCause(Set, Formula, Set, ProbabilisticSolvingStrategy)} for a full documentation. Once the budget is
+     * exhausted, a partial result is returned: {@link ProbabilisticCausalitySolverResult#getProgress()} tells which
+     * clauses have been decided and how much of their search space has been covered, and each undecided clause is
+     * reported as not fulfilled.
      *
-     * @param variable  the variable for which we want to know whether it is in the given equation
-     * @param equation  the equation within which we search for the variable
-     * @param equations the equations
-     * @return true, if variable was found; otherwise false
+     * @param context         the context of the causal scenario; defines the values of the exogenous variables
+     * @param phi             the literals (i.e. events) we want to check for whether the given cause is indeed a cause
+     * @param cause           the set of literals (i.e. primitive events) we want to check for being a cause for phi
+     * @param solvingStrategy the applied solving strategy
+     * @param queryBudget     the budget, e.g. with a deadline; null for no bound
+     * @return the result of the solver, possibly partial
+     * @throws InvalidContextException thrown if context is invalid
+     * @throws InvalidCauseException   thrown if the cause is invalid
+     * @throws InvalidPhiException     thrown if phi is invalid
      */
-    private boolean isVariableInEquation(Variable variable, Equation equation, Set<Equation> equations) {
-        Set<Variable> variables = equation.getFormula().variables();
-        // check if formula of equation contains variable
-        if (variables.contains(variable)) {
-            return true;
-        }
+    public ProbabilisticCausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                                      ProbabilisticSolvingStrategy solvingStrategy,
+                                                      QueryBudget queryBudget)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        validateCausalityCheck(context, phi, cause);
+        ProbabilisticCausalitySolver causalitySolver = ProbabilisticCausalitySolver.create(solvingStrategy);
+        causalitySolver.setQueryBudget(queryBudget);
+        return causalitySolver.solve(this, context, phi, cause, solvingStrategy);
+    }
 
-        // check for all other non-exogenous variables whether their corresponding equation contains the searched var
-        for (Variable v : variables.stream()
-                .filter(v -> !this.exogenousVariables.keySet().contains(v) && !v.equals(variable))
-                .collect(Collectors.toSet())) {
-            Equation eq = equations.stream().filter(e -> e.getVariable().equals(v)).findFirst().orElse(null);
-            /*
-            if eq is null, this would mean that a variable has no definition; this will be captured by another check
-            in the isValid() method. Since the current method is private, we can ignore the case here.
-             */
-            if (eq != null) {
-                if (isVariableInEquation(variable, eq, equations))
-                    return true;
-            }
-        }
 
-        return false;
+    /**
+     * Solves many queries on this causal model in parallel and passes each query and its result to the callback in
+     * the order in which the queries complete, see {@link BatchCausalitySolver#solve(Collection, BiConsumer)}. The
+     * validation, the evaluation of each context and the compiled model are shared across the queries. Use a
+     * {@link BatchCausalitySolver} to configure e.g. the executor or the W search.
+     *
+     * @param queries  the queries
+     * @param callback receives each query and its result on the calling thread
+     * @throws InvalidContextException thrown if the context of a query is invalid
+     * @throws InvalidCauseException   thrown if the cause of a query is invalid
+     * @throws InvalidPhiException     thrown if phi of a query is invalid
+     */
+    public void isCause(Collection<ProbabilisticCausalQuery> queries,
+                        BiConsumer<ProbabilisticCausalQuery, ProbabilisticCausalitySolverResult> callback)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        new BatchCausalitySolver(this).solve(queries, callback);
     }
 
     /**
-     * Converts this causal model into a graph. Needed for evaluation.
+     * Checks whether the given equations and exogenous variables are valid, see
+     * {@link CausalGraph#validate(Set, java.util.Collection)}. In addition, no exogenous variable may be called like
+     * the dummy variable.
      *
-     * @return the causal model as graph
+     * @param equations          the equations
+     * @param exogenousVariables the exogenous variables
+     * @return true if valid
+     * @throws InvalidCausalModelException thrown if invalid; the message names the problem
      */
-    private Graph toGraph() {
-        Graph graph = new SingleGraph(this.name != null ? this.name : "");
-        // create all nodes
-        this.variableEquationMap.values().forEach(e -> graph.addNode(e.getVariable().name()));
-        this.getExogenousVariables().keySet().forEach(e -> graph.addNode(e.name()));
-        // create edges
-        for (Equation equation : this.variableEquationMap.values()) {
-            String equationVariableName = equation.getVariable().name();
-            Formula formula = equation.getFormula();
-            formula.variables().forEach(v -> graph.addEdge(equationVariableName + "-" + v.name(), v.name(),
-                    equationVariableName, true));
+    private boolean isValid(Set<Equation> equations, Map<Variable, Double> exogenousVariables)
+            throws InvalidCausalModelException {
+        if (exogenousVariables.keySet().stream().anyMatch(e -> e.name().equals(DUMMY_VAR_NAME))) {
+            throw new InvalidCausalModelException("No exogenous variable must be called " + DUMMY_VAR_NAME);
         }
-        return graph;
+        CausalGraph.validate(exogenousVariables.keySet(), equations);
+        return true;
     }
 
     /**
@@ -248,8 +265,7 @@ public class ProbabilisticCausalModel {
      * @return true if all the literals are in the Variable part of the equations of this causal model, else false
      */
     private boolean isLiteralsInEquations(Set<? extends Literal> literals) {
-        return this.variableEquationMap.values().stream().map(Equation::getVariable).collect(Collectors.toSet())
-                .containsAll(literals.stream().map(Literal::variable).collect(Collectors.toSet()));
+        return literals.stream().allMatch(l -> this.variableEquationMap.containsKey(l.variable()));
     }
 
     /**
@@ -262,7 +278,7 @@ public class ProbabilisticCausalModel {
      * @throws InvalidPhiException
      * @throws InvalidContextException
      */
-    private void validateCausalityCheck(Set<Literal> context, Formula phi, Set<Literal> cause)
+    void validateCausalityCheck(Set<Literal> context, Formula phi, Set<Literal> cause)
             throws InvalidCauseException, InvalidPhiException, InvalidContextException {
         if (!isContextValid(context))
             throw new InvalidContextException();
@@ -278,29 +294,16 @@ public class ProbabilisticCausalModel {
      * @return an ordered list of equations
      */
     private List<Equation> sortEquations() {
-        FormulaFactory f = this.formulaFactory;
-        // get the causal model as graph
-        Graph graph = this.getGraph();
         /*
          * Following to HP, we can sort variables in an acyclic causal model according to their dependence on other
          * variables. The following applies: "If X < Y, then the value of X may affect the value of Y , but the value
          * of Y cannot affect the value of X"
          * The problem is that we only obtain a partial order if we define < as X is contained in Y (or recursively
-         * in the variables in the equation of Y) if X < Y. Therefore, we use a topological sort.
+         * in the variables in the equation of Y) if X < Y. Therefore, we use a topological sort of the causal graph.
          * */
-        TopologicalSortDFS topologicalSortDFS = new TopologicalSortDFS();
-        topologicalSortDFS.init(graph);
-        topologicalSortDFS.compute();
-        // get sorted nodes
-        List<Node> sortedNodes = topologicalSortDFS.getSortedNodes();
-        // get sorted list of equations
-        List<Equation> equationsSorted = sortedNodes.stream()
-                // filter nodes representing endogenous variables
-                .filter(n -> !this.getExogenousVariables().keySet().contains(f.variable(n.getId())))
-                // get corresponding equation
-                .map(n -> this.getVariableEquationMap().get(f.variable(n.getId())))
+        return this.causalGraph.getEndogenousVariablesSorted().stream()
+                .map(v -> this.getVariableEquationMap().get(v))
                 .collect(Collectors.toList());
-        return equationsSorted;
     }
 
     public String getName() {
@@ -315,21 +318,31 @@ public class ProbabilisticCausalModel {
         return variableEquationMap;
     }
 
-    public Graph getGraph() {
-        return graph;
-    }
-
-    public Graph getGraphReversed() {
-        if (this.graphReversed == null) {
-            this.graphReversed = Util.reverseGraph(this.graph);
-        }
-        return graphReversed;
+    /**
+     * @return the dependency graph of this causal model, which the solvers use for ordering and reachability; see
+     * {@link de.tum.in.i4.hp2sat.causality.GraphStreamExport} to export it to GraphStream
+     */
+    public CausalGraph getCausalGraph() {
+        return causalGraph;
     }
 
     public List<Equation> getEquationsSorted() {
         return equationsSorted;
     }
 
+    /**
+     * Returns the compiled form of the equations of this causal model, which evaluates a complete context without
+     * restricting formulas. It is created on first use, i.e. the equations must not be changed afterwards.
+     *
+     * @return the compiled causal model
+     */
+    public CompiledCausalModel getCompiledModel() {
+        if (this.compiledModel == null) {
+            this.compiledModel = new CompiledCausalModel(this.exogenousVariables.keySet(), this.equationsSorted);
+        }
+        return compiledModel;
+    }
+
     public FormulaFactory getFormulaFactory() {
         return formulaFactory;
     }
@@ -0,0 +1,60 @@
+package de.tuda.aiml.probabilistic;
+
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A single query of a {@link BatchCausalitySolver}, i.e. whether a cause is a cause for phi in a context, see
+ * {@link ProbabilisticCausalModel#isCause(Set, Formula, Set, ProbabilisticSolvingStrategy)}.
+ */
+public class ProbabilisticCausalQuery {
+    private final Set<Literal> context;
+    private final Formula phi;
+    private final Set<Literal> cause;
+    private final ProbabilisticSolvingStrategy solvingStrategy;
+
+    /**
+     * Creates a new query.
+     *
+     * @param context         the context of the causal scenario; defines the values of the exogenous variables
+     * @param phi             the phi
+     * @param cause           the set of literals we want to check for being a cause for phi
+     * @param solvingStrategy the applied solving strategy
+     */
+    public ProbabilisticCausalQuery(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                    ProbabilisticSolvingStrategy solvingStrategy) {
+        this.context = Objects.requireNonNull(context);
+        this.phi = Objects.requireNonNull(phi);
+        this.cause = Objects.requireNonNull(cause);
+        this.solvingStrategy = Objects.requireNonNull(solvingStrategy);
+    }
+
+    public Set<Literal> getContext() {
+        return context;
+    }
+
+    public Formula getPhi() {
+        return phi;
+    }
+
+    public Set<Literal> getCause() {
+        return cause;
+    }
+
+    public ProbabilisticSolvingStrategy getSolvingStrategy() {
+        return solvingStrategy;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbabilisticCausalQuery{" +
+                "context=" + context +
+                ", phi=" + phi +
+                ", cause=" + cause +
+                ", solvingStrategy=" + solvingStrategy +
+                '}';
+    }
+}
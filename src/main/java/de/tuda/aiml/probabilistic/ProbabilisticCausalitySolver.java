@@ -1,15 +1,28 @@
 package de.tuda.aiml.probabilistic;
 
+import de.tum.in.i4.hp2sat.causality.CausalGraph;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
 import de.tum.in.i4.hp2sat.causality.Equation;
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
-import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
+import de.tum.in.i4.hp2sat.util.CandidateLattice;
+import de.tum.in.i4.hp2sat.util.Util;
 import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.*;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -17,6 +30,81 @@ import java.util.stream.Collectors;
  * Abstract class that the solvers for the different definitions extend.
  */
 public abstract class ProbabilisticCausalitySolver {
+    // if false, W only contains variables on a path from the cause to phi, see getMinimalWVariables
+    private boolean exhaustiveWSearch = true;
+    // number of W candidates skipped by the pruned W search since the last reset
+    private long eliminatedWCandidates;
+    // if not null, the W candidates are checked in parallel on this executor, see searchW
+    private Executor wSearchExecutor;
+    private int wSearchParallelism = Runtime.getRuntime().availableProcessors();
+    // copies of the causal model of the current query for the workers of the parallel W search, see getWorkerModel
+    private final List<ProbabilisticCausalModel> workerModels = new ArrayList<>();
+    private ProbabilisticCausalModel workerModelsSource;
+    // settings of the Monte Carlo solving strategies
+    private MonteCarloSettings monteCarloSettings = MonteCarloSettings.DEFAULT;
+    // statistics of the Monte Carlo solving strategies since the last reset; updated by all workers of the W search
+    private final LongAdder monteCarloSamples = new LongAdder();
+    private final LongAdder undecidedComparisons = new LongAdder();
+    // comparisons that justify each witness, keyed by the cause and the witness
+    private final Map<List<Set<Literal>>, List<MonteCarloComparison>> witnessComparisons = new ConcurrentHashMap<>();
+    // if not null, the candidates of getAllCauses are checked in parallel on this executor
+    private Executor causeSearchExecutor;
+    private int causeSearchParallelism = Runtime.getRuntime().availableProcessors();
+    // evaluations of interventions under (partial) contexts of the current query; shared by all workers of the W search
+    private EvaluationCache evaluationCache = new EvaluationCache();
+    // if not null, the contexts consistent with the actual world are looked up here, keyed by the evaluation
+    private Map<Set<Literal>, ConsistentContexts> actualWorldContextsCache;
+    // if not null, bounds the runtime of each query
+    private QueryBudget queryBudget;
+    // notified by the metrics of each query
+    private SolverMetricsListener metricsListener = SolverMetricsListener.NO_OP;
+    // metrics of the current query; updated by all workers of the W search
+    private SolverMetrics metrics = new SolverMetrics();
+
+    /**
+     * Checks a single W candidate for Clause 2.
+     */
+    interface WCandidateCheck {
+        /**
+         * @param w         the W candidate; only valid until the method returns
+         * @param cancelled true once the result is no longer needed, e.g. because a smaller W has been found
+         * @return the W (or the assignment of W) that fulfills Clause 2, else null
+         * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+         */
+        Set<Literal> check(Set<Literal> w, BooleanSupplier cancelled) throws InvalidCausalModelException;
+    }
+
+    /**
+     * Creates the check of the W candidates for a causal model. In the parallel W search, each worker creates its own
+     * check on its own copy of the causal model.
+     */
+    interface WCandidateCheckFactory {
+        WCandidateCheck create(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                               Set<Literal> evaluation) throws InvalidCausalModelException;
+    }
+
+    /**
+     * Creates the solver of the definition that the given solving strategy refers to, e.g. a {@link PCSolver} for
+     * {@link ProbabilisticSolvingStrategy#PC_MC}.
+     *
+     * @param solvingStrategy the solving strategy
+     * @return the solver
+     */
+    static ProbabilisticCausalitySolver create(ProbabilisticSolvingStrategy solvingStrategy) {
+        switch (solvingStrategy) {
+            case PC:
+            case PC_WMC:
+            case PC_MC:
+                return new PCSolver();
+            case PAC:
+            case PAC_WMC:
+            case PAC_MC:
+                return new PACSolver();
+            default:
+                return new PCPrimeSolver();
+        }
+    }
+
     /**
      * Checks Clause 1, Clause 2 and Clause 3 given a causal model, a cause, a context and phi and a solving strategy.
      *
@@ -32,6 +120,26 @@ public abstract class ProbabilisticCausalitySolver {
                                                    Set<Literal> cause, ProbabilisticSolvingStrategy solvingStrategy)
             throws InvalidCausalModelException;
 
+    /**
+     * Same as {@link #solve(ProbabilisticCausalModel, Set, Formula, Set, ProbabilisticSolvingStrategy)}, but with the
+     * evaluation of the equations under the context already computed, e.g. once for several queries on the same
+     * context, see {@link BatchCausalitySolver}.
+     *
+     * @param causalModel     the underlying probabilistic causal model
+     * @param context         the context
+     * @param evaluation      the original evaluation of variables, see
+     *                        {@link #evaluateEquations(ProbabilisticCausalModel, Set)}
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @return for each AC, true if fulfilled, false else
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    abstract ProbabilisticCausalitySolverResult solve(ProbabilisticCausalModel causalModel, Set<Literal> context,
+                                                      Set<Literal> evaluation, Formula phi, Set<Literal> cause,
+                                                      ProbabilisticSolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException;
+
     /**
      * Checks if Clause 1 is fulfilled.
      *
@@ -47,9 +155,11 @@ public abstract class ProbabilisticCausalitySolver {
     }
 
     /**
-     * Returns all causes for a given causal model, a context and phi.
-     * IMPORTANT: This method is not implemented efficiently. In particular for large models, the execution time will
-     * be extremely large as we create the powerset of ALL variables.
+     * Returns all causes for a given causal model, a context and phi. The candidates are enumerated level-wise by size,
+     * see {@link CandidateLattice}: as a superset of a cause does not fulfill Clause 3 (minimality!), only candidates
+     * none of whose subsets is a cause are checked. If an executor is set, the candidates of each level are checked in
+     * parallel by a {@link BatchCausalitySolver}, see {@link #setCauseSearchExecutor(Executor)}, which uses the
+     * settings and the metrics listener of this solver.
      *
      * @param causalModel the underlying causal model
      * @param context     the context
@@ -60,29 +170,45 @@ public abstract class ProbabilisticCausalitySolver {
     Set<ProbabilisticCausalitySolverResult> getAllCauses(ProbabilisticCausalModel causalModel, Set<Literal> context, Formula phi,
                                                          ProbabilisticSolvingStrategy solvingStrategy, FormulaFactory f)
             throws InvalidCausalModelException {
-        // compute all possible combination of primitive events
+        // the candidates are built from the endogenous variables of the evaluation
         Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModel, context);
-        Set<Literal> evaluationWithoutExogenousVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable())).collect(Collectors.toSet());
-        List<Set<Literal>> allPotentialCauses = new UnifiedSet<>(evaluationWithoutExogenousVariables).powerSet()
-                .stream().map(s -> s.toImmutable().castToSet())
-                .sorted(Comparator.comparingInt(Set::size))
+        List<Literal> evaluationWithoutExogenousVariables = evaluation.stream()
+                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable()))
+                .sorted(Comparator.comparing(Literal::name))
                 .collect(Collectors.toList());
-        // remove empty set (index 0 as list is ordered!)
-        allPotentialCauses.remove(0);
+        CandidateLattice<Literal> candidates = new CandidateLattice<>(evaluationWithoutExogenousVariables);
+        BatchCausalitySolver batchSolver = null;
+        if (causeSearchExecutor != null) {
+            batchSolver = new BatchCausalitySolver(causalModel);
+            batchSolver.setExecutor(causeSearchExecutor);
+            batchSolver.setParallelism(causeSearchParallelism);
+            batchSolver.setExhaustiveWSearch(exhaustiveWSearch);
+            batchSolver.setMonteCarloSettings(monteCarloSettings);
+            batchSolver.setMetricsListener(metricsListener);
+            batchSolver.setWSearchExecutor(wSearchExecutor);
+            batchSolver.setWSearchParallelism(wSearchParallelism);
+            batchSolver.setEvaluationCacheSize(getEvaluationCacheSize());
+            batchSolver.setQueryBudget(queryBudget);
+        }
         Set<ProbabilisticCausalitySolverResult> allCauses = new HashSet<>();
-        for (Set<Literal> cause : allPotentialCauses) {
-            /*
-             * if a subset of the currently analyzed potential cause is already a cause, we don't need to check the
-             * current one since it will not fulfill Clause 3 (minimality!) */
-            if (allCauses.stream().noneMatch(c -> cause.containsAll(c.getCause()))) {
-                ProbabilisticCausalitySolverResult causalitySolverResult = solve(causalModel, context, phi, cause, solvingStrategy);
+        for (List<Set<Literal>> level = candidates.nextLevel(); !level.isEmpty(); level = candidates.nextLevel()) {
+            List<ProbabilisticCausalitySolverResult> results = new ArrayList<>(level.size());
+            if (batchSolver == null) {
+                for (Set<Literal> cause : level) {
+                    results.add(solve(causalModel, context, evaluation, phi, cause, solvingStrategy));
+                }
+            } else {
+                batchSolver.solveValidated(level.stream()
+                        .map(cause -> new ProbabilisticCausalQuery(context, phi, cause, solvingStrategy))
+                        .collect(Collectors.toList()), (query, result) -> results.add(result));
+            }
+            for (ProbabilisticCausalitySolverResult causalitySolverResult : results) {
                 if (causalitySolverResult.isAc1() && causalitySolverResult.isAc2() && causalitySolverResult.isAc3()) {
-                    // if all ACs fulfilled, it is a cause
+                    // if all ACs fulfilled, it is a cause; its supersets are not checked
                     allCauses.add(causalitySolverResult);
+                    candidates.mark(causalitySolverResult.getCause());
                 }
             }
-
         }
         return allCauses;
     }
@@ -97,21 +223,51 @@ public abstract class ProbabilisticCausalitySolver {
      * negative means false
      */
     public static Set<Literal> evaluateEquations(ProbabilisticCausalModel causalModel, Set<Literal> context) {
+        return evaluateEquations(causalModel, causalModel.getCompiledModel(), Collections.emptyMap(), context);
+    }
+
+    /**
+     * Evaluates the equations of the given intervention under a given context. Each intervened variable takes its
+     * value in the intervention; all other variables are evaluated by the equations of the underlying model.
+     *
+     * @param intervention the intervention
+     * @param context      the context, i.e. the evaluation of the exogenous variables; positive literal means true,
+     *                     negative means false
+     * @return evaluation for all variables within the causal model (endo and exo); positive literal means true,
+     * negative means false
+     */
+    public static Set<Literal> evaluateEquations(Intervention intervention, Set<Literal> context) {
+        return evaluateEquations(intervention.getCausalModel(), intervention.getCompiledModel(),
+                intervention.getIntervenedVariables(), context);
+    }
+
+    private static Set<Literal> evaluateEquations(ProbabilisticCausalModel causalModel,
+                                                  CompiledCausalModel compiledModel,
+                                                  Map<Variable, Boolean> intervenedVariables, Set<Literal> context) {
+        if (compiledModel.isComplete(context)) {
+            return compiledModel.toLiterals(compiledModel.evaluate(context));
+        }
+        /*
+         * A partial context is evaluated by restricting the formulas: an equation that still depends on an unassigned
+         * variable evaluates to false. */
         // initially, we can only assign the exogenous variables as defined by the context
         Assignment assignment = new Assignment(context);
         for (Equation equation : causalModel.getEquationsSorted()) {
-            /*
-             * For each equation, we "evaluate" the corresponding formula based on the assignment. Since the equations
-             * have been sorted according to their dependence on each other, we know that there will ALWAYS be a
-             * solution that is true or false given that the provided causal model is valid. Once we obtained the
-             * evaluation, we extend the assignment accordingly */
-            Formula evaluation = equation.getFormula().restrict(assignment);
-            // if the causal model is valid then one of the ifs MUST apply!
-            if (evaluation instanceof CTrue) {
-                assignment.addLiteral(equation.getVariable());
+            Boolean intervenedValue = intervenedVariables.get(equation.getVariable());
+            boolean value;
+            if (intervenedValue != null) {
+                value = intervenedValue;
             } else {
-                assignment.addLiteral(equation.getVariable().negate());
+                /*
+                 * For each equation, we "evaluate" the corresponding formula based on the assignment. Since the
+                 * equations have been sorted according to their dependence on each other, we know that there will
+                 * ALWAYS be a solution that is true or false given that the provided causal model is valid. Once we
+                 * obtained the evaluation, we extend the assignment accordingly */
+                Formula evaluation = equation.getFormula().restrict(assignment);
+                // if the causal model is valid then one of the ifs MUST apply!
+                value = evaluation instanceof CTrue;
             }
+            assignment.addLiteral(value ? equation.getVariable() : equation.getVariable().negate());
         }
         /*
          * Finally, we return the literals of the assignment. A positive/negative literal indicates that the
@@ -165,6 +321,572 @@ public abstract class ProbabilisticCausalitySolver {
         return createModifiedCausalModel(causalModel, w, f);
     }
 
+    /**
+     * Computes the contexts that are consistent with the actual world, i.e. in which the original causal model yields
+     * the actual values of all endogenous variables. They depend neither on W nor on Z*, hence PAC and PC' compute
+     * them once per query instead of evaluating the original model again for each W. Only the exogenous ancestors of
+     * the endogenous variables are enumerated; all other exogenous variables are marginalized.
+     *
+     * @param causalModel the causal model
+     * @param evaluation  the original evaluation of variables
+     * @return the consistent contexts
+     */
+    static ConsistentContexts computeActualWorldContexts(ProbabilisticCausalModel causalModel,
+                                                         Set<Literal> evaluation) {
+        Set<Literal> evaluationEndogenousVars = evaluation.stream()
+                .filter(l -> !causalModel.getExogenousVariables().containsKey(l.variable()))
+                .collect(Collectors.toSet());
+        Set<Variable> relevantVariables = new Intervention(causalModel, Collections.emptySet())
+                .getExogenousAncestors(evaluationEndogenousVars.stream().map(Literal::variable)
+                        .collect(Collectors.toSet()));
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        return new ConsistentContexts(new ContextSpace(causalModel, Collections.emptySet(), relevantVariables),
+                compiledModel.compile(evaluationEndogenousVars, causalModel.getFormulaFactory()));
+    }
+
+    /**
+     * Returns the contexts that are consistent with the actual world, see
+     * {@link #computeActualWorldContexts(ProbabilisticCausalModel, Set)}. If a cache has been set, they are computed
+     * only once per evaluation.
+     *
+     * @param causalModel the causal model
+     * @param evaluation  the original evaluation of variables
+     * @return the consistent contexts
+     */
+    ConsistentContexts getActualWorldContexts(ProbabilisticCausalModel causalModel, Set<Literal> evaluation) {
+        if (actualWorldContextsCache == null) {
+            return computeActualWorldContexts(causalModel, evaluation);
+        }
+        return actualWorldContextsCache.computeIfAbsent(evaluation,
+                e -> computeActualWorldContexts(causalModel, e));
+    }
+
+    /**
+     * Sets the cache of the contexts that are consistent with the actual world. As the contexts do not depend on the
+     * formula factory of the model, solvers that work on copies of the same model may share a cache, which then has
+     * to be thread-safe. Literals of different formula factories are equal if their names and phases are.
+     *
+     * @param actualWorldContextsCache the cache, keyed by the evaluation; null to compute the contexts for each query
+     */
+    void setActualWorldContextsCache(Map<Set<Literal>, ConsistentContexts> actualWorldContextsCache) {
+        this.actualWorldContextsCache = actualWorldContextsCache;
+    }
+
+    /**
+     * Returns the literals of the actual evaluation from which the candidates for W are built, i.e. all endogenous
+     * variables except the cause. In the pruned W search, only the variables on a path from the cause to phi are
+     * kept, see {@link #getMinimalWVariables(ProbabilisticCausalModel, Formula, Set, FormulaFactory)}, and the
+     * number of W candidates, i.e. subsets, that are thereby skipped is added to the eliminated W candidates.
+     *
+     * @param causalModel the causal model
+     * @param phi         the phi
+     * @param cause       the cause
+     * @param evaluation  the original evaluation of variables
+     * @param f           a formula factory
+     * @return the literals whose subsets are the candidates for W
+     */
+    Set<Literal> getWVariables(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                               Set<Literal> evaluation, FormulaFactory f) {
+        // get the cause as set of variables
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+
+        /*
+         * remove exogenous variables from evaluation as they are not needed for computing the Ws. Furthermore,
+         * all variables in the cause also must not be in W. */
+        Set<Literal> wVariables = evaluation.stream()
+                .filter(l -> !causalModel.getExogenousVariables().keySet().contains(l.variable()) &&
+                        !(causeVariables.contains(l.variable())))
+                .collect(Collectors.toSet());
+        if (exhaustiveWSearch) {
+            return wVariables;
+        }
+
+        Set<Variable> minimalWVariables = getMinimalWVariables(causalModel, phi, cause, f);
+        Set<Literal> prunedWVariables = wVariables.stream().filter(l -> minimalWVariables.contains(l.variable()))
+                .collect(Collectors.toSet());
+        long eliminated = countEliminatedWCandidates(wVariables.size(), prunedWVariables.size());
+        eliminatedWCandidates = eliminated > Long.MAX_VALUE - eliminatedWCandidates ? Long.MAX_VALUE :
+                eliminatedWCandidates + eliminated;
+        return prunedWVariables;
+    }
+
+    /**
+     * Counts the W candidates that are skipped if the W search is restricted to a subset of the W variables, i.e.
+     * 2^numberOfWVariables - 2^numberOfPrunedWVariables. The count saturates at {@link Long#MAX_VALUE}, which is
+     * reached for 63 or more W variables.
+     *
+     * @param numberOfWVariables       the number of W variables
+     * @param numberOfPrunedWVariables the number of W variables left by the pruning
+     * @return the number of skipped W candidates
+     */
+    static long countEliminatedWCandidates(int numberOfWVariables, int numberOfPrunedWVariables) {
+        if (numberOfWVariables >= Long.SIZE - 1) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << numberOfWVariables) - (1L << numberOfPrunedWVariables);
+    }
+
+    /**
+     * Searches the first subset of the given W variables, in the order of
+     * {@link de.tum.in.i4.hp2sat.util.Util#iteratePowerSet(Set)}, for which the check created by the given factory
+     * finds a witness. A check is cancelled once the budget is exhausted, in which case the search throws a
+     * {@link CancellationException} instead of taking the cancelled check for a failed one.
+     *
+     * If an executor is set, the candidates are checked in parallel. As formula factories are not thread-safe, each
+     * worker checks the candidates on its own copy of the causal model, phi, the cause and the evaluation, which is
+     * created with its own formula factory. The copies of the causal model are created once per query, see
+     * {@link #getWorkerModel(ProbabilisticCausalModel, int)}. The workers claim the candidates in ascending order. Once a witness has
+     * been found, all candidates after it are cancelled, while those before it are still checked. Hence, the parallel
+     * search returns the same witness as the sequential one.
+     *
+     * @param causalModel  the causal model
+     * @param phi          the phi
+     * @param cause        the cause
+     * @param evaluation   the original evaluation of variables
+     * @param wVariables   the literals whose subsets are the candidates for W
+     * @param progress     the progress, to which the W candidates are added; null if the search is part of Clause 3
+     * @param checkFactory creates the check of the candidates
+     * @return the witness of the first W candidate that fulfills the check, else null
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     * @throws CancellationException       thrown if the budget is exhausted
+     * @throws IllegalArgumentException    thrown if there are more than {@link Util#MAX_POWER_SET_ELEMENTS} W variables
+     */
+    Set<Literal> searchW(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
+                         Set<Literal> evaluation, Set<Literal> wVariables, QueryProgress progress,
+                         WCandidateCheckFactory checkFactory)
+            throws InvalidCausalModelException {
+        long numberOfCandidates = Util.countSubsets(wVariables.size());
+        if (progress != null) {
+            progress.addWCandidates(numberOfCandidates);
+        }
+        int numberOfWorkers = (int) Math.min(wSearchParallelism, numberOfCandidates);
+        if (wSearchExecutor == null || numberOfWorkers <= 1) {
+            WCandidateCheck check = checkFactory.create(causalModel, phi, cause, evaluation);
+            for (Set<Literal> w : new Util<Literal>().iteratePowerSet(wVariables)) {
+                metrics.wCandidateTried();
+                Set<Literal> witness = check.check(w, this::isBudgetExhausted);
+                if (witness != null) {
+                    return witness;
+                }
+                // the check may have failed because it has been cancelled
+                checkBudget();
+                if (progress != null) {
+                    progress.exploreWCandidate();
+                }
+            }
+            return null;
+        }
+
+        // all workers need to enumerate the candidates in the same order
+        List<Literal> orderedWVariables = new ArrayList<>(wVariables);
+        AtomicLong nextIndex = new AtomicLong();
+        // index of the first candidate for which a witness has been found so far
+        AtomicLong firstWitnessIndex = new AtomicLong(Long.MAX_VALUE);
+        Map<Long, Set<Literal>> witnesses = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < numberOfWorkers; i++) {
+            // the copies are created by this thread, as it owns the formula factory of the causal model
+            ProbabilisticCausalModel workerModel = getWorkerModel(causalModel, i);
+            FormulaFactory f = workerModel.getFormulaFactory();
+            Formula workerPhi = f.importFormula(phi);
+            Set<Literal> workerCause = importLiterals(cause, f);
+            Set<Literal> workerEvaluation = importLiterals(evaluation, f);
+            Set<Literal> workerWVariables = importLiterals(orderedWVariables, f);
+            workers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    WCandidateCheck check = checkFactory.create(workerModel, workerPhi, workerCause,
+                            workerEvaluation);
+                    Iterator<Set<Literal>> candidates = new Util<Literal>().iteratePowerSet(workerWVariables)
+                            .iterator();
+                    // index of the candidate the iterator returns next
+                    long position = 0;
+                    long index;
+                    while ((index = nextIndex.getAndIncrement()) < numberOfCandidates &&
+                            index < firstWitnessIndex.get()) {
+                        for (; position < index; position++) {
+                            candidates.next();
+                        }
+                        Set<Literal> w = candidates.next();
+                        position++;
+                        long candidateIndex = index;
+                        metrics.wCandidateTried();
+                        Set<Literal> witness = check.check(w, () -> firstWitnessIndex.get() < candidateIndex ||
+                                isBudgetExhausted());
+                        if (witness != null) {
+                            witnesses.put(index, witness);
+                            firstWitnessIndex.accumulateAndGet(index, Math::min);
+                        } else {
+                            // the check may have failed because it has been cancelled
+                            checkBudget();
+                            // a check cancelled by the witness of a smaller candidate has not been completed
+                            if (progress != null && firstWitnessIndex.get() >= candidateIndex) {
+                                progress.exploreWCandidate();
+                            }
+                        }
+                    }
+                } catch (InvalidCausalModelException e) {
+                    // stop all other workers
+                    firstWitnessIndex.set(-1);
+                    throw new CompletionException(e);
+                }
+            }, wSearchExecutor));
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidCausalModelException) {
+                throw (InvalidCausalModelException) e.getCause();
+            } else if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw e;
+        }
+
+        Set<Literal> witness = witnesses.get(firstWitnessIndex.get());
+        return witness != null ? importLiterals(witness, causalModel.getFormulaFactory()) : null;
+    }
+
+    /**
+     * Returns the copy of the given causal model on which the given worker of the parallel W search checks its
+     * candidates. The copies are kept until the next reset or until the W search runs on another causal model, as
+     * Clause 3 searches W once for each subset of the cause. They must only be used by one worker at a time.
+     *
+     * @param causalModel the causal model
+     * @param worker      the index of the worker
+     * @return the copy of the worker, with its own formula factory
+     * @throws InvalidCausalModelException thrown if the copy is invalid, which cannot happen for valid models
+     */
+    private ProbabilisticCausalModel getWorkerModel(ProbabilisticCausalModel causalModel, int worker)
+            throws InvalidCausalModelException {
+        if (workerModelsSource != causalModel) {
+            workerModels.clear();
+            workerModelsSource = causalModel;
+        }
+        while (workerModels.size() <= worker) {
+            workerModels.add(causalModel.copy(new FormulaFactory()));
+        }
+        return workerModels.get(worker);
+    }
+
+    /**
+     * Drops the copies of the causal model of the parallel W search, e.g. at the beginning of a new query, as the
+     * equations of the model may have changed since.
+     */
+    void resetWorkerModels() {
+        workerModels.clear();
+        workerModelsSource = null;
+    }
+
+    /**
+     * Creates the given literals in the given formula factory, keeping their order.
+     *
+     * @param literals the literals
+     * @param f        the formula factory
+     * @return the literals of the formula factory
+     */
+    private static Set<Literal> importLiterals(Collection<Literal> literals, FormulaFactory f) {
+        return literals.stream().map(l -> f.literal(l.name(), l.phase()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Sets the executor on which the W candidates are checked in parallel, e.g. {@link
+     * java.util.concurrent.ForkJoinPool#commonPool()}. If null (default), the W candidates are checked sequentially
+     * by the calling thread. See {@link #searchW(ProbabilisticCausalModel, Formula, Set, Set, Set,
+     * WCandidateCheckFactory)}.
+     *
+     * @param wSearchExecutor the executor, or null for the sequential W search
+     */
+    public void setWSearchExecutor(Executor wSearchExecutor) {
+        this.wSearchExecutor = wSearchExecutor;
+    }
+
+    public Executor getWSearchExecutor() {
+        return wSearchExecutor;
+    }
+
+    /**
+     * Sets the number of workers of the parallel W search, which is the number of available processors by default.
+     *
+     * @param wSearchParallelism the number of workers
+     * @throws IllegalArgumentException if the number of workers is not positive
+     */
+    public void setWSearchParallelism(int wSearchParallelism) {
+        if (wSearchParallelism < 1) {
+            throw new IllegalArgumentException("The W search needs at least one worker");
+        }
+        this.wSearchParallelism = wSearchParallelism;
+    }
+
+    public int getWSearchParallelism() {
+        return wSearchParallelism;
+    }
+
+    /**
+     * Sets the executor on which the candidates of each level of {@link #getAllCauses(ProbabilisticCausalModel, Set,
+     * Formula, ProbabilisticSolvingStrategy, FormulaFactory)} are checked in parallel, e.g. {@link
+     * java.util.concurrent.ForkJoinPool#commonPool()}. If null (default), the candidates are checked sequentially
+     * by the calling thread.
+     *
+     * @param causeSearchExecutor the executor, or null
+     */
+    public void setCauseSearchExecutor(Executor causeSearchExecutor) {
+        this.causeSearchExecutor = causeSearchExecutor;
+    }
+
+    public Executor getCauseSearchExecutor() {
+        return causeSearchExecutor;
+    }
+
+    /**
+     * Sets the maximal number of workers that check candidates in parallel, each on its own copy of the causal model.
+     * Default is the number of available processors.
+     *
+     * @param causeSearchParallelism the maximal number of workers
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public void setCauseSearchParallelism(int causeSearchParallelism) {
+        if (causeSearchParallelism < 1) {
+            throw new IllegalArgumentException("The cause search needs at least one worker");
+        }
+        this.causeSearchParallelism = causeSearchParallelism;
+    }
+
+    public int getCauseSearchParallelism() {
+        return causeSearchParallelism;
+    }
+
+    /**
+     * Sets the budget that bounds the runtime of each query. Once it is exhausted,
+     * {@link #solve(ProbabilisticCausalModel, Set, Formula, Set, ProbabilisticSolvingStrategy)} returns a partial
+     * result, whose {@link ProbabilisticCausalitySolverResult#getProgress()} tells which clauses have been decided.
+     * The budget also bounds the candidates of {@link #getAllCauses(ProbabilisticCausalModel, Set, Formula,
+     * ProbabilisticSolvingStrategy, FormulaFactory)}, including those checked in parallel.
+     *
+     * @param queryBudget the budget; null (default) for no bound
+     */
+    public void setQueryBudget(QueryBudget queryBudget) {
+        this.queryBudget = queryBudget;
+    }
+
+    public QueryBudget getQueryBudget() {
+        return queryBudget;
+    }
+
+    /**
+     * @return true if the budget is exhausted; false if there is none
+     */
+    boolean isBudgetExhausted() {
+        return queryBudget != null && queryBudget.isExhausted();
+    }
+
+    /**
+     * Called by the solvers in each of their loops, e.g. over the assignments of W, the sets Z* or the blocks of
+     * contexts.
+     *
+     * @throws CancellationException thrown if the budget is exhausted
+     */
+    void checkBudget() {
+        if (queryBudget != null) {
+            queryBudget.checkpoint();
+        }
+    }
+
+    /**
+     * Called by the solvers if a query has been cancelled. If the budget is exhausted, the solver returns a partial
+     * result instead of rethrowing the exception.
+     *
+     * @param e the cancellation
+     * @throws CancellationException the given cancellation, if it has not been caused by the budget
+     */
+    void handleCancellation(CancellationException e) {
+        if (!isBudgetExhausted()) {
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the listener that is notified at the hot paths of each query, e.g. to profile it. Independent of the
+     * listener, the events of a query are counted by the {@link SolverMetrics} of its result, see
+     * {@link ProbabilisticCausalitySolverResult#getMetrics()}.
+     *
+     * @param metricsListener the listener; {@link SolverMetricsListener#NO_OP} (default) to ignore all events
+     */
+    public void setMetricsListener(SolverMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+    }
+
+    public SolverMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Starts new metrics that forward to the listener, e.g. at the beginning of a new query.
+     */
+    void resetMetrics() {
+        metrics = new SolverMetrics(metricsListener);
+    }
+
+    /**
+     * @return the metrics of the current query
+     */
+    SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enables or disables the exhaustive W search. In the exhaustive W search (default), W may contain any endogenous
+     * variable except the cause. Otherwise, W only contains variables that are reachable from the cause and from which
+     * phi is reachable. Other variables are not affected by setting the cause. However, as fixing a variable also
+     * fixes its value across all contexts, the pruned search may miss a W that the exhaustive search finds. The
+     * exhaustive search is therefore kept for validation.
+     *
+     * @param exhaustiveWSearch true for the exhaustive W search, false for the pruned one
+     */
+    public void setExhaustiveWSearch(boolean exhaustiveWSearch) {
+        this.exhaustiveWSearch = exhaustiveWSearch;
+    }
+
+    public boolean isExhaustiveWSearch() {
+        return exhaustiveWSearch;
+    }
+
+    /**
+     * @return the number of W candidates, i.e. subsets of variables, that have been skipped by the pruned W search
+     * since the last reset; saturates at {@link Long#MAX_VALUE}
+     */
+    public long getEliminatedWCandidates() {
+        return eliminatedWCandidates;
+    }
+
+    /**
+     * Resets the number of eliminated W candidates, e.g. at the beginning of a new query.
+     */
+    void resetEliminatedWCandidates() {
+        eliminatedWCandidates = 0;
+    }
+
+    /**
+     * Sets the settings of the Monte Carlo solving strategies, e.g. {@link ProbabilisticSolvingStrategy#PC_MC}.
+     *
+     * @param monteCarloSettings the settings
+     */
+    public void setMonteCarloSettings(MonteCarloSettings monteCarloSettings) {
+        this.monteCarloSettings = Objects.requireNonNull(monteCarloSettings);
+    }
+
+    public MonteCarloSettings getMonteCarloSettings() {
+        return monteCarloSettings;
+    }
+
+    /**
+     * Resets the statistics of the Monte Carlo solving strategies, e.g. at the beginning of a new query.
+     */
+    void resetMonteCarloStatistics() {
+        monteCarloSamples.reset();
+        undecidedComparisons.reset();
+        witnessComparisons.clear();
+    }
+
+    /**
+     * Adds the statistics of the Monte Carlo solving strategies since the last reset to a result, in particular the
+     * comparisons that justify its W.
+     *
+     * @param result the result
+     */
+    void addMonteCarloStatistics(ProbabilisticCausalitySolverResult result) {
+        List<MonteCarloComparison> comparisons = result.getW() != null ?
+                witnessComparisons.get(Arrays.asList(result.getCause(), result.getW())) : null;
+        result.setMonteCarloStatistics(comparisons != null ? comparisons : Collections.emptyList(),
+                monteCarloSamples.sum(), undecidedComparisons.sum());
+    }
+
+    /**
+     * Sets the maximal number of evaluations that are cached per query, see {@link EvaluationCache}. If the cache is
+     * full, the least recently used evaluation is evicted.
+     *
+     * @param evaluationCacheSize the maximal number of cached evaluations; 0 disables the cache
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public void setEvaluationCacheSize(int evaluationCacheSize) {
+        this.evaluationCache = new EvaluationCache(evaluationCacheSize);
+    }
+
+    public int getEvaluationCacheSize() {
+        return evaluationCache.getMaximumSize();
+    }
+
+    EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * Clears the evaluation cache, e.g. at the beginning of a new query. Evaluations are only valid for the causal
+     * model of the query.
+     */
+    void resetEvaluationCache() {
+        evaluationCache.clear();
+    }
+
+    /**
+     * Adds the hits and misses of the evaluation cache since the last reset to a result.
+     *
+     * @param result the result
+     */
+    void addEvaluationCacheStatistics(ProbabilisticCausalitySolverResult result) {
+        result.setEvaluationCacheStatistics(evaluationCache.getHits(), evaluationCache.getMisses());
+    }
+
+    /**
+     * Decides whether the left probability is greater than the right one by sampling, see
+     * {@link MonteCarloEstimator#compare(MonteCarloSettings, MonteCarloEstimate, MonteCarloEstimate)}, and adds the
+     * comparison to the statistics.
+     *
+     * @param left  the left probability
+     * @param right the right probability
+     * @return the comparison
+     */
+    MonteCarloComparison compare(MonteCarloEstimate left, MonteCarloEstimate right) {
+        // estimates may be shared by several comparisons; only count the samples drawn for this one
+        long previousSamples = left.samples + right.samples;
+        MonteCarloComparison comparison = MonteCarloEstimator.compare(monteCarloSettings, left, right);
+        monteCarloSamples.add(comparison.getSamples() - previousSamples);
+        if (!comparison.isDecided()) {
+            undecidedComparisons.increment();
+        }
+        return comparison;
+    }
+
+    /**
+     * Records the comparisons that justify a witness of the Monte Carlo solving strategies.
+     *
+     * @param cause       the cause
+     * @param witness     the witness, i.e. W or the assignment of W
+     * @param comparisons the comparisons
+     */
+    void addWitnessComparisons(Set<Literal> cause, Set<Literal> witness, List<MonteCarloComparison> comparisons) {
+        witnessComparisons.put(Arrays.asList(cause, witness), comparisons);
+    }
+
+    /**
+     * Creates the source of randomness of a single estimate. It only depends on the seed of the settings, the role of
+     * the estimate and the given literals, but not on the order in which the estimates are created. Hence, the
+     * results are reproducible, also in the parallel W search.
+     *
+     * @param role     the role of the estimate, e.g. "PC2a"
+     * @param literals the literals that identify the estimate, e.g. the cause and the assignment of W
+     * @return the source of randomness
+     */
+    @SafeVarargs
+    final SplittableRandom newRandom(String role, Set<Literal>... literals) {
+        StringBuilder key = new StringBuilder(role);
+        for (Set<Literal> set : literals) {
+            key.append('|');
+            set.stream().map(Literal::toString).sorted().forEach(l -> key.append(l).append(','));
+        }
+        return new SplittableRandom(monteCarloSettings.getSeed() * 0x9E3779B97F4A7C15L + key.toString().hashCode());
+    }
+
     /**
      * Returns only those variables of a causal model that need to be in set W.
      *
@@ -177,14 +899,13 @@ public abstract class ProbabilisticCausalitySolver {
     static Set<Variable> getMinimalWVariables(ProbabilisticCausalModel causalModel, Formula phi, Set<Literal> cause,
                                               FormulaFactory f) {
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
-        Graph graph = causalModel.getGraph();
+        CausalGraph graph = causalModel.getCausalGraph();
         // get set of reachable variables by X
-        Set<Variable> reachableVariablesByCause = getReachableVariables(graph, cause, f);
+        Set<Variable> reachableVariablesByCause = getReachableVariables(graph, cause, false);
         reachableVariablesByCause = reachableVariablesByCause.stream()
                 .filter(v -> !causeVariables.contains(v)).collect(Collectors.toSet());
-        Graph graphReversed = causalModel.getGraphReversed();
-        // get set of variables that affect phi -> use reversed graph
-        Set<Variable> reachableVariablesByPhi = getReachableVariables(graphReversed, phi.literals(), f);
+        // get set of variables that affect phi -> follow the edges backwards
+        Set<Variable> reachableVariablesByPhi = getReachableVariables(graph, phi.literals(), true);
 
         // the idea is to only include those variables into W that can be affected by the cause and that affect phi
         reachableVariablesByCause.retainAll(reachableVariablesByPhi);
@@ -196,22 +917,13 @@ public abstract class ProbabilisticCausalitySolver {
      *
      * @param graph    the graph
      * @param literals the literals
-     * @param f        a formula factory
-     * @return a set of variables reachable from the passed literals
-     */
-    static Set<Variable> getReachableVariables(Graph graph, Set<Literal> literals, FormulaFactory f) {
-        Set<Variable> reachableVariables = new HashSet<>();
-        for (Literal literal : literals) {
-            // get the corresponding node in the graph
-            Node node = graph.getNode(literal.name());
-            Iterator<Node> iterator = node.getDepthFirstIterator(true);
-            // iterate through all reachable nodes
-            while (iterator.hasNext()) {
-                Node reachableNode = iterator.next();
-                reachableVariables.add(f.variable(reachableNode.getId()));
-            }
-        }
-        return reachableVariables;
+     * @param reversed if true, the edges are followed backwards, i.e. the variables that affect the literals are
+     *                 returned
+     * @return a set of variables reachable from the passed literals, including their own variables
+     */
+    static Set<Variable> getReachableVariables(CausalGraph graph, Set<? extends Literal> literals, boolean reversed) {
+        Set<Variable> variables = literals.stream().map(Literal::variable).collect(Collectors.toSet());
+        return reversed ? graph.getAncestors(variables) : graph.getDescendants(variables);
     }
 
     /**
@@ -1,8 +1,12 @@
 package de.tuda.aiml.probabilistic;
 
+import de.tum.in.i4.hp2sat.causality.QueryProgress;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
 import org.logicng.formulas.Literal;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -17,6 +21,19 @@ public class ProbabilisticCausalitySolverResult {
     private boolean pc3;
     private Set<Literal> cause;
     private Set<Literal> w;
+    // number of W candidates skipped by the pruned W search; not part of the result itself
+    private long eliminatedWCandidates;
+    // statistics of the Monte Carlo solving strategies; not part of the result itself
+    private List<MonteCarloComparison> monteCarloComparisons = Collections.emptyList();
+    private long monteCarloSamples;
+    private long undecidedComparisons;
+    // statistics of the evaluation cache; not part of the result itself
+    private long evaluationCacheHits;
+    private long evaluationCacheMisses;
+    // progress of the query; not part of the result itself
+    private QueryProgress progress;
+    // metrics of the query; not part of the result itself
+    private SolverMetrics metrics;
 
     public ProbabilisticCausalitySolverResult(boolean pc1, boolean pc2, boolean pc3, Set<Literal> cause, Set<Literal> w) {
         this.pc1 = pc1;
@@ -26,6 +43,27 @@ public class ProbabilisticCausalitySolverResult {
         this.w = w;
     }
 
+    /**
+     * Creates a copy of this result, including the statistics, that refers to the given cause and W, e.g. to the same
+     * literals in another formula factory.
+     *
+     * @param cause the cause of the copy
+     * @param w     the W of the copy
+     * @return the copy
+     */
+    ProbabilisticCausalitySolverResult copy(Set<Literal> cause, Set<Literal> w) {
+        ProbabilisticCausalitySolverResult copy = new ProbabilisticCausalitySolverResult(pc1, pc2, pc3, cause, w);
+        copy.eliminatedWCandidates = eliminatedWCandidates;
+        copy.monteCarloComparisons = monteCarloComparisons;
+        copy.monteCarloSamples = monteCarloSamples;
+        copy.undecidedComparisons = undecidedComparisons;
+        copy.evaluationCacheHits = evaluationCacheHits;
+        copy.evaluationCacheMisses = evaluationCacheMisses;
+        copy.progress = progress;
+        copy.metrics = metrics;
+        return copy;
+    }
+
     /**
      * Compute the degree of responsibility. IMPORTANT: Does not ensure minimality of cause X and W!
      *
@@ -93,4 +131,97 @@ public class ProbabilisticCausalitySolverResult {
     public Set<Literal> getW() {
         return w;
     }
+
+    /**
+     * @return the number of W candidates, i.e. subsets of variables, that have been skipped by the pruned W search;
+     * 0 for the exhaustive W search; saturates at {@link Long#MAX_VALUE}
+     */
+    public long getEliminatedWCandidates() {
+        return eliminatedWCandidates;
+    }
+
+    void setEliminatedWCandidates(long eliminatedWCandidates) {
+        this.eliminatedWCandidates = eliminatedWCandidates;
+    }
+
+    /**
+     * @return the comparisons of conditional probabilities that justify W if a Monte Carlo solving strategy has been
+     * applied, e.g. for PC2 (a) and (b); empty otherwise
+     */
+    public List<MonteCarloComparison> getMonteCarloComparisons() {
+        return monteCarloComparisons;
+    }
+
+    /**
+     * @return the number of contexts sampled by the Monte Carlo solving strategies for the whole query, including
+     * all rejected W candidates and Clause 3
+     */
+    public long getMonteCarloSamples() {
+        return monteCarloSamples;
+    }
+
+    /**
+     * @return the number of comparisons of the whole query that have not been decided at the configured confidence,
+     * but by the point estimates, see {@link MonteCarloComparison#isDecided()}
+     */
+    public long getUndecidedComparisons() {
+        return undecidedComparisons;
+    }
+
+    void setMonteCarloStatistics(List<MonteCarloComparison> monteCarloComparisons, long monteCarloSamples,
+                                 long undecidedComparisons) {
+        this.monteCarloComparisons = Collections.unmodifiableList(monteCarloComparisons);
+        this.monteCarloSamples = monteCarloSamples;
+        this.undecidedComparisons = undecidedComparisons;
+    }
+
+    /**
+     * @return the number of evaluations of the whole query that have been looked up in the evaluation cache, see
+     * {@link EvaluationCache}
+     */
+    public long getEvaluationCacheHits() {
+        return evaluationCacheHits;
+    }
+
+    /**
+     * @return the number of evaluations of the whole query that have been computed because they were not cached
+     */
+    public long getEvaluationCacheMisses() {
+        return evaluationCacheMisses;
+    }
+
+    void setEvaluationCacheStatistics(long evaluationCacheHits, long evaluationCacheMisses) {
+        this.evaluationCacheHits = evaluationCacheHits;
+        this.evaluationCacheMisses = evaluationCacheMisses;
+    }
+
+    /**
+     * @return the progress of the query, which tells which clauses have been decided; null if unknown
+     */
+    public QueryProgress getProgress() {
+        return progress;
+    }
+
+    void setProgress(QueryProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * @return the metrics of the query, e.g. the number of W candidates and contexts; null if unknown
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return false if the query has been stopped by its {@link de.tum.in.i4.hp2sat.causality.QueryBudget} before all
+     * clauses have been decided
+     */
+    public boolean isComplete() {
+        return progress == null || progress.isComplete();
+    }
 }
@@ -1,5 +1,9 @@
 package de.tuda.aiml.probabilistic;
 
 public enum ProbabilisticSolvingStrategy {
-    PC, PAC, PCPrime
+    PC, PAC, PCPrime,
+    // same definitions, but the probabilities are computed by weighted model counting, see WeightedModelCounter
+    PC_WMC, PAC_WMC, PCPrime_WMC,
+    // same definitions, but the probabilities are estimated by sampling contexts, see MonteCarloSettings
+    PC_MC, PAC_MC, PCPrime_MC
 }
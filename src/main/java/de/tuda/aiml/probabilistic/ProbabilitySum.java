@@ -0,0 +1,32 @@
+package de.tuda.aiml.probabilistic;
+
+/**
+ * Accumulates the probabilities of (many) contexts. The sum is compensated (Neumaier), so the rounding errors of the
+ * individual additions do not pile up and the result does not depend on the order in which contexts are enumerated.
+ */
+public class ProbabilitySum {
+    private double sum = 0.0;
+    private double compensation = 0.0;
+
+    /**
+     * Adds the given probability to this sum.
+     *
+     * @param probability the probability to add
+     */
+    public void add(double probability) {
+        double t = sum + probability;
+        if (Math.abs(sum) >= Math.abs(probability)) {
+            compensation += (sum - t) + probability;
+        } else {
+            compensation += (probability - t) + sum;
+        }
+        sum = t;
+    }
+
+    /**
+     * @return the current value of this sum
+     */
+    public double getValue() {
+        return sum + compensation;
+    }
+}
@@ -0,0 +1,90 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import org.logicng.formulas.Variable;
+
+import java.util.Collection;
+import java.util.SplittableRandom;
+
+/**
+ * Estimates P(success | condition) in a (modified) causal model by drawing contexts from the distribution of the
+ * exogenous variables. As in {@link BitSlicedEvaluator}, 64 * width contexts are evaluated at once: each bit of the
+ * words of an exogenous variable is drawn independently with the probability of the variable. Only the given
+ * variables are drawn; all other exogenous variables are false, hence they must not influence the condition and the
+ * success.
+ *
+ * Optionally, the condition is restricted to the contexts that are consistent with the actual world, which is
+ * evaluated on the original model for the same contexts.
+ */
+class SampledContextEstimate extends MonteCarloEstimate {
+    private final SplittableRandom random;
+    private final int[] ids;
+    private final double[] probabilities;
+    private final CompiledCausalModel compiledModel;
+    private final CompiledFormula condition;
+    private final CompiledFormula success;
+    private final CompiledCausalModel originalModel;
+    private final CompiledFormula actualWorld;
+    private final long[] values;
+    private final long[] originalValues;
+
+    /**
+     * @param causalModel   the underlying causal model
+     * @param variables     the exogenous variables to draw
+     * @param random        the source of randomness
+     * @param compiledModel the compiled model in which condition and success are evaluated
+     * @param condition     the condition
+     * @param success       the success; only counted if the condition holds
+     * @param actualWorld   the actual world, which needs to hold in the original model for the condition to hold;
+     *                      null if the condition is not restricted
+     */
+    SampledContextEstimate(ProbabilisticCausalModel causalModel, Collection<Variable> variables,
+                           SplittableRandom random, CompiledCausalModel compiledModel, CompiledFormula condition,
+                           CompiledFormula success, CompiledFormula actualWorld) {
+        this.random = random;
+        this.originalModel = causalModel.getCompiledModel();
+        this.ids = new int[variables.size()];
+        this.probabilities = new double[variables.size()];
+        int i = 0;
+        for (Variable variable : variables) {
+            ids[i] = originalModel.getId(variable);
+            probabilities[i] = causalModel.getExogenousVariables().get(variable);
+            i++;
+        }
+        this.compiledModel = compiledModel;
+        this.condition = condition;
+        this.success = success;
+        this.actualWorld = actualWorld;
+        this.values = originalModel.newAssignment(BitSlicedEvaluator.DEFAULT_WIDTH);
+        this.originalValues = actualWorld != null ? originalModel.newAssignment(BitSlicedEvaluator.DEFAULT_WIDTH) :
+                null;
+    }
+
+    @Override
+    void draw(long n) {
+        int width = BitSlicedEvaluator.DEFAULT_WIDTH;
+        for (long drawn = 0; drawn < n; drawn += 64L * width) {
+            for (int i = 0; i < ids.length; i++) {
+                for (int word = 0; word < width; word++) {
+                    values[ids[i] * width + word] = BitSlicedEvaluator.nextRandomLanes(random, probabilities[i]);
+                }
+            }
+            compiledModel.evaluate(values, width);
+            if (originalValues != null) {
+                // the same contexts in the original model
+                System.arraycopy(values, 0, originalValues, 0, values.length);
+                originalModel.evaluate(originalValues, width);
+            }
+            for (int word = 0; word < width; word++) {
+                long conditionHolds = condition.evaluate(values, width, word);
+                if (originalValues != null) {
+                    conditionHolds &= actualWorld.evaluate(originalValues, width, word);
+                }
+                trials += Long.bitCount(conditionHolds);
+                successes += Long.bitCount(success.evaluate(values, width, word) & conditionHolds);
+            }
+            samples += 64L * width;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tum.in.i4.hp2sat.causality.Equation;
+import org.logicng.formulas.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the probability of events over the contexts of a probabilistic causal model by weighted model counting.
+ * Instead of enumerating all 2^n contexts, the value of each endogenous variable (under an intervention) is compiled
+ * into a reduced ordered binary decision diagram (OBDD) over the exogenous variables, which are sorted by name. As the
+ * exogenous variables are independent, the probability of an event is then computed in a single bottom-up pass that is
+ * linear in the size of its OBDD: a node of variable u has the weight P(u) * weight(high) + (1 - P(u)) * weight(low).
+ *
+ * All OBDDs of a counter share one node store, i.e. nodes are hash-consed and the results of the operations are
+ * cached. Hence, when compiling further interventions of the same model, all equations whose inputs are not affected
+ * by the intervention are looked up instead of being rebuilt.
+ *
+ * A counter is not thread-safe.
+ */
+public class WeightedModelCounter {
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+
+    private final ProbabilisticCausalModel causalModel;
+    private final Variable[] variables;
+    private final double[] probabilities;
+    private final Map<Variable, Integer> levels;
+
+    // level, low and high successor of each node; the terminals are below all variables
+    private int[] nodeLevels = new int[1024];
+    private int[] lows = new int[1024];
+    private int[] highs = new int[1024];
+    private int numberOfNodes;
+    private final List<Map<Long, Integer>> uniqueTables;
+    private final Map<Long, Integer> andCache = new HashMap<>();
+    private final Map<Long, Integer> orCache = new HashMap<>();
+    private final Map<Integer, Integer> notCache = new HashMap<>();
+
+    // the values of the variables of the most recently compiled intervention
+    private Intervention intervention;
+    private Map<Variable, Integer> values;
+
+    /**
+     * Creates a counter over all contexts of the given probabilistic causal model.
+     *
+     * @param causalModel the probabilistic causal model
+     */
+    public WeightedModelCounter(ProbabilisticCausalModel causalModel) {
+        this.causalModel = causalModel;
+        Map<Variable, Double> exogenousVariables = causalModel.getExogenousVariables();
+        List<Variable> sortedVariables = exogenousVariables.keySet().stream()
+                .sorted(Comparator.comparing(Variable::name))
+                .collect(Collectors.toList());
+        this.variables = sortedVariables.toArray(new Variable[0]);
+        this.probabilities = new double[variables.length];
+        this.levels = new HashMap<>();
+        this.uniqueTables = new ArrayList<>();
+        for (int i = 0; i < variables.length; i++) {
+            probabilities[i] = exogenousVariables.get(variables[i]);
+            levels.put(variables[i], i);
+            uniqueTables.add(new HashMap<>());
+        }
+        // terminals
+        addNode(variables.length, FALSE, FALSE);
+        addNode(variables.length, TRUE, TRUE);
+    }
+
+    /**
+     * Compiles a formula over the variables of the underlying model, e.g. phi, under the given intervention. The
+     * endogenous variables of the formula take their values in the intervened model.
+     *
+     * @param intervention the intervention; needs to refer to the model of this counter
+     * @param formula      the formula
+     * @return the OBDD of all contexts in which the formula holds
+     * @throws IllegalArgumentException if the formula contains pseudo-Boolean constraints or variables that are not part
+     *                                  of the model
+     */
+    public int compile(Intervention intervention, Formula formula) {
+        if (intervention.getCausalModel() != causalModel) {
+            throw new IllegalArgumentException("The intervention does not refer to the model of this counter");
+        }
+        if (this.intervention != intervention) {
+            this.values = compileModel(intervention);
+            this.intervention = intervention;
+        }
+        return build(formula, values);
+    }
+
+    /**
+     * Compiles the conjunction of the given literals under the given intervention, e.g. of a cause.
+     *
+     * @param intervention the intervention; needs to refer to the model of this counter
+     * @param literals     the literals
+     * @return the OBDD of all contexts in which all literals hold
+     */
+    public int compile(Intervention intervention, Collection<? extends Literal> literals) {
+        return compile(intervention, causalModel.getFormulaFactory().and(literals));
+    }
+
+    /**
+     * Computes the OBDD of each variable under the given intervention.
+     */
+    private Map<Variable, Integer> compileModel(Intervention intervention) {
+        Map<Variable, Integer> values = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            values.put(variables[i], makeNode(i, FALSE, TRUE));
+        }
+        Map<Variable, Boolean> intervenedVariables = intervention.getIntervenedVariables();
+        for (Equation equation : causalModel.getEquationsSorted()) {
+            Boolean intervenedValue = intervenedVariables.get(equation.getVariable());
+            if (intervenedValue != null) {
+                values.put(equation.getVariable(), intervenedValue ? TRUE : FALSE);
+            } else {
+                values.put(equation.getVariable(), build(equation.getFormula(), values));
+            }
+        }
+        return values;
+    }
+
+    private int build(Formula formula, Map<Variable, Integer> values) {
+        switch (formula.type()) {
+            case TRUE:
+                return TRUE;
+            case FALSE:
+                return FALSE;
+            case LITERAL:
+                Literal literal = (Literal) formula;
+                Integer value = values.get(literal.variable());
+                if (value == null) {
+                    throw new IllegalArgumentException("Variable " + literal.variable() + " is not part of the model");
+                }
+                return literal.phase() ? value : not(value);
+            case NOT:
+                return not(build(((Not) formula).operand(), values));
+            case IMPL:
+                Implication implication = (Implication) formula;
+                return or(not(build(implication.left(), values)), build(implication.right(), values));
+            case EQUIV:
+                Equivalence equivalence = (Equivalence) formula;
+                int left = build(equivalence.left(), values);
+                int right = build(equivalence.right(), values);
+                return or(and(left, right), and(not(left), not(right)));
+            case AND:
+            case OR:
+                boolean isAnd = formula.type() == FType.AND;
+                int result = isAnd ? TRUE : FALSE;
+                for (Formula operand : formula) {
+                    int node = build(operand, values);
+                    result = isAnd ? and(result, node) : or(result, node);
+                }
+                return result;
+            default:
+                throw new IllegalArgumentException("Cannot compile formula of type " + formula.type());
+        }
+    }
+
+    /**
+     * @param a an OBDD
+     * @param b an OBDD
+     * @return the OBDD of the conjunction
+     */
+    public int and(int a, int b) {
+        if (a == FALSE || b == FALSE) {
+            return FALSE;
+        }
+        if (a == TRUE || a == b) {
+            return b;
+        }
+        if (b == TRUE) {
+            return a;
+        }
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        Integer cached = andCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int level = Math.min(nodeLevels[a], nodeLevels[b]);
+        int low = and(cofactor(a, level, false), cofactor(b, level, false));
+        int high = and(cofactor(a, level, true), cofactor(b, level, true));
+        int result = makeNode(level, low, high);
+        andCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * @param a an OBDD
+     * @param b an OBDD
+     * @return the OBDD of the disjunction
+     */
+    public int or(int a, int b) {
+        if (a == TRUE || b == TRUE) {
+            return TRUE;
+        }
+        if (a == FALSE || a == b) {
+            return b;
+        }
+        if (b == FALSE) {
+            return a;
+        }
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        Integer cached = orCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int level = Math.min(nodeLevels[a], nodeLevels[b]);
+        int low = or(cofactor(a, level, false), cofactor(b, level, false));
+        int high = or(cofactor(a, level, true), cofactor(b, level, true));
+        int result = makeNode(level, low, high);
+        orCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * @param a an OBDD
+     * @return the OBDD of the negation
+     */
+    public int not(int a) {
+        if (a == FALSE || a == TRUE) {
+            return a == FALSE ? TRUE : FALSE;
+        }
+        Integer cached = notCache.get(a);
+        if (cached != null) {
+            return cached;
+        }
+        int result = makeNode(nodeLevels[a], not(lows[a]), not(highs[a]));
+        notCache.put(a, result);
+        return result;
+    }
+
+    /**
+     * Computes the probability of the contexts of an OBDD, i.e. its weighted model count.
+     *
+     * @param node the OBDD
+     * @return the probability
+     */
+    public double getProbability(int node) {
+        return getProbability(node, new HashMap<>());
+    }
+
+    private double getProbability(int node, Map<Integer, Double> weights) {
+        if (node == FALSE || node == TRUE) {
+            return node == TRUE ? 1.0 : 0.0;
+        }
+        Double cached = weights.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        // skipped variables contribute P(u) + (1 - P(u)) = 1
+        double p = probabilities[nodeLevels[node]];
+        double weight = p * getProbability(highs[node], weights) + (1 - p) * getProbability(lows[node], weights);
+        weights.put(node, weight);
+        return weight;
+    }
+
+    /**
+     * @param node an OBDD
+     * @return the number of inner nodes of the OBDD
+     */
+    public int size(int node) {
+        Set<Integer> visited = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            if (current != FALSE && current != TRUE && visited.add(current)) {
+                stack.push(lows[current]);
+                stack.push(highs[current]);
+            }
+        }
+        return visited.size();
+    }
+
+    private int cofactor(int node, int level, boolean value) {
+        if (nodeLevels[node] != level) {
+            return node;
+        }
+        return value ? highs[node] : lows[node];
+    }
+
+    /**
+     * Returns the unique node with the given level and successors.
+     */
+    private int makeNode(int level, int low, int high) {
+        if (low == high) {
+            return low;
+        }
+        long key = ((long) low << 32) | high;
+        Map<Long, Integer> uniqueTable = uniqueTables.get(level);
+        Integer node = uniqueTable.get(key);
+        if (node == null) {
+            node = addNode(level, low, high);
+            uniqueTable.put(key, node);
+        }
+        return node;
+    }
+
+    private int addNode(int level, int low, int high) {
+        if (numberOfNodes == nodeLevels.length) {
+            nodeLevels = Arrays.copyOf(nodeLevels, 2 * numberOfNodes);
+            lows = Arrays.copyOf(lows, 2 * numberOfNodes);
+            highs = Arrays.copyOf(highs, 2 * numberOfNodes);
+        }
+        nodeLevels[numberOfNodes] = level;
+        lows[numberOfNodes] = low;
+        highs[numberOfNodes] = high;
+        return numberOfNodes++;
+    }
+}
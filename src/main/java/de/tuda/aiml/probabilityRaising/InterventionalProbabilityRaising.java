@@ -1,17 +1,19 @@
 package de.tuda.aiml.probabilityRaising;
 
+import de.tuda.aiml.probabilistic.BitSlicedEvaluator;
+import de.tuda.aiml.probabilistic.ContextSpace;
+import de.tuda.aiml.probabilistic.Intervention;
 import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
-import de.tuda.aiml.probabilistic.ProbabilisticCausalitySolver;
-import de.tuda.aiml.util.UtilityMethods;
+import de.tuda.aiml.probabilistic.ProbabilitySum;
 
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
-import de.tum.in.i4.hp2sat.util.Util;
 
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
-import org.logicng.util.Pair;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -23,49 +25,54 @@ public class InterventionalProbabilityRaising{
 
     public static ProbabilityRaisingResult computeActual(ProbabilisticCausalModel model, Formula phi, Set<Literal> cause, Set<Literal> context) throws InvalidCausalModelException {
         FormulaFactory f = model.getFormulaFactory();
-        ProbabilisticCausalModel causalModelForCause = ProbabilisticCausalitySolver.createModifiedCausalModelForCause(model, cause, f);
-        ProbabilisticCausalModel causalModelModified = ProbabilisticCausalitySolver.createModifiedCausalModelForNegatedCause(model, cause, f);
-        Map<Variable, Double> exogenousVariables = model.getExogenousVariables();
-        double probCAndE = 0.0;
-        double probC = 0.0;
-        double probNotCAndE = 0.0;
-        double probNotC = 0.0;
+        Intervention interventionForCause = new Intervention(model, cause);
+        Intervention interventionModified = new Intervention(model, cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()));
+        ProbabilitySum probCAndE = new ProbabilitySum();
+        ProbabilitySum probC = new ProbabilitySum();
+        ProbabilitySum probNotCAndE = new ProbabilitySum();
+        ProbabilitySum probNotC = new ProbabilitySum();
 
-        Set<Literal> exogenousAssignments = new HashSet<>();
-        exogenousAssignments.addAll(exogenousVariables.keySet());
-        for(Literal literal: exogenousVariables.keySet()){
-            exogenousAssignments.add(literal.negate());
-        }
-        List<Set<Literal>> allSubsetsOfExoAssignments = (new Util<Literal>()).generatePowerSet(exogenousAssignments);
-        for(Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-            if (exoAssignment.size() != exogenousVariables.size() || !exoAssignment.containsAll(context) || !UtilityMethods.noDuplicates(exoAssignment)) {
-                continue;
-            }
+        // phi and the cause (and its negation) evaluated on the compiled models
+        CompiledCausalModel compiledModel = model.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        CompiledFormula compiledCause = compiledModel.compile(cause, f);
+        CompiledFormula compiledNegatedCause = compiledModel.compile(cause.stream().map(Literal::negate)
+                .collect(Collectors.toSet()), f);
+        CompiledCausalModel compiledModelForCause = interventionForCause.getCompiledModel();
+        CompiledCausalModel compiledModelModified = interventionModified.getCompiledModel();
+        // all contexts that agree with the given (partial) context, 64 per word; only the exogenous ancestors of phi
+        // and the cause in the modified models are enumerated
+        Set<Variable> queryVariables = new HashSet<>(phi.variables());
+        cause.forEach(l -> queryVariables.add(l.variable()));
+        Set<Variable> relevantVariables = interventionForCause.getExogenousAncestors(queryVariables);
+        relevantVariables.addAll(interventionModified.getExogenousAncestors(queryVariables));
+        ContextSpace contextSpace = new ContextSpace(model, context, relevantVariables);
+        BitSlicedEvaluator evaluator = new BitSlicedEvaluator(contextSpace);
+        long[] values = evaluator.newAssignment(compiledModel);
+        long[] negatedValues = evaluator.newAssignment(compiledModel);
+        for(long block = 0; block < evaluator.getNumberOfBlocks(); block++) {
+            evaluator.setBlock(block);
             // evaluate phi for the cause
-            Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModelForCause, exoAssignment);
-            Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluation, phi, cause);
-            double modelProbability = causalModelForCause.getProbability(exoAssignment);
-
+            evaluator.assignContexts(values);
+            evaluator.evaluate(compiledModelForCause, values);
             // evaluate phi for the negation of the cause
-            Set<Literal> negatedEvaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModelModified, exoAssignment);
-            Pair<Boolean, Boolean> ac1TupleNegated = ProbabilisticCausalitySolver.fulfillsPC1(negatedEvaluation, phi, cause.stream().map(Literal::negate)
-                    .collect(Collectors.toSet()));
-            double negatedModelProbability = causalModelModified.getProbability(exoAssignment);
+            evaluator.assignContexts(negatedValues);
+            evaluator.evaluate(compiledModelModified, negatedValues);
 
-            if(ac1Tuple.second()) {
-                probC += modelProbability;
-            }
-            if(ac1TupleNegated.second()){
-                probNotC += negatedModelProbability;
-            }
-            if(ac1Tuple.first() && ac1Tuple.second()){
-                probCAndE += modelProbability;
-            }
-            if(ac1TupleNegated.first() && ac1TupleNegated.second()){
-                probNotCAndE += negatedModelProbability;
+            for(int word = 0; word < evaluator.getWidth(); word++) {
+                long causeOccurs = evaluator.evaluate(compiledCause, values, word);
+                long phiOccurs = evaluator.evaluate(compiledPhi, values, word);
+                long negatedCauseOccurs = evaluator.evaluate(compiledNegatedCause, negatedValues, word);
+                long phiOccursForNegatedCause = evaluator.evaluate(compiledPhi, negatedValues, word);
+
+                evaluator.addProbabilities(probC, word, causeOccurs);
+                evaluator.addProbabilities(probNotC, word, negatedCauseOccurs);
+                evaluator.addProbabilities(probCAndE, word, phiOccurs & causeOccurs);
+                evaluator.addProbabilities(probNotCAndE, word, phiOccursForNegatedCause & negatedCauseOccurs);
             }
         }
 
-        return new ProbabilityRaisingResult((probCAndE / probC) > (probNotCAndE / probNotC), (probCAndE / probC), (probNotCAndE / probNotC));
+        return new ProbabilityRaisingResult((probCAndE.getValue() / probC.getValue()) > (probNotCAndE.getValue() / probNotC.getValue()), (probCAndE.getValue() / probC.getValue()), (probNotCAndE.getValue() / probNotC.getValue()));
     }
 }
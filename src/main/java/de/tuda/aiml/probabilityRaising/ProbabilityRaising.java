@@ -1,21 +1,31 @@
 package de.tuda.aiml.probabilityRaising;
 
+import de.tuda.aiml.probabilistic.BitSlicedEvaluator;
+import de.tuda.aiml.probabilistic.ContextSpace;
+import de.tuda.aiml.probabilistic.Intervention;
+import de.tuda.aiml.probabilistic.MonteCarloEstimator;
+import de.tuda.aiml.probabilistic.MonteCarloSettings;
 import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
-import de.tuda.aiml.probabilistic.ProbabilisticCausalitySolver;
-import de.tuda.aiml.util.UtilityMethods;
-import de.tum.in.i4.hp2sat.util.Util;
+import de.tuda.aiml.probabilistic.ProbabilitySum;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
 import org.logicng.formulas.Formula;
-import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
-import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of the simple Probability Raising approach in probabilistic causal models.
  */
 public class ProbabilityRaising {
+    // number of contexts per task of the parallel sampler
+    static final int CASES_PER_TASK = 1 << 16;
+    // number of words per variable of the bit-sliced evaluation, i.e. 256 contexts are evaluated at once
+    private static final int WIDTH = 4;
+
     ProbabilisticCausalModel model;
     int numberOfCases;
     Formula phi;
@@ -33,7 +43,8 @@ public class ProbabilityRaising {
     /**
      * Method to check probability raising in a Monte-Carlo approach by generating a number of contexts with the given
      * probability of the uncertain exogenous variables and then counting in which cases the cause and phi or not the cause
-     * and phi occur.
+     * and phi occur. The contexts are drawn with a random seed, see
+     * {@link #compute(ProbabilisticCausalModel, long, Formula, Set, long)}.
      * @param model causal model that represents the example
      * @param numberOfCases to generate and count the occurrences of cause and effect in
      * @param phi the effect
@@ -41,41 +52,149 @@ public class ProbabilityRaising {
      * @return
      */
     public static ProbabilityRaisingResult compute(ProbabilisticCausalModel model, int numberOfCases, Formula phi, Set<Literal> cause) {
-        Map<Variable, Double> exogenousVariables = model.getExogenousVariables();
-        FormulaFactory f = model.getFormulaFactory();
-        List<Set<Literal>> contexts = new ArrayList<>();
-        int countCauseOccurs = 0;
-        int countBothOccur = 0;
-        int countPhiNotCause = 0;
-
-        // Generate contexts according to the probabilities of the exogenous variables
-        for(int i = 0; i < numberOfCases; i++){
-            Set<Literal> context = new HashSet<>();
-            for(Variable var : exogenousVariables.keySet()){
-                boolean b = Math.random() < exogenousVariables.get(var) ? context.add(f.literal(var.name(), true)) : context.add(f.literal(var.name(), false));
+        return compute(model, numberOfCases, phi, cause, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Method to check probability raising in a Monte-Carlo approach, see
+     * {@link #compute(ProbabilisticCausalModel, int, Formula, Set)}. The contexts are not stored, but generated and
+     * evaluated on the fly, 256 at once on the compiled model, and split into tasks of {@link #CASES_PER_TASK}
+     * contexts that are evaluated in parallel. Each task draws from its own random generator, which is split off the
+     * generator of the seed in the order of the tasks. Hence, the result only depends on the seed, but not on the
+     * number of threads.
+     * @param model causal model that represents the example
+     * @param numberOfCases to generate and count the occurrences of cause and effect in
+     * @param phi the effect
+     * @param cause the possible cause of phi
+     * @param seed the seed; the same seed yields the same result
+     * @return
+     */
+    public static ProbabilityRaisingResult compute(ProbabilisticCausalModel model, long numberOfCases, Formula phi,
+                                                   Set<Literal> cause, long seed) {
+        ContextSampler sampler = new ContextSampler(model, phi, cause);
+        long[] counts = sampler.sample(numberOfCases, new SplittableRandom(seed));
+        return sampler.createResult(counts, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Method to check probability raising in a Monte-Carlo approach with an adaptive number of cases, see
+     * {@link #compute(ProbabilisticCausalModel, long, Formula, Set, long)}. The number of cases is doubled until the
+     * confidence intervals of both P(E | C) and P(E | not(C)) are narrower than the tolerance of the settings or
+     * until the maximal number of samples of the settings has been drawn. As in {@link MonteCarloEstimator}, the
+     * intervals after the t-th doubling hold with probability 1 - (1 - confidence) / (t * (t + 1)) each.
+     * @param model causal model that represents the example
+     * @param phi the effect
+     * @param cause the possible cause of phi
+     * @param settings the confidence, kind of interval, tolerance, maximal number of cases and seed
+     * @return the result, including the widths of the final intervals
+     */
+    public static ProbabilityRaisingResult compute(ProbabilisticCausalModel model, Formula phi, Set<Literal> cause,
+                                                   MonteCarloSettings settings) {
+        ContextSampler sampler = new ContextSampler(model, phi, cause);
+        SplittableRandom random = new SplittableRandom(settings.getSeed());
+        long[] counts = new long[4];
+        long target = Math.min(CASES_PER_TASK, settings.getMaxSamples());
+        for (int look = 1; ; look++) {
+            long[] newCounts = sampler.sample(target - counts[0], random);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += newCounts[i];
+            }
+            double delta = (1 - settings.getConfidence()) / ((double) look * (look + 1)) / 2;
+            double[] givenCause = MonteCarloEstimator.confidenceInterval(settings.getConfidenceInterval(),
+                    counts[2], counts[1], delta);
+            double[] givenNotCause = MonteCarloEstimator.confidenceInterval(settings.getConfidenceInterval(),
+                    counts[3], counts[0] - counts[1], delta);
+            double givenCauseWidth = givenCause[1] - givenCause[0];
+            double givenNotCauseWidth = givenNotCause[1] - givenNotCause[0];
+            if ((givenCauseWidth < settings.getTolerance() && givenNotCauseWidth < settings.getTolerance()) ||
+                    target >= settings.getMaxSamples()) {
+                return sampler.createResult(counts, givenCauseWidth, givenNotCauseWidth);
             }
-            contexts.add(context);
+            target = Math.min(2 * target, settings.getMaxSamples());
         }
+    }
 
-        for(Set<Literal> context : contexts){
-            Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(model, context);
-            Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluation, phi, cause);
+    /**
+     * Draws contexts from the distribution of the exogenous variables and counts in how many of them the cause, the
+     * cause and phi, and phi but not the cause occur. Only the exogenous ancestors of phi and the cause are drawn, as
+     * all other exogenous variables cannot change these counts.
+     */
+    private static class ContextSampler {
+        private final CompiledCausalModel compiledModel;
+        private final CompiledFormula compiledPhi;
+        private final CompiledFormula compiledCause;
+        private final int[] ids;
+        private final double[] probabilities;
 
-            if(ac1Tuple.second()) {
-                countCauseOccurs += 1;
+        ContextSampler(ProbabilisticCausalModel model, Formula phi, Set<Literal> cause) {
+            // the compiled model is created once by this thread and only read by the tasks
+            compiledModel = model.getCompiledModel();
+            compiledPhi = compiledModel.compile(phi);
+            compiledCause = compiledModel.compile(cause, model.getFormulaFactory());
+            Set<Variable> queryVariables = new HashSet<>(phi.variables());
+            cause.forEach(l -> queryVariables.add(l.variable()));
+            Set<Variable> relevantVariables = new Intervention(model, Collections.emptySet())
+                    .getExogenousAncestors(queryVariables);
+            ids = new int[relevantVariables.size()];
+            probabilities = new double[relevantVariables.size()];
+            int i = 0;
+            for (Variable variable : relevantVariables) {
+                ids[i] = compiledModel.getId(variable);
+                probabilities[i] = model.getExogenousVariables().get(variable);
+                i++;
             }
-            if(ac1Tuple.first() && ac1Tuple.second()){
-                countBothOccur += 1;
-            }
-            if(ac1Tuple.first() && !ac1Tuple.second()){
-                countPhiNotCause += 1;
+        }
+
+        /**
+         * @param numberOfCases the number of contexts to draw
+         * @param random        the generator the generators of the tasks are split off
+         * @return the number of contexts, of contexts with the cause, with the cause and phi, and with phi but not
+         * the cause
+         */
+        long[] sample(long numberOfCases, SplittableRandom random) {
+            int numberOfTasks = (int) ((numberOfCases + CASES_PER_TASK - 1) / CASES_PER_TASK);
+            SplittableRandom[] randoms = new SplittableRandom[numberOfTasks];
+            for (int i = 0; i < numberOfTasks; i++) {
+                randoms[i] = random.split();
             }
+            return IntStream.range(0, numberOfTasks).parallel()
+                    .mapToObj(i -> sampleTask(Math.min(CASES_PER_TASK, numberOfCases - (long) i * CASES_PER_TASK),
+                            randoms[i]))
+                    .reduce(new long[4], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1], a[2] + b[2], a[3] + b[3]});
         }
 
-        double givenCause = (double) countBothOccur / countCauseOccurs;
-        double givenNotCause = (double) countPhiNotCause / (numberOfCases - countCauseOccurs);
+        private long[] sampleTask(long numberOfCases, SplittableRandom random) {
+            long[] values = compiledModel.newAssignment(WIDTH);
+            long countCauseOccurs = 0;
+            long countBothOccur = 0;
+            long countPhiNotCause = 0;
+            for (long first = 0; first < numberOfCases; first += 64L * WIDTH) {
+                for (int i = 0; i < ids.length; i++) {
+                    for (int word = 0; word < WIDTH; word++) {
+                        values[ids[i] * WIDTH + word] = BitSlicedEvaluator.nextRandomLanes(random, probabilities[i]);
+                    }
+                }
+                compiledModel.evaluate(values, WIDTH);
+                for (int word = 0; word < WIDTH; word++) {
+                    // the lanes of the last block that exceed the number of cases are ignored
+                    long remaining = numberOfCases - first - 64L * word;
+                    long validLanes = remaining >= 64 ? -1L : remaining <= 0 ? 0L : (1L << remaining) - 1;
+                    long causeOccurs = compiledCause.evaluate(values, WIDTH, word) & validLanes;
+                    long phiOccurs = compiledPhi.evaluate(values, WIDTH, word) & validLanes;
+                    countCauseOccurs += Long.bitCount(causeOccurs);
+                    countBothOccur += Long.bitCount(phiOccurs & causeOccurs);
+                    countPhiNotCause += Long.bitCount(phiOccurs & ~causeOccurs);
+                }
+            }
+            return new long[]{numberOfCases, countCauseOccurs, countBothOccur, countPhiNotCause};
+        }
 
-        return new ProbabilityRaisingResult(givenCause > givenNotCause, givenCause, givenNotCause);
+        ProbabilityRaisingResult createResult(long[] counts, double givenCauseWidth, double givenNotCauseWidth) {
+            double givenCause = (double) counts[2] / counts[1];
+            double givenNotCause = (double) counts[3] / (counts[0] - counts[1]);
+            return new ProbabilityRaisingResult(givenCause > givenNotCause, givenCause, givenNotCause, counts[0],
+                    givenCauseWidth, givenNotCauseWidth);
+        }
     }
 
     /**
@@ -90,42 +209,41 @@ public class ProbabilityRaising {
      * @return
      */
     public static ProbabilityRaisingResult computeActual(ProbabilisticCausalModel model, Formula phi, Set<Literal> cause, Set<Literal> context) {
-        double probCAndE = 0.0;
-        double probC = 0.0;
-        double probNotCAndE = 0.0;
-        double probNotC = 0.0;
-
-        Map<Variable, Double> exogenousVariables = model.getExogenousVariables();
-        Set<Literal> exogenousAssignments = new HashSet<>();
-        exogenousAssignments.addAll(exogenousVariables.keySet());
-        for(Literal literal: exogenousVariables.keySet()){
-            exogenousAssignments.add(literal.negate());
-        }
-        List<Set<Literal>> allSubsetsOfExoAssignments = (new Util<Literal>()).generatePowerSet(exogenousAssignments);
-        for(Set<Literal> exoAssignment : allSubsetsOfExoAssignments) {
-            if (exoAssignment.size() != exogenousVariables.size() || !exoAssignment.containsAll(context) || !UtilityMethods.noDuplicates(exoAssignment)) {
-                continue;
-            }
-            
-            Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(model, exoAssignment);
-            Pair<Boolean, Boolean> ac1Tuple = ProbabilisticCausalitySolver.fulfillsPC1(evaluation, phi, cause);
-            double modelProbability = model.getProbability(exoAssignment);
-
-            // cause fulfilled
-            if(ac1Tuple.second()) {
-                probC += modelProbability;
-            }
-            if(!ac1Tuple.second()){
-                probNotC += modelProbability;
-            }
-            if(ac1Tuple.first() && ac1Tuple.second()){
-                probCAndE += modelProbability;
-            }
-            if(ac1Tuple.first() && !ac1Tuple.second()){
-                probNotCAndE += modelProbability;
+        ProbabilitySum probCAndE = new ProbabilitySum();
+        ProbabilitySum probC = new ProbabilitySum();
+        ProbabilitySum probNotCAndE = new ProbabilitySum();
+        ProbabilitySum probNotC = new ProbabilitySum();
+
+        // phi and the cause evaluated on the compiled model
+        CompiledCausalModel compiledModel = model.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        CompiledFormula compiledCause = compiledModel.compile(cause, model.getFormulaFactory());
+
+        // all contexts that agree with the given (partial) context, 64 per word; only the exogenous ancestors of phi
+        // and the cause are enumerated
+        Set<Variable> queryVariables = new HashSet<>(phi.variables());
+        cause.forEach(l -> queryVariables.add(l.variable()));
+        ContextSpace contextSpace = new ContextSpace(model, context,
+                new Intervention(model, Collections.emptySet()).getExogenousAncestors(queryVariables));
+        BitSlicedEvaluator evaluator = new BitSlicedEvaluator(contextSpace);
+        long[] values = evaluator.newAssignment(compiledModel);
+        for(long block = 0; block < evaluator.getNumberOfBlocks(); block++) {
+            evaluator.setBlock(block);
+            evaluator.assignContexts(values);
+            evaluator.evaluate(compiledModel, values);
+
+            for(int word = 0; word < evaluator.getWidth(); word++) {
+                long causeOccurs = evaluator.evaluate(compiledCause, values, word);
+                long phiOccurs = evaluator.evaluate(compiledPhi, values, word);
+
+                // cause fulfilled
+                evaluator.addProbabilities(probC, word, causeOccurs);
+                evaluator.addProbabilities(probNotC, word, ~causeOccurs);
+                evaluator.addProbabilities(probCAndE, word, phiOccurs & causeOccurs);
+                evaluator.addProbabilities(probNotCAndE, word, phiOccurs & ~causeOccurs);
             }
         }
 
-        return new ProbabilityRaisingResult((probCAndE / probC) > (probNotCAndE / probNotC), (probCAndE / probC), (probNotCAndE / probNotC));
+        return new ProbabilityRaisingResult((probCAndE.getValue() / probC.getValue()) > (probNotCAndE.getValue() / probNotC.getValue()), (probCAndE.getValue() / probC.getValue()), (probNotCAndE.getValue() / probNotC.getValue()));
     }
 }
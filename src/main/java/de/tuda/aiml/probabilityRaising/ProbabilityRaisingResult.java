@@ -9,6 +9,10 @@ public class ProbabilityRaisingResult {
     boolean probRaised;
     double pC;
     double pNotC;
+    // number of sampled contexts and widths of the confidence intervals; not part of the result itself
+    long numberOfCases;
+    double pCWidth = Double.NaN;
+    double pNotCWidth = Double.NaN;
 
     public ProbabilityRaisingResult(boolean probRaised, double pC, double pNotC) {
         this.probRaised = probRaised;
@@ -16,6 +20,14 @@ public class ProbabilityRaisingResult {
         this.pNotC = pNotC;
     }
 
+    public ProbabilityRaisingResult(boolean probRaised, double pC, double pNotC, long numberOfCases, double pCWidth,
+                                    double pNotCWidth) {
+        this(probRaised, pC, pNotC);
+        this.numberOfCases = numberOfCases;
+        this.pCWidth = pCWidth;
+        this.pNotCWidth = pNotCWidth;
+    }
+
     @Override
     public String toString() {
         return "ProbabilityRaisingResult{" +
@@ -52,5 +64,28 @@ public class ProbabilityRaisingResult {
         return pNotC;
     }
 
+    /**
+     * @return the number of sampled contexts; 0 if the probabilities have been computed exactly
+     */
+    public long getNumberOfCases() {
+        return numberOfCases;
+    }
+
+    /**
+     * @return the width of the confidence interval of P(E | C) if the number of cases has been chosen adaptively,
+     * else NaN
+     */
+    public double getPCWidth() {
+        return pCWidth;
+    }
+
+    /**
+     * @return the width of the confidence interval of P(E | not(C)) if the number of cases has been chosen
+     * adaptively, else NaN
+     */
+    public double getNotPCWidth() {
+        return pNotCWidth;
+    }
+
 }
 
@@ -693,4 +693,203 @@ public class ProbabilisticExampleProvider {
         ProbabilisticCausalModel causalModel = new ProbabilisticCausalModel("BillyAndSuzyTopple", equations, exogenousVariables, f);
         return causalModel;
     }
+
+    /**
+     * Generates a layered DAG. The first layer consists of width variables, each of which is defined by one of the
+     * exogenous variables (variable i by U(i mod exogenousVariables)). Each variable of the following layers is the
+     * conjunction or disjunction of two randomly chosen, possibly negated variables of the previous layer. The effect E
+     * is the disjunction of the last layer. Variable i of layer l is called L(l)_(i).
+     *
+     * @param layers             the number of layers
+     * @param width              the number of variables per layer
+     * @param exogenousVariables the number of exogenous variables
+     * @param seed               the seed of the generator; the same seed yields the same model
+     * @return the layered model with layers * width + 1 endogenous variables
+     * @throws InvalidCausalModelException
+     */
+    public static ProbabilisticCausalModel generateLayeredModel(int layers, int width, int exogenousVariables, long seed)
+            throws InvalidCausalModelException {
+        if (layers < 1 || width < 1 || exogenousVariables < 1) {
+            throw new IllegalArgumentException("Layers, width and exogenous variables must be positive");
+        }
+        FormulaFactory f = new FormulaFactory();
+        Random random = new Random(seed);
+        Map<Variable, Double> exogenousVariablesMap = generateExogenousVariables(exogenousVariables, random, f);
+        List<Variable> exogenous = new ArrayList<>(exogenousVariablesMap.keySet());
+
+        Set<Equation> equations = new HashSet<>();
+        List<Variable> previousLayer = new ArrayList<>();
+        for (int i = 0; i < width; i++) {
+            Variable variable = f.variable("L0_" + i);
+            equations.add(new Equation(variable, exogenous.get(i % exogenousVariables)));
+            previousLayer.add(variable);
+        }
+        for (int l = 1; l < layers; l++) {
+            List<Variable> layer = new ArrayList<>();
+            for (int i = 0; i < width; i++) {
+                Variable variable = f.variable("L" + l + "_" + i);
+                Formula first = randomPhase(previousLayer.get(random.nextInt(width)), random, f);
+                Formula second = randomPhase(previousLayer.get(random.nextInt(width)), random, f);
+                equations.add(new Equation(variable, random.nextBoolean() ? f.and(first, second) : f.or(first, second)));
+                layer.add(variable);
+            }
+            previousLayer = layer;
+        }
+        equations.add(new Equation(f.variable("E"), f.or(previousLayer)));
+
+        return new ProbabilisticCausalModel("Layered_" + layers + "x" + width + "_" + seed, equations,
+                exogenousVariablesMap, f);
+    }
+
+    /**
+     * Generates a binary tree of depth depth. The leaves are defined by the exogenous variables (leaf i by
+     * U(i mod exogenousVariables)), whose probabilities are chosen randomly, i.e. each leaf is noisy. Each inner node
+     * is either the conjunction or the disjunction of its children. The nodes are numbered in level order, where the
+     * root is the effect E and node i has the children N(2i) and N(2i + 1).
+     *
+     * @param depth              the depth of the tree
+     * @param exogenousVariables the number of exogenous variables
+     * @param seed               the seed of the generator; the same seed yields the same model
+     * @return the binary tree with 2^(depth + 1) - 1 endogenous variables
+     * @throws InvalidCausalModelException
+     */
+    public static ProbabilisticCausalModel generateNoisyBinaryTreeModel(int depth, int exogenousVariables, long seed)
+            throws InvalidCausalModelException {
+        if (depth < 0 || depth > 20 || exogenousVariables < 1) {
+            throw new IllegalArgumentException("Depth must be between 0 and 20 and exogenous variables positive");
+        }
+        FormulaFactory f = new FormulaFactory();
+        Random random = new Random(seed);
+        Map<Variable, Double> exogenousVariablesMap = generateExogenousVariables(exogenousVariables, random, f);
+        List<Variable> exogenous = new ArrayList<>(exogenousVariablesMap.keySet());
+
+        int firstLeaf = 1 << depth;
+        Set<Equation> equations = new HashSet<>();
+        for (int i = 1; i < 2 * firstLeaf; i++) {
+            Variable variable = f.variable(i == 1 ? "E" : "N" + i);
+            Formula formula;
+            if (i >= firstLeaf) {
+                formula = exogenous.get((i - firstLeaf) % exogenousVariables);
+            } else {
+                Variable left = f.variable("N" + 2 * i);
+                Variable right = f.variable("N" + (2 * i + 1));
+                formula = random.nextBoolean() ? f.and(left, right) : f.or(left, right);
+            }
+            equations.add(new Equation(variable, formula));
+        }
+
+        return new ProbabilisticCausalModel("NoisyBinaryTree_" + depth + "_" + seed, equations,
+                exogenousVariablesMap, f);
+    }
+
+    /**
+     * Generates a chain of preemption, i.e. the rock-throwing example with length throwers: thrower i throws (T(i))
+     * if U(i) and hits the bottle (H(i)) if she throws, is accurate (A(i)) and the bottle has not been hit by one of
+     * the throwers before (B(i - 1)). Hence, each thrower preempts all throwers after her. The effect E is B(length),
+     * i.e. the bottle shatters. The probabilities of the exogenous variables are chosen randomly.
+     *
+     * @param length the number of throwers
+     * @param seed   the seed of the generator; the same seed yields the same model
+     * @return the preemption chain with 3 * length endogenous and 2 * length exogenous variables
+     * @throws InvalidCausalModelException
+     */
+    public static ProbabilisticCausalModel generatePreemptionChainModel(int length, long seed)
+            throws InvalidCausalModelException {
+        if (length < 1) {
+            throw new IllegalArgumentException("Length must be positive");
+        }
+        FormulaFactory f = new FormulaFactory();
+        Random random = new Random(seed);
+        Map<Variable, Double> exogenousVariables = new LinkedHashMap<>();
+        Set<Equation> equations = new HashSet<>();
+        // nobody hits the bottle before the first thrower
+        Formula hitBefore = f.falsum();
+        for (int i = 1; i <= length; i++) {
+            Variable throwsExo = f.variable("U" + i);
+            Variable accurate = f.variable("A" + i);
+            exogenousVariables.put(throwsExo, randomProbability(random));
+            exogenousVariables.put(accurate, randomProbability(random));
+
+            Variable throwsRock = f.variable("T" + i);
+            Variable hits = f.variable("H" + i);
+            Variable bottleHit = f.variable(i == length ? "E" : "B" + i);
+            equations.add(new Equation(throwsRock, throwsExo));
+            equations.add(new Equation(hits, f.and(throwsRock, accurate, f.not(hitBefore))));
+            equations.add(new Equation(bottleHit, f.or(hitBefore, hits)));
+            hitBefore = bottleHit;
+        }
+
+        return new ProbabilisticCausalModel("PreemptionChain_" + length + "_" + seed, equations,
+                exogenousVariables, f);
+    }
+
+    /**
+     * Generates a random sparse DAG. Endogenous variable V(i) depends on 1 to maxFanIn variables that are randomly
+     * chosen among the exogenous variables and V(0), ..., V(i - 1). Its formula combines these variables, each
+     * possibly negated, by random conjunctions and disjunctions. The last variable is the effect E.
+     *
+     * @param endogenousVariables the number of endogenous variables
+     * @param exogenousVariables  the number of exogenous variables
+     * @param maxFanIn            the maximal number of variables each endogenous variable depends on
+     * @param seed                the seed of the generator; the same seed yields the same model
+     * @return the random DAG
+     * @throws InvalidCausalModelException
+     */
+    public static ProbabilisticCausalModel generateRandomDagModel(int endogenousVariables, int exogenousVariables,
+                                                                 int maxFanIn, long seed)
+            throws InvalidCausalModelException {
+        if (endogenousVariables < 1 || exogenousVariables < 1 || maxFanIn < 1) {
+            throw new IllegalArgumentException("Endogenous variables, exogenous variables and fan-in must be " +
+                    "positive");
+        }
+        FormulaFactory f = new FormulaFactory();
+        Random random = new Random(seed);
+        Map<Variable, Double> exogenousVariablesMap = generateExogenousVariables(exogenousVariables, random, f);
+
+        List<Variable> candidates = new ArrayList<>(exogenousVariablesMap.keySet());
+        Set<Equation> equations = new HashSet<>();
+        for (int i = 0; i < endogenousVariables; i++) {
+            Variable variable = f.variable(i == endogenousVariables - 1 ? "E" : "V" + i);
+            int fanIn = Math.min(1 + random.nextInt(maxFanIn), candidates.size());
+            // choose distinct parents by a partial Fisher-Yates shuffle of the candidates
+            List<Variable> parents = new ArrayList<>(candidates);
+            Formula formula = null;
+            for (int k = 0; k < fanIn; k++) {
+                Collections.swap(parents, k, k + random.nextInt(parents.size() - k));
+                Formula parent = randomPhase(parents.get(k), random, f);
+                if (formula == null) {
+                    formula = parent;
+                } else {
+                    formula = random.nextBoolean() ? f.and(formula, parent) : f.or(formula, parent);
+                }
+            }
+            equations.add(new Equation(variable, formula));
+            candidates.add(variable);
+        }
+
+        return new ProbabilisticCausalModel("RandomDag_" + endogenousVariables + "_" + seed, equations,
+                exogenousVariablesMap, f);
+    }
+
+    /**
+     * Creates the exogenous variables U0, ..., U(n - 1) with random probabilities.
+     */
+    private static Map<Variable, Double> generateExogenousVariables(int n, Random random, FormulaFactory f) {
+        Map<Variable, Double> exogenousVariables = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            exogenousVariables.put(f.variable("U" + i), randomProbability(random));
+        }
+        return exogenousVariables;
+    }
+
+    /**
+     * @return a random probability between 0.05 and 0.95, rounded to two decimals
+     */
+    private static double randomProbability(Random random) {
+        return (5 + random.nextInt(91)) / 100.0;
+    }
+
+    private static Formula randomPhase(Variable variable, Random random, FormulaFactory f) {
+        return random.nextBoolean() ? variable : f.not(variable);
+    }
 }
\ No newline at end of file
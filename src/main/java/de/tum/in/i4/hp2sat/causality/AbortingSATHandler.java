@@ -0,0 +1,49 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.handlers.ModelEnumerationHandler;
+import org.logicng.handlers.SATHandler;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Handler that aborts a SAT solver at its next conflict, or a model enumeration at its next model, once the given
+ * condition holds. An aborted SAT call returns {@link org.logicng.datastructures.Tristate#UNDEF}.
+ */
+class AbortingSATHandler implements SATHandler, ModelEnumerationHandler {
+    private final BooleanSupplier abort;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param abort the condition under which the solver is aborted; called from the solving thread
+     */
+    AbortingSATHandler(BooleanSupplier abort) {
+        this.abort = abort;
+    }
+
+    /**
+     * @return true if the solver is to be aborted
+     */
+    boolean isAborted() {
+        return abort.getAsBoolean();
+    }
+
+    @Override
+    public boolean detectedConflict() {
+        return !isAborted();
+    }
+
+    @Override
+    public void startedSolving() {
+    }
+
+    @Override
+    public void finishedSolving() {
+    }
+
+    @Override
+    public boolean foundModel(Assignment assignment) {
+        return !isAborted();
+    }
+}
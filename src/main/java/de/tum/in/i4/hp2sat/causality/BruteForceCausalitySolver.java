@@ -1,7 +1,6 @@
 package de.tum.in.i4.hp2sat.causality;
 
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -12,8 +11,8 @@ import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.util.Util;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 class BruteForceCausalitySolver extends CausalitySolver {
@@ -32,13 +31,32 @@ class BruteForceCausalitySolver extends CausalitySolver {
                                        Set<Literal> cause, SolvingStrategy solvingStrategy)
             throws InvalidCausalModelException {
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
-        boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
-        Set<Literal> w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, f);
+        QueryProgress progress = new QueryProgress();
+        SolverMetrics metrics = createMetrics();
+        boolean ac1 = false;
+        Set<Literal> w = null;
+        boolean ac3 = false;
+        try {
+            metrics.startClause(1);
+            Set<Literal> evaluation = evaluateEquations(causalModel, context, metrics);
+            Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
+            ac1 = ac1Tuple.first() && ac1Tuple.second();
+            progress.setAc1(ac1);
+            metrics.startClause(2);
+            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, progress, metrics, f);
+            progress.setAc2(w != null);
+            metrics.startClause(3);
+            ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy,
+                    progress, metrics, f);
+            progress.setAc3(ac3);
+        } catch (CancellationException e) {
+            // the budget is exhausted; return the ACs decided so far
+            handleCancellation(e);
+        }
+        metrics.finishClause();
         boolean ac2 = w != null;
-        boolean ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy, f);
-        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
+        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w, progress,
+                metrics);
         return causalitySolverResult;
     }
 
@@ -51,22 +69,28 @@ class BruteForceCausalitySolver extends CausalitySolver {
      * @param context         the context
      * @param evaluation      the original evaluation of variables
      * @param solvingStrategy the solving strategy
+     * @param progress        the progress, to which the W candidates are added; null if AC2 is checked for AC3
+     * @param metrics         the metrics of the check
      * @param f               a formula factory
      * @return returns W if AC2 fulfilled, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
      */
     private Set<Literal> fulfillsAC2(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
-                                     Set<Literal> evaluation, SolvingStrategy solvingStrategy, FormulaFactory f)
+                                     Set<Literal> evaluation, SolvingStrategy solvingStrategy,
+                                     QueryProgress progress, SolverMetrics metrics, FormulaFactory f)
             throws InvalidCausalModelException {
-        Formula phiFormula = f.not(phi); // negate phi
+        // negate phi; compiled once, since it is evaluated for each W
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledFormula phiFormula = compiledModel.compile(f.not(phi));
 
-        // create copy of original causal model
-        CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
+        // intervene on the compiled model instead of copying the causal model
+        CompiledCausalModel compiledModelModified = intervene(compiledModel,
+                cause.stream().map(Literal::negate).collect(Collectors.toSet()), metrics);
 
         // evaluate causal model with setting x' for cause
-        Set<Literal> evaluationModified = CausalitySolver.evaluateEquations(causalModelModified, context);
+        long[] evaluationModified = evaluateEquations(compiledModelModified, context, metrics);
         // check if not(phi) evaluates to true for empty W -> if yes, no further investigation necessary
-        if (phiFormula.evaluate(new Assignment(evaluationModified))) {
+        if (phiFormula.evaluate(evaluationModified)) {
             return new HashSet<>();
         }
 
@@ -80,18 +104,29 @@ class BruteForceCausalitySolver extends CausalitySolver {
                         !(causeVariables.contains(l.variable())))
                 .collect(Collectors.toSet());
         // get all possible Ws, i.e create power set of the evaluation
-        List<Set<Literal>> allW = (new Util<Literal>()).generatePowerSet(wVariables);
+        long numberOfWCandidates = Util.countSubsets(wVariables.size());
+        Iterable<Set<Literal>> allW = (new Util<Literal>()).iteratePowerSet(wVariables);
+        if (progress != null) {
+            progress.addWCandidates(numberOfWCandidates);
+        }
 
         for (Set<Literal> w : allW) {
-            // create copy of modified causal model
-            CausalModel causalModelModifiedW = createModifiedCausalModelForW(causalModelModified, w, f);
+            checkBudget();
+            // the only assignment of W considered is its original value
+            metrics.wCandidateTried();
+            metrics.wAssignmentTried();
+            // intervene on the modified model
+            CompiledCausalModel compiledModelModifiedW = intervene(compiledModelModified, w, metrics);
             // evaluate all variables
-            evaluationModified = CausalitySolver.evaluateEquations(causalModelModifiedW, context);
+            evaluationModified = evaluateEquations(compiledModelModifiedW, context, metrics);
             /*
              * if the negated phi evaluates to true given the values of the variables in the modified causal model,
              * AC2 is fulfilled an we return the W for which it is fulfilled. */
-            if (phiFormula.evaluate(new Assignment(evaluationModified)))
-                return w;
+            if (phiFormula.evaluate(evaluationModified))
+                return new HashSet<>(w);
+            if (progress != null) {
+                progress.exploreWCandidate();
+            }
         }
 
         return null;
@@ -106,12 +141,14 @@ class BruteForceCausalitySolver extends CausalitySolver {
      * @param context         the context
      * @param evaluation      the original evaluation of variables
      * @param solvingStrategy the solving strategy
+     * @param progress        the progress, to which the subsets of the cause are added
+     * @param metrics         the metrics of the check
      * @param f               a formula factory
      * @return true if A3 fulfilled, else false
      */
     private boolean fulfillsAC3(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
                                 Set<Literal> evaluation, boolean phiOccurred, SolvingStrategy solvingStrategy,
-                                FormulaFactory f)
+                                QueryProgress progress, SolverMetrics metrics, FormulaFactory f)
             throws InvalidCausalModelException {
         if (cause.size() > 1 && phiOccurred) {
 
@@ -123,11 +160,15 @@ class BruteForceCausalitySolver extends CausalitySolver {
             /*
              * no sub-cause must fulfill AC1 and AC2
              * for AC1, we only need to check if the current cause subset, as we checked for phi before */
+            progress.addSubCauses(allSubsetsOfCause.size());
             for (Set<Literal> c : allSubsetsOfCause) {
+                checkBudget();
                 if (evaluation.containsAll(c) &&
-                        fulfillsAC2(causalModel, phi, c, context, evaluation, solvingStrategy, f) != null) {
+                        fulfillsAC2(causalModel, phi, c, context, evaluation, solvingStrategy, null, metrics, f)
+                                != null) {
                     return false;
                 }
+                progress.exploreSubCause();
             }
         }
         return true;
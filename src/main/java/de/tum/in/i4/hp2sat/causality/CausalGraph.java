@@ -0,0 +1,374 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The dependency graph of a causal model with dense int ids. There is an edge from X to Y if X occurs in the equation
+ * of Y. As in {@link CompiledCausalModel}, the exogenous variables get the ids 0 to k-1 and the endogenous variables
+ * the ids k to n-1, each sorted by name.
+ *
+ * The edges are stored in compressed sparse row (CSR) form in both directions: the children of the variable with id
+ * i are children[childOffsets[i]] to children[childOffsets[i + 1] - 1], and its parents, i.e. the variables of its
+ * equation, are stored likewise. The topological order is computed once when the graph is created. For graphs of up
+ * to {@link #MAX_BITSET_VARIABLES} variables, the descendants and ancestors of each variable are precomputed as
+ * bitsets on first use; larger graphs are searched on demand, as the bitsets grow quadratically.
+ *
+ * A GraphStream graph can still be exported, see {@link GraphStreamExport}, e.g. for visualization.
+ */
+public class CausalGraph {
+    // graphs with more variables do not precompute descendants and ancestors
+    static final int MAX_BITSET_VARIABLES = 1 << 12;
+
+    private final Variable[] variables;
+    private final Map<Variable, Integer> ids;
+    private final int numberOfExogenousVariables;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final int[] parentOffsets;
+    private final int[] parents;
+    private final int[] topologicalOrder;
+    // bitsets of the variables reachable from (forward) and reaching (backward) each variable, including itself
+    private volatile long[][] descendants;
+    private volatile long[][] ancestors;
+
+    /**
+     * Creates the graph of the given equations.
+     *
+     * @param exogenousVariables the exogenous variables
+     * @param equations          the equations of the endogenous variables
+     * @throws IllegalArgumentException if the equations contain a circular dependency or a variable that is neither
+     *                                  exogenous nor defined by an equation
+     */
+    public CausalGraph(Collection<Variable> exogenousVariables, Collection<Equation> equations) {
+        List<Variable> variables = exogenousVariables.stream().sorted(Comparator.comparing(Variable::name))
+                .collect(Collectors.toList());
+        variables.addAll(equations.stream().map(Equation::getVariable)
+                .sorted(Comparator.comparing(Variable::name)).collect(Collectors.toList()));
+        this.variables = variables.toArray(new Variable[0]);
+        this.numberOfExogenousVariables = exogenousVariables.size();
+        this.ids = new HashMap<>();
+        for (int i = 0; i < this.variables.length; i++) {
+            ids.put(this.variables[i], i);
+        }
+
+        int n = this.variables.length;
+        int[][] equationParents = new int[n][];
+        int[] childCounts = new int[n];
+        int edges = 0;
+        for (Equation equation : equations) {
+            int id = ids.get(equation.getVariable());
+            int[] equationVariables = new int[equation.getFormula().variables().size()];
+            int i = 0;
+            for (Variable variable : equation.getFormula().variables()) {
+                Integer parent = ids.get(variable);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Variable " + variable + " is neither exogenous nor defined " +
+                            "by an equation");
+                }
+                equationVariables[i++] = parent;
+                childCounts[parent]++;
+            }
+            equationParents[id] = equationVariables;
+            edges += equationVariables.length;
+        }
+
+        this.parentOffsets = new int[n + 1];
+        this.parents = new int[edges];
+        this.childOffsets = new int[n + 1];
+        this.children = new int[edges];
+        for (int id = 0; id < n; id++) {
+            int[] equationVariables = equationParents[id] != null ? equationParents[id] : new int[0];
+            parentOffsets[id + 1] = parentOffsets[id] + equationVariables.length;
+            System.arraycopy(equationVariables, 0, parents, parentOffsets[id], equationVariables.length);
+            childOffsets[id + 1] = childOffsets[id] + childCounts[id];
+        }
+        int[] nextChild = Arrays.copyOf(childOffsets, n);
+        for (int id = 0; id < n; id++) {
+            for (int e = parentOffsets[id]; e < parentOffsets[id + 1]; e++) {
+                children[nextChild[parents[e]]++] = id;
+            }
+        }
+
+        this.topologicalOrder = sortTopologically();
+    }
+
+    /**
+     * Checks in linear time whether the given equations and exogenous variables form a valid causal model: (1) no
+     * exogenous variable is defined by an equation; (2) no variable is defined by more than one equation; (3) each
+     * variable in an equation is either exogenous or defined by an equation; (4) there are no circular dependencies.
+     * The equations are indexed once and the circular dependencies are searched by a single iterative depth-first
+     * search, so each equation and each occurrence of a variable is visited only once. The equations are visited in the
+     * order of the names of their variables, hence the same problem is reported for the same equations.
+     *
+     * @param exogenousVariables the exogenous variables
+     * @param equations          the equations of the endogenous variables
+     * @throws InvalidCausalModelException thrown if invalid; the message names the first problem found, e.g. the
+     *                                     circular dependency "A -> B -> A" if A occurs in the equation of B and
+     *                                     vice versa
+     */
+    public static void validate(Set<Variable> exogenousVariables, Collection<Equation> equations)
+            throws InvalidCausalModelException {
+        List<Equation> equationsSorted = new ArrayList<>(equations);
+        equationsSorted.sort(Comparator.comparing(e -> e.getVariable().name()));
+        int n = equationsSorted.size();
+        Map<Variable, Integer> ids = new HashMap<>(2 * n);
+        for (int id = 0; id < n; id++) {
+            Variable variable = equationsSorted.get(id).getVariable();
+            if (exogenousVariables.contains(variable)) {
+                throw new InvalidCausalModelException("Variable " + variable + " is exogenous, but also defined " +
+                        "by an equation");
+            }
+            if (ids.put(variable, id) != null) {
+                throw new InvalidCausalModelException("Variable " + variable + " is defined by more than one " +
+                        "equation");
+            }
+        }
+
+        // the endogenous variables of each equation; exogenous variables cannot be part of a cycle
+        int[][] parents = new int[n][];
+        for (int id = 0; id < n; id++) {
+            Equation equation = equationsSorted.get(id);
+            Set<Variable> formulaVariables = equation.getFormula().variables();
+            int[] equationVariables = new int[formulaVariables.size()];
+            int size = 0;
+            for (Variable variable : formulaVariables) {
+                Integer parent = ids.get(variable);
+                if (parent != null) {
+                    equationVariables[size++] = parent;
+                } else if (!exogenousVariables.contains(variable)) {
+                    throw new InvalidCausalModelException("Variable " + variable + " in the equation of " +
+                            equation.getVariable() + " is neither exogenous nor defined by an equation");
+                }
+            }
+            parents[id] = Arrays.copyOf(equationVariables, size);
+        }
+
+        // depth-first search; a variable is on the stack while its parents are searched
+        int[] stack = new int[n];
+        int[] stackPosition = new int[n];
+        int[] nextParent = new int[n];
+        boolean[] visited = new boolean[n];
+        Arrays.fill(stackPosition, -1);
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            int size = 0;
+            visited[root] = true;
+            stackPosition[root] = size;
+            stack[size++] = root;
+            while (size > 0) {
+                int id = stack[size - 1];
+                if (nextParent[id] < parents[id].length) {
+                    int parent = parents[id][nextParent[id]++];
+                    if (stackPosition[parent] >= 0) {
+                        // the stack from the parent to the top is a path along which each variable depends on the next
+                        StringBuilder cycle = new StringBuilder(equationsSorted.get(parent).getVariable().name());
+                        for (int i = size - 1; i >= stackPosition[parent]; i--) {
+                            cycle.append(" -> ").append(equationsSorted.get(stack[i]).getVariable().name());
+                        }
+                        throw new InvalidCausalModelException("The equations contain a circular dependency: " +
+                                cycle);
+                    }
+                    if (!visited[parent]) {
+                        visited[parent] = true;
+                        stackPosition[parent] = size;
+                        stack[size++] = parent;
+                    }
+                } else {
+                    stackPosition[id] = -1;
+                    size--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the variables topologically by the algorithm of Kahn, i.e. a variable is visited once all its parents have
+     * been visited. Variables without parents are visited in the order of their ids.
+     *
+     * @return the ids of all variables in topological order
+     * @throws IllegalArgumentException if there is a circular dependency
+     */
+    private int[] sortTopologically() {
+        int n = variables.length;
+        int[] remainingParents = new int[n];
+        int[] order = new int[n];
+        int size = 0;
+        for (int id = 0; id < n; id++) {
+            remainingParents[id] = parentOffsets[id + 1] - parentOffsets[id];
+            if (remainingParents[id] == 0) {
+                order[size++] = id;
+            }
+        }
+        for (int head = 0; head < size; head++) {
+            int id = order[head];
+            for (int e = childOffsets[id]; e < childOffsets[id + 1]; e++) {
+                if (--remainingParents[children[e]] == 0) {
+                    order[size++] = children[e];
+                }
+            }
+        }
+        if (size < n) {
+            throw new IllegalArgumentException("The equations contain a circular dependency");
+        }
+        return order;
+    }
+
+    /**
+     * @return the endogenous variables in topological order, i.e. each variable comes after all variables of its
+     * equation
+     */
+    public List<Variable> getEndogenousVariablesSorted() {
+        List<Variable> sorted = new ArrayList<>(variables.length - numberOfExogenousVariables);
+        for (int id : topologicalOrder) {
+            if (id >= numberOfExogenousVariables) {
+                sorted.add(variables[id]);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Computes the variables that are reachable from the given variables, i.e. the variables that the given
+     * variables may affect, including the given variables themselves.
+     *
+     * @param variables the variables
+     * @return the reachable variables
+     * @throws IllegalArgumentException if a variable is not part of this graph
+     */
+    public Set<Variable> getDescendants(Collection<Variable> variables) {
+        return getReachableVariables(variables, childOffsets, children, getDescendantBitsets());
+    }
+
+    /**
+     * Computes the variables from which the given variables are reachable, i.e. the variables that may affect the
+     * given variables, including the given variables themselves.
+     *
+     * @param variables the variables
+     * @return the ancestors
+     * @throws IllegalArgumentException if a variable is not part of this graph
+     */
+    public Set<Variable> getAncestors(Collection<Variable> variables) {
+        return getReachableVariables(variables, parentOffsets, parents, getAncestorBitsets());
+    }
+
+    private Set<Variable> getReachableVariables(Collection<Variable> start, int[] offsets, int[] targets,
+                                                long[][] bitsets) {
+        long[] reachable = new long[(variables.length + 63) >> 6];
+        if (bitsets != null) {
+            for (Variable variable : start) {
+                long[] bitset = bitsets[getId(variable)];
+                for (int i = 0; i < reachable.length; i++) {
+                    reachable[i] |= bitset[i];
+                }
+            }
+        } else {
+            // depth-first search over the edges
+            int[] stack = new int[variables.length];
+            int size = 0;
+            for (Variable variable : start) {
+                int id = getId(variable);
+                if (!CompiledCausalModel.get(reachable, id)) {
+                    CompiledCausalModel.set(reachable, id, true);
+                    stack[size++] = id;
+                }
+            }
+            while (size > 0) {
+                int id = stack[--size];
+                for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                    if (!CompiledCausalModel.get(reachable, targets[e])) {
+                        CompiledCausalModel.set(reachable, targets[e], true);
+                        stack[size++] = targets[e];
+                    }
+                }
+            }
+        }
+        Set<Variable> reachableVariables = new HashSet<>();
+        for (int i = 0; i < reachable.length; i++) {
+            for (long word = reachable[i]; word != 0L; word &= word - 1) {
+                reachableVariables.add(variables[(i << 6) + Long.numberOfTrailingZeros(word)]);
+            }
+        }
+        return reachableVariables;
+    }
+
+    /**
+     * @return the descendants of each variable, computed in reverse topological order from those of its children;
+     * null if the graph is too large
+     */
+    private long[][] getDescendantBitsets() {
+        if (descendants == null && variables.length <= MAX_BITSET_VARIABLES) {
+            long[][] bitsets = new long[variables.length][];
+            for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+                bitsets[topologicalOrder[i]] = unionWithSelf(topologicalOrder[i], childOffsets, children, bitsets);
+            }
+            descendants = bitsets;
+        }
+        return descendants;
+    }
+
+    /**
+     * @return the ancestors of each variable, computed in topological order from those of its parents; null if the
+     * graph is too large
+     */
+    private long[][] getAncestorBitsets() {
+        if (ancestors == null && variables.length <= MAX_BITSET_VARIABLES) {
+            long[][] bitsets = new long[variables.length][];
+            for (int id : topologicalOrder) {
+                bitsets[id] = unionWithSelf(id, parentOffsets, parents, bitsets);
+            }
+            ancestors = bitsets;
+        }
+        return ancestors;
+    }
+
+    private long[] unionWithSelf(int id, int[] offsets, int[] targets, long[][] bitsets) {
+        long[] bitset = new long[(variables.length + 63) >> 6];
+        CompiledCausalModel.set(bitset, id, true);
+        for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+            long[] targetBitset = bitsets[targets[e]];
+            for (int i = 0; i < bitset.length; i++) {
+                bitset[i] |= targetBitset[i];
+            }
+        }
+        return bitset;
+    }
+
+    /**
+     * @param variable a variable
+     * @return the id of the variable
+     * @throws IllegalArgumentException if the variable is not part of this graph
+     */
+    public int getId(Variable variable) {
+        Integer id = ids.get(variable);
+        if (id == null) {
+            throw new IllegalArgumentException("Variable " + variable + " is not part of the model");
+        }
+        return id;
+    }
+
+    public Variable getVariable(int id) {
+        return variables[id];
+    }
+
+    public int getNumberOfVariables() {
+        return variables.length;
+    }
+
+    public int getNumberOfExogenousVariables() {
+        return numberOfExogenousVariables;
+    }
+
+    /**
+     * @param id the id of a variable
+     * @return the ids of the variables of its equation; empty for exogenous variables
+     */
+    int[] getParentIds(int id) {
+        return Arrays.copyOfRange(parents, parentOffsets[id], parentOffsets[id + 1]);
+    }
+}
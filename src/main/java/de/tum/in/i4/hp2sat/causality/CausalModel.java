@@ -6,16 +6,14 @@ import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidContextException;
 import de.tum.in.i4.hp2sat.exceptions.InvalidPhiException;
-import de.tum.in.i4.hp2sat.util.Util;
-import org.graphstream.algorithm.TopologicalSortDFS;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
-import org.graphstream.graph.implementations.SingleGraph;
+import org.logicng.formulas.FType;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,10 +27,17 @@ public class CausalModel {
     private Set<Variable> exogenousVariables;
 
     private Map<Variable, Equation> variableEquationMap;
-    private Graph graph;
-    private Graph graphReversed;
+    private CausalGraph causalGraph;
     private List<Equation> equationsSorted; // according to topological sort
     private FormulaFactory formulaFactory;
+    private volatile CompiledCausalModel compiledModel;
+    // clauses of (V <=> Formula_V) by V, created on first use
+    private volatile Map<Variable, List<Formula>> equationClauses;
+    // shared with the copies of this causal model
+    private PortfolioStatistics portfolioStatistics = new PortfolioStatistics();
+    private boolean incrementalSATSolving;
+    // the incremental encoding of the SAT-based solving strategies; not shared by copies
+    private IncrementalSATEncoding incrementalSATEncoding;
 
     /**
      * Creates a new causal model
@@ -72,7 +77,7 @@ public class CausalModel {
         }
         this.variableEquationMap = equations.stream()
                 .collect(Collectors.toMap(Equation::getVariable, Function.identity()));
-        this.graph = this.toGraph();
+        this.causalGraph = new CausalGraph(exogenousVariables, equations);
         this.formulaFactory = formulaFactory;
         equationsSorted = this.sortEquations();
     }
@@ -92,6 +97,29 @@ public class CausalModel {
         this(causalModel.name, causalModel.variableEquationMap.values().stream()
                 .map(e -> variables.contains(e.getVariable()) ? new Equation(e) : e)
                 .collect(Collectors.toSet()), causalModel.exogenousVariables, causalModel.formulaFactory, false);
+        this.portfolioStatistics = causalModel.portfolioStatistics;
+    }
+
+    /**
+     * Creates a copy of this causal model whose variables and equations belong to the given formula factory. As
+     * formula factories are not thread-safe, each thread that works on a model needs a copy with its own factory.
+     * The copy must be created by the thread that owns the formula factory of this model.
+     * IMPORTANT: We skip the validity check when creating the copy!
+     *
+     * @param formulaFactory the formula factory of the copy
+     * @return the copy
+     * @throws InvalidCausalModelException thrown if the copy is invalid, which cannot happen for valid models
+     */
+    CausalModel copy(FormulaFactory formulaFactory) throws InvalidCausalModelException {
+        Set<Equation> equations = variableEquationMap.values().stream()
+                .map(e -> new Equation(formulaFactory.variable(e.getVariable().name()),
+                        formulaFactory.importFormula(e.getFormula())))
+                .collect(Collectors.toSet());
+        Set<Variable> exogenousVariablesCopy = exogenousVariables.stream()
+                .map(v -> formulaFactory.variable(v.name())).collect(Collectors.toSet());
+        CausalModel copy = new CausalModel(name, equations, exogenousVariablesCopy, formulaFactory, false);
+        copy.portfolioStatistics = this.portfolioStatistics;
+        return copy;
     }
 
     /**
@@ -112,6 +140,28 @@ public class CausalModel {
     public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
                                          SolvingStrategy solvingStrategy)
             throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
+        return isCause(context, phi, cause, solvingStrategy, (QueryBudget) null);
+    }
+
+    /**
+     * Determines whether the passed set of Literals is a cause for the given phi within the given budget, see
+     * {@link #isCause(Set, Formula, Set, SolvingStrategy)} for a full documentation. Once the budget is exhausted, a
+     * partial result is returned: {@link CausalitySolverResult#getProgress()} tells which ACs have been decided and
+     * how much of their search space has been covered, and each undecided AC is reported as not fulfilled.
+     *
+     * @param context         the context of the causal scenario; defines the values of the exogenous variables
+     * @param phi             the literals (i.e. events) we want to check for whether the given cause is indeed a cause
+     * @param cause           the set of literals (i.e. primitive events) we want to check for being a cause for phi
+     * @param solvingStrategy the applied solving strategy
+     * @param queryBudget     the budget, e.g. with a deadline; null for no bound
+     * @return the result of the solver, possibly partial
+     * @throws InvalidContextException thrown if context is invalid
+     * @throws InvalidCauseException   thrown if the cause is invalid
+     * @throws InvalidPhiException     thrown if phi is invalid
+     */
+    public CausalitySolverResult isCause(Set<Literal> context, Formula phi, Set<Literal> cause,
+                                         SolvingStrategy solvingStrategy, QueryBudget queryBudget)
+            throws InvalidContextException, InvalidCauseException, InvalidPhiException, InvalidCausalModelException {
         validateCausalityCheck(context, phi, cause);
         CausalitySolver causalitySolver;
         if (solvingStrategy == BRUTE_FORCE ) {
@@ -124,8 +174,11 @@ public class CausalModel {
             causalitySolver = new UpdatedHPSolver();
         }
         else {
-            causalitySolver = new SATCausalitySolver();
+            SATCausalitySolver satCausalitySolver = new SATCausalitySolver();
+            satCausalitySolver.setIncremental(incrementalSATSolving);
+            causalitySolver = satCausalitySolver;
         }
+        causalitySolver.setQueryBudget(queryBudget);
 
         return causalitySolver.solve(this, context, phi, cause, solvingStrategy);
     }
@@ -156,92 +209,30 @@ public class CausalModel {
         } else {
             validateCausalityCheck(context, phi, cause);
             SATCausalitySolver satCausalitySolver = new SATCausalitySolver();
+            satCausalitySolver.setIncremental(incrementalSATSolving);
             return satCausalitySolver.solve(this, context, phi, cause, solvingStrategy, satSolverType);
         }
     }
 
 
     /**
-     * Checks whether the given equations and exogenous variables are valid.
+     * Checks whether the given equations and exogenous variables are valid, see
+     * {@link CausalGraph#validate(Set, java.util.Collection)}. In addition, no exogenous variable may be called like
+     * the dummy variable.
      *
      * @param equations          the equations
      * @param exogenousVariables the exogenous variables
      * @return true if valid
-     * @throws InvalidCausalModelException thrown if invalid
+     * @throws InvalidCausalModelException thrown if invalid; the message names the problem
      */
     private boolean isValid(Set<Equation> equations, Set<Variable> exogenousVariables)
             throws InvalidCausalModelException {
-        Set<Variable> variables = equations.stream().map(Equation::getVariable).collect(Collectors.toSet());
-        equations.forEach(e -> variables.addAll(e.getFormula().variables()));
-        variables.addAll(exogenousVariables);
-
-        boolean existsDefinitionForEachVariable = equations.size() + exogenousVariables.size() == variables.size();
-        boolean existsNoDuplicateEquationForEachVariable =
-                equations.size() == equations.stream().map(Equation::getVariable).collect(Collectors.toSet()).size();
-        boolean existsCircularDependency = equations.parallelStream()
-                .anyMatch(e -> isVariableInEquation(e.getVariable(), e, equations));
-        boolean exogenousVariableCalledLikeDummy = exogenousVariables.parallelStream()
-                .anyMatch(e -> e.name().equals(SATCausalitySolver.DUMMY_VAR_NAME));
-
-        if (!(existsDefinitionForEachVariable && existsNoDuplicateEquationForEachVariable &&
-                !existsCircularDependency && !exogenousVariableCalledLikeDummy))
-            throw new InvalidCausalModelException();
-
-        return true;
-    }
-
-    /**
-     * Checks whether a given variable is within a given equation or within the equations of the variables used
-     * within the given equation (recursive!)
-     *
-     * @param variable  the variable for which we want to know whether it is in the given equation
-     * @param equation  the equation within which we search for the variable
-     * @param equations the equations
-     * @return true, if variable was found; otherwise false
-     */
-    private boolean isVariableInEquation(Variable variable, Equation equation, Set<Equation> equations) {
-        Set<Variable> variables = equation.getFormula().variables();
-        // check if formula of equation contains variable
-        if (variables.contains(variable)) {
-            return true;
-        }
-
-        // check for all other non-exogenous variables whether their corresponding equation contains the searched var
-        for (Variable v : variables.stream()
-                .filter(v -> !this.exogenousVariables.contains(v) && !v.equals(variable))
-                .collect(Collectors.toSet())) {
-            Equation eq = equations.stream().filter(e -> e.getVariable().equals(v)).findFirst().orElse(null);
-            /*
-            if eq is null, this would mean that a variable has no definition; this will be captured by another check
-            in the isValid() method. Since the current method is private, we can ignore the case here.
-             */
-            if (eq != null) {
-                if (isVariableInEquation(variable, eq, equations))
-                    return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Converts this causal model into a graph. Needed for evaluation.
-     *
-     * @return the causal model as graph
-     */
-    private Graph toGraph() {
-        Graph graph = new SingleGraph(this.name != null ? this.name : "");
-        // create all nodes
-        this.variableEquationMap.values().forEach(e -> graph.addNode(e.getVariable().name()));
-        this.getExogenousVariables().forEach(e -> graph.addNode(e.name()));
-        // create edges
-        for (Equation equation : this.variableEquationMap.values()) {
-            String equationVariableName = equation.getVariable().name();
-            Formula formula = equation.getFormula();
-            formula.variables().forEach(v -> graph.addEdge(equationVariableName + "-" + v.name(), v.name(),
-                    equationVariableName, true));
+        if (exogenousVariables.stream().anyMatch(e -> e.name().equals(SATCausalitySolver.DUMMY_VAR_NAME))) {
+            throw new InvalidCausalModelException("No exogenous variable must be called " +
+                    SATCausalitySolver.DUMMY_VAR_NAME);
         }
-        return graph;
+        CausalGraph.validate(exogenousVariables, equations);
+        return true;
     }
 
     /**
@@ -294,29 +285,16 @@ public class CausalModel {
      * @return an ordered list of equations
      */
     private List<Equation> sortEquations() {
-        FormulaFactory f = this.formulaFactory;
-        // get the causal model as graph
-        Graph graph = this.getGraph();
         /*
          * Following to HP, we can sort variables in an acyclic causal model according to their dependence on other
          * variables. The following applies: "If X < Y, then the value of X may affect the value of Y , but the value
          * of Y cannot affect the value of X"
          * The problem is that we only obtain a partial order if we define < as X is contained in Y (or recursively
-         * in the variables in the equation of Y) if X < Y. Therefore, we use a topological sort.
+         * in the variables in the equation of Y) if X < Y. Therefore, we use a topological sort of the causal graph.
          * */
-        TopologicalSortDFS topologicalSortDFS = new TopologicalSortDFS();
-        topologicalSortDFS.init(graph);
-        topologicalSortDFS.compute();
-        // get sorted nodes
-        List<Node> sortedNodes = topologicalSortDFS.getSortedNodes();
-        // get sorted list of equations
-        List<Equation> equationsSorted = sortedNodes.stream()
-                // filter nodes representing endogenous variables
-                .filter(n -> !this.getExogenousVariables().contains(f.variable(n.getId())))
-                // get corresponding equation
-                .map(n -> this.getVariableEquationMap().get(f.variable(n.getId())))
+        return this.causalGraph.getEndogenousVariablesSorted().stream()
+                .map(v -> this.getVariableEquationMap().get(v))
                 .collect(Collectors.toList());
-        return equationsSorted;
     }
 
     public String getName() {
@@ -331,19 +309,94 @@ public class CausalModel {
         return variableEquationMap;
     }
 
-    public Graph getGraph() {
-        return graph;
+    /**
+     * @return the dependency graph of this causal model, which the solvers use for ordering and reachability; see
+     * {@link GraphStreamExport} to export it to GraphStream
+     */
+    public CausalGraph getCausalGraph() {
+        return causalGraph;
+    }
+
+    public List<Equation> getEquationsSorted() {
+        return equationsSorted;
     }
 
-    public Graph getGraphReversed() {
-        if (this.graphReversed == null) {
-            this.graphReversed = Util.reverseGraph(this.graph);
+    /**
+     * Returns the compiled form of the equations of this causal model, which evaluates a complete context without
+     * restricting formulas. It is created on first use, i.e. the equations must not be changed afterwards.
+     *
+     * @return the compiled causal model
+     */
+    public CompiledCausalModel getCompiledModel() {
+        if (this.compiledModel == null) {
+            this.compiledModel = new CompiledCausalModel(this.exogenousVariables, this.equationsSorted);
         }
-        return graphReversed;
+        return compiledModel;
     }
 
-    public List<Equation> getEquationsSorted() {
-        return equationsSorted;
+    /**
+     * Returns for each endogenous variable V the clauses of the CNF of (V &lt;=&gt; Formula_V), from which the SAT
+     * queries of {@link SATCausalitySolver} are built without converting the equations to CNF for each query. They are
+     * created on first use, i.e. the equations must not be changed afterwards.
+     *
+     * @return the clauses by variable
+     */
+    Map<Variable, List<Formula>> getEquationClauses() {
+        if (this.equationClauses == null) {
+            Map<Variable, List<Formula>> equationClauses = new HashMap<>();
+            for (Equation equation : this.variableEquationMap.values()) {
+                Formula cnf = formulaFactory.equivalence(equation.getVariable(), equation.getFormula()).cnf();
+                List<Formula> clauses = new ArrayList<>();
+                if (cnf.type() == FType.AND) {
+                    cnf.forEach(clauses::add);
+                } else {
+                    clauses.add(cnf);
+                }
+                equationClauses.put(equation.getVariable(), clauses);
+            }
+            this.equationClauses = equationClauses;
+        }
+        return equationClauses;
+    }
+
+    /**
+     * Returns how often each SAT solver type won a race of {@link SATSolverType#PORTFOLIO} on this causal model or
+     * its copies.
+     *
+     * @return the number of wins by SAT solver type; types without wins are missing
+     */
+    public Map<SATSolverType, Integer> getPortfolioWins() {
+        return portfolioStatistics.getWins();
+    }
+
+    PortfolioStatistics getPortfolioStatistics() {
+        return portfolioStatistics;
+    }
+
+    /**
+     * Enables the incremental SAT solving for the SAT-based solving strategies of
+     * {@link #isCause(Set, Formula, Set, SolvingStrategy)}. This causal model is then loaded into a SAT solver once,
+     * which answers all SAT queries of the following checks under assumptions, such that the clauses it learns carry
+     * over from one check to the next, see {@link SATCausalitySolver#setIncremental(boolean)}. The encoding is kept by
+     * this causal model and rebuilt after a bounded number of queries. As the SAT solver is not thread-safe, neither
+     * are the checks on this model then. Default is false.
+     *
+     * @param incrementalSATSolving true to enable the incremental SAT solving
+     */
+    public void setIncrementalSATSolving(boolean incrementalSATSolving) {
+        this.incrementalSATSolving = incrementalSATSolving;
+    }
+
+    public boolean isIncrementalSATSolving() {
+        return incrementalSATSolving;
+    }
+
+    IncrementalSATEncoding getIncrementalSATEncoding() {
+        return incrementalSATEncoding;
+    }
+
+    void setIncrementalSATEncoding(IncrementalSATEncoding incrementalSATEncoding) {
+        this.incrementalSATEncoding = incrementalSATEncoding;
     }
 
     public FormulaFactory getFormulaFactory() {
@@ -1,17 +1,29 @@
 package de.tum.in.i4.hp2sat.causality;
 
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
-import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.Node;
+import de.tum.in.i4.hp2sat.util.CandidateLattice;
 import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.*;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public abstract class CausalitySolver {
+    // if not null, the candidates of getAllCauses are checked in parallel on this executor
+    private Executor causeSearchExecutor;
+    private int causeSearchParallelism = Runtime.getRuntime().availableProcessors();
+    // if not null, bounds the runtime of each check
+    private QueryBudget queryBudget;
+    // notified by all checks, in addition to the metrics of each check
+    private SolverMetricsListener metricsListener = SolverMetricsListener.NO_OP;
+
     /**
      * Checks AC1, AC2 and AC3 given a causal model, a cause, a context and phi and a solving strategy.
      *
@@ -42,9 +54,10 @@ public abstract class CausalitySolver {
     }
 
     /**
-     * Returns all causes for a given causal model, a context and phi.
-     * IMPORTANT: This method is not implemented efficiently. In particular for large models, the execution time will
-     * be extremely large as we create the powerset of ALL variables.
+     * Returns all causes for a given causal model, a context and phi. The candidates are enumerated level-wise by size,
+     * see {@link CandidateLattice}: as a superset of a cause does not fulfill AC3 (minimality!), only candidates none
+     * of whose subsets is a cause are checked. If an executor is set, the candidates of each level are checked in
+     * parallel, see {@link #setCauseSearchExecutor(Executor)}.
      *
      * @param causalModel the underlying causel model
      * @param context     the context
@@ -55,33 +68,207 @@ public abstract class CausalitySolver {
     Set<CausalitySolverResult> getAllCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
                                             SolvingStrategy solvingStrategy, FormulaFactory f)
             throws InvalidCausalModelException {
-        // compute all possible combination of primitive events
+        // the candidates are built from the endogenous variables of the evaluation
         Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
-        Set<Literal> evaluationWithoutExogenousVariables = evaluation.stream()
-                .filter(l -> !causalModel.getExogenousVariables().contains(l.variable())).collect(Collectors.toSet());
-        List<Set<Literal>> allPotentialCauses = new UnifiedSet<>(evaluationWithoutExogenousVariables).powerSet()
-                .stream().map(s -> s.toImmutable().castToSet())
-                .sorted(Comparator.comparingInt(Set::size))
+        List<Literal> evaluationWithoutExogenousVariables = evaluation.stream()
+                .filter(l -> !causalModel.getExogenousVariables().contains(l.variable()))
+                .sorted(Comparator.comparing(Literal::name))
                 .collect(Collectors.toList());
-        // remove empty set (index 0 as list is ordered!)
-        allPotentialCauses.remove(0);
+        CandidateLattice<Literal> candidates = new CandidateLattice<>(evaluationWithoutExogenousVariables);
         Set<CausalitySolverResult> allCauses = new HashSet<>();
-        for (Set<Literal> cause : allPotentialCauses) {
-            /*
-             * if a subset of the currently analyzed potential cause is already a cause, we don't need to check the
-             * current one since it will not fulfill AC3 (minimality!) */
-            if (allCauses.stream().noneMatch(c -> cause.containsAll(c.getCause()))) {
-                CausalitySolverResult causalitySolverResult = solve(causalModel, context, phi, cause, solvingStrategy);
+        for (List<Set<Literal>> level = candidates.nextLevel(); !level.isEmpty(); level = candidates.nextLevel()) {
+            List<CausalitySolverResult> results = solveAll(causalModel, context, phi, level, solvingStrategy);
+            for (CausalitySolverResult causalitySolverResult : results) {
                 if (causalitySolverResult.isAc1() && causalitySolverResult.isAc2() && causalitySolverResult.isAc3()) {
-                    // if all ACs fulfilled, it is a cause
+                    // if all ACs fulfilled, it is a cause; its supersets are not checked
                     allCauses.add(causalitySolverResult);
+                    candidates.mark(causalitySolverResult.getCause());
                 }
             }
-
         }
         return allCauses;
     }
 
+    /**
+     * Checks each of the given causes. If an executor is set, the causes are checked in parallel. As formula
+     * factories are not thread-safe, each worker checks the causes on its own copy of the causal model, with its own
+     * formula factory. The results refer to the given causes and to the formula factory of the causal model.
+     *
+     * @param causalModel     the underlying causal model
+     * @param context         the context
+     * @param phi             the phi
+     * @param causes          the causes
+     * @param solvingStrategy the applied solving strategy
+     * @return the result of each cause, in the order of the causes
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    private List<CausalitySolverResult> solveAll(CausalModel causalModel, Set<Literal> context, Formula phi,
+                                                 List<Set<Literal>> causes, SolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
+        int numberOfWorkers = Math.min(causeSearchParallelism, causes.size());
+        if (causeSearchExecutor == null || numberOfWorkers <= 1) {
+            List<CausalitySolverResult> results = new ArrayList<>(causes.size());
+            for (Set<Literal> cause : causes) {
+                results.add(solve(causalModel, context, phi, cause, solvingStrategy));
+            }
+            return results;
+        }
+
+        CausalitySolverResult[] results = new CausalitySolverResult[causes.size()];
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < numberOfWorkers; i++) {
+            // the copies are created by this thread, as it owns the formula factory of the causal model
+            FormulaFactory f = new FormulaFactory();
+            CausalModel workerModel = causalModel.copy(f);
+            Set<Literal> workerContext = importLiterals(context, f);
+            Formula workerPhi = f.importFormula(phi);
+            List<Set<Literal>> workerCauses = causes.stream().map(c -> importLiterals(c, f))
+                    .collect(Collectors.toList());
+            workers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    int index;
+                    while (!failed.get() && (index = nextIndex.getAndIncrement()) < workerCauses.size()) {
+                        results[index] = solve(workerModel, workerContext, workerPhi, workerCauses.get(index),
+                                solvingStrategy);
+                    }
+                } catch (InvalidCausalModelException e) {
+                    // stop all other workers
+                    failed.set(true);
+                    throw new CompletionException(e);
+                }
+            }, causeSearchExecutor));
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidCausalModelException) {
+                throw (InvalidCausalModelException) e.getCause();
+            }
+            throw e;
+        }
+
+        List<CausalitySolverResult> importedResults = new ArrayList<>(causes.size());
+        for (int i = 0; i < results.length; i++) {
+            CausalitySolverResult result = results[i];
+            importedResults.add(new CausalitySolverResult(result.isAc1(), result.isAc2(), result.isAc3(),
+                    causes.get(i), result.getW() != null ?
+                    importLiterals(result.getW(), causalModel.getFormulaFactory()) : null, result.getProgress(),
+                    result.getMetrics()));
+        }
+        return importedResults;
+    }
+
+    /**
+     * Creates the given literals in the given formula factory, keeping their order.
+     *
+     * @param literals the literals
+     * @param f        the formula factory
+     * @return the literals of the formula factory
+     */
+    static Set<Literal> importLiterals(Collection<Literal> literals, FormulaFactory f) {
+        return literals.stream().map(l -> f.literal(l.name(), l.phase()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Sets the executor on which the candidates of each level of {@link #getAllCauses(CausalModel, Set, Formula,
+     * SolvingStrategy, FormulaFactory)} are checked in parallel, e.g. {@link
+     * java.util.concurrent.ForkJoinPool#commonPool()}. If null (default), the candidates are checked sequentially
+     * by the calling thread.
+     *
+     * @param causeSearchExecutor the executor, or null
+     */
+    public void setCauseSearchExecutor(Executor causeSearchExecutor) {
+        this.causeSearchExecutor = causeSearchExecutor;
+    }
+
+    public Executor getCauseSearchExecutor() {
+        return causeSearchExecutor;
+    }
+
+    /**
+     * Sets the maximal number of workers that check candidates in parallel, each on its own copy of the causal model.
+     * Default is the number of available processors.
+     *
+     * @param causeSearchParallelism the maximal number of workers
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    public void setCauseSearchParallelism(int causeSearchParallelism) {
+        if (causeSearchParallelism < 1) {
+            throw new IllegalArgumentException("The cause search needs at least one worker");
+        }
+        this.causeSearchParallelism = causeSearchParallelism;
+    }
+
+    public int getCauseSearchParallelism() {
+        return causeSearchParallelism;
+    }
+
+    /**
+     * Sets the budget that bounds the runtime of each check. Once it is exhausted, {@link #solve(CausalModel, Set,
+     * Formula, Set, SolvingStrategy)} returns a partial result, whose {@link CausalitySolverResult#getProgress()}
+     * tells which ACs have been decided.
+     *
+     * @param queryBudget the budget; null (default) for no bound
+     */
+    public void setQueryBudget(QueryBudget queryBudget) {
+        this.queryBudget = queryBudget;
+    }
+
+    public QueryBudget getQueryBudget() {
+        return queryBudget;
+    }
+
+    /**
+     * Sets the listener that is notified at well-defined points of each check, e.g. for each W candidate or SAT call.
+     * Independent of the listener, the events of each check are counted and attached to its result, see
+     * {@link CausalitySolverResult#getMetrics()}.
+     *
+     * @param metricsListener the listener; needs to be thread-safe if checks run in parallel
+     */
+    public void setMetricsListener(SolverMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+    }
+
+    public SolverMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Called by the solvers at the beginning of each check.
+     *
+     * @return new metrics of a check, which forward their events to the listener of this solver
+     */
+    protected SolverMetrics createMetrics() {
+        return new SolverMetrics(metricsListener);
+    }
+
+    /**
+     * Called by the solvers in each of their loops.
+     *
+     * @throws CancellationException thrown if the budget is exhausted
+     */
+    protected void checkBudget() {
+        if (queryBudget != null) {
+            queryBudget.checkpoint();
+        }
+    }
+
+    /**
+     * Called by the solvers if a check has been cancelled. If the budget is exhausted, the solver returns a partial
+     * result instead of rethrowing the exception.
+     *
+     * @param e the cancellation
+     * @throws CancellationException the given cancellation, if it has not been caused by the budget
+     */
+    protected void handleCancellation(CancellationException e) {
+        if (queryBudget == null || !queryBudget.isExhausted()) {
+            throw e;
+        }
+    }
+
     /**
      * Evaluates the equations of the given causal model under a given context.
      *
@@ -92,6 +279,13 @@ public abstract class CausalitySolver {
      * negative means false
      */
     public static Set<Literal> evaluateEquations(CausalModel causalModel, Set<Literal> context) {
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        if (compiledModel.isComplete(context)) {
+            return compiledModel.toLiterals(compiledModel.evaluate(context));
+        }
+        /*
+         * A partial context is evaluated by restricting the formulas: an equation that still depends on an unassigned
+         * variable evaluates to false. */
         // initially, we can only assign the exogenous variables as defined by the context
         Assignment assignment = new Assignment(context);
         for (Equation equation : causalModel.getEquationsSorted()) {
@@ -114,6 +308,59 @@ public abstract class CausalitySolver {
         return assignment.literals();
     }
 
+    /**
+     * Evaluates the equations of the given causal model under a given context, see
+     * {@link #evaluateEquations(CausalModel, Set)}, and reports the evaluated equations.
+     *
+     * @param causalModel the causal model
+     * @param context     the context
+     * @param metrics     the metrics of the check
+     * @return evaluation for all variables within the causal model (endo and exo)
+     */
+    protected static Set<Literal> evaluateEquations(CausalModel causalModel, Set<Literal> context,
+                                                    SolverMetricsListener metrics) {
+        Set<Literal> evaluation = evaluateEquations(causalModel, context);
+        metrics.equationsEvaluated(causalModel.getEquationsSorted().size());
+        return evaluation;
+    }
+
+    /**
+     * Evaluates the equations of the given compiled model under a given context and reports the evaluated equations.
+     *
+     * @param compiledModel the compiled model, possibly with interventions
+     * @param context       the context; needs to assign all exogenous variables
+     * @param metrics       the metrics of the check
+     * @return the evaluation as bitset, see {@link CompiledCausalModel}
+     */
+    protected static long[] evaluateEquations(CompiledCausalModel compiledModel, Set<Literal> context,
+                                              SolverMetricsListener metrics) {
+        long[] evaluation = compiledModel.evaluate(context);
+        metrics.equationsEvaluated(compiledModel.getNumberOfVariables()
+                - compiledModel.getNumberOfExogenousVariables());
+        return evaluation;
+    }
+
+    /**
+     * Intervenes on a compiled model by setting each variable of the given literals to its phase, i.e. the compiled
+     * counterpart of {@link #createModifiedCausalModelForW(CausalModel, Set, FormulaFactory)}, and reports the
+     * modified model. For the cause, pass the negated cause.
+     *
+     * @param compiledModel the compiled model, possibly with interventions
+     * @param literals      the literals whose variables are set
+     * @param metrics       the metrics of the check
+     * @return the modified compiled model
+     */
+    protected static CompiledCausalModel intervene(CompiledCausalModel compiledModel, Set<Literal> literals,
+                                                   SolverMetricsListener metrics) {
+        Map<Variable, Boolean> values = new HashMap<>();
+        for (Literal literal : literals) {
+            values.put(literal.variable(), literal.phase());
+        }
+        CompiledCausalModel compiledModelModified = compiledModel.intervene(values);
+        metrics.modifiedModelsBuilt(1);
+        return compiledModelModified;
+    }
+
     /**
      * Creates a modified causal model by replacing all equations referring to parts of the cause with the negation
      * of the phase of the respective part of the cause, i.e. with setting x'
@@ -145,6 +392,44 @@ public abstract class CausalitySolver {
         return createModifiedCausalModel(causalModel, w, f);
     }
 
+    /**
+     * Creates a modified causal model for the cause, see
+     * {@link #createModifiedCausalModelForCause(CausalModel, Set, FormulaFactory)}, and reports it.
+     *
+     * @param causalModel the causal model
+     * @param cause       the cause
+     * @param metrics     the metrics of the check
+     * @param f           a formula factory
+     * @return the modified causal model
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    protected CausalModel createModifiedCausalModelForCause(CausalModel causalModel, Set<Literal> cause,
+                                                            SolverMetricsListener metrics, FormulaFactory f)
+            throws InvalidCausalModelException {
+        CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
+        metrics.modifiedModelsBuilt(1);
+        return causalModelModified;
+    }
+
+    /**
+     * Creates a modified causal model for W, see
+     * {@link #createModifiedCausalModelForW(CausalModel, Set, FormulaFactory)}, and reports it.
+     *
+     * @param causalModel the causal model
+     * @param w           the set W
+     * @param metrics     the metrics of the check
+     * @param f           a formula factory
+     * @return the modified causal model
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    protected CausalModel createModifiedCausalModelForW(CausalModel causalModel, Set<Literal> w,
+                                                        SolverMetricsListener metrics, FormulaFactory f)
+            throws InvalidCausalModelException {
+        CausalModel causalModelModified = createModifiedCausalModelForW(causalModel, w, f);
+        metrics.modifiedModelsBuilt(1);
+        return causalModelModified;
+    }
+
     /**
      * Returns only those variables of a causal model that need to be in set W.
      *
@@ -157,14 +442,13 @@ public abstract class CausalitySolver {
     static Set<Variable> getMinimalWVariables(CausalModel causalModel, Formula phi, Set<Literal> cause,
                                               FormulaFactory f) {
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
-        Graph graph = causalModel.getGraph();
+        CausalGraph graph = causalModel.getCausalGraph();
         // get set of reachable variables by X
-        Set<Variable> reachableVariablesByCause = getReachableVariables(graph, cause, f);
+        Set<Variable> reachableVariablesByCause = getReachableVariables(graph, cause, false);
         reachableVariablesByCause = reachableVariablesByCause.stream()
                 .filter(v -> !causeVariables.contains(v)).collect(Collectors.toSet());
-        Graph graphReversed = causalModel.getGraphReversed();
-        // get set of variables that affect phi -> use reversed graph
-        Set<Variable> reachableVariablesByPhi = getReachableVariables(graphReversed, phi.literals(), f);
+        // get set of variables that affect phi -> follow the edges backwards
+        Set<Variable> reachableVariablesByPhi = getReachableVariables(graph, phi.literals(), true);
 
         // the idea is to only include those variables into W that can be affected by the cause and that affect phi
         reachableVariablesByCause.retainAll(reachableVariablesByPhi);
@@ -176,22 +460,13 @@ public abstract class CausalitySolver {
      *
      * @param graph    the graph
      * @param literals the literals
-     * @param f        a formula factory
-     * @return a set of variables reachable from the passed literals
+     * @param reversed if true, the edges are followed backwards, i.e. the variables that affect the literals are
+     *                 returned
+     * @return a set of variables reachable from the passed literals, including their own variables
      */
-    static Set<Variable> getReachableVariables(Graph graph, Set<Literal> literals, FormulaFactory f) {
-        Set<Variable> reachableVariables = new HashSet<>();
-        for (Literal literal : literals) {
-            // get the corresponding node in the graph
-            Node node = graph.getNode(literal.name());
-            Iterator<Node> iterator = node.getDepthFirstIterator(true);
-            // iterate through all reachable nodes
-            while (iterator.hasNext()) {
-                Node reachableNode = iterator.next();
-                reachableVariables.add(f.variable(reachableNode.getId()));
-            }
-        }
-        return reachableVariables;
+    static Set<Variable> getReachableVariables(CausalGraph graph, Set<? extends Literal> literals, boolean reversed) {
+        Set<Variable> variables = literals.stream().map(Literal::variable).collect(Collectors.toSet());
+        return reversed ? graph.getAncestors(variables) : graph.getDescendants(variables);
     }
 
     /**
@@ -10,6 +10,10 @@ public class CausalitySolverResult {
     private boolean ac3;
     private Set<Literal> cause;
     private Set<Literal> w;
+    // progress of the check that created this result; not part of the result itself
+    private QueryProgress progress;
+    // metrics of the check that created this result; not part of the result itself
+    private SolverMetrics metrics;
 
     public CausalitySolverResult(boolean ac1, boolean ac2, boolean ac3, Set<Literal> cause, Set<Literal> w) {
         this.ac1 = ac1;
@@ -19,6 +23,40 @@ public class CausalitySolverResult {
         this.w = w;
     }
 
+    /**
+     * Creates a result of a check that may have been stopped by its {@link QueryBudget}.
+     *
+     * @param ac1      true if AC1 has been decided to be fulfilled
+     * @param ac2      true if AC2 has been decided to be fulfilled
+     * @param ac3      true if AC3 has been decided to be fulfilled
+     * @param cause    the cause
+     * @param w        the W of AC2, else null
+     * @param progress the progress of the check
+     */
+    public CausalitySolverResult(boolean ac1, boolean ac2, boolean ac3, Set<Literal> cause, Set<Literal> w,
+                                 QueryProgress progress) {
+        this(ac1, ac2, ac3, cause, w);
+        this.progress = progress;
+    }
+
+    /**
+     * Creates a result of a check that may have been stopped by its {@link QueryBudget}, together with the metrics of
+     * the check.
+     *
+     * @param ac1      true if AC1 has been decided to be fulfilled
+     * @param ac2      true if AC2 has been decided to be fulfilled
+     * @param ac3      true if AC3 has been decided to be fulfilled
+     * @param cause    the cause
+     * @param w        the W of AC2, else null
+     * @param progress the progress of the check
+     * @param metrics  the metrics of the check
+     */
+    public CausalitySolverResult(boolean ac1, boolean ac2, boolean ac3, Set<Literal> cause, Set<Literal> w,
+                                 QueryProgress progress, SolverMetrics metrics) {
+        this(ac1, ac2, ac3, cause, w, progress);
+        this.metrics = metrics;
+    }
+
     /**
      * Compute the degree of responsibility. IMPORTANT: Does not ensure minimality of cause X and W!
      *
@@ -86,4 +124,25 @@ public class CausalitySolverResult {
     public Set<Literal> getW() {
         return w;
     }
+
+    /**
+     * @return the progress of the check, which tells which ACs have been decided; null if unknown
+     */
+    public QueryProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return false if the check has been stopped by its {@link QueryBudget} before all ACs have been decided
+     */
+    public boolean isComplete() {
+        return progress == null || progress.isComplete();
+    }
+
+    /**
+     * @return the metrics of the check, e.g. the number of SAT calls and the time per AC; null if unknown
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,296 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Compiled form of the equations of a causal model. Each variable is mapped to a dense int id and each equation is
+ * lowered into a {@link CompiledFormula}. An evaluation of the model is then a single topological pass over a reusable
+ * bitset, i.e. a long[] in which bit i is the value of the variable with id i. In contrast to
+ * restricting the formulas, this pass does not allocate. {@link CausalitySolver#evaluateEquations(CausalModel, Set)}
+ * evaluates complete contexts by this pass.
+ *
+ * The exogenous variables get the ids 0 to k-1 and the endogenous variables the ids k to n-1, each sorted by name. The
+ * ids therefore only depend on the variables of a model, but not on its equations. Consequently, all models that are
+ * derived from the same model by interventions share their ids, such that their bitsets and compiled formulas can be
+ * used interchangeably.
+ *
+ * An intervention, see {@link #intervene(Map)}, does not recompile anything. It shares all compiled equations and only
+ * overrides the values of the intervened variables.
+ */
+public class CompiledCausalModel {
+    private final Variable[] variables;
+    private final Map<Variable, Integer> ids;
+    private final int numberOfExogenousVariables;
+    // ids of the endogenous variables in the order in which they are evaluated
+    private final int[] evaluationOrder;
+    private final CompiledFormula[] equations;
+    // bitsets of the intervened variables and their values; null if there is no intervention
+    private final long[] intervened;
+    private final long[] intervenedValues;
+
+    /**
+     * Compiles the given equations.
+     *
+     * @param exogenousVariables the exogenous variables
+     * @param equationsSorted    the equations of the endogenous variables, sorted topologically
+     * @throws IllegalArgumentException if a formula contains pseudo-Boolean constraints
+     */
+    public CompiledCausalModel(Collection<Variable> exogenousVariables, List<Equation> equationsSorted) {
+        List<Variable> variables = exogenousVariables.stream().sorted(Comparator.comparing(Variable::name))
+                .collect(Collectors.toList());
+        variables.addAll(equationsSorted.stream().map(Equation::getVariable)
+                .sorted(Comparator.comparing(Variable::name)).collect(Collectors.toList()));
+        this.variables = variables.toArray(new Variable[0]);
+        this.numberOfExogenousVariables = exogenousVariables.size();
+        this.ids = new HashMap<>();
+        for (int i = 0; i < this.variables.length; i++) {
+            ids.put(this.variables[i], i);
+        }
+
+        this.evaluationOrder = new int[equationsSorted.size()];
+        this.equations = new CompiledFormula[equationsSorted.size()];
+        for (int i = 0; i < equationsSorted.size(); i++) {
+            Equation equation = equationsSorted.get(i);
+            evaluationOrder[i] = ids.get(equation.getVariable());
+            equations[i] = compile(equation.getFormula());
+        }
+        this.intervened = null;
+        this.intervenedValues = null;
+    }
+
+    /**
+     * Creates a copy of the passed compiled model that shares its equations, but with the given interventions.
+     */
+    private CompiledCausalModel(CompiledCausalModel compiledModel, long[] intervened, long[] intervenedValues) {
+        this.variables = compiledModel.variables;
+        this.ids = compiledModel.ids;
+        this.numberOfExogenousVariables = compiledModel.numberOfExogenousVariables;
+        this.evaluationOrder = compiledModel.evaluationOrder;
+        this.equations = compiledModel.equations;
+        this.intervened = intervened;
+        this.intervenedValues = intervenedValues;
+    }
+
+    /**
+     * Returns a compiled model in which the given endogenous variables are set to constants instead of being
+     * evaluated by their equations. Interventions of this model are kept unless overridden.
+     *
+     * @param values the value of each intervened variable
+     * @return the intervened compiled model
+     * @throws IllegalArgumentException if a variable is not an endogenous variable of this model
+     */
+    public CompiledCausalModel intervene(Map<Variable, Boolean> values) {
+        long[] intervened = this.intervened != null ? this.intervened.clone() : newAssignment();
+        long[] intervenedValues = this.intervenedValues != null ? this.intervenedValues.clone() : newAssignment();
+        for (Map.Entry<Variable, Boolean> entry : values.entrySet()) {
+            int id = getId(entry.getKey());
+            if (id < numberOfExogenousVariables) {
+                throw new IllegalArgumentException("Cannot intervene on exogenous variable " + entry.getKey());
+            }
+            set(intervened, id, true);
+            set(intervenedValues, id, entry.getValue());
+        }
+        return new CompiledCausalModel(this, intervened, intervenedValues);
+    }
+
+    /**
+     * Compiles a formula over the variables of this model, e.g. phi.
+     *
+     * @param formula the formula
+     * @return the compiled formula
+     * @throws IllegalArgumentException if the formula contains a variable that is not part of this model
+     */
+    public CompiledFormula compile(Formula formula) {
+        return CompiledFormula.compile(formula, this::getId);
+    }
+
+    /**
+     * Compiles the conjunction of the given literals, e.g. of a cause.
+     *
+     * @param literals the literals
+     * @param f        a formula factory
+     * @return the compiled conjunction
+     * @throws IllegalArgumentException if a literal is not part of this model
+     */
+    public CompiledFormula compile(Collection<? extends Literal> literals, FormulaFactory f) {
+        return compile(f.and(literals));
+    }
+
+    /**
+     * Evaluates all equations. The values of the exogenous variables need to be set before; the values of the
+     * endogenous variables are overwritten.
+     *
+     * @param assignment the bitset, see {@link #newAssignment()}
+     */
+    public void evaluate(long[] assignment) {
+        for (int i = 0; i < equations.length; i++) {
+            int id = evaluationOrder[i];
+            if (intervened != null && get(intervened, id)) {
+                set(assignment, id, get(intervenedValues, id));
+            } else {
+                set(assignment, id, equations[i].evaluate(assignment));
+            }
+        }
+    }
+
+    /**
+     * Evaluates all equations bit-sliced, i.e. for 64 * width assignments at once. The values of the exogenous
+     * variables need to be set before; the values of the endogenous variables are overwritten.
+     *
+     * @param words the bit-sliced values, see {@link #newAssignment(int)}
+     * @param width the number of words per variable
+     */
+    public void evaluate(long[] words, int width) {
+        for (int i = 0; i < equations.length; i++) {
+            int id = evaluationOrder[i];
+            int offset = id * width;
+            if (intervened != null && get(intervened, id)) {
+                long value = get(intervenedValues, id) ? -1L : 0L;
+                for (int word = 0; word < width; word++) {
+                    words[offset + word] = value;
+                }
+            } else {
+                for (int word = 0; word < width; word++) {
+                    words[offset + word] = equations[i].evaluate(words, width, word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates all equations under the given context into a new bitset.
+     *
+     * @param context the context; needs to assign all exogenous variables, see {@link #isComplete(Set)}
+     * @return the bitset
+     */
+    public long[] evaluate(Set<Literal> context) {
+        long[] assignment = newAssignment();
+        setContext(assignment, context);
+        evaluate(assignment);
+        return assignment;
+    }
+
+    /**
+     * Checks whether the given context assigns each exogenous variable exactly once, i.e. whether it can be evaluated
+     * by this model. Partial contexts are evaluated by restricting the formulas instead, see
+     * {@link CausalitySolver#evaluateEquations(CausalModel, Set)}.
+     *
+     * @param context the context
+     * @return true if the context is complete
+     */
+    public boolean isComplete(Set<Literal> context) {
+        if (context.size() != numberOfExogenousVariables) {
+            return false;
+        }
+        long[] assigned = newAssignment();
+        for (Literal literal : context) {
+            Integer id = ids.get(literal.variable());
+            if (id == null || id >= numberOfExogenousVariables || get(assigned, id)) {
+                return false;
+            }
+            set(assigned, id, true);
+        }
+        return true;
+    }
+
+    /**
+     * @return a new bitset that is large enough for all variables of this model; all variables are false
+     */
+    public long[] newAssignment() {
+        return new long[(variables.length + 63) >> 6];
+    }
+
+    /**
+     * Creates a new bit-sliced assignment in which each variable holds width words, i.e. 64 * width lanes. Word j of
+     * the variable with id i is at index i * width + j.
+     *
+     * @param width the number of words per variable
+     * @return the bit-sliced assignment; all variables are false in all lanes
+     */
+    public long[] newAssignment(int width) {
+        return new long[variables.length * width];
+    }
+
+    /**
+     * Sets the values of the exogenous variables to the given context.
+     *
+     * @param assignment the bitset
+     * @param context    the context; positive literal means true, negative means false
+     */
+    public void setContext(long[] assignment, Set<Literal> context) {
+        for (Literal literal : context) {
+            set(assignment, getId(literal.variable()), literal.phase());
+        }
+    }
+
+    /**
+     * Converts a bitset into literals; positive literal means true, negative means false.
+     *
+     * @param assignment the bitset
+     * @return the value of each variable as literal
+     */
+    public Set<Literal> toLiterals(long[] assignment) {
+        Set<Literal> literals = new HashSet<>();
+        for (int i = 0; i < variables.length; i++) {
+            literals.add(get(assignment, i) ? variables[i] : variables[i].negate());
+        }
+        return literals;
+    }
+
+    /**
+     * @param variable a variable
+     * @return the id of the variable
+     * @throws IllegalArgumentException if the variable is not part of this model
+     */
+    public int getId(Variable variable) {
+        Integer id = ids.get(variable);
+        if (id == null) {
+            throw new IllegalArgumentException("Variable " + variable + " is not part of the model");
+        }
+        return id;
+    }
+
+    public Variable getVariable(int id) {
+        return variables[id];
+    }
+
+    public int getNumberOfVariables() {
+        return variables.length;
+    }
+
+    public int getNumberOfExogenousVariables() {
+        return numberOfExogenousVariables;
+    }
+
+    /**
+     * Returns the value of the variable with the given id in the given bitset.
+     *
+     * @param assignment the bitset
+     * @param id         the id of the variable
+     * @return the value of the variable
+     */
+    public static boolean get(long[] assignment, int id) {
+        return CompiledFormula.get(assignment, id);
+    }
+
+    /**
+     * Sets the value of the variable with the given id in the given bitset.
+     *
+     * @param assignment the bitset
+     * @param id         the id of the variable
+     * @param value      the new value of the variable
+     */
+    public static void set(long[] assignment, int id, boolean value) {
+        if (value) {
+            assignment[id >> 6] |= 1L << id;
+        } else {
+            assignment[id >> 6] &= ~(1L << id);
+        }
+    }
+}
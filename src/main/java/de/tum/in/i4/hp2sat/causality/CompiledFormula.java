@@ -0,0 +1,222 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.formulas.*;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * A formula whose variables have been replaced by the dense ids of a {@link CompiledCausalModel}. Instead of
+ * restricting the formula with an {@link org.logicng.datastructures.Assignment}, it is evaluated directly on the bitset
+ * of a compiled model, i.e. bit i of the bitset is the value of the variable with id i. Evaluation does not allocate.
+ *
+ * In addition, a formula can be evaluated bit-sliced, i.e. for 64 assignments at once. Then, each variable holds
+ * width words whose bits are the values of the variable in the different assignments (lanes), see
+ * {@link CompiledCausalModel#evaluate(long[], int)}.
+ */
+public abstract class CompiledFormula {
+
+    /**
+     * Evaluates this formula.
+     *
+     * @param assignment the values of the variables as bitset indexed by the variable ids
+     * @return the value of this formula
+     */
+    public abstract boolean evaluate(long[] assignment);
+
+    /**
+     * Evaluates this formula for the 64 lanes of one word of a bit-sliced assignment.
+     *
+     * @param words the bit-sliced values; word j of the variable with id i is at index i * width + j
+     * @param width the number of words per variable
+     * @param word  the index of the word that is evaluated
+     * @return the values of this formula, one bit per lane
+     */
+    public abstract long evaluate(long[] words, int width, int word);
+
+    /**
+     * Returns the value of the variable with the given id in the given bitset.
+     *
+     * @param assignment the bitset
+     * @param id         the id of the variable
+     * @return the value of the variable
+     */
+    static boolean get(long[] assignment, int id) {
+        return (assignment[id >> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Lowers a LogicNG formula.
+     *
+     * @param formula the formula
+     * @param ids     maps each variable of the formula to its id
+     * @return the compiled formula
+     * @throws IllegalArgumentException if the formula contains pseudo-Boolean constraints
+     */
+    static CompiledFormula compile(Formula formula, ToIntFunction<Variable> ids) {
+        switch (formula.type()) {
+            case TRUE:
+                return new Constant(true);
+            case FALSE:
+                return new Constant(false);
+            case LITERAL:
+                Literal literal = (Literal) formula;
+                return new LiteralFormula(ids.applyAsInt(literal.variable()), literal.phase());
+            case NOT:
+                return new NotFormula(compile(((Not) formula).operand(), ids));
+            case IMPL:
+                Implication implication = (Implication) formula;
+                return new OrFormula(new CompiledFormula[]{new NotFormula(compile(implication.left(), ids)),
+                        compile(implication.right(), ids)});
+            case EQUIV:
+                Equivalence equivalence = (Equivalence) formula;
+                return new EquivalenceFormula(compile(equivalence.left(), ids), compile(equivalence.right(), ids));
+            case AND:
+            case OR:
+                CompiledFormula[] operands = new CompiledFormula[formula.numberOfOperands()];
+                int i = 0;
+                for (Formula operand : formula) {
+                    operands[i++] = compile(operand, ids);
+                }
+                return formula.type() == FType.AND ? new AndFormula(operands) : new OrFormula(operands);
+            default:
+                throw new IllegalArgumentException("Cannot compile formula of type " + formula.type());
+        }
+    }
+
+    private static class Constant extends CompiledFormula {
+        private final boolean value;
+
+        Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            return value;
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            return value ? -1L : 0L;
+        }
+    }
+
+    private static class LiteralFormula extends CompiledFormula {
+        private final int id;
+        private final boolean phase;
+
+        LiteralFormula(int id, boolean phase) {
+            this.id = id;
+            this.phase = phase;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            return get(assignment, id) == phase;
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            long value = words[id * width + word];
+            return phase ? value : ~value;
+        }
+    }
+
+    private static class NotFormula extends CompiledFormula {
+        private final CompiledFormula operand;
+
+        NotFormula(CompiledFormula operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            return !operand.evaluate(assignment);
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            return ~operand.evaluate(words, width, word);
+        }
+    }
+
+    private static class EquivalenceFormula extends CompiledFormula {
+        private final CompiledFormula left;
+        private final CompiledFormula right;
+
+        EquivalenceFormula(CompiledFormula left, CompiledFormula right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            return left.evaluate(assignment) == right.evaluate(assignment);
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            return ~(left.evaluate(words, width, word) ^ right.evaluate(words, width, word));
+        }
+    }
+
+    private static class AndFormula extends CompiledFormula {
+        private final CompiledFormula[] operands;
+
+        AndFormula(CompiledFormula[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            for (CompiledFormula operand : operands) {
+                if (!operand.evaluate(assignment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            long value = -1L;
+            for (CompiledFormula operand : operands) {
+                value &= operand.evaluate(words, width, word);
+                if (value == 0L) {
+                    break;
+                }
+            }
+            return value;
+        }
+    }
+
+    private static class OrFormula extends CompiledFormula {
+        private final CompiledFormula[] operands;
+
+        OrFormula(CompiledFormula[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean evaluate(long[] assignment) {
+            for (CompiledFormula operand : operands) {
+                if (operand.evaluate(assignment)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long evaluate(long[] words, int width, int word) {
+            long value = 0L;
+            for (CompiledFormula operand : operands) {
+                value |= operand.evaluate(words, width, word);
+                if (value == -1L) {
+                    break;
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.SingleGraph;
+
+/**
+ * Exports a {@link CausalGraph} to GraphStream, e.g. for visualization. GraphStream is an optional dependency: only
+ * this class refers to it, hence the causal models and the solvers work without it on the classpath.
+ */
+public class GraphStreamExport {
+    private GraphStreamExport() {
+    }
+
+    /**
+     * Exports the given graph to GraphStream. The node ids are the names of the variables and the edge ids are of the
+     * form "Y-X" for an edge from X to Y.
+     *
+     * @param causalGraph the graph of a causal model
+     * @param id          the id of the GraphStream graph, e.g. the name of the causal model
+     * @return the GraphStream graph
+     */
+    public static Graph toGraph(CausalGraph causalGraph, String id) {
+        return export(causalGraph, id, false);
+    }
+
+    /**
+     * Exports the given graph to GraphStream with all edges reversed, i.e. from each variable to the variables of its
+     * equation. The edge ids are the same as in {@link #toGraph(CausalGraph, String)}.
+     *
+     * @param causalGraph the graph of a causal model
+     * @param id          the id of the GraphStream graph
+     * @return the reversed GraphStream graph
+     */
+    public static Graph toGraphReversed(CausalGraph causalGraph, String id) {
+        return export(causalGraph, id, true);
+    }
+
+    /**
+     * Reverses all edges of a GraphStream graph.
+     *
+     * @param graph the graph
+     * @return a new graph with the same nodes and edge ids, whose edges are reversed
+     */
+    public static Graph reverseGraph(Graph graph) {
+        Graph graphReversed = new SingleGraph(graph.getId() + "_reversed");
+        graph.nodes().forEach(n -> graphReversed.addNode(n.getId()));
+        // switch source and target
+        graph.edges().forEach(e -> graphReversed.addEdge(e.getId(), e.getTargetNode().getId(),
+                e.getSourceNode().getId(), true));
+        return graphReversed;
+    }
+
+    private static Graph export(CausalGraph causalGraph, String id, boolean reversed) {
+        Graph graph = new SingleGraph(id);
+        for (int variable = 0; variable < causalGraph.getNumberOfVariables(); variable++) {
+            graph.addNode(causalGraph.getVariable(variable).name());
+        }
+        for (int child = 0; child < causalGraph.getNumberOfVariables(); child++) {
+            String childName = causalGraph.getVariable(child).name();
+            for (int parent : causalGraph.getParentIds(child)) {
+                String parentName = causalGraph.getVariable(parent).name();
+                graph.addEdge(childName + "-" + parentName, reversed ? childName : parentName,
+                        reversed ? parentName : childName, true);
+            }
+        }
+        return graph;
+    }
+}
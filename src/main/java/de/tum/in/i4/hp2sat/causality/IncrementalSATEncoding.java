@@ -0,0 +1,198 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Substitution;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.solvers.SATSolver;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Encoding of a causal model that is loaded into a SAT solver once and then answers the SAT queries of
+ * {@link SATCausalitySolver} for arbitrary contexts, phis and causes by solving under assumptions. Hence, the solver
+ * keeps its learned clauses between the queries on the same model.
+ *
+ * The query of AC2 states for each endogenous variable V that it either keeps its original value or follows its
+ * equation, i.e. (V_originalValue OR (V &lt;=&gt; Formula_V)), see
+ * {@link SATCausalitySolver#generateSATQuery(CausalModel, Formula, Set, Set, Set, SolvingStrategy, boolean,
+ * FormulaFactory)}. As the original value depends on the context, the encoding contains a twin A_V of each endogenous
+ * variable that is defined by the equation of V over the twins, i.e. the twins evaluate to the original values once the
+ * exogenous variables are assigned. Each endogenous variable V then gets a selector S_V and the clause
+ * (S_V OR (V &lt;=&gt; A_V) OR (V &lt;=&gt; Formula_V)). Assuming S_V drops the clause, e.g. for the variables of a
+ * cause, whereas assuming not(S_V) keeps it. The context, the values of the cause and not(phi), the latter guarded by
+ * a selector per phi, are assumed as well. For the search of a minimal W, each endogenous variable V additionally gets
+ * an indicator I_V and the clause (I_V OR S_V OR (V &lt;=&gt; Formula_V)), i.e. I_V is true if V violates its equation.
+ *
+ * Constraints that only concern a single query, e.g. the blocking clauses of a model enumeration, are guarded by a
+ * fresh activation literal, which is disabled permanently after the query. As the disabled clauses stay in the SAT
+ * solver, as do the selectors of all phis, the encoding is replaced by a fresh one after
+ * {@link #MAXIMUM_NUMBER_OF_QUERIES} queries, see {@link #isExhausted()}.
+ *
+ * An instance is not thread-safe, as neither its SAT solver nor its formula factory is.
+ */
+class IncrementalSATEncoding {
+    // like the auxiliary variables of LogicNG, the variables of the encoding start with @ to not clash with the model
+    private static final String ACTUAL_VALUE_PREFIX = "@HP2SAT_ACTUAL_";
+    private static final String SELECTOR_PREFIX = "@HP2SAT_SELECT_";
+    private static final String PHI_PREFIX = "@HP2SAT_PHI_";
+    private static final String ACTIVATION_PREFIX = "@HP2SAT_ACTIVATE_";
+    // number of queries and phis after which the clause database is rebuilt
+    static final int MAXIMUM_NUMBER_OF_QUERIES = 1 << 10;
+
+    private final SATSolverType satSolverType;
+    private final SATSolver satSolver;
+    private final FormulaFactory f;
+    // the exogenous and endogenous variables of the model; models of the solver are projected on them
+    private final List<Variable> variables;
+    private final Map<Variable, Variable> selectors = new HashMap<>();
+    private final List<Variable> indicators = new ArrayList<>();
+    private final Map<Formula, Variable> phiSelectors = new HashMap<>();
+    private int numberOfActivations;
+
+    /**
+     * Loads the equations of the given causal model into the given SAT solver.
+     *
+     * @param causalModel   the causal model
+     * @param satSolverType the type of the SAT solver; needs to support assumptions
+     * @param satSolver     an empty SAT solver of the formula factory of the causal model
+     */
+    IncrementalSATEncoding(CausalModel causalModel, SATSolverType satSolverType, SATSolver satSolver) {
+        this.satSolverType = satSolverType;
+        this.satSolver = satSolver;
+        this.f = causalModel.getFormulaFactory();
+        this.variables = new ArrayList<>(causalModel.getExogenousVariables());
+
+        Map<Variable, Variable> actualValueVariables = new HashMap<>();
+        Substitution actualValues = new Substitution();
+        for (Variable variable : causalModel.getVariableEquationMap().keySet()) {
+            Variable actualValue = f.variable(ACTUAL_VALUE_PREFIX + variable.name());
+            actualValueVariables.put(variable, actualValue);
+            actualValues.addMapping(variable, actualValue);
+        }
+        for (Equation equation : causalModel.getVariableEquationMap().values()) {
+            Variable variable = equation.getVariable();
+            Variable actualValue = actualValueVariables.get(variable);
+            Variable selector = f.variable(SELECTOR_PREFIX + variable.name());
+            variables.add(variable);
+            selectors.put(variable, selector);
+            // A_V <=> Formula_V over the twins
+            satSolver.add(f.equivalence(actualValue, equation.getFormula().substitute(actualValues)));
+            // S_V OR (V <=> A_V) OR (V <=> Formula_V)
+            satSolver.add(f.or(selector, f.equivalence(variable, actualValue),
+                    f.equivalence(variable, equation.getFormula())));
+            // I_V OR S_V OR (V <=> Formula_V)
+            Variable indicator = f.variable(SATCausalitySolver.INDICATOR_PREFIX + variable.name());
+            indicators.add(indicator);
+            for (Formula clause : causalModel.getEquationClauses().get(variable)) {
+                satSolver.add(f.or(indicator, selector, clause));
+            }
+        }
+    }
+
+    /**
+     * Solves a SAT query of {@link SATCausalitySolver} under assumptions.
+     *
+     * @param context       the context
+     * @param notPhi        the negated phi
+     * @param interventions literals that are set regardless of their equations, e.g. the negated cause in AC2
+     * @param relaxed       the endogenous variables that may take any value, regardless of their equations and
+     *                      original values; must contain the variables of the interventions
+     * @param constraint    an additional constraint for this query only
+     * @param allModels     if true, all models are returned, else at most one
+     * @param handler       aborts the SAT solver; may be null
+     * @param metrics       the metrics of the query, to which each SAT call is reported
+     * @return the models projected on the variables of the causal model; empty if the query is unsatisfiable
+     * @throws java.util.concurrent.CancellationException thrown if the SAT solver has been aborted
+     */
+    List<Assignment> solve(Set<Literal> context, Formula notPhi, Set<Literal> interventions, Set<Variable> relaxed,
+                           Formula constraint, boolean allModels, AbortingSATHandler handler,
+                           SolverMetricsListener metrics) {
+        List<Literal> assumptions = createAssumptions(context, notPhi, interventions, relaxed);
+        // activates the constraint and the blocking clauses of this query
+        Variable activation = f.variable(ACTIVATION_PREFIX + numberOfActivations++);
+        satSolver.add(f.or(activation.negate(), constraint));
+        assumptions.add(activation);
+        List<Assignment> models = new ArrayList<>();
+        while (SATCausalitySolver.sat(satSolver, assumptions, handler, metrics) == Tristate.TRUE) {
+            Assignment model = satSolver.model(variables);
+            models.add(model);
+            if (!allModels) {
+                break;
+            }
+            // block the model for the remainder of this query
+            satSolver.add(f.or(activation.negate(), f.or(model.literals().stream().map(Literal::negate)
+                    .collect(Collectors.toList()))));
+        }
+        // disable the constraint and the blocking clauses permanently
+        satSolver.add(activation.negate());
+        return models;
+    }
+
+    /**
+     * Solves a SAT query of {@link SATCausalitySolver} under assumptions such that the number of variables that
+     * violate their equations is minimal, see
+     * {@link SATCausalitySolver#findMinimalModel(SATSolver, List, List, List, Variable, ToIntFunction,
+     * AbortingSATHandler, SolverMetricsListener, FormulaFactory)}.
+     *
+     * @param context       the context
+     * @param notPhi        the negated phi
+     * @param interventions literals that are set regardless of their equations, e.g. the negated cause in AC2
+     * @param relaxed       the endogenous variables that may take any value, regardless of their equations and
+     *                      original values; must contain the variables of the interventions
+     * @param violations    the number of variables of a model that violate their equations, except for the relaxed
+     *                      ones
+     * @param handler       aborts the SAT solver; may be null
+     * @param metrics       the metrics of the query, to which each SAT call is reported
+     * @return a model with a minimal number of violations projected on the variables of the causal model; null if the
+     * query is unsatisfiable
+     * @throws java.util.concurrent.CancellationException thrown if the SAT solver has been aborted
+     */
+    Assignment solveMinimal(Set<Literal> context, Formula notPhi, Set<Literal> interventions, Set<Variable> relaxed,
+                            ToIntFunction<Assignment> violations, AbortingSATHandler handler,
+                            SolverMetricsListener metrics) {
+        List<Literal> assumptions = createAssumptions(context, notPhi, interventions, relaxed);
+        // activates the bounds of this query
+        Variable activation = f.variable(ACTIVATION_PREFIX + numberOfActivations++);
+        assumptions.add(activation);
+        Assignment model = SATCausalitySolver.findMinimalModel(satSolver, assumptions, variables, indicators,
+                activation, violations, handler, metrics, f);
+        // disable the bounds permanently
+        satSolver.add(activation.negate());
+        return model;
+    }
+
+    private List<Literal> createAssumptions(Set<Literal> context, Formula notPhi, Set<Literal> interventions,
+                                            Set<Variable> relaxed) {
+        List<Literal> assumptions = new ArrayList<>(context);
+        assumptions.add(phiSelectors.computeIfAbsent(notPhi, this::addPhiSelector));
+        assumptions.addAll(interventions);
+        for (Map.Entry<Variable, Variable> entry : selectors.entrySet()) {
+            assumptions.add(relaxed.contains(entry.getKey()) ? entry.getValue() : entry.getValue().negate());
+        }
+        return assumptions;
+    }
+
+    private Variable addPhiSelector(Formula notPhi) {
+        Variable selector = f.variable(PHI_PREFIX + phiSelectors.size());
+        satSolver.add(f.or(selector.negate(), notPhi));
+        return selector;
+    }
+
+    /**
+     * @return true if this encoding has answered so many queries, or seen so many phis, that its SAT solver mostly
+     * contains disabled clauses; it should then be replaced by a fresh encoding
+     */
+    boolean isExhausted() {
+        return numberOfActivations + phiSelectors.size() >= MAXIMUM_NUMBER_OF_QUERIES;
+    }
+
+    SATSolverType getSatSolverType() {
+        return satSolverType;
+    }
+}
@@ -0,0 +1,50 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counts per SAT solver type how often it won a race of {@link SATSolverType#PORTFOLIO} on a causal model. A causal
+ * model shares its statistics with its copies, such that races on the copies count for the original model as well.
+ */
+class PortfolioStatistics {
+    private final Map<SATSolverType, Integer> wins = new EnumMap<>(SATSolverType.class);
+    private int races;
+
+    /**
+     * Records that the given SAT solver type won a race.
+     *
+     * @param satSolverType the SAT solver type
+     */
+    synchronized void recordWin(SATSolverType satSolverType) {
+        wins.merge(satSolverType, 1, Integer::sum);
+        races++;
+    }
+
+    /**
+     * @return a copy of the number of wins by SAT solver type; types without wins are missing
+     */
+    synchronized Map<SATSolverType, Integer> getWins() {
+        return new EnumMap<>(wins);
+    }
+
+    /**
+     * Returns the SAT solver type that won most races, once there have been enough races to trust it. Ties are
+     * broken by the order of the SAT solver types.
+     *
+     * @param minimumRaces the number of races that are needed; if 0, no SAT solver type is returned
+     * @return the SAT solver type that won most races; null if there have been less races than needed
+     */
+    synchronized SATSolverType getFavorite(int minimumRaces) {
+        if (minimumRaces == 0 || races < minimumRaces) {
+            return null;
+        }
+        SATSolverType favorite = null;
+        for (Map.Entry<SATSolverType, Integer> entry : wins.entrySet()) {
+            if (favorite == null || entry.getValue() > wins.get(favorite)) {
+                favorite = entry.getKey();
+            }
+        }
+        return favorite;
+    }
+}
@@ -0,0 +1,71 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the runtime of a causality check, see e.g. {@link CausalModel#isCause(java.util.Set,
+ * org.logicng.formulas.Formula, java.util.Set, SolvingStrategy, QueryBudget)}. A budget is exhausted once its deadline
+ * has passed or it has been cancelled, e.g. by another thread. The solvers check it cooperatively in each of their
+ * loops, i.e. between two W candidates, assignments of W, sets Z*, blocks of contexts or SAT calls, and in the SAT
+ * solvers at each conflict. If it is exhausted, they return a partial result, see {@link QueryProgress}.
+ *
+ * A budget may be shared by several queries, e.g. to bound a batch of queries or to cancel all of them at once.
+ */
+public class QueryBudget {
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a budget without a deadline, which is only exhausted once it is cancelled.
+     */
+    public QueryBudget() {
+        this.deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates a budget whose deadline is the given time from now.
+     *
+     * @param timeout the time until the deadline
+     * @param unit    the unit of the timeout
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public QueryBudget(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("The timeout must not be negative");
+        }
+        long nanos = unit.toNanos(timeout);
+        long now = System.nanoTime();
+        // saturate instead of overflowing for very long timeouts
+        this.deadline = nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+    }
+
+    /**
+     * Cancels all queries that use this budget. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if this budget has been cancelled or its deadline has passed
+     */
+    public boolean isExhausted() {
+        return cancelled || deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Called by the solvers in their loops.
+     *
+     * @throws CancellationException thrown if this budget is exhausted
+     */
+    public void checkpoint() {
+        if (isExhausted()) {
+            throw new CancellationException("The query budget is exhausted");
+        }
+    }
+}
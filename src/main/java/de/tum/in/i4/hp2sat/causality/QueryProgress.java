@@ -0,0 +1,147 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.logicng.datastructures.Tristate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a causality check, which is attached to its result. If the {@link QueryBudget} of the check has been
+ * exhausted, the result is partial: only the clauses that are {@link Tristate#TRUE} or {@link Tristate#FALSE} here
+ * have been decided, whereas the clauses that are {@link Tristate#UNDEF} are reported as not fulfilled by the result.
+ *
+ * The search space of AC2 (resp. Clause 2) consists of the W candidates, the one of AC3 (resp. Clause 3) of the
+ * proper subsets of the cause. The SAT-based solvers do not enumerate W candidates, hence their search space is
+ * empty. The solvers update the progress while checking, possibly from several threads.
+ */
+public class QueryProgress {
+    private volatile Tristate ac1 = Tristate.UNDEF;
+    private volatile Tristate ac2 = Tristate.UNDEF;
+    private volatile Tristate ac3 = Tristate.UNDEF;
+    private final AtomicLong wCandidates = new AtomicLong();
+    private final AtomicLong exploredWCandidates = new AtomicLong();
+    private final AtomicLong subCauses = new AtomicLong();
+    private final AtomicLong exploredSubCauses = new AtomicLong();
+
+    public Tristate getAc1() {
+        return ac1;
+    }
+
+    public void setAc1(boolean ac1) {
+        this.ac1 = Tristate.fromBool(ac1);
+    }
+
+    public Tristate getAc2() {
+        return ac2;
+    }
+
+    public void setAc2(boolean ac2) {
+        this.ac2 = Tristate.fromBool(ac2);
+    }
+
+    public Tristate getAc3() {
+        return ac3;
+    }
+
+    public void setAc3(boolean ac3) {
+        this.ac3 = Tristate.fromBool(ac3);
+    }
+
+    /**
+     * @return true if all clauses have been decided, i.e. the result is not partial
+     */
+    public boolean isComplete() {
+        return ac1 != Tristate.UNDEF && ac2 != Tristate.UNDEF && ac3 != Tristate.UNDEF;
+    }
+
+    /**
+     * @return the number of W candidates of AC2, as far as the search has determined them
+     */
+    public long getWCandidates() {
+        return wCandidates.get();
+    }
+
+    /**
+     * @return the number of W candidates of AC2 that have been checked completely
+     */
+    public long getExploredWCandidates() {
+        return exploredWCandidates.get();
+    }
+
+    /**
+     * @return the number of proper subsets of the cause that AC3 checks
+     */
+    public long getSubCauses() {
+        return subCauses.get();
+    }
+
+    /**
+     * @return the number of proper subsets of the cause that have been checked completely
+     */
+    public long getExploredSubCauses() {
+        return exploredSubCauses.get();
+    }
+
+    /**
+     * @return the share of the search space of AC2 that has been checked; 1 if AC2 has been decided
+     */
+    public double getAc2Coverage() {
+        return getCoverage(ac2, exploredWCandidates.get(), wCandidates.get());
+    }
+
+    /**
+     * @return the share of the search space of AC3 that has been checked; 1 if AC3 has been decided
+     */
+    public double getAc3Coverage() {
+        return getCoverage(ac3, exploredSubCauses.get(), subCauses.get());
+    }
+
+    private static double getCoverage(Tristate clause, long explored, long total) {
+        if (clause != Tristate.UNDEF) {
+            return 1.0;
+        }
+        return total == 0 ? 0.0 : Math.min(1.0, (double) explored / total);
+    }
+
+    /**
+     * Called by the solvers once the W candidates of AC2 are known.
+     *
+     * @param wCandidates the number of W candidates
+     */
+    public void addWCandidates(long wCandidates) {
+        this.wCandidates.addAndGet(wCandidates);
+    }
+
+    /**
+     * Called by the solvers after a W candidate of AC2 has been checked.
+     */
+    public void exploreWCandidate() {
+        exploredWCandidates.incrementAndGet();
+    }
+
+    /**
+     * Called by the solvers once the subsets of the cause that AC3 checks are known.
+     *
+     * @param subCauses the number of subsets
+     */
+    public void addSubCauses(long subCauses) {
+        this.subCauses.addAndGet(subCauses);
+    }
+
+    /**
+     * Called by the solvers after a subset of the cause has been checked for AC3.
+     */
+    public void exploreSubCause() {
+        exploredSubCauses.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryProgress{" +
+                "ac1=" + ac1 +
+                ", ac2=" + ac2 +
+                ", ac3=" + ac3 +
+                ", exploredWCandidates=" + exploredWCandidates + "/" + wCandidates +
+                ", exploredSubCauses=" + exploredSubCauses + "/" + subCauses +
+                '}';
+    }
+}
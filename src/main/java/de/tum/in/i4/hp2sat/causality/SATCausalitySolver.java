@@ -3,6 +3,7 @@ package de.tum.in.i4.hp2sat.causality;
 import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
 import org.logicng.datastructures.Assignment;
 import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.CType;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -13,16 +14,37 @@ import org.logicng.solvers.SATSolver;
 import org.logicng.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
+import static de.tum.in.i4.hp2sat.causality.SATSolverType.CLEANLING;
 import static de.tum.in.i4.hp2sat.causality.SATSolverType.GLUCOSE;
 import static de.tum.in.i4.hp2sat.causality.SATSolverType.MINICARD;
 import static de.tum.in.i4.hp2sat.causality.SATSolverType.MINISAT;
+import static de.tum.in.i4.hp2sat.causality.SATSolverType.PORTFOLIO;
 import static de.tum.in.i4.hp2sat.causality.SolvingStrategy.*;
 
 class SATCausalitySolver extends CausalitySolver {
     static final String DUMMY_VAR_NAME = "_dummy";
+    // like the auxiliary variables of LogicNG, the indicators start with @ to not clash with the model
+    static final String INDICATOR_PREFIX = "@HP2SAT_VIOLATED_";
+
+    // the SAT solver types that race in PORTFOLIO
+    private static final List<SATSolverType> PORTFOLIO_SAT_SOLVER_TYPES =
+            Arrays.asList(MINISAT, GLUCOSE, MINICARD, CLEANLING);
+
+    private boolean incremental;
+    private Executor portfolioExecutor = ForkJoinPool.commonPool();
+    private int portfolioRoutingThreshold = 10;
+    // if not null, aborts the SAT solvers, e.g. of the losers of a portfolio race
+    private AbortingSATHandler satHandler;
 
     /**
      * Overrides {@link CausalitySolver#solve(CausalModel, Set, Formula, Set, SolvingStrategy)}.
@@ -57,28 +79,137 @@ class SATCausalitySolver extends CausalitySolver {
     CausalitySolverResult solve(CausalModel causalModel, Set<Literal> context, Formula phi,
                                 Set<Literal> cause, SolvingStrategy solvingStrategy, SATSolverType satSolverType)
             throws InvalidCausalModelException {
+        if (satSolverType == PORTFOLIO) {
+            return solvePortfolio(causalModel, context, phi, cause, solvingStrategy);
+        }
         FormulaFactory f = causalModel.getFormulaFactory();
-        Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
-        Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
-        boolean ac1 = ac1Tuple.first() && ac1Tuple.second();
-        Set<Literal> w;
-        boolean ac3;
-        if (solvingStrategy == SAT_COMBINED || solvingStrategy == SAT_COMBINED_MINIMAL) {
-            Pair<Set<Literal>, Boolean> ac2ac3 = fulfillsAC2AC3(causalModel, phi, cause, context, evaluation,
-                    ac1Tuple.first(), solvingStrategy, satSolverType, f);
-            w = ac2ac3.first();
-            ac3 = ac2ac3.second();
-        } else {
-            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, satSolverType, f);
-            ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy,
-                    satSolverType, f);
+        QueryProgress progress = new QueryProgress();
+        SolverMetrics metrics = createMetrics();
+        boolean ac1 = false;
+        Set<Literal> w = null;
+        boolean ac3 = false;
+        try {
+            metrics.startClause(1);
+            Set<Literal> evaluation = evaluateEquations(causalModel, context, metrics);
+            Pair<Boolean, Boolean> ac1Tuple = fulfillsAC1(evaluation, phi, cause);
+            ac1 = ac1Tuple.first() && ac1Tuple.second();
+            progress.setAc1(ac1);
+            metrics.startClause(2);
+            if (solvingStrategy == SAT_COMBINED || solvingStrategy == SAT_COMBINED_MINIMAL) {
+                Pair<Set<Literal>, Boolean> ac2ac3 = fulfillsAC2AC3(causalModel, phi, cause, context, evaluation,
+                        ac1Tuple.first(), solvingStrategy, satSolverType, metrics, f);
+                w = ac2ac3.first();
+                ac3 = ac2ac3.second();
+                progress.setAc2(w != null);
+            } else {
+                w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategy, satSolverType,
+                        metrics, f);
+                progress.setAc2(w != null);
+                metrics.startClause(3);
+                ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, ac1Tuple.first(), solvingStrategy,
+                        satSolverType, metrics, f);
+            }
+            progress.setAc3(ac3);
+        } catch (CancellationException e) {
+            // the budget is exhausted, i.e. a SAT solver has been aborted; return the ACs decided so far
+            handleCancellation(e);
         }
+        metrics.finishClause();
         boolean ac2 = w != null;
 
-        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w);
+        CausalitySolverResult causalitySolverResult = new CausalitySolverResult(ac1, ac2, ac3, cause, w, progress,
+                metrics);
         return causalitySolverResult;
     }
 
+    /**
+     * Checks AC1, AC2 and AC3 by racing the SAT solver types of {@link SATSolverType#PORTFOLIO} in parallel. As
+     * formula factories are not thread-safe, each SAT solver type works on its own copy of the causal model. The result
+     * of the first SAT solver type that finishes is returned, and the SAT solvers of the others are aborted. The winner
+     * is recorded in the statistics of the causal model. Once the causal model has seen enough races, see
+     * {@link #setPortfolioRoutingThreshold(int)}, its queries are solved by the SAT solver type that won most of them
+     * instead of racing. All racers share the budget of this solver; once it is exhausted, the partial result of the
+     * first racer that stops is returned, which does not count as a win.
+     *
+     * @param causalModel     the underlying causel model
+     * @param context         the context
+     * @param phi             the phi
+     * @param cause           the cause
+     * @param solvingStrategy the applied solving strategy
+     * @return for each AC, true if fulfilled, false else
+     * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
+     */
+    private CausalitySolverResult solvePortfolio(CausalModel causalModel, Set<Literal> context, Formula phi,
+                                                 Set<Literal> cause, SolvingStrategy solvingStrategy)
+            throws InvalidCausalModelException {
+        PortfolioStatistics portfolioStatistics = causalModel.getPortfolioStatistics();
+        SATSolverType favorite = portfolioStatistics.getFavorite(portfolioRoutingThreshold);
+        if (favorite != null) {
+            return solve(causalModel, context, phi, cause, solvingStrategy, favorite);
+        }
+
+        CompletableFuture<Pair<SATSolverType, CausalitySolverResult>> winner = new CompletableFuture<>();
+        // the race fails only if all SAT solver types fail
+        AtomicInteger running = new AtomicInteger(PORTFOLIO_SAT_SOLVER_TYPES.size());
+        for (SATSolverType satSolverType : PORTFOLIO_SAT_SOLVER_TYPES) {
+            // the copies are created by this thread, as it owns the formula factory of the causal model
+            FormulaFactory f = new FormulaFactory();
+            CausalModel racerModel = causalModel.copy(f);
+            Set<Literal> racerContext = importLiterals(context, f);
+            Formula racerPhi = f.importFormula(phi);
+            Set<Literal> racerCause = importLiterals(cause, f);
+            SATCausalitySolver racer = new SATCausalitySolver();
+            racer.incremental = incremental;
+            // the listener sees the work of all racers, whereas the result carries the metrics of the winner
+            racer.setMetricsListener(getMetricsListener());
+            // once the budget is exhausted, each racer returns its partial result
+            racer.setQueryBudget(getQueryBudget());
+            // abort the racer once the race is decided or if this solver is aborted
+            racer.satHandler = new AbortingSATHandler(() -> winner.isDone()
+                    || satHandler != null && satHandler.isAborted());
+            CompletableFuture.runAsync(() -> {
+                try {
+                    winner.complete(new Pair<>(satSolverType, racer.solve(racerModel, racerContext, racerPhi,
+                            racerCause, solvingStrategy, satSolverType)));
+                } catch (Throwable e) {
+                    // also errors, as the race only ends once all racers have finished or one has won
+                    if (running.decrementAndGet() == 0) {
+                        winner.completeExceptionally(e);
+                    }
+                }
+            }, portfolioExecutor);
+        }
+
+        Pair<SATSolverType, CausalitySolverResult> result;
+        try {
+            try {
+                result = winner.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof InvalidCausalModelException) {
+                    throw (InvalidCausalModelException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        } catch (CancellationException e) {
+            // all racers have been aborted by the budget before deciding AC1
+            handleCancellation(e);
+            return new CausalitySolverResult(false, false, false, cause, null, new QueryProgress(), createMetrics());
+        }
+        CausalitySolverResult racerResult = result.second();
+        // a partial result says nothing about which SAT solver type is faster
+        if (racerResult.isComplete()) {
+            portfolioStatistics.recordWin(result.first());
+        }
+        return new CausalitySolverResult(racerResult.isAc1(), racerResult.isAc2(), racerResult.isAc3(), cause,
+                racerResult.getW() != null ?
+                        importLiterals(racerResult.getW(), causalModel.getFormulaFactory()) : null,
+                racerResult.getProgress(), racerResult.getMetrics());
+    }
+
     /**
      * Checks if AC2 is fulfilled.
      *
@@ -89,47 +220,37 @@ class SATCausalitySolver extends CausalitySolver {
      * @param evaluation      the original evaluation of variables
      * @param solvingStrategy the solving strategy
      * @param satSolverType   the to be used SAT solver
+     * @param metrics         the metrics of the check
      * @return returns W if AC2 fulfilled, else null
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
      */
     private Set<Literal> fulfillsAC2(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
                                      Set<Literal> evaluation, SolvingStrategy solvingStrategy,
-                                     SATSolverType satSolverType, FormulaFactory f)
+                                     SATSolverType satSolverType, SolverMetrics metrics, FormulaFactory f)
             throws InvalidCausalModelException {
         Formula negatedPhi = f.not(phi); // negate phi
 
         // create copy of original causal model
-        CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
+        CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, metrics, f);
 
         // evaluate causal model with setting x' for cause
-        Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context);
+        Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context, metrics);
         // check if not(phi) evaluates to true for empty W -> if yes, no further investigation necessary
         if (negatedPhi.evaluate(new Assignment(evaluationModified))) {
             return new HashSet<>();
         }
 
-        SATSolver satSolver = selectSATSolver(satSolverType, f);
-        // generate SAT query
-        Formula formula = generateSATQuery(causalModelModified, negatedPhi, cause, context, evaluation,
-                solvingStrategy, false, f);
-        /*
-         * If we want to compute metrics of the formula, this should be done here. Notice that we need to explicitly
-         * convert the formula to CNF.
-         */
-        satSolver.add(formula);
-        if (satSolver.sat() == Tristate.TRUE) {
-            if (Arrays.asList(SAT, SAT_OPTIMIZED_AC3)
-                    .contains(solvingStrategy)) {
-                // if satisfiable, get the assignment for which the formula is satisfiable
-                Assignment assignment = satSolver.model();
-                return getWStandard(causalModelModified, evaluation, assignment);
-            } else {
-                // if satisfiable, get the assignments for which the formula is satisfiable
-                List<Assignment> assignments = satSolver.enumerateAllModels();
-                return getWMinimal(causalModelModified, evaluation, assignments);
-            }
+        if (Arrays.asList(SAT, SAT_OPTIMIZED_AC3).contains(solvingStrategy)) {
+            List<Assignment> assignments = solveSATQuery(causalModel, negatedPhi, cause, context, evaluation,
+                    solvingStrategy, false, f.verum(), false, satSolverType, metrics, f);
+            // if satisfiable, get the assignment for which the formula is satisfiable
+            return assignments.isEmpty() ? null : getWStandard(causalModelModified, evaluation, assignments.get(0));
         } else {
-            return null;
+            // if satisfiable, get an assignment with a minimal W, without enumerating all satisfying assignments
+            Assignment assignment = solveSATQueryMinimalW(causalModel, causalModelModified, negatedPhi, cause,
+                    context, evaluation, solvingStrategy, satSolverType, metrics, f);
+            return assignment == null ? null :
+                    getWMinimal(causalModelModified, evaluation, Collections.singletonList(assignment));
         }
     }
 
@@ -143,22 +264,21 @@ class SATCausalitySolver extends CausalitySolver {
      * @param evaluation      the original evaluation of variables
      * @param solvingStrategy the solving strategy
      * @param satSolverType   the to be used SAT solver
+     * @param metrics         the metrics of the check
      * @param f               a formula factory
      * @return true if AC3 fulfilled, else false
      */
     private boolean fulfillsAC3(CausalModel causalModel, Formula phi, Set<Literal> cause, Set<Literal> context,
                                 Set<Literal> evaluation, boolean phiOccurred, SolvingStrategy solvingStrategy,
-                                SATSolverType satSolverType, FormulaFactory f) {
+                                SATSolverType satSolverType, SolverMetrics metrics, FormulaFactory f) {
         // if the cause has a size of one, i.e. a singleton-cause, then AC3 is fulfilled automatically
         if (cause.size() > 1 && phiOccurred) {
-            // get specified SAT solver
-            SATSolver satSolver = selectSATSolver(satSolverType, f);
+            boolean optimized = solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL;
             // negate phi
             Formula phiNegated = f.not(phi);
-            // generate SAT query for AC3
-            Formula formula = generateSATQuery(causalModel, phiNegated, cause, context, evaluation, solvingStrategy,
-                    true, f);
-            if (solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL) {
+            // constraint that is added to the SAT query for AC3
+            Formula constraint = f.verum();
+            if (optimized) {
                 // create a set of Variables in the cause, i.e. map a set of Literals to Variables
                 Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
                 // create a map of variables in the cause and their actual value represented as literal
@@ -184,16 +304,13 @@ class SATCausalitySolver extends CausalitySolver {
                     formula3 = f.and(formula3, originalValue);
                 }
                 // add negated formulas by AND
-                formula = f.and(formula, f.not(formula1), f.not(formula2), f.not(formula3));
+                constraint = f.and(f.not(formula1), f.not(formula2), f.not(formula3));
             }
-            /*
-             * If we want to compute metrics of the formula, this should be done here. Notice that we need to explicitly
-             * convert the formula to CNF.
-             */
-            // add query to solver
-            satSolver.add(formula);
-            if (satSolver.sat() == Tristate.TRUE) {
-                if ((solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL)) {
+            // solve SAT query for AC3
+            List<Assignment> assignments = solveSATQuery(causalModel, phiNegated, cause, context, evaluation,
+                    solvingStrategy, true, constraint, !optimized, satSolverType, metrics, f);
+            if (!assignments.isEmpty()) {
+                if (optimized) {
                     /*
                      * We make sure that the generated formula is only satisfiable, if the variables in the cause
                      * actually occurred. That is, if the formula is satisfiable, then we know that AC2 holds for a
@@ -203,10 +320,7 @@ class SATCausalitySolver extends CausalitySolver {
                      * */
                     return false;
                 } else {
-                    // get the assignments for which the formula is satisfiable
-                    List<Assignment> assignments = satSolver.enumerateAllModels().stream()
-                            .filter(a -> a.literals().contains(f.variable(DUMMY_VAR_NAME)))
-                            .collect(Collectors.toList());
+                    // check the assignments for which the formula is satisfiable
                     return fulfillsAC3Helper(causalModel, phi, cause, evaluation, assignments);
                 }
             }
@@ -232,6 +346,7 @@ class SATCausalitySolver extends CausalitySolver {
         Map<Variable, Literal> variableEvaluationMap = createVariableEvaluationMap(causeVariables, evaluation);
         // loop through all satisfying assignments
         for (Assignment assignment : assignments) {
+            checkBudget();
             /*
              * get the variables in the cause as literals such that we have their evaluation in the current
              * satisfying assignment. We call them cause candidates as it is not sure if they are a necessary
@@ -285,6 +400,7 @@ class SATCausalitySolver extends CausalitySolver {
      * @param evaluation      the original evaluation of variables
      * @param solvingStrategy the solving strategy
      * @param satSolverType   the to be used SAT solver
+     * @param metrics         the metrics of the check
      * @param f               a formula factory
      * @return a tuple of set W and a boolean value indicating whether AC3 is fulfilled or not
      * @throws InvalidCausalModelException thrown if internally generated causal models are invalid
@@ -292,7 +408,8 @@ class SATCausalitySolver extends CausalitySolver {
     private Pair<Set<Literal>, Boolean> fulfillsAC2AC3(CausalModel causalModel, Formula phi, Set<Literal> cause,
                                                        Set<Literal> context, Set<Literal> evaluation,
                                                        boolean phiOccurred, SolvingStrategy solvingStrategy,
-                                                       SATSolverType satSolverType, FormulaFactory f)
+                                                       SATSolverType satSolverType, SolverMetrics metrics,
+                                                       FormulaFactory f)
             throws InvalidCausalModelException {
         Set<Literal> w;
         boolean ac3;
@@ -305,41 +422,30 @@ class SATCausalitySolver extends CausalitySolver {
             } else {
                 solvingStrategyNew = SolvingStrategy.SAT_MINIMAL;
             }
-            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategyNew, satSolverType, f);
+            w = fulfillsAC2(causalModel, phi, cause, context, evaluation, solvingStrategyNew, satSolverType,
+                    metrics, f);
             // ac3 is true if cause has size 1
             ac3 = true;
         } else {
             // negate phi
             Formula phiNegated = f.not(phi);
             // create copy of original causal model
-            CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, f);
+            CausalModel causalModelModified = createModifiedCausalModelForCause(causalModel, cause, metrics, f);
             // evaluate causal model with setting x' for cause
-            Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context);
+            Set<Literal> evaluationModified = evaluateEquations(causalModelModified, context, metrics);
             // check if not(phi) evaluates to true for empty W
             if (phiNegated.evaluate(new Assignment(evaluationModified))) {
                 w = new HashSet<>();
                 // perform a normal AC3 check
                 ac3 = fulfillsAC3(causalModel, phi, cause, context, evaluation, phiOccurred, solvingStrategy,
-                        satSolverType, f);
+                        satSolverType, metrics, f);
             } else {
-                // get specified SAT solver
-                SATSolver satSolver = selectSATSolver(satSolverType, f);
-                // generate SAT query for AC3 as this SAT query contains also the satisfying assignments for AC2
-                Formula formula = generateSATQuery(causalModel, phiNegated, cause, context, evaluation,
-                        solvingStrategy, true, f);
-                /*
-                 * If we want to compute metrics of the formula, this should be done here. Notice that we need to
-                 * explicitly convert the formula to CNF.
-                 */
-                // add query to solver
-                satSolver.add(formula);
-                if (satSolver.sat() == Tristate.TRUE) {
+                // solve SAT query for AC3 as this SAT query contains also the satisfying assignments for AC2
+                List<Assignment> assignments = solveSATQuery(causalModel, phiNegated, cause, context, evaluation,
+                        solvingStrategy, true, f.verum(), true, satSolverType, metrics, f);
+                if (!assignments.isEmpty()) {
                     // flip/negate the cause
                     Set<Literal> causeNegated = cause.stream().map(Literal::negate).collect(Collectors.toSet());
-                    // get all satisfying assignments
-                    List<Assignment> assignments = satSolver.enumerateAllModels().stream()
-                            .filter(a -> a.literals().contains(f.variable(DUMMY_VAR_NAME)))
-                            .collect(Collectors.toList());
 
                     if (solvingStrategy == SAT_COMBINED) {
                         /*
@@ -377,6 +483,302 @@ class SATCausalitySolver extends CausalitySolver {
         return new Pair<>(w, ac3);
     }
 
+    /**
+     * Solves the SAT query generated by {@link #generateSATQuery(CausalModel, Formula, Set, Set, Set,
+     * SolvingStrategy, boolean, FormulaFactory)}, extended by a constraint. In incremental mode, see
+     * {@link #setIncremental(boolean)}, the query is answered by the {@link IncrementalSATEncoding} of the causal
+     * model instead.
+     *
+     * @param causalModel     the underlying causal model
+     * @param notPhi          the negated phi
+     * @param cause           the cause
+     * @param context         the context
+     * @param evaluation      the original evaluation under the given context
+     * @param solvingStrategy the solving strategy
+     * @param ac3             set to true if used within AC3 check
+     * @param constraint      a constraint that is added to the SAT query by AND
+     * @param allModels       if true, all satisfying assignments are returned, else at most one
+     * @param satSolverType   the to be used SAT solver
+     * @param metrics         the metrics of the check
+     * @param f               a formula factory
+     * @return the satisfying assignments; empty if the SAT query is not satisfiable
+     */
+    private List<Assignment> solveSATQuery(CausalModel causalModel, Formula notPhi,
+                                           Set<Literal> cause, Set<Literal> context, Set<Literal> evaluation,
+                                           SolvingStrategy solvingStrategy, boolean ac3, Formula constraint,
+                                           boolean allModels, SATSolverType satSolverType, SolverMetrics metrics,
+                                           FormulaFactory f) {
+        // CleaneLing does not support solving under assumptions
+        if (incremental && satSolverType != CLEANLING) {
+            Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+            if (!ac3) {
+                // the variables of the cause are set to x', see createModifiedCausalModelForCause
+                Set<Literal> causeNegated = cause.stream().map(Literal::negate).collect(Collectors.toSet());
+                return getEncoding(causalModel, satSolverType)
+                        .solve(context, notPhi, causeNegated, causeVariables, constraint, allModels, satHandler,
+                                metrics);
+            }
+            /*
+             * Within AC3, the variables of the cause may take any value, except for those that did not actually occur
+             * if optimized, see generateSATQuery. Unlike there, no dummy variable is needed.
+             * */
+            Set<Variable> relaxed = causeVariables;
+            if (solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL) {
+                relaxed = cause.stream().filter(evaluation::contains).map(Literal::variable)
+                        .collect(Collectors.toSet());
+            }
+            return getEncoding(causalModel, satSolverType)
+                    .solve(context, notPhi, Collections.emptySet(), relaxed, constraint, allModels, satHandler,
+                            metrics);
+        }
+
+        SATSolver satSolver = selectSATSolver(satSolverType, f);
+        // generate SAT query
+        List<Formula> formula = generateSATQuery(causalModel, notPhi, cause, context, evaluation, solvingStrategy,
+                ac3, f);
+        formula.add(constraint);
+        /*
+         * If we want to compute metrics of the formula, this should be done here. Notice that only the conjuncts are
+         * in CNF, except for not(phi) and the constraint.
+         */
+        satSolver.add(formula);
+        if (sat(satSolver, Collections.emptyList(), satHandler, metrics) != Tristate.TRUE) {
+            return Collections.emptyList();
+        } else if (!allModels) {
+            return Collections.singletonList(satSolver.model());
+        } else if (ac3) {
+            // only the assignments with the dummy variable set to true allow any value for the cause
+            return enumerateAllModels(satSolver, metrics).stream()
+                    .filter(a -> a.literals().contains(f.variable(DUMMY_VAR_NAME)))
+                    .collect(Collectors.toList());
+        } else {
+            return enumerateAllModels(satSolver, metrics);
+        }
+    }
+
+    /**
+     * Solves the SAT query for AC2 generated by {@link #generateSATQuery(CausalModel, Formula, Set, Set, Set,
+     * SolvingStrategy, boolean, FormulaFactory)} such that the W of the satisfying assignment, see
+     * {@link #getWMinimal(CausalModel, Set, List)}, is minimal. To this end, each endogenous variable V gets an
+     * indicator I_V and the clause (I_V OR (V &lt;=&gt; Formula_V)). As V keeps its original value unless it follows its
+     * equation, V is in W iff it violates its equation. Hence, the indicators of W are a lower bound of the
+     * indicators that are true, and a W of size k exists iff the query is satisfiable with at most k true indicators,
+     * see {@link #findMinimalModel(SATSolver, List, List, List, Variable, ToIntFunction,
+     * AbortingSATHandler, SolverMetricsListener, FormulaFactory)}.
+     *
+     * @param causalModel         the underlying causal model
+     * @param causalModelModified causal model where the equations of the cause are replaced respectively
+     * @param notPhi              the negated phi
+     * @param cause               the cause
+     * @param context             the context
+     * @param evaluation          the original evaluation under the given context
+     * @param solvingStrategy     the solving strategy
+     * @param satSolverType       the to be used SAT solver
+     * @param metrics             the metrics of the check
+     * @param f                   a formula factory
+     * @return a satisfying assignment with a minimal W; null if the SAT query is not satisfiable
+     */
+    private Assignment solveSATQueryMinimalW(CausalModel causalModel, CausalModel causalModelModified,
+                                            Formula notPhi, Set<Literal> cause, Set<Literal> context,
+                                            Set<Literal> evaluation, SolvingStrategy solvingStrategy,
+                                            SATSolverType satSolverType, SolverMetrics metrics, FormulaFactory f) {
+        ToIntFunction<Assignment> wSize = a -> getWMinimal(causalModelModified, evaluation,
+                Collections.singletonList(a)).size();
+        Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
+        // CleaneLing does not support solving under assumptions
+        if (incremental && satSolverType != CLEANLING) {
+            // the variables of the cause are set to x', see createModifiedCausalModelForCause
+            Set<Literal> causeNegated = cause.stream().map(Literal::negate).collect(Collectors.toSet());
+            return getEncoding(causalModel, satSolverType)
+                    .solveMinimal(context, notPhi, causeNegated, causeVariables, wSize, satHandler, metrics);
+        }
+
+        SATSolver satSolver = selectSATSolver(satSolverType, f);
+        // generate SAT query
+        List<Formula> formula = generateSATQuery(causalModel, notPhi, cause, context, evaluation, solvingStrategy,
+                false, f);
+        List<Variable> variables = new ArrayList<>(causalModel.getExogenousVariables());
+        List<Variable> indicators = new ArrayList<>();
+        Map<Variable, List<Formula>> equationClauses = causalModel.getEquationClauses();
+        for (Equation equation : causalModel.getVariableEquationMap().values()) {
+            variables.add(equation.getVariable());
+            // the variables of the cause are set to x' and hence never violate their equations
+            if (!causeVariables.contains(equation.getVariable())) {
+                // I_V OR (V <=> Formula_V)
+                Variable indicator = f.variable(INDICATOR_PREFIX + equation.getVariable().name());
+                addEquationClauses(formula, indicator, equationClauses.get(equation.getVariable()), f);
+                indicators.add(indicator);
+            }
+        }
+        satSolver.add(formula);
+        return findMinimalModel(satSolver, Collections.emptyList(), variables, indicators, null, wSize, satHandler,
+                metrics, f);
+    }
+
+    /**
+     * Searches a model with a minimal cost, where the cost of a model is bounded from below by the number of its true
+     * indicators, and a model with a cost of k exists iff there is one with at most k true indicators. The search
+     * starts with any model and then repeatedly demands less true indicators than the cost of the last model found by
+     * a cardinality constraint, until the solver reports unsatisfiable. Thus, no model is enumerated twice and the
+     * search usually stops after a few calls to the solver.
+     *
+     * @param satSolver   a SAT solver
+     * @param assumptions the assumptions to solve under
+     * @param variables   the variables the models are projected on
+     * @param indicators  the indicators
+     * @param activation  if not null, the cardinality constraints are guarded by this variable, which is then expected
+     *                    to be assumed; else they are added permanently
+     * @param cost        the cost of a model
+     * @param handler     aborts the SAT solver; may be null
+     * @param metrics     the metrics of the check, to which each SAT call is reported
+     * @param f           a formula factory
+     * @return a model with minimal cost projected on the variables; null if there is no model
+     * @throws CancellationException thrown if the SAT solver has been aborted
+     */
+    static Assignment findMinimalModel(SATSolver satSolver, List<Literal> assumptions, List<Variable> variables,
+                                       List<Variable> indicators, Variable activation, ToIntFunction<Assignment> cost,
+                                       AbortingSATHandler handler, SolverMetricsListener metrics,
+                                       FormulaFactory f) {
+        Assignment minimalModel = null;
+        while (sat(satSolver, assumptions, handler, metrics) == Tristate.TRUE) {
+            minimalModel = satSolver.model(variables);
+            int minimalCost = cost.applyAsInt(minimalModel);
+            if (minimalCost == 0) {
+                break;
+            }
+            Formula bound = f.cc(CType.LE, minimalCost - 1, indicators);
+            satSolver.add(activation == null ? bound : f.or(activation.negate(), bound));
+        }
+        return minimalModel;
+    }
+
+    /**
+     * Solves the formulas added to a SAT solver under the given assumptions.
+     *
+     * @param satSolver   a SAT solver
+     * @param assumptions the assumptions
+     * @param handler     aborts the SAT solver; may be null
+     * @param metrics     the metrics of the check, to which the call is reported
+     * @return true if satisfiable, else false
+     * @throws CancellationException thrown if the SAT solver has been aborted
+     */
+    static Tristate sat(SATSolver satSolver, Collection<Literal> assumptions, AbortingSATHandler handler,
+                        SolverMetricsListener metrics) {
+        // easy queries may not reach a conflict at all, hence the handler is asked before each call as well
+        if (handler != null && handler.isAborted()) {
+            throw new CancellationException("The SAT solver has been aborted");
+        }
+        long start = System.nanoTime();
+        // CleaneLing rejects assumptions, even if there are none
+        Tristate result = assumptions.isEmpty() ? satSolver.sat(handler) : satSolver.sat(handler, assumptions);
+        metrics.satSolverCalled(System.nanoTime() - start);
+        if (result == Tristate.UNDEF) {
+            throw new CancellationException("The SAT solver has been aborted");
+        }
+        return result;
+    }
+
+    /**
+     * Enumerates all models of the formulas added to a SAT solver. The enumeration is reported as a single SAT call.
+     *
+     * @param satSolver a SAT solver
+     * @param metrics   the metrics of the check
+     * @return all models
+     * @throws CancellationException thrown if the SAT solver has been aborted
+     */
+    private List<Assignment> enumerateAllModels(SATSolver satSolver, SolverMetricsListener metrics) {
+        long start = System.nanoTime();
+        List<Assignment> assignments = satHandler == null ? satSolver.enumerateAllModels() :
+                satSolver.enumerateAllModels(satHandler);
+        metrics.satSolverCalled(System.nanoTime() - start);
+        if (satHandler != null && satHandler.isAborted()) {
+            throw new CancellationException("The SAT solver has been aborted");
+        }
+        return assignments;
+    }
+
+    /**
+     * Returns the incremental encoding of a causal model. It is kept by the causal model, such that all solvers share
+     * it, and created on first use, for another SAT solver type or once the current one is exhausted, see
+     * {@link IncrementalSATEncoding#isExhausted()}. Each model is used by one thread at a time, see solveAll.
+     *
+     * @param causalModel   the causal model
+     * @param satSolverType the to be used SAT solver
+     * @return the encoding
+     */
+    private IncrementalSATEncoding getEncoding(CausalModel causalModel, SATSolverType satSolverType) {
+        IncrementalSATEncoding encoding = causalModel.getIncrementalSATEncoding();
+        if (encoding == null || encoding.getSatSolverType() != satSolverType || encoding.isExhausted()) {
+            encoding = new IncrementalSATEncoding(causalModel, satSolverType,
+                    selectSATSolver(satSolverType, causalModel.getFormulaFactory()));
+            causalModel.setIncrementalSATEncoding(encoding);
+        }
+        return encoding;
+    }
+
+    /**
+     * Enables the incremental mode. Instead of creating a new SAT solver for each SAT query, each causal model is then
+     * loaded into a SAT solver once, and all SAT queries on it, e.g. for AC2 and AC3 or for all candidates of
+     * {@link #getAllCauses(CausalModel, Set, Formula, SolvingStrategy, FormulaFactory)}, are solved under assumptions,
+     * see {@link IncrementalSATEncoding}. Thus, clauses learned in one query carry over to the next ones. As
+     * CleaneLing does not support assumptions, it is always used non-incrementally. Default is false. The encoding is
+     * kept by the causal model, see {@link CausalModel#setIncrementalSATSolving(boolean)}.
+     *
+     * @param incremental true to enable the incremental mode
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Overrides {@link CausalitySolver#setQueryBudget(QueryBudget)}. Once the budget is exhausted, the SAT solvers are
+     * aborted at their next conflict.
+     *
+     * @param queryBudget the budget; null (default) for no bound
+     */
+    @Override
+    public void setQueryBudget(QueryBudget queryBudget) {
+        super.setQueryBudget(queryBudget);
+        satHandler = queryBudget != null ? new AbortingSATHandler(queryBudget::isExhausted) : null;
+    }
+
+    /**
+     * Sets the executor on which the SAT solver types of {@link SATSolverType#PORTFOLIO} race. Default is
+     * {@link ForkJoinPool#commonPool()}.
+     *
+     * @param portfolioExecutor the executor
+     */
+    public void setPortfolioExecutor(Executor portfolioExecutor) {
+        this.portfolioExecutor = Objects.requireNonNull(portfolioExecutor);
+    }
+
+    public Executor getPortfolioExecutor() {
+        return portfolioExecutor;
+    }
+
+    /**
+     * Sets the number of races of {@link SATSolverType#PORTFOLIO} on a causal model after which its queries are routed
+     * to the SAT solver type that won most of them, see {@link CausalModel#getPortfolioWins()}, instead of racing all
+     * SAT solver types. If 0, all queries race. Default is 10.
+     *
+     * @param portfolioRoutingThreshold the number of races
+     * @throws IllegalArgumentException if the number of races is negative
+     */
+    public void setPortfolioRoutingThreshold(int portfolioRoutingThreshold) {
+        if (portfolioRoutingThreshold < 0) {
+            throw new IllegalArgumentException("The number of races must not be negative");
+        }
+        this.portfolioRoutingThreshold = portfolioRoutingThreshold;
+    }
+
+    public int getPortfolioRoutingThreshold() {
+        return portfolioRoutingThreshold;
+    }
+
     /**
      * Compute a not necessarily minimal W.
      *
@@ -419,11 +821,11 @@ class SATCausalitySolver extends CausalitySolver {
 
             Set<Literal> newW = new HashSet<>();
             for (Literal wCandidate : wCandidates) {
-                // create an assignment instance where the current wCandidate is removed
-                Assignment assignmentNew = new Assignment(assignment.literals().stream()
-                        .filter(l -> !l.variable().equals(wCandidate.variable())).collect(Collectors.toSet()));
-                // compute the value of the current wCandidate using its equation
-                boolean value = variableEquationMap.get(wCandidate.variable()).getFormula().evaluate(assignmentNew);
+                /*
+                 * compute the value of the current wCandidate using its equation. As the causal model is acyclic, the
+                 * equation does not contain the wCandidate itself, hence we can evaluate it on the whole assignment.
+                 * */
+                boolean value = variableEquationMap.get(wCandidate.variable()).getFormula().evaluate(assignment);
                 /*
                  * if the value of the satisfying assignment and the value computed from the equation are
                  * different, than we know that the current variable needs to be in W, since we need to keep it to
@@ -446,44 +848,48 @@ class SATCausalitySolver extends CausalitySolver {
     }
 
     /**
-     * Generates a formula whose satisfiability indicates whether AC2 is fulfilled or not.
+     * Generates a formula whose satisfiability indicates whether AC2 is fulfilled or not. The formula is returned as
+     * the list of its conjuncts. Each equation contributes clauses that are derived from the clauses of
+     * (V &lt;=&gt; Formula_V), which are cached by the causal model, see {@link CausalModel#getEquationClauses()}.
+     * Hence, the equations are converted to CNF once per causal model instead of once per query.
      *
-     * @param causalModel the causal model
+     * @param causalModel the underlying causal model; within the AC2 check, the variables of the cause are set to x',
+     *                    see {@link #createModifiedCausalModelForCause(CausalModel, Set, FormulaFactory)}
      * @param notPhi      the negated phi
      * @param cause       the cause
      * @param context     the context
      * @param evaluation  the original evaluation under the given context
      * @param ac3         set to true if used within AC3 check
      * @param f           a formula factory
-     * @return a formula
+     * @return the conjuncts of the formula
      */
-    private Formula generateSATQuery(CausalModel causalModel, Formula notPhi, Set<Literal> cause,
-                                     Set<Literal> context, Set<Literal> evaluation, SolvingStrategy solvingStrategy,
-                                     boolean ac3, FormulaFactory f) {
+    private List<Formula> generateSATQuery(CausalModel causalModel, Formula notPhi, Set<Literal> cause,
+                                           Set<Literal> context, Set<Literal> evaluation,
+                                           SolvingStrategy solvingStrategy, boolean ac3, FormulaFactory f) {
         // get all variables in cause
         Set<Variable> causeVariables = cause.stream().map(Literal::variable).collect(Collectors.toSet());
         // create map of variables and corresponding evaluation
         Map<Variable, Literal> variableEvaluationMap = evaluation.stream()
                 .collect(Collectors.toMap(Literal::variable, Function.identity()));
+        Map<Variable, List<Formula>> equationClauses = causalModel.getEquationClauses();
         // create formula: !phi AND context
-        Formula formula = f.and(notPhi, f.and(context));
+        List<Formula> formula = new ArrayList<>();
+        formula.add(notPhi);
+        formula.addAll(context);
 
         if (!ac3) {
+            for (Literal l : cause) {
+                // create formula: V <=> x'_V, i.e. the negation of the literal of the cause
+                formula.add(l.negate());
+            }
             for (Equation equation : causalModel.getVariableEquationMap().values()) {
-                /*
-                 * create formula: V_originalValue OR (V <=> Formula_V)
-                 * */
-                Formula equationFormula;
-                if (causeVariables.contains(equation.getVariable())) {
-                    equationFormula = f.equivalence(equation.getVariable(), equation.getFormula());
-                } else {
-                    // get value of variable in original iteration
-                    Literal originalValue = variableEvaluationMap.get(equation.getVariable());
-                    equationFormula = f.or(originalValue, f.equivalence(equation.getVariable(), equation.getFormula()));
+                if (!causeVariables.contains(equation.getVariable())) {
+                    /*
+                     * create formula: V_originalValue OR (V <=> Formula_V)
+                     * */
+                    addEquationClauses(formula, variableEvaluationMap.get(equation.getVariable()),
+                            equationClauses.get(equation.getVariable()), f);
                 }
-
-                // add created formula to global formula by AND
-                formula = f.and(formula, equationFormula);
             }
         } else {
             // create dummy variable
@@ -491,7 +897,6 @@ class SATCausalitySolver extends CausalitySolver {
             for (Equation equation : causalModel.getVariableEquationMap().values()) {
                 // get value of variable in original iteration
                 Literal originalValue = variableEvaluationMap.get(equation.getVariable());
-                Formula equationFormula;                 
                 /*
                  * When generating a SAT query for AC3, then for each variable not in the cause, we stick to the same
                  * scheme as for AC2, i.e. (V_originalValue OR (V <=> Formula_V)).
@@ -499,11 +904,11 @@ class SATCausalitySolver extends CausalitySolver {
                  * cause, but did actually not occur, we also add (V_originalValue OR (V <=> Formula_V)) instead of
                  * allowing it to be both 1 or 0.
                  * */
-                 if (!causeVariables.contains(equation.getVariable())
+                if (!causeVariables.contains(equation.getVariable())
                         || (solvingStrategy == SAT_OPTIMIZED_AC3 || solvingStrategy == SAT_OPTIMIZED_AC3_MINIMAL)
                         && causeVariables.contains(equation.getVariable())
                         && !cause.contains(variableEvaluationMap.get(equation.getVariable()))) {
-                    equationFormula = f.or(originalValue, f.equivalence(equation.getVariable(), equation.getFormula()));
+                    addEquationClauses(formula, originalValue, equationClauses.get(equation.getVariable()), f);
                 }
                 /*
                  * If however the variable of the current equation is in the cause, we additionally add an OR with its
@@ -515,19 +920,32 @@ class SATCausalitySolver extends CausalitySolver {
                  * from the formula which causes problem with the evaluation of some equations later on.
                  * Therefore, we want to keep at least (V_originalValue OR not(V_originalValue)). Unfortunately,
                  * LogicNG automatically replaces this formula by TRUE. To avoid this, we introduce a dummy variable
-                 * as follows: (V_originalValue OR (not(V_originalValue) AND dummy))
-                 * The dummy variable has no effect on the final result. */
+                 * as follows: (V_originalValue OR (not(V_originalValue) AND dummy)), i.e. the clause
+                 * (V_originalValue OR dummy). The dummy variable has no effect on the final result. */
                 else {
-                    equationFormula = f.or(originalValue, f.and(originalValue.negate(), dummy));
+                    formula.add(f.or(originalValue, dummy));
                 }
-                // add created formula to global formula by AND
-                formula = f.and(formula, equationFormula);
             }
-
         }
         return formula;
     }
 
+    /**
+     * Adds the clauses of (literal OR (V &lt;=&gt; Formula_V)), i.e. the literal is added to each clause of
+     * (V &lt;=&gt; Formula_V).
+     *
+     * @param formula         the conjuncts to which the clauses are added
+     * @param literal         the literal
+     * @param equationClauses the clauses of (V &lt;=&gt; Formula_V)
+     * @param f               a formula factory
+     */
+    private static void addEquationClauses(List<Formula> formula, Literal literal, List<Formula> equationClauses,
+                                           FormulaFactory f) {
+        for (Formula clause : equationClauses) {
+            formula.add(f.or(literal, clause));
+        }
+    }
+
     /**
      * Return a SAT solver instance depending on the given type.
      *
@@ -1,5 +1,10 @@
 package de.tum.in.i4.hp2sat.causality;
 
 public enum SATSolverType {
-    MINISAT, GLUCOSE, MINICARD, CLEANLING
+    MINISAT, GLUCOSE, MINICARD, CLEANLING,
+    /**
+     * Races all other SAT solver types in parallel and takes the result of the first one that finishes, see
+     * {@link SATCausalitySolver#setPortfolioRoutingThreshold(int)} for routing queries to the usual winner.
+     */
+    PORTFOLIO
 }
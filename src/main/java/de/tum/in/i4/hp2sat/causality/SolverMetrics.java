@@ -0,0 +1,174 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events of a single query, see {@link SolverMetricsListener}, and forwards each of them to a delegate,
+ * e.g. the listener of the solver. The solvers attach the metrics of a query to its result, see
+ * {@link CausalitySolverResult#getMetrics()}. The counters are thread-safe, as the workers of a query update them
+ * concurrently.
+ *
+ * The time per clause is measured by the thread that solves the query, see {@link #startClause(int)}. If the SAT-based
+ * solvers check AC2 and AC3 in a combined query, the time is attributed to AC2.
+ */
+public class SolverMetrics implements SolverMetricsListener {
+    private final SolverMetricsListener delegate;
+    private final LongAdder modifiedModels = new LongAdder();
+    private final LongAdder equationEvaluations = new LongAdder();
+    private final LongAdder wCandidates = new LongAdder();
+    private final LongAdder wAssignments = new LongAdder();
+    private final LongAdder zStarSubsets = new LongAdder();
+    private final LongAdder contexts = new LongAdder();
+    private final LongAdder satCalls = new LongAdder();
+    private final LongAdder satNanos = new LongAdder();
+    private final LongAdder[] clauseNanos = {new LongAdder(), new LongAdder(), new LongAdder()};
+    // the clause that is currently checked and when its check started; only accessed by the solving thread
+    private int currentClause;
+    private long clauseStart;
+
+    /**
+     * Creates metrics that do not forward their events.
+     */
+    public SolverMetrics() {
+        this(NO_OP);
+    }
+
+    /**
+     * @param delegate the listener to which all events are forwarded
+     */
+    public SolverMetrics(SolverMetricsListener delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Finishes the check of the current clause, if any, and starts the check of the given one.
+     *
+     * @param clause the number of the clause, i.e. 1, 2 or 3
+     */
+    public void startClause(int clause) {
+        finishClause();
+        currentClause = clause;
+        clauseStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes the check of the current clause, if any, and reports its time.
+     */
+    public void finishClause() {
+        if (currentClause != 0) {
+            clauseChecked(currentClause, System.nanoTime() - clauseStart);
+            currentClause = 0;
+        }
+    }
+
+    @Override
+    public void modifiedModelsBuilt(int models) {
+        modifiedModels.add(models);
+        delegate.modifiedModelsBuilt(models);
+    }
+
+    @Override
+    public void equationsEvaluated(long equations) {
+        equationEvaluations.add(equations);
+        delegate.equationsEvaluated(equations);
+    }
+
+    @Override
+    public void wCandidateTried() {
+        wCandidates.increment();
+        delegate.wCandidateTried();
+    }
+
+    @Override
+    public void wAssignmentTried() {
+        wAssignments.increment();
+        delegate.wAssignmentTried();
+    }
+
+    @Override
+    public void zStarSubsetTried() {
+        zStarSubsets.increment();
+        delegate.zStarSubsetTried();
+    }
+
+    @Override
+    public void contextsEnumerated(long contexts) {
+        this.contexts.add(contexts);
+        delegate.contextsEnumerated(contexts);
+    }
+
+    @Override
+    public void satSolverCalled(long nanos) {
+        satCalls.increment();
+        satNanos.add(nanos);
+        delegate.satSolverCalled(nanos);
+    }
+
+    @Override
+    public void clauseChecked(int clause, long nanos) {
+        clauseNanos[clause - 1].add(nanos);
+        delegate.clauseChecked(clause, nanos);
+    }
+
+    public long getModifiedModels() {
+        return modifiedModels.sum();
+    }
+
+    public long getEquationEvaluations() {
+        return equationEvaluations.sum();
+    }
+
+    public long getWCandidates() {
+        return wCandidates.sum();
+    }
+
+    public long getWAssignments() {
+        return wAssignments.sum();
+    }
+
+    public long getZStarSubsets() {
+        return zStarSubsets.sum();
+    }
+
+    public long getContexts() {
+        return contexts.sum();
+    }
+
+    public long getSatCalls() {
+        return satCalls.sum();
+    }
+
+    /**
+     * @return the time of all SAT calls in nanoseconds
+     */
+    public long getSatNanos() {
+        return satNanos.sum();
+    }
+
+    /**
+     * @param clause the number of the clause, i.e. 1, 2 or 3
+     * @return the time of the check of the clause in nanoseconds
+     * @throws IllegalArgumentException if there is no such clause
+     */
+    public long getClauseNanos(int clause) {
+        if (clause < 1 || clause > clauseNanos.length) {
+            throw new IllegalArgumentException("There is no clause " + clause);
+        }
+        return clauseNanos[clause - 1].sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SolverMetrics{" +
+                "modifiedModels=" + modifiedModels +
+                ", equationEvaluations=" + equationEvaluations +
+                ", wCandidates=" + wCandidates +
+                ", wAssignments=" + wAssignments +
+                ", zStarSubsets=" + zStarSubsets +
+                ", contexts=" + contexts +
+                ", satCalls=" + satCalls +
+                ", satNanos=" + satNanos +
+                ", clauseNanos=[" + clauseNanos[0] + ", " + clauseNanos[1] + ", " + clauseNanos[2] + "]" +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package de.tum.in.i4.hp2sat.causality;
+
+/**
+ * Listener that the solvers notify at well-defined points of their hot paths, e.g. to profile queries without a
+ * profiler, see {@link CausalitySolver#setMetricsListener(SolverMetricsListener)}. All methods do nothing by default,
+ * so a listener only overrides the events it is interested in. {@link SolverMetrics} counts all events of a query and
+ * is attached to its result.
+ *
+ * The solvers may notify a listener from several threads at once, e.g. in the parallel W search or if a solver checks
+ * several causes in parallel. Hence, an implementation needs to be thread-safe, and it should be cheap, as it is called
+ * in the innermost loops.
+ */
+public interface SolverMetricsListener {
+    /**
+     * Listener that ignores all events, which is the default of the solvers.
+     */
+    SolverMetricsListener NO_OP = new SolverMetricsListener() {
+    };
+
+    /**
+     * Called after modified models have been built, i.e. copies of a causal model in which the equations of some
+     * variables are replaced by constants, or interventions on a probabilistic causal model.
+     *
+     * @param models the number of models
+     */
+    default void modifiedModelsBuilt(int models) {
+    }
+
+    /**
+     * Called after equations have been evaluated. An evaluation of all equations of a model under one context counts
+     * once per equation, a bit-sliced evaluation additionally once per context.
+     *
+     * @param equations the number of evaluated equations
+     */
+    default void equationsEvaluated(long equations) {
+    }
+
+    /**
+     * Called before a W candidate, i.e. a set of variables, is checked.
+     */
+    default void wCandidateTried() {
+    }
+
+    /**
+     * Called before an assignment of a W candidate is checked.
+     */
+    default void wAssignmentTried() {
+    }
+
+    /**
+     * Called before a subset Z* of Z' is checked.
+     */
+    default void zStarSubsetTried() {
+    }
+
+    /**
+     * Called after contexts have been enumerated, e.g. to sum up the probability of phi.
+     *
+     * @param contexts the number of contexts
+     */
+    default void contextsEnumerated(long contexts) {
+    }
+
+    /**
+     * Called after a SAT solver has returned, including calls that have been aborted.
+     *
+     * @param nanos the time of the call in nanoseconds
+     */
+    default void satSolverCalled(long nanos) {
+    }
+
+    /**
+     * Called after a clause of the definition has been checked, i.e. AC1, AC2 or AC3 (resp. Clause 1, 2 or 3), or once
+     * the check of a clause has been cancelled.
+     *
+     * @param clause the number of the clause, i.e. 1, 2 or 3
+     * @param nanos  the time of the check in nanoseconds
+     */
+    default void clauseChecked(int clause, long nanos) {
+    }
+}
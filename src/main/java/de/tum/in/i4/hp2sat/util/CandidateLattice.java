@@ -0,0 +1,118 @@
+package de.tum.in.i4.hp2sat.util;
+
+import java.util.*;
+
+/**
+ * Enumerates the subsets of a list of elements level-wise, i.e. by size, as in the Apriori algorithm, while skipping
+ * the supersets of marked sets. E.g. when searching all causes, each cause is marked, since a superset of a cause is
+ * not minimal. In contrast to {@link Util#generatePowerSet(Set)}, the power set is never materialized.
+ *
+ * The candidates of size k + 1 are generated from the unmarked candidates of size k by joining two of them that agree
+ * on all but their last element, hence each candidate is generated once. A candidate is dropped if it contains a
+ * marked set, which is looked up in a {@link SubsetTrie}. Thus, a candidate is generated iff none of its subsets has
+ * been marked.
+ *
+ * @param <T> the type of the elements
+ */
+public class CandidateLattice<T> {
+    private final List<T> elements;
+    private final Map<T, Integer> indices = new HashMap<>();
+    private final SubsetTrie marked = new SubsetTrie();
+    // the candidates of the current level as ascending indices of the elements, in lexicographic order
+    private List<int[]> level;
+
+    /**
+     * Creates a new lattice.
+     *
+     * @param elements the distinct elements; the candidates list them in this order
+     */
+    public CandidateLattice(List<T> elements) {
+        this.elements = new ArrayList<>(elements);
+        for (int i = 0; i < this.elements.size(); i++) {
+            if (indices.put(this.elements.get(i), i) != null) {
+                throw new IllegalArgumentException("Element " + this.elements.get(i) + " is not distinct");
+            }
+        }
+    }
+
+    /**
+     * Generates the candidates of the next level, i.e. the singletons on the first call. Sets marked since the
+     * previous call are taken into account.
+     *
+     * @return the candidates of the next size; empty if there are none, i.e. the enumeration is complete
+     */
+    public List<Set<T>> nextLevel() {
+        if (level == null) {
+            level = new ArrayList<>(elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                if (!marked.containsSubsetOf(new int[]{i})) {
+                    level.add(new int[]{i});
+                }
+            }
+        } else {
+            List<int[]> frontier = new ArrayList<>();
+            for (int[] candidate : level) {
+                if (!marked.containsSubsetOf(candidate)) {
+                    frontier.add(candidate);
+                }
+            }
+            level = join(frontier);
+        }
+
+        List<Set<T>> candidates = new ArrayList<>(level.size());
+        for (int[] candidate : level) {
+            Set<T> set = new LinkedHashSet<>();
+            for (int i : candidate) {
+                set.add(elements.get(i));
+            }
+            candidates.add(Collections.unmodifiableSet(set));
+        }
+        return candidates;
+    }
+
+    private List<int[]> join(List<int[]> frontier) {
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = 0; i < frontier.size(); i++) {
+            int[] left = frontier.get(i);
+            int k = left.length;
+            // the candidates with the same first k - 1 elements are adjacent, as the frontier is lexicographic
+            for (int j = i + 1; j < frontier.size() && haveSamePrefix(left, frontier.get(j)); j++) {
+                int[] candidate = Arrays.copyOf(left, k + 1);
+                candidate[k] = frontier.get(j)[k - 1];
+                if (!marked.containsSubsetOf(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean haveSamePrefix(int[] left, int[] right) {
+        for (int i = 0; i < left.length - 1; i++) {
+            if (left[i] != right[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks a set, so that no superset of it is generated anymore.
+     *
+     * @param set the set
+     * @throws IllegalArgumentException if the set contains an unknown element
+     */
+    public void mark(Set<T> set) {
+        int[] indicesOfSet = new int[set.size()];
+        int size = 0;
+        for (T element : set) {
+            Integer index = indices.get(element);
+            if (index == null) {
+                throw new IllegalArgumentException("Element " + element + " is unknown");
+            }
+            indicesOfSet[size++] = index;
+        }
+        Arrays.sort(indicesOfSet);
+        marked.add(indicesOfSet);
+    }
+}
@@ -0,0 +1,109 @@
+package de.tum.in.i4.hp2sat.util;
+
+import java.util.*;
+
+/**
+ * Lazily iterates over the subsets of a set in ascending size. Subsets of the same size are enumerated in colex order
+ * (Gosper's hack), i.e. in ascending order of their bitmasks where bit i stands for the i-th element in the iteration
+ * order of the set. This is exactly the order of {@link Util#generatePowerSet(Set)} for sets of up to 30 elements.
+ *
+ * Instead of materializing the subsets, the iterator returns the same set view in each step, which is backed by the
+ * current bitmask. Hence, a subset needs to be copied if it is kept beyond the next step. The view cannot be modified.
+ *
+ * @param <T> the type of the elements
+ */
+class SubsetIterator<T> implements Iterator<Set<T>> {
+    // more elements would overflow the bitmask
+    static final int MAX_ELEMENTS = 62;
+
+    private final Object[] elements;
+    private final Map<Object, Integer> indices;
+    private final int maxSize;
+    private final SubsetView view = new SubsetView();
+    private int size;
+    private long next;
+
+    /**
+     * @param set     the set whose subsets are enumerated
+     * @param minSize the size of the first subsets
+     * @param maxSize the size of the last subsets
+     * @throws IllegalArgumentException if the set has more than {@link #MAX_ELEMENTS} elements
+     */
+    SubsetIterator(Set<T> set, int minSize, int maxSize) {
+        if (set.size() > MAX_ELEMENTS) {
+            throw new IllegalArgumentException("Cannot enumerate the subsets of " + set.size() + " elements");
+        }
+        this.elements = set.toArray();
+        this.indices = new HashMap<>();
+        for (int i = 0; i < elements.length; i++) {
+            indices.put(elements[i], i);
+        }
+        this.maxSize = Math.min(maxSize, elements.length);
+        this.size = minSize;
+        this.next = minSize <= this.maxSize ? (1L << minSize) - 1 : -1L;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != -1L;
+    }
+
+    @Override
+    public Set<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        view.mask = next;
+        // next subset of the same size (Gosper's hack) or the first subset of the next size
+        long lowestBit = next & -next;
+        long ripple = next + lowestBit;
+        long successor = next == 0 ? 1L << elements.length : (((ripple ^ next) >>> 2) / lowestBit) | ripple;
+        if (successor >>> elements.length != 0) {
+            size++;
+            successor = size <= maxSize ? (1L << size) - 1 : -1L;
+        }
+        next = successor;
+        return view;
+    }
+
+    /**
+     * Read-only view of the subset of the current bitmask.
+     */
+    private class SubsetView extends AbstractSet<T> {
+        private long mask;
+
+        @Override
+        public int size() {
+            return Long.bitCount(mask);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer index = indices.get(o);
+            return index != null && (mask & (1L << index)) != 0;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private long remaining = mask;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining != 0L;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (remaining == 0L) {
+                        throw new NoSuchElementException();
+                    }
+                    int index = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    return (T) elements[index];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.tum.in.i4.hp2sat.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of sets of ints, each stored as the ascending sequence of its elements. It answers whether it contains a
+ * subset of a given set by following only the elements of the given set, instead of comparing the given set with
+ * each stored set.
+ */
+public class SubsetTrie {
+    private final Node root = new Node();
+    private int size;
+
+    private static class Node {
+        private final Map<Integer, Node> children = new HashMap<>();
+        // true if a set ends at this node
+        private boolean terminal;
+    }
+
+    /**
+     * Adds a set.
+     *
+     * @param set the elements of the set in ascending order
+     */
+    public void add(int[] set) {
+        Node node = root;
+        for (int element : set) {
+            node = node.children.computeIfAbsent(element, e -> new Node());
+        }
+        if (!node.terminal) {
+            node.terminal = true;
+            size++;
+        }
+    }
+
+    /**
+     * @param set the elements of a set in ascending order
+     * @return true if a subset of the given set, including the set itself, has been added
+     */
+    public boolean containsSubsetOf(int[] set) {
+        return containsSubsetOf(root, set, 0);
+    }
+
+    private boolean containsSubsetOf(Node node, int[] set, int from) {
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = from; i < set.length; i++) {
+            Node child = node.children.get(set[i]);
+            if (child != null && containsSubsetOf(child, set, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of sets that have been added
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -3,8 +3,6 @@ package de.tum.in.i4.hp2sat.util;
 
 import com.google.common.collect.Sets;
 import org.eclipse.collections.impl.set.mutable.UnifiedSet;
-import org.graphstream.graph.Graph;
-import org.graphstream.graph.implementations.SingleGraph;
 import org.logicng.formulas.Literal;
 
 import java.util.Comparator;
@@ -13,6 +11,25 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public class Util<T> {
+    // the maximum size of the sets whose subsets can be iterated
+    public static final int MAX_POWER_SET_ELEMENTS = SubsetIterator.MAX_ELEMENTS;
+
+    /**
+     * Counts the subsets of a set of the given size, i.e. 2^size, which are iterated by {@link #iteratePowerSet(Set)}.
+     *
+     * @param size the size of the set
+     * @return the number of subsets
+     * @throws IllegalArgumentException if the size exceeds {@link #MAX_POWER_SET_ELEMENTS}, as the subsets can neither
+     *                                  be counted nor iterated then
+     */
+    public static long countSubsets(int size) {
+        if (size > MAX_POWER_SET_ELEMENTS) {
+            throw new IllegalArgumentException("Cannot enumerate the subsets of " + size + " elements, at most " +
+                    MAX_POWER_SET_ELEMENTS + " are supported");
+        }
+        return 1L << size;
+    }
+
     public List<Set<T>> generatePowerSet(Set<T> set) {
         List<Set<T>> powerSet;
         if (set.size() <= 30) {
@@ -28,12 +45,27 @@ public class Util<T> {
         return powerSet;
     }
 
-    public static Graph reverseGraph(Graph graph) {
-        Graph graphReversed = new SingleGraph(graph.getId() + "_reversed");
-        graph.nodes().forEach(n -> graphReversed.addNode(n.getId()));
-        // switch source and target
-        graph.edges().forEach(e -> graphReversed.addEdge(e.getId(), e.getTargetNode().getId(),
-                e.getSourceNode().getId(), true));
-        return graphReversed;
+    /**
+     * Lazily iterates over the power set of the given set, ordered by size. The order is the same as in
+     * {@link #generatePowerSet(Set)}, but no subset is materialized before it is needed. Each iterator returns the same
+     * read-only set view in each step, hence a subset needs to be copied if it is kept beyond the next step.
+     *
+     * @param set the set; at most {@link #MAX_POWER_SET_ELEMENTS} elements
+     * @return the subsets of the set
+     */
+    public Iterable<Set<T>> iteratePowerSet(Set<T> set) {
+        return () -> new SubsetIterator<>(set, 0, set.size());
+    }
+
+    /**
+     * Lazily iterates over the subsets of the given set that have the given size, in the same order as
+     * {@link #iteratePowerSet(Set)}.
+     *
+     * @param set  the set; at most {@link #MAX_POWER_SET_ELEMENTS} elements
+     * @param size the size of the subsets
+     * @return the subsets of the set with the given size
+     */
+    public Iterable<Set<T>> iterateSubsets(Set<T> set, int size) {
+        return () -> new SubsetIterator<>(set, size, size);
     }
 }
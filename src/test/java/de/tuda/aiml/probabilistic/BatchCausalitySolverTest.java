@@ -0,0 +1,176 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
+import de.tum.in.i4.hp2sat.exceptions.InvalidCauseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the BatchCausalitySolver class
+ */
+public class BatchCausalitySolverTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void solvesLikeSingleQueries() throws Exception {
+        List<ProbabilisticCausalModel> models = Arrays.asList(ProbabilisticExampleProvider.donPolice(),
+                ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.prob_rock_throwing());
+        List<ProbabilisticSolvingStrategy> strategies = Arrays.asList(ProbabilisticSolvingStrategy.PC,
+                ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PCPrime,
+                ProbabilisticSolvingStrategy.PCPrime_WMC);
+
+        for (ProbabilisticCausalModel model : models) {
+            // two contexts, so the queries do not all share the same actual world
+            List<Set<Literal>> contexts = Arrays.asList(
+                    model.getExogenousVariables().keySet().stream().map(Variable::negate).collect(Collectors.toSet()),
+                    model.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                            .collect(Collectors.toSet()));
+            List<ProbabilisticCausalQuery> queries = new ArrayList<>();
+            List<ProbabilisticCausalitySolverResult> expected = new ArrayList<>();
+            for (Set<Literal> context : contexts) {
+                List<Literal> endogenousLiterals = ProbabilisticCausalitySolver.evaluateEquations(model, context)
+                        .stream().filter(l -> !model.getExogenousVariables().containsKey(l.variable()))
+                        .sorted(Comparator.comparing(Literal::name))
+                        .collect(Collectors.toList());
+                for (Literal effect : endogenousLiterals) {
+                    for (Literal cause : endogenousLiterals) {
+                        if (cause.equals(effect)) {
+                            continue;
+                        }
+                        for (ProbabilisticSolvingStrategy strategy : strategies) {
+                            queries.add(new ProbabilisticCausalQuery(context, effect, Collections.singleton(cause),
+                                    strategy));
+                            expected.add(model.isCause(context, effect, Collections.singleton(cause), strategy));
+                        }
+                    }
+                }
+            }
+
+            BatchCausalitySolver sequential = new BatchCausalitySolver(model);
+            sequential.setExecutor(null);
+            assertEquals(expected, sequential.solve(queries));
+
+            BatchCausalitySolver parallel = new BatchCausalitySolver(model);
+            parallel.setExecutor(executor);
+            parallel.setParallelism(4);
+            Map<ProbabilisticCausalQuery, ProbabilisticCausalitySolverResult> results = new IdentityHashMap<>();
+            parallel.solve(queries, (query, result) -> assertNull(results.put(query, result)));
+            assertEquals(queries.size(), results.size());
+            FormulaFactory f = model.getFormulaFactory();
+            for (int i = 0; i < queries.size(); i++) {
+                ProbabilisticCausalitySolverResult result = results.get(queries.get(i));
+                assertEquals(expected.get(i), result);
+                // the results refer to the literals of the formula factory of the model
+                assertSame(queries.get(i).getCause(), result.getCause());
+                if (result.getW() != null) {
+                    for (Literal literal : result.getW()) {
+                        assertSame(f.literal(literal.name(), literal.phase()), literal);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void validatesAllQueriesFirst() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> context = donPolice.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+        List<ProbabilisticCausalQuery> queries = Arrays.asList(
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.singleton(f.variable("C")),
+                        ProbabilisticSolvingStrategy.PC),
+                // the cause must not be empty
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.emptySet(),
+                        ProbabilisticSolvingStrategy.PC));
+        List<ProbabilisticCausalitySolverResult> results = new ArrayList<>();
+        try {
+            donPolice.isCause(queries, (query, result) -> results.add(result));
+            fail("Expected an InvalidCauseException");
+        } catch (InvalidCauseException e) {
+            assertTrue(results.isEmpty());
+        }
+    }
+
+    @Test
+    public void returnsPartialResultsWhenBudgetExhausted() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> context = donPolice.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+        List<ProbabilisticCausalQuery> queries = Arrays.asList(
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.singleton(f.variable("C")),
+                        ProbabilisticSolvingStrategy.PC),
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.singleton(f.variable("B")),
+                        ProbabilisticSolvingStrategy.PAC));
+        QueryBudget queryBudget = new QueryBudget();
+        queryBudget.cancel();
+        for (Executor batchExecutor : Arrays.asList(null, executor)) {
+            BatchCausalitySolver solver = new BatchCausalitySolver(donPolice);
+            solver.setExecutor(batchExecutor);
+            solver.setQueryBudget(queryBudget);
+            for (ProbabilisticCausalitySolverResult result : solver.solve(queries)) {
+                assertFalse(result.isComplete());
+                assertFalse(result.isAc2());
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void rethrowsErrorOfWorker() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> context = donPolice.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+        List<ProbabilisticCausalQuery> queries = Arrays.asList(
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.singleton(f.variable("C")),
+                        ProbabilisticSolvingStrategy.PC),
+                new ProbabilisticCausalQuery(context, f.variable("D"), Collections.singleton(f.variable("B")),
+                        ProbabilisticSolvingStrategy.PC));
+        BatchCausalitySolver parallel = new BatchCausalitySolver(donPolice);
+        parallel.setExecutor(executor);
+        parallel.setParallelism(2);
+        // e.g. a stack overflow in a worker
+        parallel.setMetricsListener(new SolverMetricsListener() {
+            @Override
+            public void wCandidateTried() {
+                throw new StackOverflowError();
+            }
+        });
+        try {
+            parallel.solve(queries);
+            fail("Expected a StackOverflowError");
+        } catch (StackOverflowError e) {
+            // the caller does not wait forever for the failed queries
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveParallelism() throws Exception {
+        new BatchCausalitySolver(ProbabilisticExampleProvider.donPolice()).setParallelism(0);
+    }
+}
@@ -0,0 +1,71 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the BitSlicedEvaluator class
+ */
+public class BitSlicedEvaluatorTest {
+
+    @Test
+    public void evaluatesLikeSingleContexts() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> fixedLiterals = new HashSet<>(Collections.singletonList(f.literal("CI_exo", true)));
+
+        for (ContextSpace contextSpace : Arrays.asList(new ContextSpace(donPolice),
+                new ContextSpace(donPolice, fixedLiterals))) {
+            CompiledCausalModel compiledModel = donPolice.getCompiledModel();
+            CompiledFormula phi = compiledModel.compile(f.variable("D"));
+
+            // evaluate each context on its own
+            Map<Long, Boolean> expectedValues = new HashMap<>();
+            ProbabilitySum expectedSum = new ProbabilitySum();
+            long[] assignment = compiledModel.newAssignment();
+            for (ContextSpace.Context context : contextSpace) {
+                context.assignTo(assignment);
+                compiledModel.evaluate(assignment);
+                expectedValues.put(context.getIndex(), phi.evaluate(assignment));
+                if (phi.evaluate(assignment)) {
+                    expectedSum.add(context.getProbability());
+                }
+            }
+
+            for (int width : new int[]{1, 3}) {
+                BitSlicedEvaluator evaluator = new BitSlicedEvaluator(contextSpace, width);
+                long[] words = evaluator.newAssignment(compiledModel);
+                ProbabilitySum sum = new ProbabilitySum();
+                int lanes = 0;
+                for (long block = 0; block < evaluator.getNumberOfBlocks(); block++) {
+                    evaluator.setBlock(block);
+                    evaluator.assignContexts(words);
+                    evaluator.evaluate(compiledModel, words);
+                    for (int word = 0; word < width; word++) {
+                        long values = evaluator.evaluate(phi, words, word);
+                        for (int lane = 0; lane < 64; lane++) {
+                            long index = (block * width + word) * 64 + lane;
+                            if (index < contextSpace.size()) {
+                                assertEquals(expectedValues.get(index), (values & (1L << lane)) != 0);
+                                lanes++;
+                            } else {
+                                assertEquals(0L, values & (1L << lane));
+                            }
+                        }
+                        evaluator.addProbabilities(sum, word, values);
+                    }
+                }
+                assertEquals(contextSpace.size(), lanes);
+                assertEquals(expectedSum.getValue(), sum.getValue(), 0.0);
+            }
+        }
+    }
+}
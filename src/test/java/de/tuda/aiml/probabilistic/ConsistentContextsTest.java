@@ -0,0 +1,83 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the ConsistentContexts class
+ */
+public class ConsistentContextsTest {
+
+    @Test
+    public void evaluatesLikeFilteredContextSpace() throws Exception {
+        // 12 exogenous variables, i.e. several blocks of contexts
+        ProbabilisticCausalModel layered = ProbabilisticExampleProvider.generateLayeredModel(3, 12, 12, 7L);
+        FormulaFactory f = layered.getFormulaFactory();
+        CompiledCausalModel compiledModel = layered.getCompiledModel();
+        CompiledFormula condition = compiledModel.compile(f.variable("L1_0"));
+        CompiledFormula phi = compiledModel.compile(f.variable("E"));
+        Intervention intervention = new Intervention(layered, Collections.singleton(f.literal("L1_1", false)));
+        CompiledCausalModel compiledModelModified = intervention.getCompiledModel();
+        ContextSpace contextSpace = new ContextSpace(layered);
+
+        // evaluate each context on its own
+        long expectedSize = 0;
+        ProbabilitySum expectedCondition = new ProbabilitySum();
+        ProbabilitySum expectedPhi = new ProbabilitySum();
+        long[] assignment = compiledModel.newAssignment();
+        for (ContextSpace.Context context : contextSpace) {
+            context.assignTo(assignment);
+            compiledModel.evaluate(assignment);
+            if (condition.evaluate(assignment)) {
+                expectedSize++;
+                expectedCondition.add(context.getProbability());
+                compiledModelModified.evaluate(assignment);
+                if (phi.evaluate(assignment)) {
+                    expectedPhi.add(context.getProbability());
+                }
+            }
+        }
+        assertTrue(expectedSize > 64 && expectedSize < contextSpace.size());
+
+        for (int width : new int[]{1, 3}) {
+            ConsistentContexts consistentContexts = new ConsistentContexts(contextSpace, condition, width);
+            assertEquals(expectedSize, consistentContexts.size());
+            assertEquals((expectedSize + 64 * width - 1) / (64 * width), consistentContexts.getNumberOfBlocks());
+
+            long[] words = consistentContexts.newAssignment(compiledModelModified);
+            ProbabilitySum conditionSum = new ProbabilitySum();
+            ProbabilitySum phiSum = new ProbabilitySum();
+            for (int block = 0; block < consistentContexts.getNumberOfBlocks(); block++) {
+                consistentContexts.assignContexts(words, block);
+                consistentContexts.evaluate(compiledModelModified, words);
+                for (int word = 0; word < width; word++) {
+                    consistentContexts.addProbabilities(conditionSum, block, word, -1L);
+                    consistentContexts.addProbabilities(phiSum, block, word,
+                            consistentContexts.evaluate(phi, words, block, word));
+                }
+            }
+            assertEquals(expectedCondition.getValue(), conditionSum.getValue(), 1e-12);
+            assertEquals(expectedPhi.getValue(), phiSum.getValue(), 1e-12);
+        }
+    }
+
+    @Test
+    public void isEmptyWhenConditionNeverHolds() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        CompiledCausalModel compiledModel = donPolice.getCompiledModel();
+        Set<Literal> contradiction = new HashSet<>(Arrays.asList(f.literal("D", true), f.literal("D", false)));
+        ConsistentContexts consistentContexts = new ConsistentContexts(new ContextSpace(donPolice),
+                compiledModel.compile(contradiction, f));
+        assertEquals(0, consistentContexts.size());
+        assertEquals(0, consistentContexts.getNumberOfBlocks());
+    }
+}
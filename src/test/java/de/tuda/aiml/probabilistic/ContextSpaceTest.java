@@ -0,0 +1,95 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the ContextSpace class
+ */
+public class ContextSpaceTest {
+
+    @Test
+    public void enumeratesEachCompleteContextExactlyOnce() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        ContextSpace contextSpace = new ContextSpace(donPolice);
+
+        Set<Set<Literal>> contexts = new HashSet<>();
+        double probabilitySum = 0.0;
+        for (ContextSpace.Context context : contextSpace) {
+            Set<Literal> literals = context.getLiterals();
+            assertEquals(donPolice.getExogenousVariables().size(), literals.size());
+            assertEquals(donPolice.getProbability(literals), context.getProbability(), 1e-12);
+            contexts.add(literals);
+            probabilitySum += context.getProbability();
+        }
+
+        assertEquals(64, contextSpace.size());
+        assertEquals(64, contexts.size());
+        assertEquals(1.0, probabilitySum, 1e-12);
+    }
+
+    @Test
+    public void keepsFixedLiteralsInEachContext() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> fixedLiterals = new HashSet<>(Arrays.asList(f.literal("CI_exo", true),
+                f.literal("SonnyHits", false)));
+        ContextSpace contextSpace = new ContextSpace(donPolice, fixedLiterals);
+
+        double probabilitySum = 0.0;
+        int count = 0;
+        for (ContextSpace.Context context : contextSpace) {
+            assertTrue(context.getLiterals().containsAll(fixedLiterals));
+            probabilitySum += context.getProbability();
+            count++;
+        }
+
+        assertEquals(16, count);
+        assertEquals(1.0, probabilitySum, 1e-12);
+    }
+
+    @Test
+    public void isEmptyForContradictingFixedLiterals() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> fixedLiterals = new HashSet<>(Arrays.asList(f.literal("CI_exo", true),
+                f.literal("CI_exo", false)));
+        ContextSpace contextSpace = new ContextSpace(donPolice, fixedLiterals);
+
+        assertEquals(0, contextSpace.size());
+        assertFalse(contextSpace.iterator().hasNext());
+    }
+
+    @Test
+    public void marginalizesIrrelevantVariables() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Variable> s = Collections.singleton(f.variable("S"));
+        Intervention originalModel = new Intervention(donPolice, Collections.emptySet());
+        Intervention intervention = new Intervention(donPolice, Collections.singleton(f.literal("C", false)));
+
+        // S = C and SonnyShoots, C = CI_exo
+        Set<Variable> relevantVariables = originalModel.getExogenousAncestors(s);
+        assertEquals(new HashSet<>(Arrays.asList(f.variable("CI_exo"), f.variable("SonnyShoots"))),
+                relevantVariables);
+        assertEquals(Collections.singleton(f.variable("SonnyShoots")), intervention.getExogenousAncestors(s));
+
+        ContextSpace contextSpace = new ContextSpace(donPolice, Collections.emptySet(), relevantVariables);
+        double probability = 0.0;
+        for (ContextSpace.Context context : contextSpace) {
+            if (ProbabilisticCausalitySolver.evaluateEquations(donPolice, context.getLiterals())
+                    .contains(f.variable("S"))) {
+                probability += context.getProbability();
+            }
+        }
+        assertEquals(4, contextSpace.size());
+        assertEquals(0.9 * 0.9, probability, 1e-12);
+    }
+}
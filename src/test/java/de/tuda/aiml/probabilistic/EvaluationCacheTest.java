@@ -0,0 +1,127 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the EvaluationCache class
+ */
+public class EvaluationCacheTest {
+
+    @Test
+    public void Should_EvaluateLikeEquations_When_ContextPartial() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Intervention intervention = new Intervention(donPolice, Collections.singleton(f.literal("C", false)));
+        CompiledCausalModel compiledModel = donPolice.getCompiledModel();
+        EvaluationCache cache = new EvaluationCache();
+
+        List<Set<Literal>> contexts = Arrays.asList(Collections.emptySet(),
+                Collections.singleton(f.literal("CI_exo", true)),
+                Collections.singleton(f.literal("CI_exo", false)));
+        for (int round = 0; round < 2; round++) {
+            for (Set<Literal> context : contexts) {
+                Set<Literal> expected = ProbabilisticCausalitySolver.evaluateEquations(intervention, context).stream()
+                        .filter(l -> !donPolice.getExogenousVariables().containsKey(l.variable()))
+                        .collect(Collectors.toSet());
+                Set<Literal> actual = compiledModel.toLiterals(cache.evaluate(intervention, context)).stream()
+                        .filter(l -> !donPolice.getExogenousVariables().containsKey(l.variable()))
+                        .collect(Collectors.toSet());
+                assertEquals(expected, actual);
+            }
+        }
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.getHits());
+
+        // a copy with its own formula factory shares the entries
+        ProbabilisticCausalModel copy = donPolice.copy(new FormulaFactory());
+        FormulaFactory g = copy.getFormulaFactory();
+        cache.evaluate(new Intervention(copy, Collections.singleton(g.literal("C", false))),
+                Collections.singleton(g.literal("CI_exo", true)));
+        assertEquals(4, cache.getHits());
+        // another intervention is not
+        cache.evaluate(new Intervention(donPolice, Collections.singleton(f.literal("C", true))),
+                Collections.emptySet());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void Should_EvictLeastRecentlyUsed_When_Full() throws Exception {
+        ProbabilisticCausalModel rockThrowing = ProbabilisticExampleProvider.prob_rock_throwing();
+        FormulaFactory f = rockThrowing.getFormulaFactory();
+        Intervention intervention = new Intervention(rockThrowing, Collections.singleton(f.literal("ST", true)));
+        List<Set<Literal>> contexts = rockThrowing.getExogenousVariables().keySet().stream()
+                .map(v -> Collections.<Literal>singleton(v)).collect(Collectors.toList());
+        assertTrue(contexts.size() >= 3);
+        EvaluationCache cache = new EvaluationCache(2);
+
+        cache.evaluate(intervention, contexts.get(0));
+        cache.evaluate(intervention, contexts.get(1));
+        // the first context becomes the most recently used one
+        cache.evaluate(intervention, contexts.get(0));
+        cache.evaluate(intervention, contexts.get(2));
+        assertEquals(2, cache.size());
+        cache.evaluate(intervention, contexts.get(0));
+        assertEquals(2, cache.getHits());
+        cache.evaluate(intervention, contexts.get(1));
+        assertEquals(4, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+
+        // a disabled cache computes every evaluation
+        EvaluationCache disabled = new EvaluationCache(0);
+        disabled.evaluate(intervention, contexts.get(0));
+        disabled.evaluate(intervention, contexts.get(0));
+        assertEquals(0, disabled.size());
+        assertEquals(2, disabled.getMisses());
+    }
+
+    @Test
+    public void Should_YieldSameResults_When_CacheDisabled() throws Exception {
+        List<ProbabilisticCausalModel> models = Arrays.asList(ProbabilisticExampleProvider.prob_rock_throwing(),
+                ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.donPolice());
+        PCSolver cached = new PCSolver();
+        PCSolver uncached = new PCSolver();
+        uncached.setEvaluationCacheSize(0);
+
+        long hits = 0;
+        for (ProbabilisticCausalModel model : models) {
+            Set<Literal> context = model.getExogenousVariables().keySet().stream()
+                    .map(v -> (Literal) v).collect(Collectors.toSet());
+            List<Literal> endogenousLiterals = ProbabilisticCausalitySolver.evaluateEquations(model, context).stream()
+                    .filter(l -> !model.getExogenousVariables().containsKey(l.variable()))
+                    .sorted(Comparator.comparing(Literal::name))
+                    .collect(Collectors.toList());
+            for (Literal effect : endogenousLiterals) {
+                for (Literal cause : endogenousLiterals) {
+                    if (cause.equals(effect)) {
+                        continue;
+                    }
+                    ProbabilisticCausalitySolverResult result = cached.solve(model, context, effect,
+                            Collections.singleton(cause), ProbabilisticSolvingStrategy.PC);
+                    ProbabilisticCausalitySolverResult uncachedResult = uncached.solve(model, context, effect,
+                            Collections.singleton(cause), ProbabilisticSolvingStrategy.PC);
+                    assertEquals(uncachedResult, result);
+                    assertEquals(0, uncachedResult.getEvaluationCacheHits());
+                    hits += result.getEvaluationCacheHits();
+                }
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_SizeNegative() {
+        new PCSolver().setEvaluationCacheSize(-1);
+    }
+}
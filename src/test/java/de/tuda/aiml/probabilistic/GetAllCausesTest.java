@@ -1,15 +1,24 @@
 package de.tuda.aiml.probabilistic;
 
 import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
 import org.junit.Before;
 import org.junit.Test;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class GetAllCausesTest {
     PACSolver pacSolver;
@@ -116,4 +125,87 @@ public class GetAllCausesTest {
 
         testGetAllCauses(RockThrowing, context, phi, allCausesExpected);
     }
+
+    @Test
+    public void findsSameCausesWhenCauseSearchParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ProbabilisticCausalModel causalModel : Arrays.asList(ProbabilisticExampleProvider.prob_rock_throwing(),
+                    ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.donPolice())) {
+                FormulaFactory f = causalModel.getFormulaFactory();
+                Set<Literal> context = causalModel.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                        .collect(Collectors.toSet());
+                Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(causalModel, context);
+                for (Variable effect : causalModel.getVariableEquationMap().keySet()) {
+                    Formula phi = evaluation.contains(effect) ? effect : f.not(effect);
+                    for (ProbabilisticCausalitySolver solver : Arrays.asList(pcSolver, pacSolver, pcPrimeSolver)) {
+                        ProbabilisticSolvingStrategy solvingStrategy = solver instanceof PCSolver ?
+                                ProbabilisticSolvingStrategy.PC : solver instanceof PACSolver ?
+                                ProbabilisticSolvingStrategy.PAC : ProbabilisticSolvingStrategy.PCPrime;
+                        solver.setCauseSearchExecutor(null);
+                        Set<ProbabilisticCausalitySolverResult> expected = solver.getAllCauses(causalModel, context,
+                                phi, solvingStrategy, f);
+                        solver.setCauseSearchExecutor(executor);
+                        solver.setCauseSearchParallelism(4);
+                        assertEquals(expected, solver.getAllCauses(causalModel, context, phi, solvingStrategy, f));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void findsNoCausesWhenBudgetExhausted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ProbabilisticCausalModel causalModel = ProbabilisticExampleProvider.donPolice();
+            FormulaFactory f = causalModel.getFormulaFactory();
+            Set<Literal> context = causalModel.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                    .collect(Collectors.toSet());
+            assertFalse(pcSolver.getAllCauses(causalModel, context, f.variable("D"), ProbabilisticSolvingStrategy.PC,
+                    f).isEmpty());
+            QueryBudget queryBudget = new QueryBudget();
+            queryBudget.cancel();
+            pcSolver.setQueryBudget(queryBudget);
+            // no candidate is decided, hence none is a cause; also if they are checked in parallel
+            assertTrue(pcSolver.getAllCauses(causalModel, context, f.variable("D"), ProbabilisticSolvingStrategy.PC,
+                    f).isEmpty());
+            pcSolver.setCauseSearchExecutor(executor);
+            assertTrue(pcSolver.getAllCauses(causalModel, context, f.variable("D"), ProbabilisticSolvingStrategy.PC,
+                    f).isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void notifiesListenerWhenCauseSearchParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ProbabilisticCausalModel causalModel = ProbabilisticExampleProvider.donPolice();
+            FormulaFactory f = causalModel.getFormulaFactory();
+            Set<Literal> context = causalModel.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                    .collect(Collectors.toSet());
+            AtomicLong wCandidates = new AtomicLong();
+            pcSolver.setMetricsListener(new SolverMetricsListener() {
+                @Override
+                public void wCandidateTried() {
+                    wCandidates.incrementAndGet();
+                }
+            });
+            pcSolver.getAllCauses(causalModel, context, f.variable("D"), ProbabilisticSolvingStrategy.PC, f);
+            long expected = wCandidates.getAndSet(0);
+            assertTrue(expected > 0);
+
+            pcSolver.setCauseSearchExecutor(executor);
+            pcSolver.setCauseSearchParallelism(4);
+            pcSolver.getAllCauses(causalModel, context, f.variable("D"), ProbabilisticSolvingStrategy.PC, f);
+            // the workers of the batch solver notify the same listener
+            assertEquals(expected, wCandidates.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the Intervention class
+ */
+public class InterventionTest {
+
+    @Test
+    public void evaluatesLikeModifiedCausalModel() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.literal("C", true)));
+        // the nested intervention overrides C
+        Set<Literal> w = new HashSet<>(Arrays.asList(f.literal("S", false), f.literal("C", false)));
+
+        Intervention intervention = new Intervention(donPolice, cause);
+        Intervention nestedIntervention = intervention.intervene(w);
+        ProbabilisticCausalModel modifiedModel =
+                ProbabilisticCausalitySolver.createModifiedCausalModelForCause(donPolice, cause, f);
+        ProbabilisticCausalModel nestedModifiedModel =
+                ProbabilisticCausalitySolver.createModifiedCausalModelForCause(modifiedModel, w, f);
+
+        CompiledCausalModel compiledModel = nestedIntervention.getCompiledModel();
+        long[] assignment = compiledModel.newAssignment();
+        for (ContextSpace.Context context : new ContextSpace(donPolice)) {
+            Set<Literal> literals = context.getLiterals();
+            assertEquals(ProbabilisticCausalitySolver.evaluateEquations(modifiedModel, literals),
+                    ProbabilisticCausalitySolver.evaluateEquations(intervention, literals));
+            Set<Literal> expected = ProbabilisticCausalitySolver.evaluateEquations(nestedModifiedModel, literals);
+            assertEquals(expected, ProbabilisticCausalitySolver.evaluateEquations(nestedIntervention, literals));
+
+            context.assignTo(assignment);
+            compiledModel.evaluate(assignment);
+            assertEquals(expected, compiledModel.toLiterals(assignment));
+        }
+        // the underlying model is not modified
+        assertEquals(1, intervention.getIntervenedVariables().size());
+        assertTrue(donPolice.getCompiledModel() != compiledModel);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsExogenousVariables() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        new Intervention(donPolice, new HashSet<>(Collections.singletonList(f.literal("CI_exo", true))));
+    }
+}
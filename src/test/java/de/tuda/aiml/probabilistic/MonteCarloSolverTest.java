@@ -0,0 +1,178 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.Equation;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the Monte Carlo solving strategies
+ */
+public class MonteCarloSolverTest {
+
+    @Test
+    public void Should_AgreeWithExactStrategies_When_AllComparisonsDecided() throws Exception {
+        List<ProbabilisticCausalModel> models = Arrays.asList(ProbabilisticExampleProvider.prob_rock_throwing(),
+                ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.donPolice());
+        Map<ProbabilisticSolvingStrategy, ProbabilisticCausalitySolver> solvers = new LinkedHashMap<>();
+        solvers.put(ProbabilisticSolvingStrategy.PC, new PCSolver());
+        solvers.put(ProbabilisticSolvingStrategy.PAC, new PACSolver());
+        solvers.put(ProbabilisticSolvingStrategy.PCPrime, new PCPrimeSolver());
+        Map<ProbabilisticSolvingStrategy, ProbabilisticSolvingStrategy> strategies = new LinkedHashMap<>();
+        strategies.put(ProbabilisticSolvingStrategy.PC, ProbabilisticSolvingStrategy.PC_MC);
+        strategies.put(ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PAC_MC);
+        strategies.put(ProbabilisticSolvingStrategy.PCPrime, ProbabilisticSolvingStrategy.PCPrime_MC);
+        // coarser than the default settings to keep the test fast
+        MonteCarloSettings settings = new MonteCarloSettings(0.99, MonteCarloSettings.ConfidenceInterval.WILSON,
+                1 << 16, 0.05, 0L);
+        solvers.values().forEach(s -> s.setMonteCarloSettings(settings));
+
+        int decided = 0;
+        for (ProbabilisticCausalModel model : models) {
+            Set<Literal> context = model.getExogenousVariables().keySet().stream()
+                    .map(Variable::negate).collect(Collectors.toSet());
+            List<Literal> endogenousLiterals = ProbabilisticCausalitySolver.evaluateEquations(model, context).stream()
+                    .filter(l -> !model.getExogenousVariables().containsKey(l.variable()))
+                    .sorted(Comparator.comparing(Literal::name))
+                    .collect(Collectors.toList());
+            for (Literal effect : endogenousLiterals) {
+                for (Literal cause : endogenousLiterals) {
+                    if (cause.equals(effect)) {
+                        continue;
+                    }
+                    for (Map.Entry<ProbabilisticSolvingStrategy, ProbabilisticSolvingStrategy> entry :
+                            strategies.entrySet()) {
+                        ProbabilisticCausalitySolver solver = solvers.get(entry.getKey());
+                        ProbabilisticCausalitySolverResult sampled = solver.solve(model, context, effect,
+                                Collections.singleton(cause), entry.getValue());
+                        // ties of the exact probabilities are decided by chance
+                        if (sampled.getUndecidedComparisons() == 0) {
+                            decided++;
+                            assertEquals(solver.solve(model, context, effect, Collections.singleton(cause),
+                                    entry.getKey()), sampled);
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(decided > 0);
+    }
+
+    @Test
+    public void Should_ReportComparisons_When_CauseFound() throws Exception {
+        ProbabilisticCausalModel rockThrowing = ProbabilisticExampleProvider.prob_rock_throwing();
+        FormulaFactory f = rockThrowing.getFormulaFactory();
+        Set<Literal> context = rockThrowing.getExogenousVariables().keySet().stream()
+                .map(v -> (Literal) v).collect(Collectors.toSet());
+        Set<Literal> cause = Collections.singleton(f.variable("ST"));
+
+        ProbabilisticCausalitySolverResult first = rockThrowing.isCause(context, f.variable("BS"), cause,
+                ProbabilisticSolvingStrategy.PC_MC);
+        ProbabilisticCausalitySolverResult second = rockThrowing.isCause(context, f.variable("BS"), cause,
+                ProbabilisticSolvingStrategy.PC_MC);
+        assertTrue(first.isAc2());
+        assertFalse(first.getMonteCarloComparisons().isEmpty());
+        assertTrue(first.getMonteCarloSamples() > 0);
+        for (MonteCarloComparison comparison : first.getMonteCarloComparisons()) {
+            assertTrue(comparison.isGreater());
+            assertTrue(comparison.getLeftLowerBound() <= comparison.getLeftEstimate() &&
+                    comparison.getLeftEstimate() <= comparison.getLeftUpperBound());
+            assertTrue(comparison.getLeftWidth() >= 0 && comparison.getRightWidth() >= 0);
+        }
+
+        // the same seed yields the same estimates
+        assertEquals(first.getMonteCarloSamples(), second.getMonteCarloSamples());
+        assertEquals(first.getMonteCarloComparisons().toString(), second.getMonteCarloComparisons().toString());
+
+        // the exact strategies do not sample
+        ProbabilisticCausalitySolverResult exact = rockThrowing.isCause(context, f.variable("BS"), cause,
+                ProbabilisticSolvingStrategy.PC);
+        assertTrue(exact.getMonteCarloComparisons().isEmpty());
+        assertEquals(0, exact.getMonteCarloSamples());
+    }
+
+    @Test
+    public void Should_DecideCause_When_TooManyExogenousVariablesToEnumerate() throws Exception {
+        // A and B are the disjunctions of 22 exogenous variables each, i.e. there are 2^44 contexts
+        FormulaFactory f = new FormulaFactory();
+        Map<Variable, Double> exogenousVariables = new LinkedHashMap<>();
+        List<Variable> a = new ArrayList<>();
+        List<Variable> b = new ArrayList<>();
+        for (int i = 0; i < 44; i++) {
+            Variable variable = f.variable("U" + i);
+            exogenousVariables.put(variable, 0.02);
+            (i < 22 ? a : b).add(variable);
+        }
+        Set<Equation> equations = new HashSet<>(Arrays.asList(new Equation(f.variable("A"), f.or(a)),
+                new Equation(f.variable("B"), f.or(b)),
+                new Equation(f.variable("E"), f.or(f.variable("A"), f.variable("B")))));
+        ProbabilisticCausalModel causalModel = new ProbabilisticCausalModel("ManyExogenousVariables", equations,
+                exogenousVariables, f);
+        Set<Literal> context = exogenousVariables.keySet().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+
+        ProbabilisticCausalitySolverResult result = causalModel.isCause(context, f.variable("E"),
+                Collections.singleton(f.variable("A")), ProbabilisticSolvingStrategy.PC_MC);
+        assertTrue(result.isAc1() && result.isAc2() && result.isAc3());
+        assertEquals(Collections.emptySet(), result.getW());
+        assertEquals(0, result.getUndecidedComparisons());
+        // P(E | do(A)) = 1 and P(E | do(not A)) = 1 - 0.98^22
+        MonteCarloComparison pc2a = result.getMonteCarloComparisons().get(0);
+        assertEquals(1.0, pc2a.getLeftEstimate(), 0.0);
+        assertEquals(1 - Math.pow(0.98, 22), pc2a.getRightEstimate(), 0.05);
+    }
+
+    @Test
+    public void Should_ComputeConfidenceIntervals() {
+        assertEquals(1.959964, MonteCarloEstimator.inverseNormal(0.975), 1e-6);
+        assertEquals(-2.575829, MonteCarloEstimator.inverseNormal(0.005), 1e-6);
+        assertEquals(0.0, MonteCarloEstimator.inverseNormal(0.5), 1e-9);
+
+        MonteCarloEstimate estimate = new MonteCarloEstimate() {
+            @Override
+            void draw(long n) {
+                samples += n;
+                trials += n;
+                successes += n / 4;
+            }
+        };
+        estimate.draw(400);
+        MonteCarloSettings wilson = MonteCarloSettings.DEFAULT;
+        MonteCarloSettings hoeffding = new MonteCarloSettings(0.99, MonteCarloSettings.ConfidenceInterval.HOEFFDING,
+                1 << 20, 0.01, 0L);
+        double[] wilsonBounds = MonteCarloEstimator.bounds(wilson, estimate, 0.05);
+        double[] hoeffdingBounds = MonteCarloEstimator.bounds(hoeffding, estimate, 0.05);
+        // Wilson score interval of 100 successes in 400 trials at 95%
+        assertEquals(0.2100, wilsonBounds[0], 1e-4);
+        assertEquals(0.2947, wilsonBounds[1], 1e-4);
+        assertEquals(0.25 - Math.sqrt(Math.log(40) / 800), hoeffdingBounds[0], 1e-12);
+        assertTrue(hoeffdingBounds[1] - hoeffdingBounds[0] > wilsonBounds[1] - wilsonBounds[0]);
+
+        // a constant is greater than an estimate without failures only by its point estimate
+        MonteCarloEstimate certain = new MonteCarloEstimate() {
+            @Override
+            void draw(long n) {
+                samples += n;
+                trials += n;
+                successes += n;
+            }
+        };
+        MonteCarloComparison comparison = MonteCarloEstimator.compare(wilson, MonteCarloEstimate.constant(1.0),
+                certain);
+        assertFalse(comparison.isGreater());
+        assertFalse(comparison.isDecided());
+        assertEquals(1.0, comparison.getRightUpperBound(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_ConfidenceInvalid() {
+        new MonteCarloSettings(1.0, MonteCarloSettings.ConfidenceInterval.WILSON, 1 << 20, 0.01, 0L);
+    }
+}
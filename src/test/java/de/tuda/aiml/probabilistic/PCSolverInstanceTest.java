@@ -1,8 +1,13 @@
 package de.tuda.aiml.probabilistic;
 
 import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.QueryBudget;
+import de.tum.in.i4.hp2sat.causality.SolverMetrics;
+import de.tum.in.i4.hp2sat.causality.SolverMetricsListener;
+import de.tum.in.i4.hp2sat.util.Util;
 import org.junit.Before;
 import org.junit.Test;
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -10,8 +15,13 @@ import org.logicng.formulas.Literal;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class PCSolverInstanceTest {
 
@@ -315,4 +325,150 @@ public class PCSolverInstanceTest {
 
         assertEquals(causalitySolverResultExpectedEval, result);
     }
+
+    @Test
+    public void Pruned_W_Search_Eliminates_Candidates() throws Exception {
+        ProbabilisticCausalModel Don_Corleone = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = Don_Corleone.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("CI_exo", true), f.literal("BI_exo", true), f.literal("SonnyShoots", true),
+                f.literal("TurkShoots", true), f.literal("SonnyHits", true), f.literal("TurkHits", false)
+        ));
+
+        Set<Literal> cause = new HashSet<>();
+        cause.add(f.variable("C"));
+
+        Formula phi = f.variable("D");
+
+        ProbabilisticCausalitySolverResult exhaustiveResult = pcSolver.solve(Don_Corleone, context, phi, cause, ProbabilisticSolvingStrategy.PC);
+        pcSolver.setExhaustiveWSearch(false);
+        ProbabilisticCausalitySolverResult prunedResult = pcSolver.solve(Don_Corleone, context, phi, cause, ProbabilisticSolvingStrategy.PC);
+
+        assertEquals(new ProbabilisticCausalitySolverResult(true, true, true, cause,
+                new HashSet<>(Arrays.asList(f.literal("B", false)))), exhaustiveResult);
+        assertEquals(new ProbabilisticCausalitySolverResult(true, true, true, cause,
+                new HashSet<>(Arrays.asList(f.literal("T", false)))), prunedResult);
+        assertEquals(0, exhaustiveResult.getEliminatedWCandidates());
+        // B is not on a path from C to D, i.e. only subsets of {S, T, D} are left
+        assertEquals(8, prunedResult.getEliminatedWCandidates());
+    }
+
+    @Test
+    public void W_Search_Rejects_Too_Many_W_Variables() throws Exception {
+        FormulaFactory f = new FormulaFactory();
+        Set<Literal> wVariables = new HashSet<>();
+        for (int i = 0; i <= Util.MAX_POWER_SET_ELEMENTS; i++) {
+            wVariables.add(f.variable("W" + i));
+        }
+        try {
+            pcSolver.searchW(null, f.verum(), new HashSet<>(), new HashSet<>(), wVariables, null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void Eliminated_W_Candidates_Saturate() throws Exception {
+        assertEquals(8, ProbabilisticCausalitySolver.countEliminatedWCandidates(4, 3));
+        assertEquals(1L << 61, ProbabilisticCausalitySolver.countEliminatedWCandidates(62, 61));
+        assertEquals(Long.MAX_VALUE, ProbabilisticCausalitySolver.countEliminatedWCandidates(63, 3));
+        assertEquals(Long.MAX_VALUE, ProbabilisticCausalitySolver.countEliminatedWCandidates(100, 70));
+    }
+
+    @Test
+    public void Budget_Cancelled_Returns_Partial_Result() throws Exception {
+        ProbabilisticCausalModel Don_Corleone = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = Don_Corleone.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("CI_exo", true), f.literal("BI_exo", true), f.literal("SonnyShoots", true),
+                f.literal("TurkShoots", false), f.literal("SonnyHits", true), f.literal("TurkHits", false)
+        ));
+
+        Set<Literal> cause = new HashSet<>();
+        cause.add(f.variable("C"));
+
+        Formula phi = f.variable("D");
+
+        QueryBudget queryBudget = new QueryBudget();
+        queryBudget.cancel();
+        for (ProbabilisticSolvingStrategy solvingStrategy : Arrays.asList(ProbabilisticSolvingStrategy.PC,
+                ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PCPrime)) {
+            ProbabilisticCausalitySolverResult result =
+                    Don_Corleone.isCause(context, phi, cause, solvingStrategy, queryBudget);
+            assertFalse(result.isComplete());
+            assertEquals(Tristate.UNDEF, result.getProgress().getAc2());
+            assertFalse(result.isAc2());
+        }
+    }
+
+    @Test
+    public void Budget_Not_Exhausted_Returns_Complete_Result() throws Exception {
+        ProbabilisticCausalModel Don_Corleone = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = Don_Corleone.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("CI_exo", true), f.literal("BI_exo", true), f.literal("SonnyShoots", true),
+                f.literal("TurkShoots", false), f.literal("SonnyHits", true), f.literal("TurkHits", false)
+        ));
+
+        Set<Literal> cause = new HashSet<>();
+        cause.add(f.variable("C"));
+
+        Formula phi = f.variable("D");
+
+        for (ProbabilisticSolvingStrategy solvingStrategy : Arrays.asList(ProbabilisticSolvingStrategy.PC,
+                ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PCPrime)) {
+            ProbabilisticCausalitySolverResult result = Don_Corleone.isCause(context, phi, cause, solvingStrategy,
+                    new QueryBudget(1, TimeUnit.HOURS));
+            assertEquals(Don_Corleone.isCause(context, phi, cause, solvingStrategy), result);
+            assertTrue(result.isComplete());
+        }
+    }
+
+    @Test
+    public void Metrics_Attached_And_Listener_Notified() throws Exception {
+        ProbabilisticCausalModel Don_Corleone = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = Don_Corleone.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("CI_exo", true), f.literal("BI_exo", true), f.literal("SonnyShoots", true),
+                f.literal("TurkShoots", false), f.literal("SonnyHits", true), f.literal("TurkHits", false)
+        ));
+
+        Set<Literal> cause = new HashSet<>();
+        cause.add(f.variable("C"));
+
+        Formula phi = f.variable("D");
+
+        for (ProbabilisticSolvingStrategy solvingStrategy : Arrays.asList(ProbabilisticSolvingStrategy.PC,
+                ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PCPrime)) {
+            AtomicLong wCandidates = new AtomicLong();
+            AtomicLong contexts = new AtomicLong();
+            ProbabilisticCausalitySolver solver = ProbabilisticCausalitySolver.create(solvingStrategy);
+            solver.setMetricsListener(new SolverMetricsListener() {
+                @Override
+                public void wCandidateTried() {
+                    wCandidates.incrementAndGet();
+                }
+
+                @Override
+                public void contextsEnumerated(long enumerated) {
+                    contexts.addAndGet(enumerated);
+                }
+            });
+            ProbabilisticCausalitySolverResult result = solver.solve(Don_Corleone, context, phi, cause,
+                    solvingStrategy);
+            assertEquals(Don_Corleone.isCause(context, phi, cause, solvingStrategy), result);
+
+            SolverMetrics metrics = result.getMetrics();
+            assertTrue(metrics.getWCandidates() > 0);
+            assertTrue(metrics.getWAssignments() > 0);
+            assertTrue(metrics.getModifiedModels() > 0);
+            assertTrue(metrics.getContexts() > 0);
+            assertEquals(metrics.getWCandidates(), wCandidates.get());
+            assertEquals(metrics.getContexts(), contexts.get());
+            for (int clause = 1; clause <= 3; clause++) {
+                assertTrue(metrics.getClauseNanos(clause) >= 0);
+            }
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the parallel W search of the probabilistic solvers
+ */
+public class ParallelWSearchTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void findsSameWAsSequentialSearch() throws Exception {
+        List<ProbabilisticCausalModel> models = Arrays.asList(ProbabilisticExampleProvider.donPolice(),
+                ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.prob_rock_throwing());
+        Map<ProbabilisticSolvingStrategy, ProbabilisticCausalitySolver> solvers = new LinkedHashMap<>();
+        solvers.put(ProbabilisticSolvingStrategy.PC, new PCSolver());
+        solvers.put(ProbabilisticSolvingStrategy.PAC, new PACSolver());
+        solvers.put(ProbabilisticSolvingStrategy.PCPrime_WMC, new PCPrimeSolver());
+
+        for (ProbabilisticCausalModel model : models) {
+            Set<Literal> context = model.getExogenousVariables().keySet().stream()
+                    .map(Variable::negate).collect(Collectors.toSet());
+            Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(model, context);
+            List<Literal> endogenousLiterals = evaluation.stream()
+                    .filter(l -> !model.getExogenousVariables().containsKey(l.variable()))
+                    .sorted(Comparator.comparing(Literal::name))
+                    .collect(Collectors.toList());
+            for (Literal effect : endogenousLiterals) {
+                for (Literal cause : endogenousLiterals) {
+                    if (cause.equals(effect)) {
+                        continue;
+                    }
+                    for (Map.Entry<ProbabilisticSolvingStrategy, ProbabilisticCausalitySolver> entry :
+                            solvers.entrySet()) {
+                        ProbabilisticCausalitySolver solver = entry.getValue();
+                        solver.setWSearchExecutor(null);
+                        ProbabilisticCausalitySolverResult expected = solver.solve(model, context, effect,
+                                Collections.singleton(cause), entry.getKey());
+                        solver.setWSearchExecutor(executor);
+                        solver.setWSearchParallelism(4);
+                        ProbabilisticCausalitySolverResult actual = solver.solve(model, context, effect,
+                                Collections.singleton(cause), entry.getKey());
+                        assertEquals(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void returnsWOfCallingFormulaFactory() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(
+                f.literal("CI_exo", true), f.literal("BI_exo", true), f.literal("SonnyShoots", true),
+                f.literal("TurkShoots", true), f.literal("SonnyHits", true), f.literal("TurkHits", false)
+        ));
+        Set<Literal> cause = Collections.singleton(f.variable("C"));
+
+        PCSolver pcSolver = new PCSolver();
+        pcSolver.setWSearchExecutor(executor);
+        pcSolver.setWSearchParallelism(4);
+        ProbabilisticCausalitySolverResult result = pcSolver.solve(donPolice, context, f.variable("D"), cause,
+                ProbabilisticSolvingStrategy.PC);
+
+        assertEquals(new ProbabilisticCausalitySolverResult(true, true, true, cause,
+                Collections.singleton(f.literal("B", false))), result);
+        for (Literal literal : result.getW()) {
+            assertSame(f.literal(literal.name(), literal.phase()), literal);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveParallelism() {
+        new PCSolver().setWSearchParallelism(0);
+    }
+}
@@ -0,0 +1,81 @@
+package de.tuda.aiml.probabilistic;
+
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.causality.CompiledCausalModel;
+import de.tum.in.i4.hp2sat.causality.CompiledFormula;
+import org.junit.Test;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the WeightedModelCounter class
+ */
+public class WeightedModelCounterTest {
+
+    @Test
+    public void countsLikeEnumeration() throws Exception {
+        ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+        FormulaFactory f = donPolice.getFormulaFactory();
+        Formula phi = f.or(f.variable("D"), f.not(f.variable("T")));
+        Intervention intervention = new Intervention(donPolice, Collections.singleton(f.literal("S", false)));
+
+        WeightedModelCounter counter = new WeightedModelCounter(donPolice);
+        int node = counter.compile(intervention, phi);
+
+        CompiledCausalModel compiledModel = intervention.getCompiledModel();
+        CompiledFormula compiledPhi = compiledModel.compile(phi);
+        long[] assignment = compiledModel.newAssignment();
+        ProbabilitySum expected = new ProbabilitySum();
+        for (ContextSpace.Context context : new ContextSpace(donPolice)) {
+            context.assignTo(assignment);
+            compiledModel.evaluate(assignment);
+            if (compiledPhi.evaluate(assignment)) {
+                expected.add(context.getProbability());
+            }
+        }
+        assertEquals(expected.getValue(), counter.getProbability(node), 1e-12);
+        // the same function is represented by the same node
+        assertEquals(node, counter.compile(intervention, phi));
+        assertEquals(WeightedModelCounter.TRUE, counter.or(node, counter.not(node)));
+    }
+
+    @Test
+    public void solvesLikeEnumeration() throws Exception {
+        List<ProbabilisticCausalModel> models = Arrays.asList(ProbabilisticExampleProvider.donPolice(),
+                ProbabilisticExampleProvider.prob_forest_fire(), ProbabilisticExampleProvider.prob_rock_throwing(),
+                ProbabilisticExampleProvider.doctorTreatment());
+        Map<ProbabilisticSolvingStrategy, ProbabilisticSolvingStrategy> strategies = new HashMap<>();
+        strategies.put(ProbabilisticSolvingStrategy.PC, ProbabilisticSolvingStrategy.PC_WMC);
+        strategies.put(ProbabilisticSolvingStrategy.PAC, ProbabilisticSolvingStrategy.PAC_WMC);
+        strategies.put(ProbabilisticSolvingStrategy.PCPrime, ProbabilisticSolvingStrategy.PCPrime_WMC);
+
+        for (ProbabilisticCausalModel model : models) {
+            Set<Literal> context = model.getExogenousVariables().keySet().stream()
+                    .map(Variable::negate).collect(Collectors.toSet());
+            Set<Literal> evaluation = ProbabilisticCausalitySolver.evaluateEquations(model, context);
+            List<Literal> endogenousLiterals = evaluation.stream()
+                    .filter(l -> !model.getExogenousVariables().containsKey(l.variable()))
+                    .sorted(Comparator.comparing(Literal::name))
+                    .collect(Collectors.toList());
+            for (Literal effect : endogenousLiterals) {
+                for (Literal cause : endogenousLiterals) {
+                    if (cause.equals(effect)) {
+                        continue;
+                    }
+                    for (Map.Entry<ProbabilisticSolvingStrategy, ProbabilisticSolvingStrategy> entry :
+                            strategies.entrySet()) {
+                        assertEquals(model.isCause(context, effect, Collections.singleton(cause), entry.getKey()),
+                                model.isCause(context, effect, Collections.singleton(cause), entry.getValue()));
+                    }
+                }
+            }
+        }
+    }
+}
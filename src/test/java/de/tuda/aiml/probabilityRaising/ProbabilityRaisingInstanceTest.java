@@ -1,5 +1,6 @@
 package de.tuda.aiml.probabilityRaising;
 
+import de.tuda.aiml.probabilistic.MonteCarloSettings;
 import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
 import de.tuda.aiml.util.ProbabilisticExampleProvider;
 import org.junit.Test;
@@ -12,12 +13,16 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Various tests for the probability raising implementation, includes the example of probability lowering cause,
  * probability raising non-cause etc.
  */
 public class ProbabilityRaisingInstanceTest {
+    // the seed of the sampled results; some are close to their tolerances, e.g. notPC of Corleones_Order_Cause_of_Death
+    // is about 0.73, hence they must not depend on a random seed
+    private static final long SEED = 4;
 
     // Rock Throwing
     @Test
@@ -33,7 +38,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(false, 0.98, Double.NaN);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(prob_rock_throwing, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -58,7 +63,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(false, 0.98, Double.NaN);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(prob_rock_throwing, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -84,7 +89,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(false, 0.545, 0.81);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing_cause_lowers_prob, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing_cause_lowers_prob, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(prob_rock_throwing_cause_lowers_prob, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -109,7 +114,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(true, 0.95, 0.5);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing_cause_lowers_prob, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(prob_rock_throwing_cause_lowers_prob, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(prob_rock_throwing_cause_lowers_prob, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -141,7 +146,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingTrueResultExpected =
                 new ProbabilityRaisingResult(true, 0.61, 0.21);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Forest_Fire, 5000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Forest_Fire, 5000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Forest_Fire, phi, cause, context);
 
         assertEquals(probabilityRaisingTrueResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -172,7 +177,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpectedGeneral =
                 new ProbabilityRaisingResult(true, 0.53, 0.23);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Forest_Fire, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Forest_Fire, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Forest_Fire, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpectedGeneral.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -204,7 +209,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpectedNaN =
                 new ProbabilityRaisingResult(false, 0.531, Double.NaN);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Don_Corleone, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Don_Corleone, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Don_Corleone, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -235,7 +240,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpectedNaN =
                 new ProbabilityRaisingResult(false, 0.531, Double.NaN);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Don_Corleone, 3000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Don_Corleone, 3000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Don_Corleone, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -262,7 +267,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(true, 1.0, 0.0);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Barometer, 5000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Barometer, 5000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Barometer, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -288,7 +293,7 @@ public class ProbabilityRaisingInstanceTest {
         ProbabilityRaisingResult probabilityRaisingResultExpected =
                 new ProbabilityRaisingResult(true, 1.0, 0.0);
 
-        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Barometer, 4000, phi, cause);
+        ProbabilityRaisingResult probabilityRaisingResultGeneral  = ProbabilityRaising.compute(Barometer, 4000, phi, cause, SEED);
         ProbabilityRaisingResult probabilityRaisingResultActual = ProbabilityRaising.computeActual(Barometer, phi, cause, context);
 
         assertEquals(probabilityRaisingResultExpected.isCause(), probabilityRaisingResultGeneral.isCause());
@@ -299,4 +304,44 @@ public class ProbabilityRaisingInstanceTest {
         assertEquals(probabilityRaisingResultExpected.getPC(), probabilityRaisingResultActual.getPC(), 1e-10);
         assertEquals(probabilityRaisingResultExpected.getNotPC(), probabilityRaisingResultActual.getNotPC(), 0.0);
     }
+
+    @Test
+    public void Should_SampleReproducibly_When_SeedGiven() throws Exception {
+        ProbabilisticCausalModel Forest_Fire = ProbabilisticExampleProvider.prob_forest_fire();
+        FormulaFactory f = Forest_Fire.getFormulaFactory();
+        Set<Literal> cause = new HashSet<>(Arrays.asList(f.variable("L")));
+        Formula phi = f.variable("FF");
+
+        // not a multiple of the number of cases per task and of the 64 lanes of a word
+        ProbabilityRaisingResult first = ProbabilityRaising.compute(Forest_Fire, 1000003, phi, cause, 42);
+        ProbabilityRaisingResult second = ProbabilityRaising.compute(Forest_Fire, 1000003, phi, cause, 42);
+        ProbabilityRaisingResult exact = ProbabilityRaising.computeActual(Forest_Fire, phi, cause,
+                new HashSet<>());
+
+        assertEquals(first, second);
+        assertEquals(1000003, first.getNumberOfCases());
+        assertEquals(exact.isCause(), first.isCause());
+        assertEquals(exact.getPC(), first.getPC(), 5e-3);
+        assertEquals(exact.getNotPC(), first.getNotPC(), 5e-3);
+    }
+
+    @Test
+    public void Should_StopAdaptively_When_IntervalsNarrowEnough() throws Exception {
+        ProbabilisticCausalModel Forest_Fire = ProbabilisticExampleProvider.prob_forest_fire();
+        FormulaFactory f = Forest_Fire.getFormulaFactory();
+        Set<Literal> cause = new HashSet<>(Arrays.asList(f.variable("MD")));
+        Formula phi = f.variable("FF");
+        MonteCarloSettings settings = new MonteCarloSettings(0.99, MonteCarloSettings.ConfidenceInterval.WILSON,
+                1 << 24, 0.01, 7L);
+
+        ProbabilityRaisingResult result = ProbabilityRaising.compute(Forest_Fire, phi, cause, settings);
+        ProbabilityRaisingResult exact = ProbabilityRaising.computeActual(Forest_Fire, phi, cause,
+                new HashSet<>());
+
+        assertTrue(result.getPCWidth() < 0.01 && result.getNotPCWidth() < 0.01);
+        assertTrue(result.getNumberOfCases() < 1 << 24);
+        assertEquals(exact.isCause(), result.isCause());
+        assertEquals(exact.getPC(), result.getPC(), result.getPCWidth());
+        assertEquals(exact.getNotPC(), result.getNotPC(), result.getNotPCWidth());
+    }
 }
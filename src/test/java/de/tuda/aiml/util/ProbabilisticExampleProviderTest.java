@@ -0,0 +1,88 @@
+package de.tuda.aiml.util;
+
+import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
+import de.tuda.aiml.probabilistic.ProbabilisticCausalitySolverResult;
+import de.tuda.aiml.probabilistic.ProbabilisticSolvingStrategy;
+import de.tum.in.i4.hp2sat.causality.Equation;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the model generators of the ProbabilisticExampleProvider class
+ */
+public class ProbabilisticExampleProviderTest {
+
+    @Test
+    public void Should_GenerateSameModel_When_SameSeed() throws Exception {
+        assertSameModel(ProbabilisticExampleProvider.generateLayeredModel(5, 8, 6, 42),
+                ProbabilisticExampleProvider.generateLayeredModel(5, 8, 6, 42));
+        assertSameModel(ProbabilisticExampleProvider.generateNoisyBinaryTreeModel(4, 5, 42),
+                ProbabilisticExampleProvider.generateNoisyBinaryTreeModel(4, 5, 42));
+        assertSameModel(ProbabilisticExampleProvider.generatePreemptionChainModel(6, 42),
+                ProbabilisticExampleProvider.generatePreemptionChainModel(6, 42));
+        assertSameModel(ProbabilisticExampleProvider.generateRandomDagModel(40, 10, 3, 42),
+                ProbabilisticExampleProvider.generateRandomDagModel(40, 10, 3, 42));
+
+        assertFalse(toStrings(ProbabilisticExampleProvider.generateRandomDagModel(40, 10, 3, 42))
+                .equals(toStrings(ProbabilisticExampleProvider.generateRandomDagModel(40, 10, 3, 43))));
+    }
+
+    @Test
+    public void Should_GenerateModelsOfRequestedSize() throws Exception {
+        ProbabilisticCausalModel layered = ProbabilisticExampleProvider.generateLayeredModel(10, 20, 30, 1);
+        assertEquals(201, layered.getVariableEquationMap().size());
+        assertEquals(30, layered.getExogenousVariables().size());
+
+        ProbabilisticCausalModel tree = ProbabilisticExampleProvider.generateNoisyBinaryTreeModel(7, 24, 1);
+        assertEquals(255, tree.getVariableEquationMap().size());
+        assertEquals(24, tree.getExogenousVariables().size());
+
+        ProbabilisticCausalModel chain = ProbabilisticExampleProvider.generatePreemptionChainModel(20, 1);
+        assertEquals(60, chain.getVariableEquationMap().size());
+        assertEquals(40, chain.getExogenousVariables().size());
+
+        ProbabilisticCausalModel dag = ProbabilisticExampleProvider.generateRandomDagModel(300, 40, 3, 1);
+        assertEquals(300, dag.getVariableEquationMap().size());
+        assertEquals(40, dag.getExogenousVariables().size());
+        for (Equation equation : dag.getVariableEquationMap().values()) {
+            assertTrue(equation.getFormula().variables().size() <= 3);
+        }
+    }
+
+    @Test
+    public void Should_FulfillPreemption_When_FirstThrowerHits() throws Exception {
+        ProbabilisticCausalModel chain = ProbabilisticExampleProvider.generatePreemptionChainModel(2, 7);
+        FormulaFactory f = chain.getFormulaFactory();
+        Set<Literal> context = chain.getExogenousVariables().keySet().stream().map(v -> (Literal) v)
+                .collect(Collectors.toSet());
+
+        // both throw accurately, but the first thrower preempts the second
+        ProbabilisticCausalitySolverResult first = chain.isCause(context, f.variable("E"),
+                Collections.singleton(f.variable("T1")), ProbabilisticSolvingStrategy.PC);
+        ProbabilisticCausalitySolverResult second = chain.isCause(context, f.variable("E"),
+                Collections.singleton(f.variable("T2")), ProbabilisticSolvingStrategy.PC);
+        assertTrue(first.isAc1() && first.isAc2() && first.isAc3());
+        assertTrue(second.isAc1());
+    }
+
+    private static void assertSameModel(ProbabilisticCausalModel expected, ProbabilisticCausalModel actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(toStrings(expected), toStrings(actual));
+    }
+
+    private static Set<String> toStrings(ProbabilisticCausalModel causalModel) {
+        Set<String> strings = causalModel.getVariableEquationMap().values().stream().map(Equation::toString)
+                .collect(Collectors.toSet());
+        for (Map.Entry<Variable, Double> entry : causalModel.getExogenousVariables().entrySet()) {
+            strings.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return strings;
+    }
+}
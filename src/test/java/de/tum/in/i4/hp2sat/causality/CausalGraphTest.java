@@ -0,0 +1,128 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.exceptions.InvalidCausalModelException;
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.Test;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CausalGraphTest {
+
+    @Test
+    public void Should_SortEquationsTopologically_ForAllExamples() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                ExampleProvider.billySuzyExtended(), ExampleProvider.prisoners(), ExampleProvider.railroad(),
+                ExampleProvider.stealMasterKey(), ExampleProvider.leakage(true), ExampleProvider.dummy())) {
+            List<Equation> equationsSorted = causalModel.getEquationsSorted();
+            assertEquals(causalModel.getVariableEquationMap().size(), equationsSorted.size());
+            Set<Variable> evaluated = new HashSet<>(causalModel.getExogenousVariables());
+            for (Equation equation : equationsSorted) {
+                assertTrue(evaluated.containsAll(equation.getFormula().variables()));
+                evaluated.add(equation.getVariable());
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnDescendantsAndAncestors_ForBillySuzy() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        CausalGraph graph = billySuzy.getCausalGraph();
+
+        assertEquals(new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("SH"), f.variable("BH"),
+                f.variable("BS"))), graph.getDescendants(Collections.singleton(f.variable("ST"))));
+        Set<Variable> ancestorsOfBS = graph.getAncestors(Collections.singleton(f.variable("BS")));
+        assertTrue(ancestorsOfBS.containsAll(billySuzy.getExogenousVariables()));
+        assertEquals(billySuzy.getExogenousVariables().size() + billySuzy.getVariableEquationMap().size(),
+                ancestorsOfBS.size());
+    }
+
+    @Test
+    public void Should_SearchReachableVariables_When_TooManyVariablesForBitsets() {
+        // a chain U -> X0 -> X1 -> ... that is too long for the precomputed bitsets
+        FormulaFactory f = new FormulaFactory();
+        int length = CausalGraph.MAX_BITSET_VARIABLES + 10;
+        List<Equation> equations = new ArrayList<>();
+        Variable previous = f.variable("U");
+        for (int i = 0; i < length; i++) {
+            Variable variable = f.variable("X" + i);
+            equations.add(new Equation(variable, previous));
+            previous = variable;
+        }
+        CausalGraph graph = new CausalGraph(Collections.singleton(f.variable("U")), equations);
+
+        assertEquals(length - 100, graph.getDescendants(Collections.singleton(f.variable("X100"))).size());
+        assertEquals(102, graph.getAncestors(Collections.singleton(f.variable("X100"))).size());
+        List<Variable> sorted = graph.getEndogenousVariablesSorted();
+        for (int i = 0; i < length; i++) {
+            assertEquals(f.variable("X" + i), sorted.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_CircularDependency() {
+        FormulaFactory f = new FormulaFactory();
+        new CausalGraph(Collections.singleton(f.variable("U")), Arrays.asList(
+                new Equation(f.variable("A"), f.and(f.variable("U"), f.variable("B"))),
+                new Equation(f.variable("B"), f.variable("A"))));
+    }
+
+    @Test
+    public void Should_ReportProblem_When_Invalid() {
+        FormulaFactory f = new FormulaFactory();
+        Variable u = f.variable("U");
+        Variable a = f.variable("A");
+        Variable b = f.variable("B");
+        Variable c = f.variable("C");
+        Set<Variable> exogenousVariables = Collections.singleton(u);
+
+        assertInvalid("The equations contain a circular dependency: A -> C -> B -> A", exogenousVariables,
+                Arrays.asList(new Equation(a, f.and(u, b)), new Equation(b, c), new Equation(c, a)));
+        assertInvalid("The equations contain a circular dependency: B -> B", exogenousVariables,
+                Arrays.asList(new Equation(a, u), new Equation(b, f.or(a, b))));
+        assertInvalid("Variable C in the equation of B is neither exogenous nor defined by an equation",
+                exogenousVariables, Arrays.asList(new Equation(a, u), new Equation(b, f.and(a, c))));
+        assertInvalid("Variable A is defined by more than one equation", exogenousVariables,
+                Arrays.asList(new Equation(a, u), new Equation(a, f.not(u))));
+        assertInvalid("Variable U is exogenous, but also defined by an equation", exogenousVariables,
+                Arrays.asList(new Equation(a, u), new Equation(u, a)));
+    }
+
+    private void assertInvalid(String message, Set<Variable> exogenousVariables, List<Equation> equations) {
+        try {
+            CausalGraph.validate(exogenousVariables, equations);
+            fail("Expected an InvalidCausalModelException");
+        } catch (InvalidCausalModelException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void Should_ValidateQuickly_When_ManyEquations() throws Exception {
+        // a chain of 100k equations, each also depending on the exogenous variable and the variable two steps back
+        FormulaFactory f = new FormulaFactory();
+        int length = 100000;
+        Variable u = f.variable("U");
+        List<Equation> equations = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            Formula formula = i < 2 ? u : f.or(u, f.and(f.variable("X" + (i - 1)), f.variable("X" + (i - 2))));
+            equations.add(new Equation(f.variable("X" + i), formula));
+        }
+        CausalGraph.validate(Collections.singleton(u), equations);
+
+        // closing the chain yields a cycle through X0 and X2, the only variable whose equation contains X0
+        equations.set(0, new Equation(f.variable("X0"), f.variable("X" + (length - 1))));
+        try {
+            CausalGraph.validate(Collections.singleton(u), equations);
+            fail("Expected an InvalidCausalModelException");
+        } catch (InvalidCausalModelException e) {
+            assertTrue(e.getMessage().startsWith("The equations contain a circular dependency: X0 -> X2 -> "));
+            assertTrue(e.getMessage().endsWith(" -> X" + (length - 1) + " -> X0"));
+        }
+    }
+}
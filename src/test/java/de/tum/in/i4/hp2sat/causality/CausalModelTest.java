@@ -2,10 +2,13 @@ package de.tum.in.i4.hp2sat.causality;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
 
 import de.tum.in.i4.hp2sat.causality.CausalModel;
 import de.tum.in.i4.hp2sat.causality.CausalitySolverResult;
@@ -22,9 +25,12 @@ import de.tum.in.i4.hp2sat.util.ExampleProvider;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class CausalModelTest {
     FormulaFactory f;
@@ -215,4 +221,23 @@ public class CausalModelTest {
         Formula phi = f.variable("BS");
         billySuzy.isCause(context, phi, cause, SolvingStrategy.BRUTE_FORCE);
     }
+
+    @Test
+    public void Should_CacheEquivalentEquationClauses_ForAllExamples() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                ExampleProvider.prisoners(), ExampleProvider.railroad(), ExampleProvider.dummy2(),
+                ExampleProvider.generateBinaryTreeBenchmarkModel(3))) {
+            FormulaFactory f = causalModel.getFormulaFactory();
+            Map<Variable, List<Formula>> equationClauses = causalModel.getEquationClauses();
+            assertEquals(causalModel.getVariableEquationMap().keySet(), equationClauses.keySet());
+            assertSame(equationClauses, causalModel.getEquationClauses());
+            for (Equation equation : causalModel.getVariableEquationMap().values()) {
+                Formula equivalence = f.equivalence(equation.getVariable(), equation.getFormula());
+                SATSolver satSolver = MiniSat.miniSat(f);
+                satSolver.add(f.not(f.equivalence(f.and(equationClauses.get(equation.getVariable())),
+                        equivalence)));
+                assertEquals(Tristate.FALSE, satSolver.sat());
+            }
+        }
+    }
 }
\ No newline at end of file
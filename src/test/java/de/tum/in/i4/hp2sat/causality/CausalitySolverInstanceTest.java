@@ -5,6 +5,8 @@ import org.hamcrest.Matcher;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Tristate;
 import org.logicng.formulas.Formula;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.formulas.Literal;
@@ -14,6 +16,7 @@ import de.tum.in.i4.hp2sat.causality.BruteForceCausalitySolver;
 import de.tum.in.i4.hp2sat.causality.CausalModel;
 import de.tum.in.i4.hp2sat.causality.CausalitySolver;
 import de.tum.in.i4.hp2sat.causality.CausalitySolverResult;
+import de.tum.in.i4.hp2sat.causality.Equation;
 import de.tum.in.i4.hp2sat.causality.SATCausalitySolver;
 import de.tum.in.i4.hp2sat.causality.SATSolverType;
 import de.tum.in.i4.hp2sat.causality.SolvingStrategy;
@@ -21,23 +24,35 @@ import de.tum.in.i4.hp2sat.util.ExampleProvider;
 import de.tum.in.i4.hp2sat.util.Util;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CausalitySolverInstanceTest {
     BruteForceCausalitySolver bruteForceCausalitySolver;
     SATCausalitySolver SATCausalitySolver;
+    // shared by all checks of a test, such that the encodings are reused
+    SATCausalitySolver incrementalSATCausalitySolver;
     List<SolvingStrategy> solvingStrategies = Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.SAT,
             SolvingStrategy.SAT_MINIMAL, SolvingStrategy.SAT_COMBINED);
-    List<SATSolverType> satSolverTypes = Arrays.asList(SATSolverType.MINISAT, SATSolverType.GLUCOSE, SATSolverType.MINICARD, SATSolverType.CLEANLING);
+    List<SATSolverType> satSolverTypes = Arrays.asList(SATSolverType.MINISAT, SATSolverType.GLUCOSE, SATSolverType.MINICARD, SATSolverType.CLEANLING,
+            SATSolverType.PORTFOLIO);
 
     @Before
     public void setUp() throws Exception {
         bruteForceCausalitySolver = new BruteForceCausalitySolver();
         SATCausalitySolver = new SATCausalitySolver();
+        incrementalSATCausalitySolver = new SATCausalitySolver();
+        incrementalSATCausalitySolver.setIncremental(true);
     }
 
     private void testSolve(CausalModel causalModel, Set<Literal> context, Formula phi, Set<Literal> cause,
@@ -70,6 +85,11 @@ public class CausalitySolverInstanceTest {
                             (solvingStrategy).stream().map(CoreMatchers::is).toArray(Matcher[]::new);
                     assertThat("Error for " + solvingStrategy + "/" + satSolverType, causalitySolverResultActual,
                             CoreMatchers.anyOf(matchers));
+                    causalitySolverResultActual = incrementalSATCausalitySolver.solve(causalModel, context, phi,
+                            cause, solvingStrategy, satSolverType);
+                    assertIncrementalResult("Error for incremental " + solvingStrategy + "/" + satSolverType,
+                            causalModel, context, phi, solvingStrategy,
+                            causalitySolverResultsExpected.get(solvingStrategy), causalitySolverResultActual);
                 }
 
                 causalitySolverResultActual =
@@ -82,6 +102,29 @@ public class CausalitySolverInstanceTest {
         }
     }
 
+    /*
+     * The W of the non-minimal strategies depends on the satisfying assignment the SAT solver finds, which differs
+     * in incremental mode. Hence, we only check that such a W satisfies AC2.
+     * */
+    private void assertIncrementalResult(String message, CausalModel causalModel, Set<Literal> context, Formula phi,
+                                         SolvingStrategy solvingStrategy, Set<CausalitySolverResult> expected,
+                                         CausalitySolverResult actual) throws Exception {
+        if (solvingStrategy == SolvingStrategy.SAT_MINIMAL) {
+            assertTrue(message, expected.contains(actual));
+            return;
+        }
+        assertTrue(message, expected.stream().anyMatch(e -> e.isAc1() == actual.isAc1()
+                && e.isAc2() == actual.isAc2() && e.isAc3() == actual.isAc3()));
+        if (actual.getW() != null) {
+            FormulaFactory f = causalModel.getFormulaFactory();
+            CausalModel causalModelModified = SATCausalitySolver.createModifiedCausalModelForW(
+                    SATCausalitySolver.createModifiedCausalModelForCause(causalModel, actual.getCause(), f),
+                    actual.getW(), f);
+            assertFalse(message, phi.evaluate(new Assignment(
+                    CausalitySolver.evaluateEquations(causalModelModified, context))));
+        }
+    }
+
     private void testGetAllCauses(CausalModel causalModel, Set<Literal> context, Formula phi,
                                   Set<CausalitySolverResult> causalitySolverResultsExpected) throws Exception {
         // all have same expected result
@@ -104,6 +147,10 @@ public class CausalitySolverInstanceTest {
                 causalitySolverResultsActual =
                         SATCausalitySolver.getAllCauses(causalModel, context, phi, solvingStrategy,
                                 causalModel.getFormulaFactory());
+                assertEquals("Error for incremental " + solvingStrategy,
+                        causalitySolverResultsExpected.get(solvingStrategy),
+                        incrementalSATCausalitySolver.getAllCauses(causalModel, context, phi, solvingStrategy,
+                                causalModel.getFormulaFactory()));
             }
             assertEquals("Error for " + solvingStrategy, causalitySolverResultsExpected.get(solvingStrategy),
                     causalitySolverResultsActual);
@@ -4594,4 +4641,367 @@ public class CausalitySolverInstanceTest {
 
         testGetAllCauses(forestFire, context, phi, allCausesExpected);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void Should_FindSameCauses_When_CauseSearchParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                    ExampleProvider.prisoners(), ExampleProvider.railroad())) {
+                FormulaFactory f = causalModel.getFormulaFactory();
+                Set<Literal> context = new HashSet<>(causalModel.getExogenousVariables());
+                for (Variable effect : causalModel.getVariableEquationMap().keySet()) {
+                    Formula phi = CausalitySolver.evaluateEquations(causalModel, context).contains(effect) ?
+                            effect : f.not(effect);
+                    SATCausalitySolver.setCauseSearchExecutor(null);
+                    Set<CausalitySolverResult> expected = SATCausalitySolver.getAllCauses(causalModel, context, phi,
+                            SolvingStrategy.SAT, f);
+                    SATCausalitySolver.setCauseSearchExecutor(executor);
+                    SATCausalitySolver.setCauseSearchParallelism(4);
+                    assertEquals(expected, SATCausalitySolver.getAllCauses(causalModel, context, phi,
+                            SolvingStrategy.SAT, f));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void Should_AgreeWithNonIncremental_When_Incremental() throws Exception {
+        List<SolvingStrategy> satStrategies = Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL,
+                SolvingStrategy.SAT_COMBINED, SolvingStrategy.SAT_COMBINED_MINIMAL, SolvingStrategy.SAT_OPTIMIZED_AC3,
+                SolvingStrategy.SAT_OPTIMIZED_AC3_MINIMAL);
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzy(), ExampleProvider.forestFire(true),
+                ExampleProvider.prisoners(), ExampleProvider.railroad())) {
+            FormulaFactory f = causalModel.getFormulaFactory();
+            Set<Literal> context = new HashSet<>(causalModel.getExogenousVariables());
+            Set<Literal> evaluation = CausalitySolver.evaluateEquations(causalModel, context);
+            List<Literal> endogenous = evaluation.stream()
+                    .filter(l -> !causalModel.getExogenousVariables().contains(l.variable()))
+                    .sorted(Comparator.comparing(Literal::name)).collect(Collectors.toList());
+            for (Literal effect : endogenous) {
+                // all causes of size one and two, each occurred or not
+                for (int i = 0; i < endogenous.size(); i++) {
+                    for (int j = i; j < endogenous.size(); j++) {
+                        Set<Literal> cause = new HashSet<>(Arrays.asList(endogenous.get(i), i == j || j % 2 == 0 ?
+                                endogenous.get(j) : endogenous.get(j).negate()));
+                        for (SolvingStrategy solvingStrategy : satStrategies) {
+                            CausalitySolverResult expected = SATCausalitySolver.solve(causalModel, context, effect,
+                                    cause, solvingStrategy, SATSolverType.MINISAT);
+                            CausalitySolverResult actual = incrementalSATCausalitySolver.solve(causalModel, context,
+                                    effect, cause, solvingStrategy, SATSolverType.MINISAT);
+                            String message = solvingStrategy + " for " + cause + " and " + effect;
+                            assertEquals(message, expected.isAc1(), actual.isAc1());
+                            assertEquals(message, expected.isAc2(), actual.isAc2());
+                            assertEquals(message, expected.isAc3(), actual.isAc3());
+                            if (expected.getW() != null) {
+                                assertEquals(message, expected.getW().size(), actual.getW().size());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReuseEncodingOfModel_When_IncrementalSATSolving() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        List<Set<Literal>> causes = Arrays.asList(new HashSet<>(Collections.singletonList(f.variable("ST"))),
+                new HashSet<>(Collections.singletonList(f.variable("BT"))),
+                new HashSet<>(Arrays.asList(f.variable("ST"), f.variable("BT"))));
+        Map<SolvingStrategy, List<CausalitySolverResult>> expected = new HashMap<>();
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL)) {
+            List<CausalitySolverResult> results = new ArrayList<>();
+            for (Set<Literal> cause : causes) {
+                results.add(billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy));
+            }
+            expected.put(solvingStrategy, results);
+        }
+        assertEquals(null, billySuzy.getIncrementalSATEncoding());
+
+        billySuzy.setIncrementalSATSolving(true);
+        for (SolvingStrategy solvingStrategy : expected.keySet()) {
+            for (int i = 0; i < causes.size(); i++) {
+                CausalitySolverResult result = billySuzy.isCause(context, f.variable("BS"), causes.get(i),
+                        solvingStrategy);
+                assertEquals(expected.get(solvingStrategy).get(i).isAc1(), result.isAc1());
+                assertEquals(expected.get(solvingStrategy).get(i).isAc2(), result.isAc2());
+                assertEquals(expected.get(solvingStrategy).get(i).isAc3(), result.isAc3());
+            }
+        }
+        // one encoding for all checks, not shared by copies
+        IncrementalSATEncoding encoding = billySuzy.getIncrementalSATEncoding();
+        assertTrue(encoding != null);
+        billySuzy.isCause(context, f.variable("BS"), causes.get(0), SolvingStrategy.SAT);
+        assertTrue(encoding == billySuzy.getIncrementalSATEncoding());
+        assertEquals(null, billySuzy.copy(f).getIncrementalSATEncoding());
+    }
+
+    @Test
+    public void Should_RebuildEncoding_When_MaximumNumberOfQueriesReached() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        CausalitySolverResult expected = billySuzy.isCause(context, f.variable("BS"), cause, SolvingStrategy.SAT);
+
+        billySuzy.setIncrementalSATSolving(true);
+        billySuzy.isCause(context, f.variable("BS"), cause, SolvingStrategy.SAT);
+        IncrementalSATEncoding encoding = billySuzy.getIncrementalSATEncoding();
+        int checks = 1;
+        while (billySuzy.getIncrementalSATEncoding() == encoding) {
+            CausalitySolverResult result = billySuzy.isCause(context, f.variable("BS"), cause,
+                    SolvingStrategy.SAT);
+            assertEquals(expected.isAc2(), result.isAc2());
+            assertTrue(++checks <= IncrementalSATEncoding.MAXIMUM_NUMBER_OF_QUERIES);
+        }
+        assertTrue(encoding.isExhausted());
+        assertFalse(billySuzy.getIncrementalSATEncoding().isExhausted());
+    }
+
+    @Test
+    public void Should_RouteToFavorite_When_PortfolioRoutingThresholdReached() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        CausalitySolverResult expected = new CausalitySolverResult(true, true, true, cause,
+                new HashSet<>(Collections.singletonList(f.literal("BH", false))));
+        SATCausalitySolver.setPortfolioRoutingThreshold(3);
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals(expected, SATCausalitySolver.solve(causalModel, context, f.variable("BS"), cause,
+                    SolvingStrategy.SAT_MINIMAL, SATSolverType.PORTFOLIO));
+        }
+        // only the first three queries race, the others are routed to the favorite
+        assertEquals(3, causalModel.getPortfolioWins().values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test(timeout = 10000)
+    public void Should_RethrowError_When_AllPortfolioRacersFail() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        // e.g. a stack overflow in each racer
+        SATCausalitySolver.setMetricsListener(new SolverMetricsListener() {
+            @Override
+            public void equationsEvaluated(long equations) {
+                throw new StackOverflowError();
+            }
+        });
+        try {
+            SATCausalitySolver.solve(causalModel, context, f.variable("BS"), cause, SolvingStrategy.SAT,
+                    SATSolverType.PORTFOLIO);
+            fail("Expected a StackOverflowError");
+        } catch (StackOverflowError e) {
+            // the race does not wait forever for a winner
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_PortfolioRoutingThresholdNegative() {
+        SATCausalitySolver.setPortfolioRoutingThreshold(-1);
+    }
+
+    @Test
+    public void Should_ReturnPartialResult_When_QueryBudgetCancelled() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        QueryBudget queryBudget = new QueryBudget();
+        queryBudget.cancel();
+
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.SAT,
+                SolvingStrategy.SAT_MINIMAL, SolvingStrategy.ORIGINAL_HP, SolvingStrategy.UPDATED_HP)) {
+            CausalitySolverResult result = billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy,
+                    queryBudget);
+            assertFalse(result.isComplete());
+            assertEquals(Tristate.UNDEF, result.getProgress().getAc2());
+            assertEquals(Tristate.UNDEF, result.getProgress().getAc3());
+            assertFalse(result.isAc2());
+            assertFalse(result.isAc3());
+        }
+
+        SATCausalitySolver.setQueryBudget(queryBudget);
+        CausalitySolverResult result = SATCausalitySolver.solve(billySuzy, context, f.variable("BS"), cause,
+                SolvingStrategy.SAT, SATSolverType.PORTFOLIO);
+        assertFalse(result.isComplete());
+        assertEquals(Tristate.UNDEF, result.getProgress().getAc2());
+        assertEquals(Tristate.UNDEF, result.getProgress().getAc3());
+        assertFalse(result.isAc2());
+        assertFalse(result.isAc3());
+        // partial results are no wins
+        assertTrue(billySuzy.getPortfolioWins().values().stream().allMatch(wins -> wins == 0));
+    }
+
+    @Test
+    public void Should_ReturnCompleteResult_When_QueryBudgetNotExhausted() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.SAT,
+                SolvingStrategy.SAT_MINIMAL, SolvingStrategy.ORIGINAL_HP, SolvingStrategy.UPDATED_HP)) {
+            CausalitySolverResult result = billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy,
+                    new QueryBudget(1, TimeUnit.HOURS));
+            assertTrue(result.isComplete());
+            assertEquals(1.0, result.getProgress().getAc2Coverage(), 0.0);
+            assertEquals(billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy), result);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void Should_StopWSearch_When_DeadlinePassed() throws Exception {
+        // U = 1, A = U, B_i = false, X = B_0 AND B_1; X is false for every W, hence A is no cause of not(X) and all
+        // 2^41 W candidates need to be checked
+        FormulaFactory f = new FormulaFactory();
+        Variable a = f.variable("A");
+        Set<Equation> equations = new HashSet<>(Arrays.asList(new Equation(a, f.variable("U")),
+                new Equation(f.variable("X"), f.and(f.variable("B0"), f.variable("B1")))));
+        for (int i = 0; i <= 40; i++) {
+            equations.add(new Equation(f.variable("B" + i), f.falsum()));
+        }
+        CausalModel causalModel = new CausalModel("ManyCandidates", equations,
+                new HashSet<>(Collections.singletonList(f.variable("U"))), f);
+        Set<Literal> context = new HashSet<>(Collections.singletonList(f.variable("U")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(a));
+
+        CausalitySolverResult result = causalModel.isCause(context, f.variable("X").negate(), cause,
+                SolvingStrategy.BRUTE_FORCE, new QueryBudget(100, TimeUnit.MILLISECONDS));
+        assertFalse(result.isComplete());
+        assertEquals(Tristate.TRUE, result.getProgress().getAc1());
+        assertEquals(Tristate.UNDEF, result.getProgress().getAc2());
+        assertTrue(result.getProgress().getWCandidates() > 0);
+        assertTrue(result.getProgress().getAc2Coverage() < 1.0);
+    }
+
+    @Test(timeout = 10000)
+    public void Should_RejectWSearch_When_TooManyWVariables() throws Exception {
+        // U = 1, A = U, B_i = A, X = B_0 AND B_1; the empty W is no witness and the subsets of the B_i cannot be
+        // enumerated
+        FormulaFactory f = new FormulaFactory();
+        Variable a = f.variable("A");
+        Set<Equation> equations = new HashSet<>(Arrays.asList(new Equation(a, f.variable("U")),
+                new Equation(f.variable("X"), f.and(f.variable("B0"), f.variable("B1")))));
+        for (int i = 0; i <= Util.MAX_POWER_SET_ELEMENTS; i++) {
+            equations.add(new Equation(f.variable("B" + i), a));
+        }
+        CausalModel causalModel = new CausalModel("TooManyCandidates", equations,
+                new HashSet<>(Collections.singletonList(f.variable("U"))), f);
+        Set<Literal> context = new HashSet<>(Collections.singletonList(f.variable("U")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(a));
+
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.ORIGINAL_HP,
+                SolvingStrategy.UPDATED_HP)) {
+            try {
+                causalModel.isCause(context, f.variable("X").negate(), cause, solvingStrategy);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void Should_AttachMetrics_When_Solved() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+
+        CausalitySolverResult bruteForceResult = bruteForceCausalitySolver.solve(billySuzy, context,
+                f.variable("BS"), cause, SolvingStrategy.BRUTE_FORCE);
+        SolverMetrics bruteForceMetrics = bruteForceResult.getMetrics();
+        assertTrue(bruteForceMetrics.getWCandidates() > 0);
+        assertEquals(bruteForceMetrics.getWCandidates(), bruteForceMetrics.getWAssignments());
+        assertTrue(bruteForceMetrics.getModifiedModels() > 0);
+        assertTrue(bruteForceMetrics.getEquationEvaluations() > 0);
+        assertEquals(0, bruteForceMetrics.getSatCalls());
+
+        for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.SAT, SolvingStrategy.SAT_MINIMAL,
+                SolvingStrategy.SAT_COMBINED)) {
+            for (SATCausalitySolver satCausalitySolver : Arrays.asList(SATCausalitySolver,
+                    incrementalSATCausalitySolver)) {
+                SolverMetrics metrics = satCausalitySolver.solve(billySuzy, context, f.variable("BS"), cause,
+                        solvingStrategy, SATSolverType.MINISAT).getMetrics();
+                assertTrue(metrics.getSatCalls() > 0);
+                assertTrue(metrics.getSatNanos() >= 0);
+                assertEquals(0, metrics.getWCandidates());
+                for (int clause = 1; clause <= 3; clause++) {
+                    assertTrue(metrics.getClauseNanos(clause) >= 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Should_NotifyMetricsListener_When_Solved() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        FormulaFactory f = billySuzy.getFormulaFactory();
+        Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+        AtomicLong wCandidates = new AtomicLong();
+        AtomicLong satCalls = new AtomicLong();
+        SolverMetricsListener listener = new SolverMetricsListener() {
+            @Override
+            public void wCandidateTried() {
+                wCandidates.incrementAndGet();
+            }
+
+            @Override
+            public void satSolverCalled(long nanos) {
+                satCalls.incrementAndGet();
+            }
+        };
+        bruteForceCausalitySolver.setMetricsListener(listener);
+        SATCausalitySolver.setMetricsListener(listener);
+
+        SolverMetrics bruteForceMetrics = bruteForceCausalitySolver.solve(billySuzy, context, f.variable("BS"),
+                cause, SolvingStrategy.BRUTE_FORCE).getMetrics();
+        assertEquals(bruteForceMetrics.getWCandidates(), wCandidates.get());
+        SolverMetrics satMetrics = SATCausalitySolver.solve(billySuzy, context, f.variable("BS"), cause,
+                SolvingStrategy.SAT, SATSolverType.MINISAT).getMetrics();
+        assertEquals(satMetrics.getSatCalls(), satCalls.get());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void Should_ThrowException_When_MetricsListenerNull() {
+        bruteForceCausalitySolver.setMetricsListener(null);
+    }
+
+    @Test(timeout = 10000)
+    public void Should_FindMinimalW_When_ManySatisfyingAssignments() throws Exception {
+        /*
+         * U = 1, A = U, B_i = A, Y = not(A), X = B_0 OR Y. Setting A to false requires to keep Y at false, i.e. W = {~Y}.
+         * Each of B_1 ... B_40 may keep its original value, hence there are 2^40 satisfying assignments.
+         * */
+        FormulaFactory f = new FormulaFactory();
+        Variable a = f.variable("A");
+        Set<Equation> equations = new HashSet<>(Arrays.asList(new Equation(a, f.variable("U")),
+                new Equation(f.variable("Y"), a.negate()),
+                new Equation(f.variable("X"), f.or(f.variable("B0"), f.variable("Y")))));
+        for (int i = 0; i <= 40; i++) {
+            equations.add(new Equation(f.variable("B" + i), a));
+        }
+        CausalModel causalModel = new CausalModel("ManyAssignments", equations,
+                new HashSet<>(Collections.singletonList(f.variable("U"))), f);
+        Set<Literal> context = new HashSet<>(Collections.singletonList(f.variable("U")));
+        Set<Literal> cause = new HashSet<>(Collections.singletonList(a));
+        CausalitySolverResult expected = new CausalitySolverResult(true, true, true, cause,
+                new HashSet<>(Collections.singletonList(f.literal("Y", false))));
+
+        for (SATSolverType satSolverType : Arrays.asList(SATSolverType.MINISAT, SATSolverType.MINICARD)) {
+            assertEquals(expected, SATCausalitySolver.solve(causalModel, context, f.variable("X"), cause,
+                    SolvingStrategy.SAT_MINIMAL, satSolverType));
+            assertEquals(expected, incrementalSATCausalitySolver.solve(causalModel, context, f.variable("X"), cause,
+                    SolvingStrategy.SAT_MINIMAL, satSolverType));
+        }
+    }
+}
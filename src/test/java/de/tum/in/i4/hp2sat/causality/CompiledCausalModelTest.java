@@ -0,0 +1,67 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.Test;
+import org.logicng.datastructures.Assignment;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CompiledCausalModelTest {
+
+    @Test
+    public void Should_EvaluateLikeEvaluateEquations_When_AllContextsEvaluated() throws Exception {
+        for (CausalModel causalModel : Arrays.asList(ExampleProvider.billySuzyExtended(),
+                ExampleProvider.forestFire(true), ExampleProvider.prisoners(), ExampleProvider.railroad())) {
+            CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+            List<Variable> exogenousVariables = new ArrayList<>(causalModel.getExogenousVariables());
+            long[] assignment = compiledModel.newAssignment();
+            for (int i = 0; i < 1 << exogenousVariables.size(); i++) {
+                Set<Literal> context = new HashSet<>();
+                for (int j = 0; j < exogenousVariables.size(); j++) {
+                    Variable variable = exogenousVariables.get(j);
+                    context.add((i & (1 << j)) != 0 ? variable : variable.negate());
+                }
+                compiledModel.setContext(assignment, context);
+                compiledModel.evaluate(assignment);
+                assertEquals(CausalitySolver.evaluateEquations(causalModel, context),
+                        compiledModel.toLiterals(assignment));
+            }
+        }
+    }
+
+    @Test
+    public void Should_EvaluateLikeLogicNG_When_FormulaCompiled() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        Formula formula = f.parse("(BS <=> ~SH) & (ST => BH | BT) | ~(ST & BT)");
+        long[] assignment = compiledModel.newAssignment();
+        for (int i = 0; i < 1 << compiledModel.getNumberOfVariables(); i++) {
+            for (int id = 0; id < compiledModel.getNumberOfVariables(); id++) {
+                CompiledCausalModel.set(assignment, id, (i & (1 << id)) != 0);
+            }
+            assertEquals(formula.evaluate(new Assignment(compiledModel.toLiterals(assignment))),
+                    compiledModel.compile(formula).evaluate(assignment));
+        }
+    }
+
+    @Test
+    public void Should_ShareIds_When_ModelModified() throws Exception {
+        CausalModel causalModel = ExampleProvider.billySuzy();
+        FormulaFactory f = causalModel.getFormulaFactory();
+        CausalModel causalModelModified = new BruteForceCausalitySolver().createModifiedCausalModelForW(causalModel,
+                Collections.singleton(f.literal("SH", false)), f);
+        CompiledCausalModel compiledModel = causalModel.getCompiledModel();
+        CompiledCausalModel compiledModelModified = causalModelModified.getCompiledModel();
+        for (int id = 0; id < compiledModel.getNumberOfVariables(); id++) {
+            assertEquals(compiledModel.getVariable(id), compiledModelModified.getVariable(id));
+        }
+        assertEquals(2, compiledModel.getNumberOfExogenousVariables());
+    }
+}
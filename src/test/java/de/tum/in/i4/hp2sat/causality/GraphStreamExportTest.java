@@ -0,0 +1,91 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import de.tuda.aiml.probabilistic.ProbabilisticCausalModel;
+import de.tuda.aiml.probabilistic.ProbabilisticSolvingStrategy;
+import de.tuda.aiml.util.ProbabilisticExampleProvider;
+import de.tum.in.i4.hp2sat.util.ExampleProvider;
+import org.junit.Test;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphStreamExportTest {
+
+    /**
+     * Builds causal models and checks causes; run without GraphStream on the classpath.
+     */
+    public static class WithoutGraphStream implements Callable<Boolean> {
+        @Override
+        public Boolean call() throws Exception {
+            CausalModel billySuzy = ExampleProvider.billySuzy();
+            FormulaFactory f = billySuzy.getFormulaFactory();
+            Set<Literal> context = new HashSet<>(Arrays.asList(f.variable("ST_exo"), f.variable("BT_exo")));
+            Set<Literal> cause = new HashSet<>(Collections.singletonList(f.variable("ST")));
+            for (SolvingStrategy solvingStrategy : Arrays.asList(SolvingStrategy.BRUTE_FORCE, SolvingStrategy.SAT,
+                    SolvingStrategy.SAT_MINIMAL, SolvingStrategy.ORIGINAL_HP, SolvingStrategy.UPDATED_HP)) {
+                if (!billySuzy.isCause(context, f.variable("BS"), cause, solvingStrategy).isAc2()) {
+                    return false;
+                }
+            }
+
+            ProbabilisticCausalModel donPolice = ProbabilisticExampleProvider.donPolice();
+            FormulaFactory g = donPolice.getFormulaFactory();
+            Set<Literal> probabilisticContext = new HashSet<>(Arrays.asList(
+                    g.literal("CI_exo", true), g.literal("BI_exo", true), g.literal("SonnyShoots", true),
+                    g.literal("TurkShoots", false), g.literal("SonnyHits", true), g.literal("TurkHits", false)));
+            donPolice.isCause(probabilisticContext, g.variable("D"),
+                    new HashSet<>(Collections.singletonList(g.variable("C"))), ProbabilisticSolvingStrategy.PC);
+            return true;
+        }
+    }
+
+    @Test
+    public void Should_SolveWithoutGraphStream_When_NotOnClasspath() throws Exception {
+        // surefire may start the tests from a manifest-only jar, in which case it exposes the classpath separately
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty() && !entry.contains("graphstream")) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        // no parent except the bootstrap class loader, hence only the given entries are visible
+        try (URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), null)) {
+            try {
+                classLoader.loadClass("org.graphstream.graph.Graph");
+                fail("GraphStream is still on the classpath");
+            } catch (ClassNotFoundException expected) {
+                // the models need to work without it
+            }
+            Class<?> scenario = classLoader.loadClass(WithoutGraphStream.class.getName());
+            assertFalse(scenario == WithoutGraphStream.class);
+            assertTrue((Boolean) ((Callable<?>) scenario.getDeclaredConstructor().newInstance()).call());
+        }
+    }
+
+    @Test
+    public void Should_ExportGraphStreamGraph() throws Exception {
+        CausalModel billySuzy = ExampleProvider.billySuzy();
+        org.graphstream.graph.Graph graph = GraphStreamExport.toGraph(billySuzy.getCausalGraph(),
+                billySuzy.getName());
+        org.graphstream.graph.Graph graphReversed = GraphStreamExport.toGraphReversed(billySuzy.getCausalGraph(),
+                billySuzy.getName() + "_reversed");
+        int edges = billySuzy.getVariableEquationMap().values().stream()
+                .mapToInt(e -> e.getFormula().variables().size()).sum();
+        assertEquals(billySuzy.getCausalGraph().getNumberOfVariables(), graph.getNodeCount());
+        assertEquals(edges, graph.getEdgeCount());
+        assertEquals(edges, graphReversed.getEdgeCount());
+        assertEquals("ST", graph.getEdge("SH-ST").getSourceNode().getId());
+        assertEquals("SH", graphReversed.getEdge("SH-ST").getSourceNode().getId());
+    }
+}
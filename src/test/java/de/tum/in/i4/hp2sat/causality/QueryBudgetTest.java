@@ -0,0 +1,48 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryBudgetTest {
+
+    @Test
+    public void Should_NotBeExhausted_When_NoDeadline() {
+        QueryBudget queryBudget = new QueryBudget();
+        assertFalse(queryBudget.isExhausted());
+        queryBudget.checkpoint();
+    }
+
+    @Test
+    public void Should_BeExhausted_When_Cancelled() {
+        QueryBudget queryBudget = new QueryBudget(1, TimeUnit.HOURS);
+        assertFalse(queryBudget.isExhausted());
+        queryBudget.cancel();
+        assertTrue(queryBudget.isCancelled());
+        assertTrue(queryBudget.isExhausted());
+    }
+
+    @Test
+    public void Should_BeExhausted_When_TimeoutZero() {
+        assertTrue(new QueryBudget(0, TimeUnit.MILLISECONDS).isExhausted());
+    }
+
+    @Test
+    public void Should_NotOverflow_When_TimeoutHuge() {
+        assertFalse(new QueryBudget(Long.MAX_VALUE, TimeUnit.DAYS).isExhausted());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void Should_ThrowException_When_CheckpointOfExhaustedBudget() {
+        new QueryBudget(0, TimeUnit.NANOSECONDS).checkpoint();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_TimeoutNegative() {
+        new QueryBudget(-1, TimeUnit.SECONDS);
+    }
+}
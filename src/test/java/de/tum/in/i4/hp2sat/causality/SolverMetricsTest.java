@@ -0,0 +1,75 @@
+package de.tum.in.i4.hp2sat.causality;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverMetricsTest {
+
+    @Test
+    public void Should_CountAndForwardEvents() {
+        AtomicLong equations = new AtomicLong();
+        AtomicLong satNanos = new AtomicLong();
+        SolverMetrics metrics = new SolverMetrics(new SolverMetricsListener() {
+            @Override
+            public void equationsEvaluated(long evaluated) {
+                equations.addAndGet(evaluated);
+            }
+
+            @Override
+            public void satSolverCalled(long nanos) {
+                satNanos.addAndGet(nanos);
+            }
+        });
+        metrics.modifiedModelsBuilt(2);
+        metrics.equationsEvaluated(5);
+        metrics.equationsEvaluated(7);
+        metrics.wCandidateTried();
+        metrics.wAssignmentTried();
+        metrics.wAssignmentTried();
+        metrics.zStarSubsetTried();
+        metrics.contextsEnumerated(64);
+        metrics.satSolverCalled(10);
+        metrics.satSolverCalled(20);
+
+        assertEquals(2, metrics.getModifiedModels());
+        assertEquals(12, metrics.getEquationEvaluations());
+        assertEquals(1, metrics.getWCandidates());
+        assertEquals(2, metrics.getWAssignments());
+        assertEquals(1, metrics.getZStarSubsets());
+        assertEquals(64, metrics.getContexts());
+        assertEquals(2, metrics.getSatCalls());
+        assertEquals(30, metrics.getSatNanos());
+        assertEquals(12, equations.get());
+        assertEquals(30, satNanos.get());
+    }
+
+    @Test
+    public void Should_MeasureClauses_When_Started() {
+        AtomicLong checkedClauses = new AtomicLong();
+        SolverMetrics metrics = new SolverMetrics(new SolverMetricsListener() {
+            @Override
+            public void clauseChecked(int clause, long nanos) {
+                checkedClauses.incrementAndGet();
+            }
+        });
+        metrics.startClause(1);
+        metrics.startClause(2);
+        metrics.finishClause();
+        // finishing twice does not report the clause again
+        metrics.finishClause();
+
+        assertEquals(2, checkedClauses.get());
+        assertTrue(metrics.getClauseNanos(1) >= 0);
+        assertTrue(metrics.getClauseNanos(2) >= 0);
+        assertEquals(0, metrics.getClauseNanos(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Should_ThrowException_When_NoSuchClause() {
+        new SolverMetrics().getClauseNanos(4);
+    }
+}
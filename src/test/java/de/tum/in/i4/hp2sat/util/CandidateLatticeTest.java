@@ -0,0 +1,75 @@
+package de.tum.in.i4.hp2sat.util;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CandidateLatticeTest {
+
+    @Test
+    public void Should_GenerateSubsetsWithoutMarkedSubset() {
+        Util<String> util = new Util<>();
+        Random random = new Random(42);
+        for (int n = 0; n <= 8; n++) {
+            List<String> elements = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                elements.add("X" + i);
+            }
+            CandidateLattice<String> lattice = new CandidateLattice<>(elements);
+            Set<Set<String>> marked = new HashSet<>();
+            Set<Set<String>> generated = new HashSet<>();
+            int size = 1;
+            for (List<Set<String>> level = lattice.nextLevel(); !level.isEmpty(); level = lattice.nextLevel()) {
+                for (Set<String> candidate : level) {
+                    assertEquals(size, candidate.size());
+                    assertTrue(generated.add(candidate));
+                    // mark some candidates, e.g. the causes
+                    if (random.nextInt(4) == 0) {
+                        lattice.mark(candidate);
+                        marked.add(candidate);
+                    }
+                }
+                size++;
+            }
+
+            Set<Set<String>> expected = util.generatePowerSet(new HashSet<>(elements)).stream()
+                    .filter(s -> !s.isEmpty() && marked.stream().noneMatch(m -> s.containsAll(m) && !s.equals(m)))
+                    .collect(Collectors.toSet());
+            assertEquals(expected, generated);
+        }
+    }
+
+    @Test
+    public void Should_NotMaterializePowerSet_When_ManyElements() {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            elements.add(i);
+        }
+        CandidateLattice<Integer> lattice = new CandidateLattice<>(elements);
+        List<Set<Integer>> singletons = lattice.nextLevel();
+        assertEquals(64, singletons.size());
+        // all but two elements are marked, hence only their pair remains
+        for (int i = 2; i < 64; i++) {
+            lattice.mark(Collections.singleton(i));
+        }
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList(0, 1))), lattice.nextLevel());
+        assertTrue(lattice.nextLevel().isEmpty());
+    }
+
+    @Test
+    public void Should_ContainSubset_When_SubsetAdded() {
+        SubsetTrie trie = new SubsetTrie();
+        trie.add(new int[]{1, 3});
+        trie.add(new int[]{2});
+        trie.add(new int[]{2});
+        assertEquals(2, trie.size());
+        assertTrue(trie.containsSubsetOf(new int[]{0, 1, 3}));
+        assertTrue(trie.containsSubsetOf(new int[]{2, 5}));
+        assertFalse(trie.containsSubsetOf(new int[]{1, 4}));
+        assertFalse(trie.containsSubsetOf(new int[]{3}));
+        assertFalse(new SubsetTrie().containsSubsetOf(new int[]{1}));
+    }
+}
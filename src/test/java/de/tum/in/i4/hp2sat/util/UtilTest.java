@@ -0,0 +1,67 @@
+package de.tum.in.i4.hp2sat.util;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class UtilTest {
+
+    @Test
+    public void Should_IterateLikeGeneratePowerSet() {
+        Util<String> util = new Util<>();
+        for (int n = 0; n <= 8; n++) {
+            Set<String> set = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                set.add("X" + i);
+            }
+            List<Set<String>> expected = util.generatePowerSet(set);
+            List<Set<String>> actual = new ArrayList<>();
+            for (Set<String> subset : util.iteratePowerSet(set)) {
+                actual.add(new HashSet<>(subset));
+            }
+            assertEquals(expected, actual);
+
+            for (int k = 0; k <= n; k++) {
+                final int size = k;
+                List<Set<String>> actualOfSize = new ArrayList<>();
+                for (Set<String> subset : util.iterateSubsets(set, size)) {
+                    actualOfSize.add(new HashSet<>(subset));
+                }
+                assertEquals(expected.stream().filter(s -> s.size() == size).collect(Collectors.toList()),
+                        actualOfSize);
+            }
+        }
+    }
+
+    @Test
+    public void Should_ReturnReadOnlyView() {
+        Set<String> set = new HashSet<>(Arrays.asList("A", "B", "C"));
+        Iterator<Set<String>> iterator = new Util<String>().iterateSubsets(set, 2).iterator();
+        Set<String> subset = iterator.next();
+        assertEquals(2, subset.size());
+        assertTrue(set.containsAll(subset));
+        assertFalse(subset.contains("D"));
+        try {
+            subset.add("D");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void Should_RejectTooLargeSets_When_CountingSubsets() {
+        assertEquals(1L, Util.countSubsets(0));
+        assertEquals(8L, Util.countSubsets(3));
+        assertEquals(1L << Util.MAX_POWER_SET_ELEMENTS, Util.countSubsets(Util.MAX_POWER_SET_ELEMENTS));
+        try {
+            Util.countSubsets(Util.MAX_POWER_SET_ELEMENTS + 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}